@@ -26,6 +26,8 @@ import edu.cmu.photogenome.domain.Photo;
 import edu.cmu.photogenome.domain.PhotoCategory;
 import edu.cmu.photogenome.domain.PhotoComment;
 import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.util.HibernateSession;
+import edu.cmu.photogenome.util.HibernateSessionAware;
 import edu.cmu.photogenome.util.HibernateUtil;
 
 /**
@@ -37,7 +39,7 @@ import edu.cmu.photogenome.util.HibernateUtil;
  *
  */
 
-public class EmbedPhotoAction extends ActionSupport {
+public class EmbedPhotoAction extends ActionSupport implements HibernateSessionAware {
 
 	final Logger log = LoggerFactory.getLogger(EmbedPhotoAction.class);
 	
@@ -163,39 +165,48 @@ public class EmbedPhotoAction extends ActionSupport {
 		this.jsonAddPhotoCategories = jsonAddPhotoCategories;
 	}
 
+	/**
+	 * Set the Hibernate session of the request
+	 * 
+	 * @param session
+	 */
+	public void setHibernateSession(Session session) {
+		embedPhoto.setSession(session);
+		photoDao.setSession(session);
+		photoCategoryDao.setSession(session);
+		photoCommentDao.setSession(session);
+	}
+
 	/**
 	 * Add comments to a photo
 	 * 
 	 * @return	success if photo comment is added, otherwise error
 	 */
 
+	@HibernateSession
 	public String addPhotoComment(){
 
 		Photo photo = null;
 		PhotoComment photoComment = null;
 
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedPhoto.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		photoDao.setSession(session);
 		try{
 			photo = photoDao.findById(photoId);
 
 			if(photo != null) {
 				if((photoComment = embedPhoto.addPhotoComment(photoId, userId, photoCommentText)) == null) {
-					HibernateUtil.rollbackTransaction(session);
+					HibernateUtil.setRollbackOnly();
 					return SUCCESS;
 				}
 			}else {
-				HibernateUtil.rollbackTransaction(session);
+				HibernateUtil.setRollbackOnly();
 				return SUCCESS;
 			}
 			
 			jsonAddPhotoComments.put(jsonKey, photoComment);
-			HibernateUtil.commitTransaction(session);
 			return SUCCESS;
 
 		}catch(Exception ex) {
+			HibernateUtil.setRollbackOnly();
 			return SUCCESS;
 		}
 	}
@@ -206,17 +217,13 @@ public class EmbedPhotoAction extends ActionSupport {
 	 * @return	success if photo category is added, otherwise error
 	 */
 
+	@HibernateSession
 	public String addPhotoCategory(){
 
 		Photo photo = null;
 		PhotoCategory photoCategory = null;
 		List<SimpleEntry<String, String>> categoryList = null;
 		
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedPhoto.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		photoDao.setSession(session);
-		
 		try{
 			categoryList = new ArrayList<SimpleEntry<String, String>>();
 			photo = photoDao.findById(photoId);
@@ -225,20 +232,20 @@ public class EmbedPhotoAction extends ActionSupport {
 			categoryList.add(new SimpleEntry<String, String>(photoCategoryName, photoCategoryText));
 					
 			if((photoCategory = embedPhoto.addPhotoCategory(photoId, userId, categoryList))==null) {
-				HibernateUtil.rollbackTransaction(session);
+				HibernateUtil.setRollbackOnly();
 				return SUCCESS;
 			}
 		}else{
-			HibernateUtil.rollbackTransaction(session);
+			HibernateUtil.setRollbackOnly();
 			return SUCCESS;
 		}
 		
 		jsonAddPhotoCategories.put(jsonKey, photoCategory);
-		HibernateUtil.commitTransaction(session);
 		return SUCCESS;
 		
 		}catch(Exception ex)
 		{
+			HibernateUtil.setRollbackOnly();
 			return SUCCESS;
 		}
 	}
@@ -249,30 +256,21 @@ public class EmbedPhotoAction extends ActionSupport {
 	 * @return	success if photo comment is updated, otherwise error
 	 */
 
+	@HibernateSession
 	public String editPhotoComment(){
 
 		PhotoComment photoComment = null;
 		
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedPhoto.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		photoCommentDao.setSession(session);
-		
 		if((photoComment = photoCommentDao.findById(photoCommentId)) == null) {
-			HibernateUtil.rollbackTransaction(session);
+			HibernateUtil.setRollbackOnly();
 			return "invalid_photo_comment";
 		}
 		else {
 			photoComment.setPhotoCommentTimestamp(new Date());
 			photoComment.setPhotoCommentText(photoCommentText);
-			if (embedPhoto.editPhotoComment(photoComment)) {
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			if (!embedPhoto.editPhotoComment(photoComment))
+				HibernateUtil.setRollbackOnly();
+			return SUCCESS;
 		}
 	}
 
@@ -282,27 +280,19 @@ public class EmbedPhotoAction extends ActionSupport {
 	 * @return	success if photo category is updated, otherwise error
 	 */
 
+	@HibernateSession
 	public String editPhotoCategory(){
 
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedPhoto.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
-		photoCategoryDao.setSession(session);
 		PhotoCategory photoCategory = photoCategoryDao.findById(photoCategoryId);
 		
 		if(photoCategory != null) {
 			photoCategory.setPhotoCategoryName(photoCategoryName);
 			photoCategory.setPhotoCategoryText(photoCategoryText);
-			if(!embedPhoto.editPhotoCategory(photoCategory)) {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			if(!embedPhoto.editPhotoCategory(photoCategory))
+				HibernateUtil.setRollbackOnly();
 		}else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
+			HibernateUtil.setRollbackOnly();
 		}
-		HibernateUtil.commitTransaction(session);
 		return SUCCESS;
 
 	}
@@ -313,20 +303,12 @@ public class EmbedPhotoAction extends ActionSupport {
 	 * @return	success if photo comment is deleted, otherwise error
 	 */
 
+	@HibernateSession
 	public String deletePhotoComment(){
 		
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedPhoto.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
-		if(embedPhoto.deletePhotoComment(photoCommentId)) {
-			HibernateUtil.commitTransaction(session);
-			return SUCCESS;
-		}
-		else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
-		}
+		if(!embedPhoto.deletePhotoComment(photoCommentId))
+			HibernateUtil.setRollbackOnly();
+		return SUCCESS;
 	}
 
 
@@ -336,20 +318,12 @@ public class EmbedPhotoAction extends ActionSupport {
 	 * @return	success if photo category is deleted, otherwise error
 	 */
 
+	@HibernateSession
 	public String deletePhotoCategory(){
 
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedPhoto.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
-		if(embedPhoto.deletePhotoCategory(photoCategoryId)) {
-			HibernateUtil.commitTransaction(session);
-			return SUCCESS;
-		}
-		else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
-		}
+		if(!embedPhoto.deletePhotoCategory(photoCategoryId))
+			HibernateUtil.setRollbackOnly();
+		return SUCCESS;
 	}
 
 }
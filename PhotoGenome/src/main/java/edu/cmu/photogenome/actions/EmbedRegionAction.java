@@ -18,6 +18,8 @@ import edu.cmu.photogenome.domain.PhotoRegion;
 import edu.cmu.photogenome.domain.RegionCategory;
 import edu.cmu.photogenome.domain.RegionComment;
 import edu.cmu.photogenome.domain.RegionCoordinate;
+import edu.cmu.photogenome.util.HibernateSession;
+import edu.cmu.photogenome.util.HibernateSessionAware;
 import edu.cmu.photogenome.util.HibernateUtil;
  
 /**
@@ -30,13 +32,14 @@ import edu.cmu.photogenome.util.HibernateUtil;
  *
  */
 
-public class EmbedRegionAction extends ActionSupport {
+public class EmbedRegionAction extends ActionSupport implements HibernateSessionAware {
 
 	final Logger log = LoggerFactory.getLogger(EmbedRegionAction.class);
 	
 	final String jsonKey = getText("json.key");
 	
 	private EmbedRegion embedRegion = new EmbedRegion();
+	private ViewInformation viewInfo = new ViewInformation();
 	
 	private Integer regionId;
 	private int photoId;
@@ -59,53 +62,47 @@ public class EmbedRegionAction extends ActionSupport {
 	private Map<String, Object> jsonAddRegionComment = new LinkedHashMap<String, Object>();
 	private Map<String, Object> jsonAddRegionCategory = new LinkedHashMap<String, Object>();
 	
+	/**
+	 * Set the Hibernate session of the request
+	 * 
+	 * @param session
+	 */
+	public void setHibernateSession(Session session) {
+		embedRegion.setSession(session);
+		viewInfo.setSession(session);
+	}
+	
+	@HibernateSession
 	public String addPhotoRegion() {
 		PhotoRegion region;
 		
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedRegion.setSession(session);
-		ViewInformation viewInfo = new ViewInformation(session);
-		HibernateUtil.beginTransaction(session);
-		
 		if(viewInfo.getPhoto(photoId) == null) {
-			HibernateUtil.rollbackTransaction(session);
+			HibernateUtil.setRollbackOnly();
 			return SUCCESS;
 		}
 		else {
-			if((region = embedRegion.addPhotoRegion(photoId, userId, shapeId, regionX, regionY, height, width)) != null) {
+			if((region = embedRegion.addPhotoRegion(photoId, userId, shapeId, regionX, regionY, height, width)) != null)
 				jsonAddPhotoRegion.put(jsonKey, region);
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			else
+				HibernateUtil.setRollbackOnly();
+			return SUCCESS;
 		}
 	}
 	
+	@HibernateSession
 	public String addRegionComment() {
 		RegionComment regionComment;
 		
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedRegion.setSession(session);
-		ViewInformation viewInfo = new ViewInformation(session);
-		HibernateUtil.beginTransaction(session);
-		
 		if(viewInfo.getPhotoRegion(regionId) == null) {
-			HibernateUtil.rollbackTransaction(session);
+			HibernateUtil.setRollbackOnly();
 			return SUCCESS;
 		}
 		else {
-			if((regionComment = embedRegion.addRegionComment(photoId, userId, regionId, regionCommentText)) !=null) {
+			if((regionComment = embedRegion.addRegionComment(photoId, userId, regionId, regionCommentText)) !=null)
 				jsonAddRegionComment.put(jsonKey, regionComment);
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			else
+				HibernateUtil.setRollbackOnly();
+			return SUCCESS;
 		}
 	}
 	
@@ -114,63 +111,39 @@ public class EmbedRegionAction extends ActionSupport {
 	 * 
 	 * @return success if added, otherwise error
 	 */
+	@HibernateSession
 	public String addRegionCategory(){
 
 		RegionCategory category = null;
 		List<SimpleEntry<String, String>> categoryDetails = null;
 		
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedRegion.setSession(session);
-		ViewInformation viewInfo = new ViewInformation(session);
-		HibernateUtil.beginTransaction(session);
-		
 		if(viewInfo.getPhotoRegion(regionId) == null) {
-			HibernateUtil.rollbackTransaction(session);
+			HibernateUtil.setRollbackOnly();
 			return SUCCESS;
 		}
 		else {
 			categoryDetails = new ArrayList<SimpleEntry<String, String>>();
 			categoryDetails.add(new SimpleEntry<String, String>(categoryName, regionCategoryText));
-			if((category = embedRegion.addRegionCategory(regionId, photoId, userId, categoryDetails)) != null) {
+			if((category = embedRegion.addRegionCategory(regionId, photoId, userId, categoryDetails)) != null)
 				jsonAddRegionCategory.put(jsonKey, category);
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			else
+				HibernateUtil.setRollbackOnly();
+			return SUCCESS;
 		}
 	}
 	
+	@HibernateSession
 	public String deletePhotoRegion() {
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedRegion.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
-		if(embedRegion.deletePhotoRegion(regionId)) {
-			HibernateUtil.commitTransaction(session);
-			return SUCCESS;
-		}
-		else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
-		}
+		if(!embedRegion.deletePhotoRegion(regionId))
+			HibernateUtil.setRollbackOnly();
+		return SUCCESS;
 	}
 	
+	@HibernateSession
 	public String deleteRegionComment() {
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedRegion.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
-		if(embedRegion.deleteRegionComment(regionCommentId)) {
-			HibernateUtil.commitTransaction(session);
-			return SUCCESS;
-		}
-		else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
-		}
+		if(!embedRegion.deleteRegionComment(regionCommentId))
+			HibernateUtil.setRollbackOnly();
+		return SUCCESS;
 	}
 	
 	/**
@@ -178,58 +151,33 @@ public class EmbedRegionAction extends ActionSupport {
 	 * 
 	 * @return success if deleted, otherwise error
 	 */
+	@HibernateSession
 	public String deleteRegionCategory() {
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedRegion.setSession(session);
-		HibernateUtil.beginTransaction(session);
-
-		if(embedRegion.deleteRegionCategory(regionCategoryId)) {
-			HibernateUtil.commitTransaction(session);
-			return SUCCESS;
-		}
-		else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
-		}
+		if(!embedRegion.deleteRegionCategory(regionCategoryId))
+			HibernateUtil.setRollbackOnly();
+		return SUCCESS;
 	}
 	
+	@HibernateSession
 	public String deleteRegionCoordinate() {
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedRegion.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
-		if(embedRegion.deleteRegionCoordinate(regionCoordinateId)) {
-			HibernateUtil.commitTransaction(session);
-			return SUCCESS;
-		}
-		else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
-		}
+		if(!embedRegion.deleteRegionCoordinate(regionCoordinateId))
+			HibernateUtil.setRollbackOnly();
+		return SUCCESS;
 	}
 	
+	@HibernateSession
 	public String editRegionComment() {
 		RegionComment comment = null;
 		
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedRegion.setSession(session);
-		ViewInformation viewInfo = new ViewInformation(session);
-		HibernateUtil.beginTransaction(session);
-		
 		if((comment = viewInfo.getRegionComment(regionCommentId)) == null) {
-			HibernateUtil.rollbackTransaction(session);
+			HibernateUtil.setRollbackOnly();
 			return SUCCESS;
 		}
 		else { // update the comment
 			comment.setRegionCommentText(regionCommentText);
-			if(embedRegion.editRegionComment(comment)) {
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			if(!embedRegion.editRegionComment(comment))
+				HibernateUtil.setRollbackOnly();
+			return SUCCESS;
 		}
 	}
 	
@@ -238,42 +186,29 @@ public class EmbedRegionAction extends ActionSupport {
 	 * 
 	 * @return true if region category is updated, otherwise false
 	 */
+	@HibernateSession
 	public String editRegionCategory() {
 		RegionCategory regionCategory = null;
 		
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedRegion.setSession(session);
-		ViewInformation viewInfo = new ViewInformation(session);
-		HibernateUtil.beginTransaction(session);
-		
 		if((regionCategory = viewInfo.getRegionCategory(regionCategoryId)) == null) {
-			HibernateUtil.rollbackTransaction(session);
+			HibernateUtil.setRollbackOnly();
 			return SUCCESS;
 		}
 		else {
 			regionCategory.setCategoryName(categoryName);
 			regionCategory.setRegionCategoryText(regionCategoryText);
-			if (embedRegion.editRegionCategory(regionCategory)) {
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			if (!embedRegion.editRegionCategory(regionCategory))
+				HibernateUtil.setRollbackOnly();
+			return SUCCESS;
 		}
 	}
 	
+	@HibernateSession
 	public String editRegionCoordinate() {
 		RegionCoordinate coordinate = null;
 		
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		embedRegion.setSession(session);
-		ViewInformation viewInfo = new ViewInformation(session);
-		HibernateUtil.beginTransaction(session);
-		
 		if((coordinate = viewInfo.getRegionCoordinate(regionCoordinateId)) == null) {
-			HibernateUtil.rollbackTransaction(session);
+			HibernateUtil.setRollbackOnly();
 			return SUCCESS;
 		}
 		else { // update the coordinate
@@ -281,14 +216,9 @@ public class EmbedRegionAction extends ActionSupport {
 			coordinate.setRegionY(regionY);
 			coordinate.setHeight(height);
 			coordinate.setWidth(width);
-			if(embedRegion.editRegionCoordinate(coordinate)) {
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			if(!embedRegion.editRegionCoordinate(coordinate))
+				HibernateUtil.setRollbackOnly();
+			return SUCCESS;
 		}
 	}
 	
@@ -2,7 +2,9 @@ package edu.cmu.photogenome.actions;
 
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.apache.struts2.interceptor.SessionAware;
 import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,9 +15,10 @@ import edu.cmu.photogenome.business.Login;
 import edu.cmu.photogenome.dao.UserDao;
 import edu.cmu.photogenome.dao.UserDaoImpl;
 import edu.cmu.photogenome.domain.User;
+import edu.cmu.photogenome.util.AdminInterceptor;
 import edu.cmu.photogenome.util.HibernateUtil;
 
-public class LoginAction extends ActionSupport {
+public class LoginAction extends ActionSupport implements SessionAware {
 	final Logger log = LoggerFactory.getLogger(LoginAction.class);
 	
 	private int userId;
@@ -50,6 +53,13 @@ public class LoginAction extends ActionSupport {
     
     
 	private UserDao userDao = new UserDaoImpl();
+	
+	// HTTP session, holding the role of the logged in user for the admin actions
+	private Map<String, Object> httpSession;
+	
+	public void setSession(Map<String, Object> httpSession) {
+		this.httpSession = httpSession;
+	}
 
 	private String firstname;
 
@@ -94,11 +104,15 @@ public class LoginAction extends ActionSupport {
 	    	
 	    	if(user != null) {
 	    		jsonLoginData.put(jsonKey, user);
+	    		if(httpSession != null)
+	    			httpSession.put(AdminInterceptor.ROLE_ATTRIBUTE, user.getRoleId());
 						HibernateUtil.commitTransaction(session);
 						return SUCCESS;
 					}
 					else {
 						jsonLoginData.put(jsonKey, "NotAUser");
+						if(httpSession != null)
+							httpSession.remove(AdminInterceptor.ROLE_ATTRIBUTE);
 						addActionError(getText("error.login"));
 				    	HibernateUtil.rollbackTransaction(session);
 						return SUCCESS;
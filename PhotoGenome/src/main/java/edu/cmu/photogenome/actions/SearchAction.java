@@ -7,6 +7,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 
 import org.hibernate.Session;
 import org.slf4j.Logger;
@@ -15,28 +16,50 @@ import org.slf4j.LoggerFactory;
 import com.opensymphony.xwork2.ActionSupport;
 
 import edu.cmu.photogenome.business.Search;
-import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.business.SearchPage;
+import edu.cmu.photogenome.business.SearchResultCache;
+import edu.cmu.photogenome.domain.PhotoSummary;
+import edu.cmu.photogenome.util.HibernateSession;
+import edu.cmu.photogenome.util.HibernateSessionAware;
 import edu.cmu.photogenome.util.HibernateUtil;
+import edu.cmu.photogenome.util.SingleFlight;
 
-public class SearchAction extends ActionSupport {
+public class SearchAction extends ActionSupport implements HibernateSessionAware {
 
 	final Logger log = LoggerFactory.getLogger(SearchAction.class);
 	
 	final String jsonKey = getText("json.key");
 	
+	// identical associated photo searches running at the same time share one computation
+	private static final SingleFlight<String, SearchPage> associatedPhotoSearches = new SingleFlight<String, SearchPage>();
+	
 	private Search search = new Search();
 	
 	private Integer photoId;
 	private String keywords; // list of search keywords
+	private String prefix; // typed text to complete
 	private String photoCategoryList; // list of photo category data
 	private String photoCategoryIdList; // list of selected photo category ids
 	private String regionCategoryList; // list of region category data
 	private String regionCategoryIdList; // list of selected region category ids
+	private String cursor; // cursor of the page to get, returned as nextCursor with the previous page
+	private Integer pageSize; // max number of photos per page
 	
 	/** Variables to store/pass JSON data **/
 	private Map<String, Object> jsonGetAssociatedPhotos = new LinkedHashMap<String, Object>();
 	private Map<String, Object> jsonGetFilteredAssociatedPhotos = new LinkedHashMap<String, Object>();
 	private Map<String, Object> jsonGetPhotosByKeywords = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetSearchCacheStats = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetCompletions = new LinkedHashMap<String, Object>();
+	
+	/**
+	 * Set the Hibernate session of the request
+	 * 
+	 * @param session
+	 */
+	public void setHibernateSession(Session session) {
+		search.setSession(session);
+	}
 	
 	/**
 	 * Get a set of photos based on all of the photo categories, photo comments, region categories, 
@@ -45,27 +68,54 @@ public class SearchAction extends ActionSupport {
 	 * @return
 	 */
 	public String getAssociatedPhotos() {
-		List<Photo> list = null;
+		SearchPage page = null;
+		final int size = requestedPageSize();
 		
-		// start transaction
-		Session session = HibernateUtil.getSessionFactory().openSession();
+		try {
+			page = associatedPhotoSearches.execute(photoId + ":" + cursor + ":" + size, new Callable<SearchPage>() {
+				public SearchPage call() {
+					return searchAssociatedPhotos(size);
+				}
+			});
+		}
+		catch(Exception e) {
+			log.warn(e.getMessage(), e);
+			return SUCCESS;
+		}
+		
+		if(page != null) {
+			jsonGetAssociatedPhotos.put(jsonKey, page.getItems());
+			jsonGetAssociatedPhotos.put("nextCursor", page.getNextCursor());
+		}
+		return SUCCESS;
+	}
+	
+	/**
+	 * Run the associated photos search in its own transaction, the page may be shared
+	 * with concurrent identical requests
+	 * 
+	 * @param size	requested page size
+	 * @return page of photos with the full photo link paths, null if the search failed
+	 */
+	private SearchPage searchAssociatedPhotos(int size) {
+		SearchPage page = null;
+		
+		// start transaction, not in the request's session as the page is shared with other requests
+		Session session = HibernateUtil.getReadSessionFactory().openSession();
 		search.setSession(session);
-		HibernateUtil.beginTransaction(session);
+		HibernateUtil.beginTransaction(session, true);
 		
-		if((list = search.getAssociatedPhotos(photoId)) != null) {
-			
-			// replace photo link path
-			for(Photo photo : list)
-				photo.setPhotoLink(getFullPhotoLinkPath(photo.getPhotoLink()));
-			
-			jsonGetAssociatedPhotos.put(jsonKey, list);
-			HibernateUtil.rollbackTransaction(session); // don't save the photo link path
-			return SUCCESS;
+		try {
+			if((page = search.getAssociatedPhotos(photoId, cursor, size)) != null) {
+				// replace photo link path
+				for(PhotoSummary photo : page.getItems())
+					photo.setPhotoLink(getFullPhotoLinkPath(photo.getPhotoLink()));
+			}
 		}
-		else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
+		finally {
+			HibernateUtil.rollbackTransaction(session); // don't save the photo link path
 		}
+		return page;
 	}
 	
 	/**
@@ -74,8 +124,10 @@ public class SearchAction extends ActionSupport {
 	 * 
 	 * @return
 	 */
+	@HibernateSession(readOnly = true)
 	public String getFilteredAssociatedPhotosByCategoryId() {
-		List<Photo> list = null;
+		SearchPage page = null;
+		List<PhotoSummary> list = null;
 		List<Integer> photoCategoryIds;
 		List<Integer> regionCategoryIds;
 		
@@ -89,24 +141,17 @@ public class SearchAction extends ActionSupport {
 			return SUCCESS;
 		}
 		
-		// start transaction
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		search.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
-		if((list = search.getFilteredAssociatedPhotosByCategoryId(photoId, photoCategoryIds, regionCategoryIds)) != null) {
+		if((page = search.getFilteredAssociatedPhotosByCategoryId(photoId, photoCategoryIds, regionCategoryIds, 
+				cursor, requestedPageSize())) != null) {
+			list = page.getItems();
 			// replace photo link path
-			for(Photo photo : list)
+			for(PhotoSummary photo : list)
 				photo.setPhotoLink(getFullPhotoLinkPath(photo.getPhotoLink()));
 			
 			jsonGetFilteredAssociatedPhotos.put(jsonKey, list);
-			HibernateUtil.rollbackTransaction(session); // don't save the photo link path
-			return SUCCESS;
-		}
-		else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
+			jsonGetFilteredAssociatedPhotos.put("nextCursor", page.getNextCursor());
 		}
+		return SUCCESS;
 	}
 	
 	/**
@@ -115,32 +160,27 @@ public class SearchAction extends ActionSupport {
 	 * 
 	 * @return
 	 */
+	@HibernateSession(readOnly = true)
 	public String getFilteredAssociatedPhotosByCategoryValue() {
-		List<Photo> list = null;
+		SearchPage page = null;
+		List<PhotoSummary> list = null;
 		List<String> photoCategories;
 		List<String> regionCategories;
 		
 		photoCategories = parseStringToList(photoCategoryList, " ");
 		regionCategories = parseStringToList(regionCategoryList, " ");
 		
-		// start transaction
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		search.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
-		if((list = search.getFilteredAssociatedPhotosByCategoryValue(photoId, photoCategories, regionCategories)) != null) {
+		if((page = search.getFilteredAssociatedPhotosByCategoryValue(photoId, photoCategories, regionCategories, 
+				cursor, requestedPageSize())) != null) {
+			list = page.getItems();
 			// replace photo link path
-			for(Photo photo : list)
+			for(PhotoSummary photo : list)
 				photo.setPhotoLink(getFullPhotoLinkPath(photo.getPhotoLink()));
 			
 			jsonGetFilteredAssociatedPhotos.put(jsonKey, list);
-			HibernateUtil.rollbackTransaction(session); // don't save the photo link path
-			return SUCCESS;
-		}
-		else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
+			jsonGetFilteredAssociatedPhotos.put("nextCursor", page.getNextCursor());
 		}
+		return SUCCESS;
 	}
 	
 	/**
@@ -148,33 +188,66 @@ public class SearchAction extends ActionSupport {
 	 * 
 	 * @return
 	 */
+	@HibernateSession(readOnly = true)
 	public String getPhotosByKeywords() {
-		List<Photo> list = null;
+		SearchPage page = null;
+		List<PhotoSummary> list = null;
 		List<String> keywordList;
-		System.out.println(keywords);
+		log.debug("Keyword search: {}", keywords);
 		// parse request parameter strings into list
 		keywordList = Arrays.asList(keywords.split(" "));
 		
-		// start transaction
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		search.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
-		if((list = search.getPhotosByKeyword(keywordList)) != null) {
+		if((page = search.getPhotosByKeyword(keywordList, cursor, requestedPageSize())) != null) {
+			list = page.getItems();
 			// replace photo link path
-			for(Photo photo : list)
+			for(PhotoSummary photo : list)
 				photo.setPhotoLink(getFullPhotoLinkPath(photo.getPhotoLink()));
 			
 			jsonGetPhotosByKeywords.put(jsonKey, list);
-			HibernateUtil.rollbackTransaction(session); // don't save the photo link path
-			return SUCCESS;
-		}
-		else {
-			HibernateUtil.rollbackTransaction(session);
-			return SUCCESS;
+			jsonGetPhotosByKeywords.put("nextCursor", page.getNextCursor());
+			
+			// the facet counts cover the whole result set, only send them with the first page
+			Map<String, Map<String, Integer>> facets;
+			if(cursor == null && (facets = search.getKeywordFacets(keywordList)) != null)
+				jsonGetPhotosByKeywords.put("facets", facets);
 		}
+		return SUCCESS;
 	}
 
+	/**
+	 * Get the most used category names and comment terms starting with the typed text
+	 * 
+	 * @return
+	 */
+	public String getCompletions() {
+		// the database is only read, on the primary, to build the index on first use
+		List<String> completions = search.getCompletions(prefix);
+		if(completions != null)
+			jsonGetCompletions.put(jsonKey, completions);
+		return SUCCESS;
+	}
+	
+	/**
+	 * Get the hit, miss, eviction and invalidation counters of the search result cache, along with
+	 * the number of associated photo searches run and coalesced with one already running
+	 * 
+	 * @return
+	 */
+	public String getSearchCacheStats() {
+		jsonGetSearchCacheStats.put(jsonKey, SearchResultCache.getInstance().getStats());
+		jsonGetSearchCacheStats.put("associatedPhotoSearches", associatedPhotoSearches.getStats());
+		return SUCCESS;
+	}
+	
+	/**
+	 * Get the requested page size
+	 * 
+	 * @return page size, 0 to use the default
+	 */
+	private int requestedPageSize() {
+		return pageSize == null ? 0 : pageSize;
+	}
+	
 	/**
 	 * Parse a string into a list of integers
 	 * 
@@ -243,6 +316,14 @@ public class SearchAction extends ActionSupport {
 		this.keywords = keywords;
 	}
 
+	public String getPrefix() {
+		return prefix;
+	}
+
+	public void setPrefix(String prefix) {
+		this.prefix = prefix;
+	}
+
 	public String getPhotoCategoryList() {
 		return photoCategoryList;
 	}
@@ -275,6 +356,22 @@ public class SearchAction extends ActionSupport {
 		this.regionCategoryIdList = regionCategoryIdList;
 	}
 
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
+	public Integer getPageSize() {
+		return pageSize;
+	}
+
+	public void setPageSize(Integer pageSize) {
+		this.pageSize = pageSize;
+	}
+
 	public Map<String, Object> getJsonGetAssociatedPhotos() {
 		return jsonGetAssociatedPhotos;
 	}
@@ -301,5 +398,23 @@ public class SearchAction extends ActionSupport {
 			Map<String, Object> jsonGetPhotosByKeywords) {
 		this.jsonGetPhotosByKeywords = jsonGetPhotosByKeywords;
 	}
+
+	public Map<String, Object> getJsonGetSearchCacheStats() {
+		return jsonGetSearchCacheStats;
+	}
+
+	public void setJsonGetSearchCacheStats(
+			Map<String, Object> jsonGetSearchCacheStats) {
+		this.jsonGetSearchCacheStats = jsonGetSearchCacheStats;
+	}
+
+	public Map<String, Object> getJsonGetCompletions() {
+		return jsonGetCompletions;
+	}
+
+	public void setJsonGetCompletions(
+			Map<String, Object> jsonGetCompletions) {
+		this.jsonGetCompletions = jsonGetCompletions;
+	}
 	
 }
@@ -1,6 +1,7 @@
 package edu.cmu.photogenome.actions;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,10 +18,17 @@ import edu.cmu.photogenome.domain.ImportedMetadata;
 import edu.cmu.photogenome.domain.Photo;
 import edu.cmu.photogenome.domain.PhotoCategory;
 import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoDetail;
 import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.PhotoSummary;
 import edu.cmu.photogenome.domain.RegionCategory;
 import edu.cmu.photogenome.domain.RegionComment;
 import edu.cmu.photogenome.domain.RegionCoordinate;
+import edu.cmu.photogenome.domain.RegionDetail;
+import edu.cmu.photogenome.util.CacheStatistics;
+import edu.cmu.photogenome.util.DaoMetrics;
+import edu.cmu.photogenome.util.HibernateSession;
+import edu.cmu.photogenome.util.HibernateSessionAware;
 import edu.cmu.photogenome.util.HibernateUtil;
 
 /**
@@ -32,7 +40,7 @@ import edu.cmu.photogenome.util.HibernateUtil;
  *
  */
 
-public class ViewInformationAction extends ActionSupport{
+public class ViewInformationAction extends ActionSupport implements HibernateSessionAware {
 
 	final Logger log = LoggerFactory.getLogger(ViewInformationAction.class);
 	
@@ -40,11 +48,22 @@ public class ViewInformationAction extends ActionSupport{
 
 	private Integer photoId;
 	private Integer regionId;
+	private String regionIdList;
 	private Integer userId;
+	private Integer x;
+	private Integer y;
+	private Integer width;
+	private Integer height;
+	private Double percent;
+	private Integer frameWidth;
+	private Integer frameHeight;
+	private Integer cursor; // id of the last photo of the previous gallery page, returned as nextCursor
+	private Integer pageSize; // max number of photos per gallery page
 	
 	// JSON string maps
 	private Map<String, Object> jsonGetImportedMetadata = new LinkedHashMap<String, Object>();
 	private Map<String, Object> jsonGetPhoto = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetPhotoDetail = new LinkedHashMap<String, Object>();
 	private Map<String, Object> jsonGetPhotos = new LinkedHashMap<String, Object>();
 	private Map<String, Object> jsonGetAllPhotos = new LinkedHashMap<String, Object>();
 	private Map<String, Object> jsonGetPhotoComments = new LinkedHashMap<String, Object>();
@@ -53,23 +72,38 @@ public class ViewInformationAction extends ActionSupport{
 	private Map<String, Object> jsonGetRegionComments = new LinkedHashMap<String, Object>();
 	private Map<String, Object> jsonGetRegionCategories = new LinkedHashMap<String, Object>();
 	private Map<String, Object> jsonGetRegionCoordinates = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetRegionCoordinatesOverlapping = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetRegionCoordinatesContaining = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetPhotosWithRegionCovering = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetRegionAt = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetRegionDetails = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetCacheStats = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetPoolStats = new LinkedHashMap<String, Object>();
+	private Map<String, Object> jsonGetDaoStats = new LinkedHashMap<String, Object>();
 
 	private ViewInformation viewInformation = new ViewInformation();
 
+	/**
+	 * Set the Hibernate session of the request
+	 * 
+	 * @param session
+	 */
+	public void setHibernateSession(Session session) {
+		viewInformation.setSession(session);
+	}
+
 	/**
 	 * Get photo from photoId
 	 * 
 	 * @return
 	 */
+	@HibernateSession(readOnly = true)
 	public String getPhoto(){
 		Photo photo = null;
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		viewInformation.setSession(session);
-		HibernateUtil.beginTransaction(session);
 		try {
 			if((photo = viewInformation.getPhoto(photoId)) != null) {
 				
-				// replace photo link path
+				// replace photo link path, the read-only photo is not updated
 				try {
 					Properties config = new Properties();
 					config.load(this.getClass().getClassLoader().getResourceAsStream("ApplicationResources.properties"));
@@ -80,34 +114,67 @@ public class ViewInformationAction extends ActionSupport{
 				}
 				
 				jsonGetPhoto.put(jsonKey, photo);
-				HibernateUtil.rollbackTransaction(session); // only retrieving data, don't save changes
-				return SUCCESS;
 			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
+			return SUCCESS;
+		} 
+		catch(Exception e) {
+			log.warn(e.getMessage(), e);
+			return SUCCESS;
+		}
+	}
+	
+	/**
+	 * Get photo from photoId with its comments, categories and regions, each region with its
+	 * coordinates, comments and categories
+	 * 
+	 * @return
+	 */
+	@HibernateSession(readOnly = true)
+	public String getPhotoDetail() {
+		if(photoId == null)
+			return SUCCESS;
+		
+		PhotoDetail detail = null;
+		try {
+			if((detail = viewInformation.getPhotoDetail(photoId)) != null) {
+				
+				// replace photo link path, the read-only photo is not updated
+				try {
+					Properties config = new Properties();
+					config.load(this.getClass().getClassLoader().getResourceAsStream("ApplicationResources.properties"));
+					Photo photo = detail.getPhoto();
+					photo.setPhotoLink(config.getProperty("photoLinkPath") + photo.getPhotoLink());
+				}
+				catch(IOException ioe) {
+					log.error(ioe.getMessage(), ioe);
+				}
+				
+				jsonGetPhotoDetail.put(jsonKey, detail);
 			}
+			return SUCCESS;
 		} 
 		catch(Exception e) {
 			log.warn(e.getMessage(), e);
-			HibernateUtil.rollbackTransaction(session);
 			return SUCCESS;
 		}
 	}
 	
+	/**
+	 * Get a page of the photos uploaded by userId, starting after the cursor
+	 * 
+	 * @return
+	 */
+	@HibernateSession(readOnly = true)
 	public String getPhotosByUserId() {
-		List<Photo> list = null;
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		viewInformation.setSession(session);
-		HibernateUtil.beginTransaction(session);
+		List<PhotoSummary> list = null;
 		try {
-			if((list = viewInformation.getPhotos("userId", userId)) != null){
+			if((list = viewInformation.getPhotoSummaries(userId, cursor, requestedPageSize())) != null){
 				
 				// replace photo link path
 				try {
 					Properties config = new Properties();
 					config.load(this.getClass().getClassLoader().getResourceAsStream("ApplicationResources.properties"));
-					for(Photo photo : list) {
+					for(PhotoSummary photo : list) {
 						photo.setPhotoLink(config.getProperty("photoLinkPath") + photo.getPhotoLink());
 					}
 				}
@@ -116,32 +183,30 @@ public class ViewInformationAction extends ActionSupport{
 				}
 				
 				jsonGetPhotos.put(jsonKey, list);
-				HibernateUtil.rollbackTransaction(session); // only retrieving data, don't save changes
-				return SUCCESS;
-			}else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
+				jsonGetPhotos.put("nextCursor", getNextCursor(list));
 			}
+			return SUCCESS;
 		} catch(Exception e){
 			log.warn(e.getMessage(), e);
-			HibernateUtil.rollbackTransaction(session);
 			return SUCCESS;
 		}
 	}
 
+	/**
+	 * Get a page of all the photos, starting after the cursor
+	 * 
+	 * @return
+	 */
+	@HibernateSession(readOnly = true)
 	public String getAllPhotos() {
-		List<Photo> list = null;
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		viewInformation.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
+		List<PhotoSummary> list = null;
 		try {
-			if((list = viewInformation.getAllPhotos()) != null){
+			if((list = viewInformation.getAllPhotoSummaries(cursor, requestedPageSize())) != null){
 				// replace photo link path
 				try {
 					Properties config = new Properties();
 					config.load(this.getClass().getClassLoader().getResourceAsStream("ApplicationResources.properties"));
-					for(Photo photo : list) {
+					for(PhotoSummary photo : list) {
 						photo.setPhotoLink(config.getProperty("photoLinkPath") + photo.getPhotoLink());
 					}
 				}
@@ -150,47 +215,24 @@ public class ViewInformationAction extends ActionSupport{
 				}
 				
 				jsonGetAllPhotos.put(jsonKey, list);
-				HibernateUtil.rollbackTransaction(session); // only retrieving data, don't save changes
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
+				jsonGetAllPhotos.put("nextCursor", getNextCursor(list));
 			}
+			return SUCCESS;
 		} catch(Exception e){
 			log.warn(e.getMessage(), e);
-			HibernateUtil.rollbackTransaction(session);
 			return SUCCESS;
 		}
 	}
 	
+	@HibernateSession(readOnly = true)
 	public String getImportedMetadataByPhotoId() {
 		List<ImportedMetadata> list = null;
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		viewInformation.setSession(session);
-		HibernateUtil.beginTransaction(session);
-		
 		try {
-			if((list = viewInformation.getImportedMetadata("photoId", photoId)) != null){
-				
-				Properties config = new Properties();
-				try {
-					config.load(this.getClass().getClassLoader().getResourceAsStream("ApplicationResources.properties"));
-				}
-				catch(IOException ioe) {
-					log.error(ioe.getMessage(), ioe);
-				}
+			if((list = viewInformation.getImportedMetadata("photoId", photoId)) != null)
 				jsonGetImportedMetadata.put(jsonKey, list);
-				
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			return SUCCESS;
 		} catch(Exception e){
 			log.warn(e.getMessage(), e);
-			HibernateUtil.rollbackTransaction(session);
 			return SUCCESS;
 		}
 	}
@@ -201,23 +243,15 @@ public class ViewInformationAction extends ActionSupport{
 	 * 
 	 * @return 
 	 */
+	@HibernateSession(readOnly = true)
 	public String getPhotoComments() {
 		List<PhotoComment> list = null;
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		viewInformation.setSession(session);
-		HibernateUtil.beginTransaction(session);
 		try {
-			if((list = viewInformation.getPhotoComments(photoId)) != null){
+			if((list = viewInformation.getPhotoComments(photoId)) != null)
 				jsonGetPhotoComments.put(jsonKey, list);
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			return SUCCESS;
 		} catch(Exception e){
 			log.warn(e.getMessage(), e);
-			HibernateUtil.rollbackTransaction(session);
 			return SUCCESS;
 		}
 	}
@@ -227,24 +261,15 @@ public class ViewInformationAction extends ActionSupport{
 	 * 
 	 * @return
 	 */
+	@HibernateSession(readOnly = true)
 	public String getPhotoCategories() {
 		List<PhotoCategory> list = null;
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		viewInformation.setSession(session);
-		HibernateUtil.beginTransaction(session);
 		try {
-			if((list = viewInformation.getPhotoCategories(photoId)) != null){
+			if((list = viewInformation.getPhotoCategories(photoId)) != null)
 				jsonGetPhotoCategories.put(jsonKey, list);
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			return SUCCESS;
 		} catch(Exception e) {
 			log.warn(e.getMessage(), e);
-			HibernateUtil.rollbackTransaction(session);
 			return SUCCESS;
 		}
 	}
@@ -254,24 +279,15 @@ public class ViewInformationAction extends ActionSupport{
 	 * 
 	 * @return
 	 */
+	@HibernateSession(readOnly = true)
 	public String getPhotoRegions() {
 		List<PhotoRegion> list = null;
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		viewInformation.setSession(session);
-		HibernateUtil.beginTransaction(session);
 		try{
-			if((list = viewInformation.getPhotoRegions(photoId)) != null){
+			if((list = viewInformation.getPhotoRegions(photoId)) != null)
 				jsonGetPhotoRegions.put(jsonKey, list);
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			return SUCCESS;
 		} catch(Exception e){
 			log.warn(e.getMessage(), e);
-			HibernateUtil.rollbackTransaction(session);
 			return SUCCESS;
 		}
 	}
@@ -281,24 +297,15 @@ public class ViewInformationAction extends ActionSupport{
 	 * 
 	 * @return
 	 */
+	@HibernateSession(readOnly = true)
 	public String getRegionComments(){
 		List<RegionComment> list = null;
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		viewInformation.setSession(session);
-		HibernateUtil.beginTransaction(session);
 		try{
-			if((list = viewInformation.getRegionComments(regionId)) != null){
+			if((list = viewInformation.getRegionComments(regionId)) != null)
 				jsonGetRegionComments.put(jsonKey, list);
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			return SUCCESS;
 		} catch(Exception e){
 			log.warn(e.getMessage(), e);
-			HibernateUtil.rollbackTransaction(session);
 			return SUCCESS;
 		}
 
@@ -309,24 +316,15 @@ public class ViewInformationAction extends ActionSupport{
 	 * 
 	 * @return
 	 */
+	@HibernateSession(readOnly = true)
 	public String getRegionCategories(){
 		List<RegionCategory> list = null;
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		viewInformation.setSession(session);
-		HibernateUtil.beginTransaction(session);
 		try{
-			if((list = viewInformation.getRegionCategories(regionId)) != null){
+			if((list = viewInformation.getRegionCategories(regionId)) != null)
 				jsonGetRegionCategories.put(jsonKey, list);
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
-			}
+			return SUCCESS;
 		} catch(Exception e){
 			log.warn(e.getMessage(), e);
-			HibernateUtil.rollbackTransaction(session);
 			return SUCCESS;
 		}
 	}
@@ -336,28 +334,181 @@ public class ViewInformationAction extends ActionSupport{
 	 * 
 	 * @return
 	 */
+	@HibernateSession(readOnly = true)
 	public String getRegionCoordinates(){
 		List<RegionCoordinate> list = null;
-		Session session = HibernateUtil.getSessionFactory().openSession();
-		viewInformation.setSession(session);
-		HibernateUtil.beginTransaction(session);
 		try {
-			if((list = viewInformation.getRegionCoordinates(photoId)) != null){
+			if((list = viewInformation.getRegionCoordinates(photoId)) != null)
 				jsonGetRegionCoordinates.put(jsonKey, list);
-				HibernateUtil.commitTransaction(session);
-				return SUCCESS;
-			}
-			else {
-				HibernateUtil.rollbackTransaction(session);
-				return SUCCESS;
+			return SUCCESS;
+		} catch(Exception e){
+			log.warn(e.getMessage(), e);
+			return SUCCESS;
+		}
+	}
+	
+	/**
+	 * Get the region coordinates overlapping the rectangle given by x, y, width and height,
+	 * within the photo if a photo id is given and across all photos otherwise
+	 * 
+	 * @return
+	 */
+	public String getRegionCoordinatesOverlapping() {
+		if(x == null || y == null || width == null || height == null)
+			return SUCCESS;
+		
+		// the database is only read, on the primary, to build the index on first use
+		List<RegionCoordinate> list = null;
+		try {
+			if((list = viewInformation.getRegionCoordinatesOverlapping(photoId, x, y, width, height)) != null)
+				jsonGetRegionCoordinatesOverlapping.put(jsonKey, list);
+			return SUCCESS;
+		} catch(Exception e){
+			log.warn(e.getMessage(), e);
+			return SUCCESS;
+		}
+	}
+	
+	/**
+	 * Get the region coordinates of the photo containing the point given by x and y
+	 * 
+	 * @return
+	 */
+	public String getRegionCoordinatesContaining() {
+		if(photoId == null || x == null || y == null)
+			return SUCCESS;
+		
+		// the database is only read, on the primary, to build the index on first use
+		List<RegionCoordinate> list = null;
+		try {
+			if((list = viewInformation.getRegionCoordinatesContaining(photoId, x, y)) != null)
+				jsonGetRegionCoordinatesContaining.put(jsonKey, list);
+			return SUCCESS;
+		} catch(Exception e){
+			log.warn(e.getMessage(), e);
+			return SUCCESS;
+		}
+	}
+	
+	/**
+	 * Hit-test the photo at the point given by x and y, getting the topmost region there
+	 * with its coordinates, comments and categories
+	 * 
+	 * @return
+	 */
+	@HibernateSession(readOnly = true)
+	public String getRegionAt() {
+		if(photoId == null || x == null || y == null)
+			return SUCCESS;
+		
+		RegionDetail region = null;
+		try {
+			if((region = viewInformation.getRegionAt(photoId, x, y)) != null)
+				jsonGetRegionAt.put(jsonKey, region);
+			return SUCCESS;
+		} catch(Exception e){
+			log.warn(e.getMessage(), e);
+			return SUCCESS;
+		}
+	}
+	
+	/**
+	 * Get the regions of regionIdList, a space separated list of region ids, with their coordinates,
+	 * comments and categories
+	 * 
+	 * @return
+	 */
+	@HibernateSession(readOnly = true)
+	public String getRegionDetails() {
+		if(regionIdList == null)
+			return SUCCESS;
+		
+		List<Integer> regionIds = new ArrayList<Integer>();
+		try {
+			for(String id : regionIdList.trim().split("\\s+"))
+				regionIds.add(Integer.parseInt(id));
+		}
+		catch(NumberFormatException nfe) {
+			log.error(nfe.getMessage(), nfe);
+			return SUCCESS;
+		}
+		
+		List<RegionDetail> list = null;
+		try {
+			if((list = viewInformation.getRegionDetails(regionIds)) != null)
+				jsonGetRegionDetails.put(jsonKey, list);
+			return SUCCESS;
+		} catch(Exception e){
+			log.warn(e.getMessage(), e);
+			return SUCCESS;
+		}
+	}
+	
+	/**
+	 * Get the photos having a region covering more than the given percentage of a frame
+	 * of frameWidth by frameHeight pixels
+	 * 
+	 * @return
+	 */
+	@HibernateSession(readOnly = true)
+	public String getPhotosWithRegionCovering() {
+		if(percent == null || frameWidth == null || frameHeight == null)
+			return SUCCESS;
+		
+		List<PhotoSummary> list = null;
+		try {
+			if((list = viewInformation.getPhotosWithRegionCovering(percent, frameWidth, frameHeight)) != null){
+				// replace photo link path
+				try {
+					Properties config = new Properties();
+					config.load(this.getClass().getClassLoader().getResourceAsStream("ApplicationResources.properties"));
+					for(PhotoSummary photo : list) {
+						photo.setPhotoLink(config.getProperty("photoLinkPath") + photo.getPhotoLink());
+					}
+				}
+				catch(IOException ioe) {
+					log.error(ioe.getMessage(), ioe);
+				}
+				
+				jsonGetPhotosWithRegionCovering.put(jsonKey, list);
 			}
+			return SUCCESS;
 		} catch(Exception e){
 			log.warn(e.getMessage(), e);
-			HibernateUtil.rollbackTransaction(session);
 			return SUCCESS;
 		}
 	}
 
+	/**
+	 * Get the hit, miss and put counters of the second-level and query caches
+	 * 
+	 * @return
+	 */
+	public String getCacheStats() {
+		jsonGetCacheStats.put(jsonKey, CacheStatistics.getStats(HibernateUtil.getSessionFactory()));
+		return SUCCESS;
+	}
+
+	/**
+	 * Get the size, wait time and timeout counters of the database connection pool
+	 * 
+	 * @return
+	 */
+	public String getPoolStats() {
+		jsonGetPoolStats.put(jsonKey, HibernateUtil.getConnectionPoolStats());
+		return SUCCESS;
+	}
+
+	/**
+	 * Get the latency, row and error counters of the DAO operations and the last slow statements
+	 * 
+	 * @return
+	 */
+	public String getDaoStats() {
+		jsonGetDaoStats.put(jsonKey, DaoMetrics.getInstance().getStats());
+		return SUCCESS;
+	}
+
 	public Integer getRegionId() {
 		return regionId;
 	}
@@ -366,6 +517,51 @@ public class ViewInformationAction extends ActionSupport{
 		this.regionId = regionId;
 	}
 
+	/**
+	 * Get the requested page size
+	 * 
+	 * @return page size, 0 to use the default
+	 */
+	private int requestedPageSize() {
+		return pageSize == null ? 0 : pageSize;
+	}
+	
+	/**
+	 * Get the cursor of the page following a gallery page
+	 * 
+	 * @param list	photos of the page
+	 * @return id of the last photo if the page is full, null if it is the last page
+	 */
+	private Integer getNextCursor(List<PhotoSummary> list) {
+		if(list.isEmpty() || list.size() < viewInformation.getGalleryPageSize(requestedPageSize()))
+			return null;
+		return list.get(list.size() - 1).getPhotoId();
+	}
+
+	public Integer getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(Integer cursor) {
+		this.cursor = cursor;
+	}
+
+	public Integer getPageSize() {
+		return pageSize;
+	}
+
+	public void setPageSize(Integer pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	public String getRegionIdList() {
+		return regionIdList;
+	}
+
+	public void setRegionIdList(String regionIdList) {
+		this.regionIdList = regionIdList;
+	}
+
 	public Integer getPhotoId() {
 		return photoId;
 	}
@@ -381,6 +577,63 @@ public class ViewInformationAction extends ActionSupport{
 	public void setUserId(Integer userId) {
 		this.userId = userId;
 	}
+
+	public Integer getX() {
+		return x;
+	}
+
+	public void setX(Integer x) {
+		this.x = x;
+	}
+
+	public Integer getY() {
+		return y;
+	}
+
+	public void setY(Integer y) {
+		this.y = y;
+	}
+
+	public Integer getWidth() {
+		return width;
+	}
+
+	public void setWidth(Integer width) {
+		this.width = width;
+	}
+
+	public Integer getHeight() {
+		return height;
+	}
+
+	public void setHeight(Integer height) {
+		this.height = height;
+	}
+
+	public Double getPercent() {
+		return percent;
+	}
+
+	public void setPercent(Double percent) {
+		this.percent = percent;
+	}
+
+	public Integer getFrameWidth() {
+		return frameWidth;
+	}
+
+	public void setFrameWidth(Integer frameWidth) {
+		this.frameWidth = frameWidth;
+	}
+
+	public Integer getFrameHeight() {
+		return frameHeight;
+	}
+
+	public void setFrameHeight(Integer frameHeight) {
+		this.frameHeight = frameHeight;
+	}
+
 	public Map<String, Object> getJsonGetImportedMetadata() {
 		return jsonGetImportedMetadata;
 	}
@@ -462,5 +715,80 @@ public class ViewInformationAction extends ActionSupport{
 			Map<String, Object> jsonGetRegionCoordinates) {
 		this.jsonGetRegionCoordinates = jsonGetRegionCoordinates;
 	}
+
+	public Map<String, Object> getJsonGetRegionCoordinatesOverlapping() {
+		return jsonGetRegionCoordinatesOverlapping;
+	}
+
+	public void setJsonGetRegionCoordinatesOverlapping(
+			Map<String, Object> jsonGetRegionCoordinatesOverlapping) {
+		this.jsonGetRegionCoordinatesOverlapping = jsonGetRegionCoordinatesOverlapping;
+	}
+
+	public Map<String, Object> getJsonGetRegionCoordinatesContaining() {
+		return jsonGetRegionCoordinatesContaining;
+	}
+
+	public void setJsonGetRegionCoordinatesContaining(
+			Map<String, Object> jsonGetRegionCoordinatesContaining) {
+		this.jsonGetRegionCoordinatesContaining = jsonGetRegionCoordinatesContaining;
+	}
+
+	public Map<String, Object> getJsonGetPhotosWithRegionCovering() {
+		return jsonGetPhotosWithRegionCovering;
+	}
+
+	public void setJsonGetPhotosWithRegionCovering(
+			Map<String, Object> jsonGetPhotosWithRegionCovering) {
+		this.jsonGetPhotosWithRegionCovering = jsonGetPhotosWithRegionCovering;
+	}
+
+	public Map<String, Object> getJsonGetPhotoDetail() {
+		return jsonGetPhotoDetail;
+	}
+
+	public void setJsonGetPhotoDetail(Map<String, Object> jsonGetPhotoDetail) {
+		this.jsonGetPhotoDetail = jsonGetPhotoDetail;
+	}
+
+	public Map<String, Object> getJsonGetRegionAt() {
+		return jsonGetRegionAt;
+	}
+
+	public void setJsonGetRegionAt(Map<String, Object> jsonGetRegionAt) {
+		this.jsonGetRegionAt = jsonGetRegionAt;
+	}
+
+	public Map<String, Object> getJsonGetRegionDetails() {
+		return jsonGetRegionDetails;
+	}
+
+	public void setJsonGetRegionDetails(Map<String, Object> jsonGetRegionDetails) {
+		this.jsonGetRegionDetails = jsonGetRegionDetails;
+	}
+
+	public Map<String, Object> getJsonGetCacheStats() {
+		return jsonGetCacheStats;
+	}
+
+	public void setJsonGetCacheStats(Map<String, Object> jsonGetCacheStats) {
+		this.jsonGetCacheStats = jsonGetCacheStats;
+	}
+
+	public Map<String, Object> getJsonGetPoolStats() {
+		return jsonGetPoolStats;
+	}
+
+	public void setJsonGetPoolStats(Map<String, Object> jsonGetPoolStats) {
+		this.jsonGetPoolStats = jsonGetPoolStats;
+	}
+
+	public Map<String, Object> getJsonGetDaoStats() {
+		return jsonGetDaoStats;
+	}
+
+	public void setJsonGetDaoStats(Map<String, Object> jsonGetDaoStats) {
+		this.jsonGetDaoStats = jsonGetDaoStats;
+	}
 	
 }
@@ -0,0 +1,346 @@
+package edu.cmu.photogenome.business;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.dao.PhotoNeighborDao;
+import edu.cmu.photogenome.dao.PhotoNeighborDaoImpl;
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoNeighbor;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.domain.RegionComment;
+import edu.cmu.photogenome.util.ConfigUtil;
+import edu.cmu.photogenome.util.HibernateUtil;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeListener;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
+
+/**
+ * The <code>AssociationRefresher</code> class keeps the precomputed <code>PhotoNeighbor</code> table 
+ * up to date. Whenever the categories or comments of a photo change, the photo is queued and its 
+ * top-K neighbor list is recomputed on a small pool of background threads, so the write paths in 
+ * <code>EmbedPhoto</code> and <code>EmbedRegion</code> never wait for the association query.
+ * The photos listing the changed photo, and the photos it now lists, are refreshed after it when 
+ * their score against it changed, since its rank in their lists may have changed.
+ * 
+ * A photo queued several times before its refresh starts is only recomputed once. Nothing is 
+ * refreshed unless search.neighbors.enabled is set, as the photoneighbor table may not exist.
+ */
+public class AssociationRefresher implements PhotoChangeListener {
+
+	final Logger log = LoggerFactory.getLogger(AssociationRefresher.class);
+	
+	private static final AssociationRefresher instance = new AssociationRefresher();
+	
+	static {
+		PhotoChangeNotifier.addListener(instance);
+	}
+	
+	private static final long DEFAULT_EMPTY_SECONDS = 300;
+	// relative score change ignored by the cascade, the full-text scores all drift a little as the 
+	// term weights of the whole table change
+	private static final double SCORE_TOLERANCE = 0.01;
+	
+	private final ExecutorService executor;
+	private final boolean enabled;
+	private final long emptyMillis;
+	private final Set<Integer> queuedPhotoIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+	// photos found to have no neighbors, so they have no rows in the table, until the time they are 
+	// searched for again
+	private final ConcurrentMap<Integer, Long> emptyUntil = new ConcurrentHashMap<Integer, Long>();
+	
+	/**
+	 * Get the shared refresher instance
+	 * 
+	 * @return association refresher
+	 */
+	public static AssociationRefresher getInstance() {
+		return instance;
+	}
+	
+	private AssociationRefresher() {
+		this(createExecutor(ConfigUtil.getApplicationProperties()), isEnabled(ConfigUtil.getApplicationProperties()), 
+				getEmptyMillis(ConfigUtil.getApplicationProperties()));
+	}
+	
+	/**
+	 * @param executor		executor running the refreshes
+	 * @param enabled		false to ignore the changes
+	 * @param emptyMillis	time a photo found to have no neighbors is not searched for again
+	 */
+	AssociationRefresher(ExecutorService executor, boolean enabled, long emptyMillis) {
+		this.executor = executor;
+		this.enabled = enabled;
+		this.emptyMillis = emptyMillis;
+	}
+	
+	private static boolean isEnabled(Properties config) {
+		return config != null && Boolean.parseBoolean(config.getProperty("search.neighbors.enabled"));
+	}
+	
+	private static long getEmptyMillis(Properties config) {
+		if(config == null || config.getProperty("search.neighbors.emptySeconds") == null)
+			return DEFAULT_EMPTY_SECONDS * 1000;
+		return Long.parseLong(config.getProperty("search.neighbors.emptySeconds").trim()) * 1000;
+	}
+	
+	private static ExecutorService createExecutor(Properties config) {
+		int threads = 1;
+		if(config != null && config.getProperty("search.neighbors.threads") != null)
+			threads = Integer.parseInt(config.getProperty("search.neighbors.threads"));
+		
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "association-refresher-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Queue photos whose annotations changed for a neighbor refresh
+	 */
+	public void photoChanged(PhotoChangeEvent event) {
+		Object entity = event.getEntity();
+		
+		if(!enabled)
+			return;
+		if(entity instanceof PhotoCategory || entity instanceof PhotoComment || entity instanceof RegionCategory 
+				|| entity instanceof RegionComment || (entity instanceof PhotoRegion 
+						&& event.getAction() == PhotoChangeEvent.Action.DELETE))
+			schedule(event.getPhotoId(), true);
+		else if(entity instanceof Photo && event.getAction() != PhotoChangeEvent.Action.UPDATE)
+			schedule(event.getPhotoId(), true); // a new photo may have metadata matching other photos
+	}
+	
+	/**
+	 * Queue a photo for a neighbor refresh unless it is already queued
+	 * 
+	 * @param photoId	photo whose neighbors should be recomputed
+	 * @param cascade	if true, also refresh the photos listing this photo or listed by it whose score 
+	 * 					against it changed, once the refresh is committed
+	 */
+	public void schedule(int photoId, boolean cascade) {
+		if(!enabled)
+			return;
+		emptyUntil.remove(photoId);
+		if(queuedPhotoIds.add(photoId)) {
+			log.debug("Queueing neighbor refresh for photo {}", photoId);
+			try {
+				executor.execute(new RefreshTask(photoId, cascade));
+			}
+			catch(RejectedExecutionException ree) {
+				// the application is stopping
+				queuedPhotoIds.remove(photoId);
+				log.debug("Neighbor refresh for photo {} not queued after shutdown", photoId);
+			}
+		}
+	}
+	
+	/**
+	 * Check whether a photo was recently refreshed and found to have no neighbors. The photo is 
+	 * searched for again once search.neighbors.emptySeconds have passed, or as soon as it or a 
+	 * photo matching it changes.
+	 * 
+	 * @param photoId
+	 * @return true if the photo is known to have no neighbors
+	 */
+	public boolean hasNoNeighbors(int photoId) {
+		Long until = emptyUntil.get(photoId);
+		if(until == null)
+			return false;
+		if(until.longValue() > System.currentTimeMillis())
+			return true;
+		emptyUntil.remove(photoId, until);
+		return false;
+	}
+	
+	/**
+	 * Record the committed refresh of a photo
+	 * 
+	 * @param photoId
+	 * @param neighborCount	number of neighbors saved
+	 */
+	void refreshed(int photoId, int neighborCount) {
+		// a photo queued again since the refresh started may have neighbors by now
+		if(neighborCount == 0 && !queuedPhotoIds.contains(photoId))
+			emptyUntil.put(photoId, System.currentTimeMillis() + emptyMillis);
+	}
+	
+	/**
+	 * Stop the background threads, waiting briefly for running refreshes to finish before 
+	 * interrupting them. Queued refreshes are dropped.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+		try {
+			if(!executor.awaitTermination(10, TimeUnit.SECONDS))
+				executor.shutdownNow();
+		}
+		catch(InterruptedException ie) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Recompute and persist the neighbor list of a photo
+	 * 
+	 * @param session			Hibernate session to use
+	 * @param photoId			photo whose neighbors should be recomputed
+	 * @param cascadePhotoIds	if not null, filled with the photos to refresh once this refresh is 
+	 * 							committed, see @getCascadePhotoIds
+	 * @return number of neighbors saved, -1 if they could not be saved
+	 */
+	public int refresh(Session session, int photoId, Set<Integer> cascadePhotoIds) {
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config == null)
+			return -1;
+		
+		int maxMatches = Integer.parseInt(config.getProperty("search.maxMatches"));
+		
+		PhotoNeighborDao photoNeighborDao = new PhotoNeighborDaoImpl();
+		photoNeighborDao.setSession(session);
+		SearchDataRetrieval searchDataRetrieval = new SearchDataRetrieval(session);
+		
+		boolean cascade = cascadePhotoIds != null;
+		List<PhotoNeighbor> previous = cascade ? photoNeighborDao.findByPhotoId(photoId) : null;
+		List<PhotoNeighbor> referencing = cascade ? photoNeighborDao.findByNeighborPhotoId(photoId) : null;
+		
+		// replace the old neighbor rows with the current ranking
+		List<Object[]> scores = searchDataRetrieval.searchAssociatedPhotoScores(photoId, maxMatches);
+		if(scores == null || !photoNeighborDao.deleteByPhotoId(photoId))
+			return -1;
+		
+		Date now = new Date();
+		List<PhotoNeighbor> neighbors = new ArrayList<PhotoNeighbor>(scores.size());
+		for(Object[] row : scores)
+			neighbors.add(new PhotoNeighbor(photoId, ((Number) row[0]).intValue(), neighbors.size(), 
+					((Number) row[1]).doubleValue(), now));
+		if(photoNeighborDao.saveAll(neighbors) < neighbors.size())
+			return -1;
+		
+		// the rank of this photo in other photos' lists may have changed
+		if(cascade)
+			cascadePhotoIds.addAll(getCascadePhotoIds(photoId, previous, referencing, scores));
+		
+		log.debug("Saved {} neighbors for photo {}", neighbors.size(), photoId);
+		return neighbors.size();
+	}
+	
+	/**
+	 * Get the photos to refresh after a photo: the photos which listed it may drop or re-rank it, 
+	 * and the photos matching it, which its new list holds, may now list it. Only the photos whose 
+	 * score against the refreshed photo changed are returned, a photo missing from the old or the 
+	 * new list of the refreshed photo is taken as changed.
+	 * 
+	 * @param photoId		refreshed photo
+	 * @param previous		neighbor rows of the photo before the refresh, null if not read
+	 * @param referencing	neighbor rows listing the photo before the refresh, null if not read
+	 * @param scores		(photo id, score) rows of the new neighbors of the photo
+	 * @return ids of the photos to refresh, without the refreshed photo
+	 */
+	static Set<Integer> getCascadePhotoIds(int photoId, List<PhotoNeighbor> previous, List<PhotoNeighbor> referencing, 
+			List<Object[]> scores) {
+		Map<Integer, Double> previousScores = new HashMap<Integer, Double>();
+		if(previous != null)
+			for(PhotoNeighbor neighbor : previous)
+				previousScores.put(neighbor.getNeighborPhotoId(), neighbor.getNeighborScore());
+		Map<Integer, Double> newScores = new HashMap<Integer, Double>();
+		for(Object[] row : scores)
+			newScores.put(((Number) row[0]).intValue(), ((Number) row[1]).doubleValue());
+		
+		Set<Integer> photoIds = new LinkedHashSet<Integer>();
+		if(referencing != null)
+			for(PhotoNeighbor neighbor : referencing)
+				if(!sameScore(previousScores.get(neighbor.getPhotoId()), newScores.get(neighbor.getPhotoId())))
+					photoIds.add(neighbor.getPhotoId());
+		for(Object[] row : scores) {
+			Integer neighborPhotoId = ((Number) row[0]).intValue();
+			if(!sameScore(previousScores.get(neighborPhotoId), newScores.get(neighborPhotoId)))
+				photoIds.add(neighborPhotoId);
+		}
+		photoIds.remove(photoId);
+		return photoIds;
+	}
+	
+	private static boolean sameScore(Double previousScore, Double newScore) {
+		if(previousScore == null || newScore == null)
+			return false;
+		return Math.abs(previousScore - newScore) <= SCORE_TOLERANCE * Math.max(Math.abs(previousScore), Math.abs(newScore));
+	}
+	
+	/**
+	 * Background task refreshing one photo in its own session and transaction
+	 */
+	private class RefreshTask implements Runnable {
+		
+		private final int photoId;
+		private final boolean cascade;
+		
+		RefreshTask(int photoId, boolean cascade) {
+			this.photoId = photoId;
+			this.cascade = cascade;
+		}
+		
+		public void run() {
+			// changes made from here on must queue the photo again
+			queuedPhotoIds.remove(photoId);
+			
+			Set<Integer> cascadePhotoIds = cascade ? new LinkedHashSet<Integer>() : null;
+			int neighborCount = -1;
+			Session session = HibernateUtil.getSessionFactory().openSession();
+			HibernateUtil.beginTransaction(session);
+			try {
+				neighborCount = refresh(session, photoId, cascadePhotoIds);
+				if(neighborCount >= 0)
+					HibernateUtil.commitTransaction(session);
+				else
+					log.warn("Failed to refresh neighbors for photo {}", photoId);
+			}
+			catch(Exception e) {
+				neighborCount = -1;
+				log.warn(e.getMessage(), e);
+			}
+			finally {
+				// the transaction is still open unless the commit went through
+				if(session.isOpen())
+					HibernateUtil.rollbackTransaction(session);
+			}
+			if(neighborCount < 0)
+				return;
+			
+			refreshed(photoId, neighborCount);
+			SearchResultCache.getInstance().invalidateAssociations(photoId);
+			if(cascade)
+				for(Integer cascadePhotoId : cascadePhotoIds)
+					schedule(cascadePhotoId, false);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package edu.cmu.photogenome.business;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -17,6 +18,8 @@ import edu.cmu.photogenome.dao.RegionCategoryDaoImpl;
 import edu.cmu.photogenome.domain.PhotoCategory;
 import edu.cmu.photogenome.domain.PhotoComment;
 import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
 
 /**
  * The <code>EmbedPhoto</code> class embeds information in photos 
@@ -82,6 +85,7 @@ public class EmbedPhoto {
 
 		if(photoCommentDao.save(photoComment)) {
 			log.debug("Photo comments saved for photo ", photoComment.getPhotoId());	
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.SAVE, photoComment);
 			return photoComment;
 		}
 		else {
@@ -102,19 +106,22 @@ public class EmbedPhoto {
 
 	public PhotoCategory addPhotoCategory(int photoId, int userId, List<SimpleEntry<String, String>> categoryDetails){
 		PhotoCategory category = new PhotoCategory(photoId, userId, new Date());
+		List<PhotoCategory> categories = new ArrayList<PhotoCategory>();
 
 		for (SimpleEntry<String, String> details : categoryDetails){
 
+			category = new PhotoCategory(photoId, userId, new Date());
 			category.setPhotoCategoryName(details.getKey());
 			category.setPhotoCategoryText(details.getValue());
-			category.setUserId(userId);
-			category.setPhotoId(photoId);
+			categories.add(category);
+		}
 
-			if(!photoCategoryDao.save(category)) {
-				log.error("Failed to add photo category for photo ", category.getPhotoId());
-				return null;
-			}
+		if(photoCategoryDao.saveAll(categories) < categories.size()) {
+			log.error("Failed to add photo category for photo ", photoId);
+			return null;
 		}
+		for(PhotoCategory saved : categories)
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.SAVE, saved);
 		log.debug("Photo category added for photo ", category.getPhotoId());
 		return category;
 	}
@@ -130,6 +137,7 @@ public class EmbedPhoto {
 
 		if(photoCommentDao.update(photoComment)) {
 			log.debug("Photo comments updated for photo ", photoComment.getPhotoId());	
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.UPDATE, photoComment);
 			return true;
 		}
 		else {
@@ -157,6 +165,7 @@ public class EmbedPhoto {
 			}
 			else {
 				log.debug("Photo comments deletd for photo ", photoComment.getPhotoId());
+				PhotoChangeNotifier.fire(PhotoChangeEvent.Action.DELETE, photoComment);
 				return true;
 			}
 		}
@@ -180,6 +189,7 @@ public class EmbedPhoto {
 			}
 		
 		log.debug("Photo category updated for photo ", photoCategory.getPhotoId());
+		PhotoChangeNotifier.fire(PhotoChangeEvent.Action.UPDATE, photoCategory);
 		return true;
 
 	}
@@ -199,6 +209,7 @@ public class EmbedPhoto {
 			return false;
 		}
 		log.debug("Region category updated for photo with category id", regionCategory.getPhotoId());
+		PhotoChangeNotifier.fire(PhotoChangeEvent.Action.UPDATE, regionCategory);
 		return true;
 	}
 
@@ -221,6 +232,7 @@ public class EmbedPhoto {
 			}
 			else {
 				log.debug("Photo category updated for photo with category id ", photoCategoryId);
+				PhotoChangeNotifier.fire(PhotoChangeEvent.Action.DELETE, category);
 				return true;
 			}
 		}
@@ -1,5 +1,6 @@
 package edu.cmu.photogenome.business;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.AbstractMap.SimpleEntry;
@@ -20,6 +21,8 @@ import edu.cmu.photogenome.domain.PhotoRegion;
 import edu.cmu.photogenome.domain.RegionCategory;
 import edu.cmu.photogenome.domain.RegionComment;
 import edu.cmu.photogenome.domain.RegionCoordinate;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
 
 /**
  * The <code>EmbedRegion</code> class to embed region information for 
@@ -93,6 +96,8 @@ public class EmbedRegion {
 				photoRegionDao.delete(region); // delete region if coordinates failed to save
 				return null;
 			}
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.SAVE, region);
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.SAVE, coordinate);
 		}
 		
 		return region;
@@ -131,8 +136,10 @@ public class EmbedRegion {
 		
 		log.debug("Saving region comment with photoId={}, userId={}, regionId={}, regionCommentText={}",
 				photoId, userId, regionId, regionCommentText);
-		if(regionCommentDao.save(comment))
+		if(regionCommentDao.save(comment)) {
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.SAVE, comment);
 			return comment;
+		}
 		else
 			return null;
 	}
@@ -149,16 +156,22 @@ public class EmbedRegion {
 	public RegionCategory addRegionCategory(int regionId, int photoId, int userId, 
 			List<SimpleEntry<String, String>> categoryDetails) {
 		RegionCategory category = new RegionCategory(regionId, photoId, userId, new Date());
+		List<RegionCategory> categories = new ArrayList<RegionCategory>();
 		
 		for(SimpleEntry<String, String> details : categoryDetails) {
 			log.debug("Saving region category with regionId={}, photoId={}, userId={}, categoryName={}, categoryValue={}", 
 					regionId, photoId, userId, details.getKey(), details.getValue());
+			category = new RegionCategory(regionId, photoId, userId, new Date());
 			category.setCategoryName(details.getKey());
 			category.setRegionCategoryText(details.getValue());
-			if(!regionCategoryDao.save(category))
-				return null;
+			categories.add(category);
 		}
 		
+		if(regionCategoryDao.saveAll(categories) < categories.size())
+			return null;
+		for(RegionCategory saved : categories)
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.SAVE, saved);
+		
 		log.debug("Region category added with regionCategoryId={}", category.getRegionCategoryId());
 		return category;
 	}
@@ -196,8 +209,10 @@ public class EmbedRegion {
 	 */
 	public boolean editRegionComment(RegionComment comment){
 		log.debug("Updating region comment with ID = {}", comment.getRegionCommentId());
-		if(regionCommentDao.update(comment))
+		if(regionCommentDao.update(comment)) {
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.UPDATE, comment);
 			return true;
+		}
 		else
 			return false;
 	}
@@ -211,6 +226,7 @@ public class EmbedRegion {
 	public boolean editRegionCategory(RegionCategory regionCategory){
 		log.debug("Updating region category with ID = {}", regionCategory.getRegionCategoryId());
 		if(regionCategoryDao.update(regionCategory)) {
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.UPDATE, regionCategory);
 			return true;
 		}
 		else {
@@ -226,8 +242,10 @@ public class EmbedRegion {
 	 */
 	public boolean editRegionCoordinate(RegionCoordinate coordinate){
 		log.debug("Updating region coordinate with ID = {}", coordinate.getRegionCoordinateId());
-		if(regionCoordinateDao.update(coordinate))
+		if(regionCoordinateDao.update(coordinate)) {
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.UPDATE, coordinate);
 			return true;
+		}
 		else
 			return false;
 	}
@@ -243,6 +261,7 @@ public class EmbedRegion {
 			log.debug("Deleting photo region with ID = {}", regionId);
 			if(!photoRegionDao.delete(region))
 				return false;
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.DELETE, region);
 		}
 		else
 			log.debug("Photo region with ID = {} does not exist. Nothing to delete", regionId);
@@ -261,6 +280,7 @@ public class EmbedRegion {
 			log.debug("Deleting region comment with ID = {}", regionCommentId);
 			if(!regionCommentDao.delete(comment))
 				return false;
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.DELETE, comment);
 		}
 		else
 			log.debug("Region comment with ID = {} does not exist. Nothing to delete", regionCommentId);
@@ -281,6 +301,7 @@ public class EmbedRegion {
 				log.error("Failed to delete region category with ID = {}", regionCategoryId);
 				return false;
 			}
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.DELETE, category);
 		}
 		else
 			log.debug("Region category with ID = {} does not exist. Nothing to delete", regionCategoryId);
@@ -299,6 +320,7 @@ public class EmbedRegion {
 			log.debug("Deleting region coordinate with ID = {}", regionCoordinateId);
 			if(!regionCoordinateDao.delete(coordinate))
 				return false;
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.DELETE, coordinate);
 		}
 		else
 			log.debug("Region coordinate with ID = {} does not exist. Nothing to delete", regionCoordinateId);
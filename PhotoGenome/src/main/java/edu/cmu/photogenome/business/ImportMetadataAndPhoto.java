@@ -1,11 +1,15 @@
 package edu.cmu.photogenome.business;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -18,7 +22,9 @@ import edu.cmu.photogenome.dao.PhotoDao;
 import edu.cmu.photogenome.dao.PhotoDaoImpl;
 import edu.cmu.photogenome.domain.ImportedMetadata;
 import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.util.ConfigUtil;
 import edu.cmu.photogenome.util.HibernateUtil;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
 
 /**
  * The <code>ImportMetadataAndPhoto</code> class provides functionality to upload multiple 
@@ -29,10 +35,18 @@ public class ImportMetadataAndPhoto {
 
 	final Logger log = LoggerFactory.getLogger(UploadPhoto.class);
 	
+	private static final int DEFAULT_COMMIT_INTERVAL = 100;
+	
 	private PhotoDao photoDao;
 	private UploadPhoto uploadPhoto;
 	private ImportedMetadata ipmObj;
 	private ImportedMetadataDao  importedMetadataDao;
+	private List<ImportedMetadata> importedMetadata; // metadata of the imported photos, saved together at the end
+	
+	private StatelessSession statelessSession; // set for bulk imports
+	private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+	private int uncommittedPhotos;
+	private int savedMetadataCount;
 	
 	private int xmlFileCount;
 	private int imageFileCount;
@@ -41,6 +55,15 @@ public class ImportMetadataAndPhoto {
 		photoDao = new PhotoDaoImpl();
 		uploadPhoto= new UploadPhoto();
 		importedMetadataDao = new ImportedMetadataDaoImpl();
+		
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config != null)
+			commitInterval = Integer.parseInt(config.getProperty("import.commitInterval", String.valueOf(DEFAULT_COMMIT_INTERVAL)));
+	}
+	
+	public ImportMetadataAndPhoto(StatelessSession statelessSession) {
+		this();
+		setStatelessSession(statelessSession);
 	}
 	
 	public ImportMetadataAndPhoto(Session session) {
@@ -59,10 +82,40 @@ public class ImportMetadataAndPhoto {
 		importedMetadataDao.setSession(session);
 	}
 	
+	/**
+	 * Set the Hibernate stateless session to import through. The photos are then inserted one by one 
+	 * and their metadata in JDBC batches, and the import is committed every import.commitInterval photos, 
+	 * so that memory use does not grow with the number of files imported. A failed import keeps the 
+	 * photos committed before the failure.
+	 * 
+	 * @param statelessSession
+	 */
+	public void setStatelessSession(StatelessSession statelessSession) {
+		this.statelessSession = statelessSession;
+		uploadPhoto.setStatelessSession(statelessSession);
+		importedMetadataDao.setStatelessSession(statelessSession);
+	}
+	
 	public void getPhotoAndMetadata(String directoryPath, int userId) {
 		xmlFileCount = 0;
 		imageFileCount = 0;
+		importedMetadata = new ArrayList<ImportedMetadata>();
+		
+		if(statelessSession != null) {
+			savedMetadataCount = 0;
+			beginChunk();
+			processDir(new File(directoryPath), userId);
+			commitChunk();
+			System.out.println("Total metadata saved: " + savedMetadataCount);
+			System.out.println("Total XML: " + xmlFileCount);
+			System.out.println("Total Images: " + imageFileCount);
+			return;
+		}
+		
 		processDir(new File(directoryPath), userId);
+		
+		int saved = importedMetadataDao.saveAll(importedMetadata);
+		System.out.println("Total metadata saved: " + saved + " of " + importedMetadata.size());
 		System.out.println("Total XML: " + xmlFileCount);
 		System.out.println("Total Images: " + imageFileCount);
 	}
@@ -86,10 +139,36 @@ public class ImportMetadataAndPhoto {
 	  	// save imported metadata
     	if(currentPhoto != null && currentPhotoMetadata != null) {
     		ipmObj= new ImportedMetadata(currentPhoto.getPhotoId(), currentPhotoMetadata);
-    		System.out.println(importedMetadataDao.save(ipmObj));
+    		importedMetadata.add(ipmObj);
+    	}
+    	
+    	if(statelessSession != null && uncommittedPhotos >= commitInterval) {
+    		commitChunk();
+    		beginChunk();
     	}
 	}
 	
+	/**
+	 * Begin the transaction of the next photos of a bulk import
+	 */
+	private void beginChunk() {
+		statelessSession.beginTransaction();
+		PhotoChangeNotifier.beginTransaction(); // hold back change events until commit
+		uncommittedPhotos = 0;
+	}
+	
+	/**
+	 * Insert the metadata collected since the last commit and commit the photos of a bulk import
+	 */
+	private void commitChunk() {
+		savedMetadataCount += importedMetadataDao.insertAll(importedMetadata);
+		importedMetadata.clear();
+		
+		statelessSession.getTransaction().commit();
+		PhotoChangeNotifier.commitTransaction();
+		log.info("Committed {} imported photos", uncommittedPhotos);
+	}
+	
 	private String processXmlFile(File file) {
 		String currentPhotoMetadata = null;
 		
@@ -106,7 +185,12 @@ public class ImportMetadataAndPhoto {
         
         // upload code
         System.out.println("Jpg File: " + file.getName());
-        currentPhoto = uploadPhoto.savePhoto(userId, file.getName(), file);
+        if(statelessSession != null) {
+        	currentPhoto = uploadPhoto.importPhoto(userId, file.getName(), file);
+        	uncommittedPhotos++;
+        }
+        else
+        	currentPhoto = uploadPhoto.savePhoto(userId, file.getName(), file);
         imageFileCount++;
      	
      	return currentPhoto;
@@ -133,19 +217,21 @@ public class ImportMetadataAndPhoto {
 	}
 	
 	public static void main(String argv[]) {
-		Session session = HibernateUtil.getSessionFactory().openSession();
+		// import through a stateless session, a regular session would keep every imported entity
+		StatelessSession session = HibernateUtil.getSessionFactory().openStatelessSession();
 		try {
 		   	ImportMetadataAndPhoto imObj= new ImportMetadataAndPhoto(session);
-		   	HibernateUtil.beginTransaction(session);
 		   	
 		   	if(argv.length < 2)
 		   		throw new Exception("Need to enter directory path and user id as input arguments");
 		   	imObj.getPhotoAndMetadata(argv[0], Integer.parseInt(argv[1]));
-		   	
-		   	HibernateUtil.commitTransaction(session);
 		} catch (Exception e) {
-		   	HibernateUtil.rollbackTransaction(session);
+			if(session.getTransaction() != null && session.getTransaction().isActive())
+				session.getTransaction().rollback();
+			PhotoChangeNotifier.rollbackTransaction();
 			e.printStackTrace();
+		} finally {
+			session.close();
 		}
 	}
 	 
@@ -0,0 +1,121 @@
+package edu.cmu.photogenome.business;
+
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.util.ConfigUtil;
+
+/**
+ * The <code>IndexRebuilder</code> class periodically reloads the in-memory search and region indexes 
+ * from the primary database. Once built, the indexes only follow the changes committed through the 
+ * <code>PhotoChangeNotifier</code> of this application instance, so the rows written by other instances 
+ * or by the <code>ImportMetadataAndPhoto</code> command-line import are only seen after a rebuild.
+ * 
+ * Nothing is rebuilt unless search.index.rebuildMinutes is positive, in which case this application 
+ * instance is assumed to be the only writer. Indexes which have not been built yet are left to be 
+ * built on first use.
+ */
+public class IndexRebuilder {
+	
+	final Logger log = LoggerFactory.getLogger(IndexRebuilder.class);
+	
+	private static final IndexRebuilder instance = new IndexRebuilder();
+	
+	private final long periodMinutes;
+	private ScheduledExecutorService executor;
+	private boolean stopped;
+	
+	/**
+	 * Get the shared rebuilder instance
+	 * 
+	 * @return index rebuilder
+	 */
+	public static IndexRebuilder getInstance() {
+		return instance;
+	}
+	
+	private IndexRebuilder() {
+		this(getPeriodMinutes(ConfigUtil.getApplicationProperties()));
+	}
+	
+	/**
+	 * @param periodMinutes	time between two rebuilds, not positive to never rebuild
+	 */
+	IndexRebuilder(long periodMinutes) {
+		this.periodMinutes = periodMinutes;
+	}
+	
+	private static long getPeriodMinutes(Properties config) {
+		if(config == null || config.getProperty("search.index.rebuildMinutes") == null)
+			return 0;
+		return Long.parseLong(config.getProperty("search.index.rebuildMinutes").trim());
+	}
+	
+	/**
+	 * Schedule the rebuilds on a background thread, if they are enabled and the rebuilder was not 
+	 * shut down
+	 */
+	public synchronized void start() {
+		if(periodMinutes <= 0 || executor != null || stopped)
+			return;
+		
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "index-rebuilder");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				rebuild();
+			}
+		}, periodMinutes, periodMinutes, TimeUnit.MINUTES);
+		log.info("Rebuilding the indexes every {} minutes", periodMinutes);
+	}
+	
+	/**
+	 * Stop the background thread, waiting briefly for a running rebuild to finish before 
+	 * interrupting it
+	 */
+	public synchronized void shutdown() {
+		stopped = true;
+		if(executor == null)
+			return;
+		
+		executor.shutdown();
+		try {
+			if(!executor.awaitTermination(10, TimeUnit.SECONDS))
+				executor.shutdownNow();
+		}
+		catch(InterruptedException ie) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Reload the indexes which are already built, each one reading its data on the primary
+	 */
+	public void rebuild() {
+		long start = System.currentTimeMillis();
+		
+		try {
+			new Search().rebuildIndexes();
+			new ViewInformation().rebuildRegionIndex();
+		}
+		catch(Exception e) {
+			// the indexes keep their contents until the next rebuild
+			log.warn(e.getMessage(), e);
+		}
+		
+		log.info("Rebuilt the indexes in {} ms", System.currentTimeMillis() - start);
+	}
+}
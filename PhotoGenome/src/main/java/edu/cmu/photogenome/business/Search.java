@@ -3,9 +3,12 @@ package edu.cmu.photogenome.business;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
+import org.hibernate.HibernateException;
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.slf4j.Logger;
@@ -17,14 +20,32 @@ import edu.cmu.photogenome.dao.PhotoCommentDao;
 import edu.cmu.photogenome.dao.PhotoCommentDaoImpl;
 import edu.cmu.photogenome.dao.PhotoDao;
 import edu.cmu.photogenome.dao.PhotoDaoImpl;
+import edu.cmu.photogenome.dao.PhotoMetadataDao;
+import edu.cmu.photogenome.dao.PhotoMetadataDaoImpl;
+import edu.cmu.photogenome.dao.PhotoNeighborDao;
+import edu.cmu.photogenome.dao.PhotoNeighborDaoImpl;
 import edu.cmu.photogenome.dao.RegionCategoryDao;
 import edu.cmu.photogenome.dao.RegionCategoryDaoImpl;
 import edu.cmu.photogenome.dao.RegionCommentDao;
 import edu.cmu.photogenome.dao.RegionCommentDaoImpl;
-import edu.cmu.photogenome.domain.Photo;
 import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoMetadata;
+import edu.cmu.photogenome.domain.PhotoNeighbor;
+import edu.cmu.photogenome.domain.PhotoSummary;
 import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.domain.RegionComment;
+import edu.cmu.photogenome.index.AutocompleteIndex;
+import edu.cmu.photogenome.index.CategoryIndex;
+import edu.cmu.photogenome.index.FacetIndex;
+import edu.cmu.photogenome.index.IntBitmap;
+import edu.cmu.photogenome.index.KeywordIndex;
+import edu.cmu.photogenome.index.LshIndex;
+import edu.cmu.photogenome.index.PhotoMetadataLoader;
+import edu.cmu.photogenome.index.RankedPhotoIds;
+import edu.cmu.photogenome.index.SearchCursor;
 import edu.cmu.photogenome.util.ConfigUtil;
+import edu.cmu.photogenome.util.HibernateUtil;
 
 /**
  * Class for searching for photos which are similar to:
@@ -41,15 +62,23 @@ public class Search {
 	private PhotoCommentDao photoCommentDao;
 	private RegionCategoryDao regionCategoryDao;
 	private RegionCommentDao regionCommentDao;
+	private PhotoMetadataDao photoMetadataDao;
+	private PhotoNeighborDao photoNeighborDao;
 	
 	private SearchDataRetrieval searchDataRetrieval;
 	
+	// results read on a lagging replica may miss writes the result cache version already covers, so
+	// they are not cached
+	private boolean replicaSession;
+	
 	public Search() {
 		photoDao = new PhotoDaoImpl();
 		photoCategoryDao = new PhotoCategoryDaoImpl();
 		photoCommentDao = new PhotoCommentDaoImpl();
 		regionCategoryDao = new RegionCategoryDaoImpl();
 		regionCommentDao = new RegionCommentDaoImpl();
+		photoMetadataDao = new PhotoMetadataDaoImpl();
+		photoNeighborDao = new PhotoNeighborDaoImpl();
 		
 		searchDataRetrieval = new SearchDataRetrieval();
 	}
@@ -70,25 +99,101 @@ public class Search {
 		photoCommentDao.setSession(session);
 		regionCategoryDao.setSession(session);
 		regionCommentDao.setSession(session);
+		photoMetadataDao.setSession(session);
+		photoNeighborDao.setSession(session);
 		
 		searchDataRetrieval.setSession(session);
+		replicaSession = HibernateUtil.isReplicaSession(session);
 	}
 	
 	/**
 	 * Return a list of photos whose categories or comments are similar to the given photo
 	 * 
 	 * @param photoId the photo to match against
-	 * @return a list of matching photo entities
+	 * @return a list of matching photo summaries
+	 */
+	public List<PhotoSummary> getAssociatedPhotos(int photoId) {
+		SearchPage page = getAssociatedPhotos(photoId, null, 0);
+		return page == null ? null : page.getItems();
+	}
+	
+	/**
+	 * Return a page of the photos whose categories or comments are similar to the given photo
+	 * 
+	 * @param photoId	the photo to match against
+	 * @param cursor	cursor returned with the previous page, null for the first page
+	 * @param pageSize	the max number of photos to return, capped at search.maxMatches 
+	 * 					which is also used if it is not positive
+	 * @return a page of matching photo summaries, null if the search failed or the cursor is invalid
 	 */
-	public List<Photo> getAssociatedPhotos(int photoId) {
+	public SearchPage getAssociatedPhotos(int photoId, String cursor, int pageSize) {
 		Properties config = ConfigUtil.getApplicationProperties();
 		if(config == null)
 			return null;
 		
-		// get maximum number of matches
-		int maxMatches = Integer.parseInt(config.getProperty("search.maxMatches"));
+		SearchCursor after;
+		try {
+			after = SearchCursor.decode(cursor);
+		}
+		catch(IllegalArgumentException iae) {
+			log.warn(iae.getMessage(), iae);
+			return null;
+		}
+		pageSize = getPageSize(pageSize, config);
+		
+		// answer the first page from the result cache if enabled
+		boolean caching = after == null && Boolean.parseBoolean(config.getProperty("search.cache.enabled"));
+		SearchResultCache cache = SearchResultCache.getInstance();
+		if(caching) {
+			RankedPhotoIds photoIds = cache.getAssociationResult(photoId, pageSize);
+			if(photoIds != null)
+				return toPage(photoIds, pageSize);
+		}
+		
+		long version = cache.getVersion();
+		SearchPage page = findAssociatedPhotos(photoId, after, pageSize, config);
+		if(caching && page != null && !replicaSession)
+			cache.putAssociationResult(photoId, pageSize, page.getRankedPhotoIds(), version);
+		
+		return page;
+	}
+	
+	/**
+	 * Run the associated photos search without the result cache
+	 * 
+	 * @param photoId	the photo to match against
+	 * @param after		position of the page, null for the first page
+	 * @param pageSize	the max number of photos to return
+	 * @param config	application properties
+	 * @return a page of matching photo summaries
+	 */
+	private SearchPage findAssociatedPhotos(int photoId, SearchCursor after, int pageSize, Properties config) {
+		// use the precomputed neighbors if they are available
+		if(Boolean.parseBoolean(config.getProperty("search.neighbors.enabled"))) {
+			List<PhotoNeighbor> neighbors = photoNeighborDao.findByPhotoId(photoId);
+			if(neighbors != null && !neighbors.isEmpty()) {
+				int[] photoIds = new int[neighbors.size()];
+				double[] scores = new double[neighbors.size()];
+				for(int i = 0; i < photoIds.length; i++) {
+					photoIds[i] = neighbors.get(i).getNeighborPhotoId();
+					scores[i] = neighbors.get(i).getNeighborScore();
+				}
+				return toPage(new RankedPhotoIds(photoIds, scores).page(after, pageSize), pageSize);
+			}
+			
+			AssociationRefresher refresher = AssociationRefresher.getInstance();
+			if(refresher.hasNoNeighbors(photoId))
+				return toPage(new RankedPhotoIds(new int[0], new double[0]), pageSize);
+			
+			// not computed yet, queue a refresh and answer from the live query this time
+			refresher.schedule(photoId, false);
+		}
+		
+		// only score the candidates from the LSH index if enabled
+		if(Boolean.parseBoolean(config.getProperty("search.lsh.enabled")))
+			return toPage(getSimilarPhotoIds(photoId, null, after, pageSize), pageSize);
 		
-		return searchDataRetrieval.searchAssociatedPhotos(photoId, maxMatches);
+		return searchDataRetrieval.searchAssociatedPhotos(photoId, after, pageSize);
 	}
 	
 	/**
@@ -98,9 +203,26 @@ public class Search {
 	 * @param photoId				source photo to match against
 	 * @param photoCategoryIdList	list of photo categories to be matched against
 	 * @param regionCategoryIdList	list of region categories to be matched against
-	 * @return a list of matching photo entities
+	 * @return a list of matching photo summaries
 	 */
-	public List<Photo> getFilteredAssociatedPhotosByCategoryId(int photoId, List<Integer> photoCategoryIdList, List<Integer> regionCategoryIdList) {
+	public List<PhotoSummary> getFilteredAssociatedPhotosByCategoryId(int photoId, List<Integer> photoCategoryIdList, List<Integer> regionCategoryIdList) {
+		SearchPage page = getFilteredAssociatedPhotosByCategoryId(photoId, photoCategoryIdList, regionCategoryIdList, null, 0);
+		return page == null ? null : page.getItems();
+	}
+	
+	/**
+	 * Return a page of the photos whose categories or comments are similar to the given categories and 
+	 * comments for the given photo
+	 * 
+	 * @param photoId				source photo to match against
+	 * @param photoCategoryIdList	list of photo categories to be matched against
+	 * @param regionCategoryIdList	list of region categories to be matched against
+	 * @param cursor				cursor returned with the previous page, null for the first page
+	 * @param pageSize				the max number of photos to return, capped at search.maxMatches
+	 * @return a page of matching photo summaries, null if the search failed or the cursor is invalid
+	 */
+	public SearchPage getFilteredAssociatedPhotosByCategoryId(int photoId, List<Integer> photoCategoryIdList, 
+			List<Integer> regionCategoryIdList, String cursor, int pageSize) {
 		List<String> photoKeywords = new ArrayList<String>();
 		List<String> regionKeywords = new ArrayList<String>();
 		
@@ -117,7 +239,7 @@ public class Search {
 				regionKeywords.add(mergeCategoryData(r.getCategoryName(), r.getRegionCategoryText()));
 		
 		// search for photos using the category keyword list
-		return getFilteredAssociatedPhotosByCategoryValue(photoId, photoKeywords, regionKeywords);
+		return getFilteredAssociatedPhotosByCategoryValue(photoId, photoKeywords, regionKeywords, cursor, pageSize);
 	}
 	
 	/**
@@ -127,9 +249,26 @@ public class Search {
 	 * @param photoId				source photo to match against
 	 * @param photoCategoryList		list of photo category data
 	 * @param regionCategoryList	list of region category data
-	 * @return a list of matching photo entities
+	 * @return a list of matching photo summaries
+	 */
+	public List<PhotoSummary> getFilteredAssociatedPhotosByCategoryValue(int photoId, List<String> photoCategoryList, List<String> regionCategoryList) {
+		SearchPage page = getFilteredAssociatedPhotosByCategoryValue(photoId, photoCategoryList, regionCategoryList, null, 0);
+		return page == null ? null : page.getItems();
+	}
+	
+	/**
+	 * Return a page of the photos whose categories or comments are similar to the given categories and 
+	 * comments for the given photo
+	 * 
+	 * @param photoId				source photo to match against
+	 * @param photoCategoryList		list of photo category data
+	 * @param regionCategoryList	list of region category data
+	 * @param cursor				cursor returned with the previous page, null for the first page
+	 * @param pageSize				the max number of photos to return, capped at search.maxMatches
+	 * @return a page of matching photo summaries, null if the search failed or the cursor is invalid
 	 */
-	public List<Photo> getFilteredAssociatedPhotosByCategoryValue(int photoId, List<String> photoCategoryList, List<String> regionCategoryList) {
+	public SearchPage getFilteredAssociatedPhotosByCategoryValue(int photoId, List<String> photoCategoryList, 
+			List<String> regionCategoryList, String cursor, int pageSize) {
 		List<String> categories = new ArrayList<String>();
 		
 		//combine photo and region categories into single list
@@ -140,28 +279,543 @@ public class Search {
 		if(config == null)
 			return null;
 		
-		// get maximum number of matches
-		int maxMatches = Integer.parseInt(config.getProperty("search.maxMatches"));
+		SearchCursor after;
+		try {
+			after = SearchCursor.decode(cursor);
+		}
+		catch(IllegalArgumentException iae) {
+			log.warn(iae.getMessage(), iae);
+			return null;
+		}
+		pageSize = getPageSize(pageSize, config);
+		
+		// answer the first page from the result cache if enabled
+		boolean caching = after == null && Boolean.parseBoolean(config.getProperty("search.cache.enabled"));
+		SearchResultCache cache = SearchResultCache.getInstance();
+		if(caching) {
+			RankedPhotoIds photoIds = cache.getFilteredResult(photoId, categories, pageSize);
+			if(photoIds != null)
+				return toPage(photoIds, pageSize);
+		}
+		
+		long version = cache.getVersion();
+		SearchPage page = findFilteredAssociatedPhotos(photoId, categories, after, pageSize, config);
+		if(caching && page != null && !replicaSession)
+			cache.putFilteredResult(photoId, categories, pageSize, page.getRankedPhotoIds(), version);
+		
+		return page;
+	}
+	
+	/**
+	 * Run the category filtered associated photos search without the result cache
+	 * 
+	 * @param photoId		source photo to match against
+	 * @param categories	list of photo and region category data
+	 * @param after			position of the page, null for the first page
+	 * @param pageSize		the max number of photos to return
+	 * @param config		application properties
+	 * @return a page of matching photo summaries
+	 */
+	private SearchPage findFilteredAssociatedPhotos(int photoId, List<String> categories, SearchCursor after, int pageSize, 
+			Properties config) {
+		// only score the candidates from the LSH index having one of the categories if enabled
+		if(Boolean.parseBoolean(config.getProperty("search.lsh.enabled"))) {
+			IntBitmap filterPhotos = getCategoryPhotos(categories);
+			if(filterPhotos == null)
+				return null;
+			if(filterPhotos.isEmpty())
+				return toPage(new RankedPhotoIds(new int[0], new double[0]), pageSize);
+			return toPage(getSimilarPhotoIds(photoId, filterPhotos, after, pageSize), pageSize);
+		}
 		
 		// perform actual search for associated photos
-		return searchDataRetrieval.searchFilteredAssociatedPhotos(photoId, categories, maxMatches);
+		return searchDataRetrieval.searchFilteredAssociatedPhotos(photoId, categories, after, pageSize);
+	}
+	
+	/**
+	 * Return the ids of the photos most similar to the given photo among its LSH candidates. The 
+	 * indexes are built on first use.
+	 * 
+	 * @param photoId		the photo to match against
+	 * @param filterPhotos	if not null, only photos in this bitmap are returned
+	 * @param after			position of the page, null for the first page
+	 * @param pageSize		the max number of photo ids to return
+	 * @return photo ids ranked by the number of terms shared with the photo, null if the indexes could 
+	 * 			not be built
+	 */
+	public RankedPhotoIds getSimilarPhotoIds(int photoId, IntBitmap filterPhotos, SearchCursor after, int pageSize) {
+		LshIndex index = LshIndex.getInstance();
+		if(!index.isBuilt() && !buildLshIndex())
+			return null;
+		
+		return index.findSimilar(photoId, filterPhotos, after, pageSize);
+	}
+	
+	/**
+	 * Return the photos having ANY of the categories as a photo or region category, using the 
+	 * in-memory category index. The index is built on first use.
+	 * 
+	 * @param categories	merged category names and text
+	 * @return bitmap of photo ids, null if the index could not be built
+	 */
+	public IntBitmap getCategoryPhotos(List<String> categories) {
+		CategoryIndex index = CategoryIndex.getInstance();
+		if(!index.isBuilt() && !buildCategoryIndex())
+			return null;
+		
+		List<String> keys = new ArrayList<String>();
+		for(String category : categories)
+			keys.add(CategoryIndex.key(category));
+		return index.getPhotos(keys);
+	}
+	
+	/**
+	 * Load all photo and region categories and build the in-memory category index from them if it 
+	 * has not been built yet
+	 * 
+	 * @return true if the index is built
+	 */
+	public boolean buildCategoryIndex() {
+		return buildCategoryIndex(false);
+	}
+	
+	/**
+	 * Load all photo and region categories from the primary and (re)build the in-memory category 
+	 * index from them. If they cannot be loaded the index is left as it was.
+	 * 
+	 * @param rebuild	true to reload the index if it is already built
+	 * @return true if the index is built
+	 */
+	private boolean buildCategoryIndex(boolean rebuild) {
+		CategoryIndex index = CategoryIndex.getInstance();
+		
+		synchronized(index) {
+			if(index.isBuilt() && !rebuild)
+				return true;
+			
+			log.info("Building category index");
+			index.startBuild();
+			boolean loaded = false;
+			Session session = null;
+			try {
+				session = HibernateUtil.openPrimaryReadSession();
+				Search primary = new Search(session);
+				List<PhotoCategory> photoCategories = primary.photoCategoryDao.findAll();
+				List<RegionCategory> regionCategories = primary.regionCategoryDao.findAll();
+				if(photoCategories != null && regionCategories != null) {
+					index.build(photoCategories, regionCategories);
+					loaded = true;
+				}
+			}
+			catch(HibernateException e) {
+				log.warn(e.getMessage(), e);
+			}
+			finally {
+				if(!loaded) {
+					log.warn("Could not load the category index");
+					index.abortBuild();
+				}
+				if(session != null)
+					HibernateUtil.closePrimaryReadSession(session);
+			}
+			return index.isBuilt();
+		}
+	}
+	
+	/**
+	 * Build the LSH index if it has not been built yet, building the keyword index it reads its 
+	 * terms from first if needed
+	 * 
+	 * @return true if the index is built
+	 */
+	public boolean buildLshIndex() {
+		if(!KeywordIndex.getInstance().isBuilt() && !buildKeywordIndex())
+			return false;
+		
+		return buildLshIndex(false);
+	}
+	
+	/**
+	 * (Re)build the LSH index from the terms of the keyword index, which must be built
+	 * 
+	 * @param rebuild	true to rebuild the index if it is already built
+	 * @return true if the index is built
+	 */
+	private boolean buildLshIndex(boolean rebuild) {
+		LshIndex index = LshIndex.getInstance();
+		
+		synchronized(index) {
+			if(index.isBuilt() && !rebuild)
+				return true;
+			
+			log.info("Building LSH index");
+			index.build();
+			return true;
+		}
+	}
+	
+	/**
+	 * Reload the indexes which are already built from the database. The indexes only follow the 
+	 * changes committed through this application instance, a rebuild picks up the rows written by 
+	 * other instances or the command-line import. Searches are served from the current contents 
+	 * while the data is loaded.
+	 */
+	public void rebuildIndexes() {
+		if(KeywordIndex.getInstance().isBuilt() && buildKeywordIndex(true) && LshIndex.getInstance().isBuilt())
+			buildLshIndex(true);
+		if(CategoryIndex.getInstance().isBuilt())
+			buildCategoryIndex(true);
+		if(FacetIndex.getInstance().isBuilt())
+			buildFacetIndex(true);
+		if(AutocompleteIndex.getInstance().isBuilt())
+			buildAutocompleteIndex(true);
 	}
 	
 	/**
 	 * Return a list of photos whose categories or comments match ANY of the keywords
 	 * 
 	 * @param keywords the keywords to match against photos
-	 * @return a list of matching photo entities
+	 * @return a list of matching photo summaries
 	 */
-	public List<Photo> getPhotosByKeyword(List<String> keywords) {
+	public List<PhotoSummary> getPhotosByKeyword(List<String> keywords) {
+		SearchPage page = getPhotosByKeyword(keywords, null, 0);
+		return page == null ? null : page.getItems();
+	}
+	
+	/**
+	 * Return a page of the photos whose categories or comments match ANY of the keywords
+	 * 
+	 * @param keywords	the keywords to match against photos
+	 * @param cursor	cursor returned with the previous page, null for the first page
+	 * @param pageSize	the max number of photos to return, capped at search.maxMatches
+	 * @return a page of matching photo summaries, null if the search failed or the cursor is invalid
+	 */
+	public SearchPage getPhotosByKeyword(List<String> keywords, String cursor, int pageSize) {
 		Properties config = ConfigUtil.getApplicationProperties();
 		if(config == null)
 			return null;
 		
-		// get maximum number of matches
-		int maxMatches = Integer.parseInt(config.getProperty("search.maxMatches"));
+		SearchCursor after;
+		try {
+			after = SearchCursor.decode(cursor);
+		}
+		catch(IllegalArgumentException iae) {
+			log.warn(iae.getMessage(), iae);
+			return null;
+		}
+		pageSize = getPageSize(pageSize, config);
+		
+		// answer the first page from the result cache if enabled
+		boolean caching = after == null && Boolean.parseBoolean(config.getProperty("search.cache.enabled"));
+		SearchResultCache cache = SearchResultCache.getInstance();
+		if(caching) {
+			RankedPhotoIds photoIds = cache.getKeywordResult(keywords, pageSize);
+			if(photoIds != null)
+				return toPage(photoIds, pageSize);
+		}
+		
+		long version = cache.getVersion();
+		SearchPage page;
 		
-		return searchDataRetrieval.searchPhotosByKeyword(keywords, maxMatches);
+		// use the in-memory keyword index if enabled, otherwise fall back to the full-text query
+		if(Boolean.parseBoolean(config.getProperty("search.index.enabled")))
+			page = toPage(getPhotoIdsByKeyword(keywords, after, pageSize), pageSize);
+		else
+			page = searchDataRetrieval.searchPhotosByKeyword(keywords, after, pageSize);
+		
+		if(caching && page != null && !replicaSession)
+			cache.putKeywordResult(keywords, pageSize, page.getRankedPhotoIds(), version);
+		
+		return page;
+	}
+	
+	/**
+	 * Return the ids of the photos whose categories or comments match ANY of the keywords, using the 
+	 * in-memory keyword index. The index is built on first use.
+	 * 
+	 * @param keywords	the keywords to match against photos
+	 * @param after		position of the page, null for the first page
+	 * @param pageSize	the max number of photo ids to return
+	 * @return photo ids ranked by the number of matching keywords, null if the index could not be built
+	 */
+	public RankedPhotoIds getPhotoIdsByKeyword(List<String> keywords, SearchCursor after, int pageSize) {
+		KeywordIndex index = KeywordIndex.getInstance();
+		if(!index.isBuilt() && !buildKeywordIndex())
+			return null;
+		
+		return index.search(keywords, after, pageSize);
+	}
+	
+	/**
+	 * Count the photos matching ANY of the keywords by category name, owning user and upload month. 
+	 * The keyword and facet indexes are built on first use.
+	 * 
+	 * @param keywords	the keywords to match against photos
+	 * @return facet -> value -> number of matching photos, null if facets are disabled or the counts 
+	 * 			could not be computed
+	 */
+	public Map<String, Map<String, Integer>> getKeywordFacets(List<String> keywords) {
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config == null || !Boolean.parseBoolean(config.getProperty("search.facets.enabled")))
+			return null;
+		
+		if(!KeywordIndex.getInstance().isBuilt() && !buildKeywordIndex())
+			return null;
+		FacetIndex index = FacetIndex.getInstance();
+		if(!index.isBuilt() && !buildFacetIndex())
+			return null;
+		
+		int[] photoIds = KeywordIndex.getInstance().match(keywords);
+		return index.count(photoIds, Integer.parseInt(config.getProperty("search.facets.maxValues")));
+	}
+	
+	/**
+	 * Return the most used category names and comment terms starting with the typed text. The 
+	 * autocomplete index is built on first use.
+	 * 
+	 * @param prefix	typed text
+	 * @return completions ordered by descending use, null if autocomplete is disabled or the index 
+	 * 			could not be built
+	 */
+	public List<String> getCompletions(String prefix) {
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config == null || !Boolean.parseBoolean(config.getProperty("search.autocomplete.enabled")))
+			return null;
+		
+		AutocompleteIndex index = AutocompleteIndex.getInstance();
+		if(!index.isBuilt() && !buildAutocompleteIndex())
+			return null;
+		
+		return index.complete(prefix, Integer.parseInt(config.getProperty("search.autocomplete.maxCompletions")));
+	}
+	
+	/**
+	 * Load all categories and comments and build the in-memory autocomplete index from them if it 
+	 * has not been built yet
+	 * 
+	 * @return true if the index is built
+	 */
+	public boolean buildAutocompleteIndex() {
+		return buildAutocompleteIndex(false);
+	}
+	
+	/**
+	 * Load all categories and comments from the primary and (re)build the in-memory autocomplete 
+	 * index from them. If they cannot be loaded the index is left as it was.
+	 * 
+	 * @param rebuild	true to reload the index if it is already built
+	 * @return true if the index is built
+	 */
+	private boolean buildAutocompleteIndex(boolean rebuild) {
+		AutocompleteIndex index = AutocompleteIndex.getInstance();
+		
+		synchronized(index) {
+			if(index.isBuilt() && !rebuild)
+				return true;
+			
+			log.info("Building autocomplete index");
+			index.startBuild();
+			boolean loaded = false;
+			Session session = null;
+			try {
+				session = HibernateUtil.openPrimaryReadSession();
+				Search primary = new Search(session);
+				List<PhotoCategory> photoCategories = primary.photoCategoryDao.findAll();
+				List<PhotoComment> photoComments = primary.photoCommentDao.findAll();
+				List<RegionCategory> regionCategories = primary.regionCategoryDao.findAll();
+				List<RegionComment> regionComments = primary.regionCommentDao.findAll();
+				if(photoCategories != null && photoComments != null && regionCategories != null 
+						&& regionComments != null) {
+					index.build(photoCategories, photoComments, regionCategories, regionComments);
+					loaded = true;
+				}
+			}
+			catch(HibernateException e) {
+				log.warn(e.getMessage(), e);
+			}
+			finally {
+				if(!loaded) {
+					log.warn("Could not load the autocomplete index");
+					index.abortBuild();
+				}
+				if(session != null)
+					HibernateUtil.closePrimaryReadSession(session);
+			}
+			return index.isBuilt();
+		}
+	}
+	
+	/**
+	 * Load all photos and categories and build the in-memory facet index from them if it has not 
+	 * been built yet
+	 * 
+	 * @return true if the index is built
+	 */
+	public boolean buildFacetIndex() {
+		return buildFacetIndex(false);
+	}
+	
+	/**
+	 * Load all photos and categories from the primary and (re)build the in-memory facet index from 
+	 * them. If they cannot be loaded the index is left as it was.
+	 * 
+	 * @param rebuild	true to reload the index if it is already built
+	 * @return true if the index is built
+	 */
+	private boolean buildFacetIndex(boolean rebuild) {
+		FacetIndex index = FacetIndex.getInstance();
+		
+		synchronized(index) {
+			if(index.isBuilt() && !rebuild)
+				return true;
+			
+			log.info("Building facet index");
+			index.startBuild();
+			boolean loaded = false;
+			Session session = null;
+			try {
+				session = HibernateUtil.openPrimaryReadSession();
+				Search primary = new Search(session);
+				List<PhotoSummary> photos = primary.photoDao.findAllSummaries();
+				List<PhotoCategory> photoCategories = primary.photoCategoryDao.findAll();
+				List<RegionCategory> regionCategories = primary.regionCategoryDao.findAll();
+				if(photos != null && photoCategories != null && regionCategories != null) {
+					index.build(photos, photoCategories, regionCategories);
+					loaded = true;
+				}
+			}
+			catch(HibernateException e) {
+				log.warn(e.getMessage(), e);
+			}
+			finally {
+				if(!loaded) {
+					log.warn("Could not load the facet index");
+					index.abortBuild();
+				}
+				if(session != null)
+					HibernateUtil.closePrimaryReadSession(session);
+			}
+			return index.isBuilt();
+		}
+	}
+	
+	/**
+	 * Load all photo annotations and build the in-memory keyword index from them if it has not been 
+	 * built yet
+	 * 
+	 * @return true if the index is built
+	 */
+	public boolean buildKeywordIndex() {
+		return buildKeywordIndex(false);
+	}
+	
+	/**
+	 * Load all photo annotations from the primary and (re)build the in-memory keyword index from 
+	 * them. If they cannot be loaded the index is left as it was.
+	 * 
+	 * @param rebuild	true to reload the index if it is already built
+	 * @return true if the index is built
+	 */
+	private boolean buildKeywordIndex(boolean rebuild) {
+		KeywordIndex index = KeywordIndex.getInstance();
+		
+		synchronized(index) {
+			if(index.isBuilt() && !rebuild)
+				return true;
+			
+			log.info("Building keyword index");
+			index.setMetadataLoader(new PrimaryMetadataLoader());
+			index.startBuild();
+			boolean loaded = false;
+			Session session = null;
+			try {
+				session = HibernateUtil.openPrimaryReadSession();
+				Search primary = new Search(session);
+				List<PhotoCategory> photoCategories = primary.photoCategoryDao.findAll();
+				List<PhotoComment> photoComments = primary.photoCommentDao.findAll();
+				List<RegionCategory> regionCategories = primary.regionCategoryDao.findAll();
+				List<RegionComment> regionComments = primary.regionCommentDao.findAll();
+				List<PhotoMetadata> photoMetadata = primary.photoMetadataDao.findAll();
+				if(photoCategories != null && photoComments != null && regionCategories != null 
+						&& regionComments != null && photoMetadata != null) {
+					index.build(photoCategories, photoComments, regionCategories, regionComments, photoMetadata);
+					loaded = true;
+				}
+			}
+			catch(HibernateException e) {
+				log.warn(e.getMessage(), e);
+			}
+			finally {
+				if(!loaded) {
+					log.warn("Could not load the keyword index");
+					index.abortBuild();
+				}
+				if(session != null)
+					HibernateUtil.closePrimaryReadSession(session);
+			}
+			return index.isBuilt();
+		}
+	}
+	
+	/**
+	 * Load photo summaries, preserving the order of the given ids
+	 * 
+	 * @param photoIds	ids of the photos to load
+	 * @return list of photo summaries in the same order as the ids
+	 */
+	private List<PhotoSummary> loadPhotos(int[] photoIds) {
+		List<PhotoSummary> result = new ArrayList<PhotoSummary>();
+		if(photoIds.length == 0)
+			return result;
+		
+		List<Integer> idList = new ArrayList<Integer>(photoIds.length);
+		for(int id : photoIds)
+			idList.add(id);
+		
+		List<PhotoSummary> photos = photoDao.findSummariesByIds(idList);
+		if(photos == null)
+			return null;
+		
+		Map<Integer, PhotoSummary> photosById = new HashMap<Integer, PhotoSummary>();
+		for(PhotoSummary photo : photos)
+			photosById.put(photo.getPhotoId(), photo);
+		for(int id : photoIds)
+			if(photosById.containsKey(id))
+				result.add(photosById.get(id));
+		
+		return result;
+	}
+	
+	/**
+	 * Load the photos of a page of ranked photo ids
+	 * 
+	 * @param photoIds	ranked photo ids of the page, null if they could not be found
+	 * @param pageSize	requested page size
+	 * @return page of photo summaries, null if the photo ids or the photos could not be loaded
+	 */
+	private SearchPage toPage(RankedPhotoIds photoIds, int pageSize) {
+		if(photoIds == null)
+			return null;
+		
+		List<PhotoSummary> photos = loadPhotos(photoIds.getPhotoIds());
+		if(photos == null)
+			return null;
+		
+		return new SearchPage(photos, photoIds, pageSize);
+	}
+	
+	/**
+	 * Get the page size to use for a request
+	 * 
+	 * @param pageSize	requested page size
+	 * @param config	application properties
+	 * @return the requested page size capped at search.maxMatches, or search.maxMatches if not positive
+	 */
+	private int getPageSize(int pageSize, Properties config) {
+		int maxMatches = Integer.parseInt(config.getProperty("search.maxMatches"));
+		if(pageSize <= 0 || pageSize > maxMatches)
+			return maxMatches;
+		return pageSize;
 	}
 	
 	/**
@@ -171,11 +825,30 @@ public class Search {
 	 * @param text	category text
 	 * @return	string concatenation of category name and text
 	 */
-	private String mergeCategoryData(final String name, final String text) {
+	String mergeCategoryData(final String name, final String text) {
 		// remove all whitespace
 		String newName = name.replaceAll("\\s", "");
 		String newText = text.replaceAll("\\s", "");
 		
 		return newName + newText;
 	}
+	
+	/**
+	 * Loader reading the metadata of a changed photo in its own session on the primary, where the 
+	 * change was just committed
+	 */
+	private static class PrimaryMetadataLoader implements PhotoMetadataLoader {
+		
+		public List<PhotoMetadata> load(int photoId) {
+			Session session = HibernateUtil.getSessionFactory().openSession();
+			try {
+				PhotoMetadataDao dao = new PhotoMetadataDaoImpl();
+				dao.setSession(session);
+				return dao.findAllByCriteria("photoId", photoId);
+			}
+			finally {
+				session.close();
+			}
+		}
+	}
 }
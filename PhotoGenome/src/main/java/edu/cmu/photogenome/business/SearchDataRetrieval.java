@@ -1,21 +1,30 @@
 package edu.cmu.photogenome.business;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Properties;
 
+import org.hibernate.Hibernate;
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoSummary;
+import edu.cmu.photogenome.index.RankedPhotoIds;
+import edu.cmu.photogenome.index.SearchCursor;
 import edu.cmu.photogenome.util.ConfigUtil;
+import edu.cmu.photogenome.util.DaoMetrics;
 
 public class SearchDataRetrieval {
 	
 	final Logger log = LoggerFactory.getLogger(SearchDataRetrieval.class);
 	
+	private static final String SQL_QUERY_PREFIX = "search.sql.query.";
+	
 	protected Session session;
 	
 	public SearchDataRetrieval() {
@@ -27,6 +36,29 @@ public class SearchDataRetrieval {
 		setSession(session);
 	}
 	
+	/**
+	 * Parse the configured native search queries (search.sql.query.*) without running them. Hibernate 
+	 * keeps the parameters of each parsed query in its query plan cache, so the searches do not parse 
+	 * them again.
+	 * 
+	 * @return the number of queries parsed
+	 */
+	public int prepareQueries() {
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config == null)
+			return 0;
+		
+		int count = 0;
+		for(String name : config.stringPropertyNames()) {
+			if(!name.startsWith(SQL_QUERY_PREFIX))
+				continue;
+			
+			session.createSQLQuery(config.getProperty(name));
+			count++;
+		}
+		return count;
+	}
+	
 	/**
 	 * Search for associated photos
 	 * 
@@ -49,10 +81,37 @@ public class SearchDataRetrieval {
 				.setParameter("maxMatches", maxMatches); // set maximum number of matches
 		
 		// execute query and retrieve list of ordered photos
-		List<Photo> result = query.list();
+		List<Photo> result = list(query, "searchAssociatedPhotos");
 		return result;
 	}
 	
+	/**
+	 * Score the photos associated with a photo without loading the photo entities
+	 * 
+	 * @param photoId		the source photo
+	 * @param maxMatches	the max number of matching photos to return
+	 * @return a list of (photo id, score) pairs ordered by descending score
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> searchAssociatedPhotoScores(int photoId, int maxMatches) {
+		// load application properties
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config == null)
+			return null;
+		
+		// use photo association scores query
+		String queryString = config.getProperty("search.sql.query.associationScores");
+		
+		Query query = session.createSQLQuery(queryString)
+				.addScalar("photoId", Hibernate.INTEGER) // return the photo id and score only
+				.addScalar("score", Hibernate.DOUBLE)
+				.setParameter("photoId", photoId) // set photo id
+				.setParameter("maxMatches", maxMatches); // set maximum number of matches
+		
+		// execute query and retrieve list of ordered (photo id, score) pairs
+		return list(query, "searchAssociatedPhotoScores");
+	}
+	
 	/**
 	 * Search for the photos which match the list of categories
 	 * 
@@ -86,7 +145,7 @@ public class SearchDataRetrieval {
 				.setParameter("categories", categoriesString.toString()); // set categories to match against
 		
 		// execute query and retrieve list of ordered photos
-		List<Photo> result = query.list();
+		List<Photo> result = list(query, "searchFilteredAssociatedPhotos");
 		return result;
 	}
 	
@@ -103,26 +162,185 @@ public class SearchDataRetrieval {
 		if(config == null)
 			return null;
 		
-		// parse keywords list
-		StringBuilder keywordString = new StringBuilder();
-		for(String keyword : keywords) {
-			keywordString.append(keyword);
-			keywordString.append("* ");
-		}
-		
 		// use keyword-based search query
 		String queryString = config.getProperty("search.sql.query.keywords");
 		
 		Query query = session.createSQLQuery(queryString)
 				.addEntity(Photo.class) // set return type of objects to photo entity
 				.setParameter("maxMatches", maxMatches) // set maximum number of matches
-				.setParameter("keywords", keywordString.toString()); // set keywords to match against
+				.setParameter("keywords", buildKeywordString(keywords)); // set keywords to match against
 		
 		// execute query and retrieve list of ordered photos
-		List<Photo> result = query.list();
+		List<Photo> result = list(query, "searchPhotosByKeyword");
 		return result;
 	}
 	
+	/**
+	 * Search for a page of associated photos
+	 * 
+	 * @param photoId	the source photo
+	 * @param after		position of the page, null for the first page
+	 * @param pageSize	the max number of matching photos to return
+	 * @return a page of matching photo summaries ranked after the cursor
+	 */
+	public SearchPage searchAssociatedPhotos(int photoId, SearchCursor after, int pageSize) {
+		// load application properties
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config == null)
+			return null;
+		
+		// use keyset paginated photo associations query
+		String queryString = config.getProperty("search.sql.query.associationsPage");
+		
+		Query query = session.createSQLQuery(queryString)
+				.addScalar("photoId", Hibernate.INTEGER) // return the photo summary columns along with the score
+				.addScalar("photoName", Hibernate.STRING)
+				.addScalar("photoLink", Hibernate.STRING)
+				.addScalar("userId", Hibernate.INTEGER)
+				.addScalar("photoTimestamp", Hibernate.TIMESTAMP)
+				.addScalar("score", Hibernate.DOUBLE)
+				.setParameter("photoId", photoId); // set photo id
+		
+		return toPage(query, "searchAssociatedPhotosPage", after, pageSize);
+	}
+	
+	/**
+	 * Search for a page of the photos which match the list of categories
+	 * 
+	 * @param photoId		the source photo
+	 * @param categories	the categories to match against
+	 * @param after			position of the page, null for the first page
+	 * @param pageSize		the max number of matching photos to return
+	 * @return a page of matching photo summaries ranked after the cursor
+	 */
+	public SearchPage searchFilteredAssociatedPhotos(int photoId, List<String> categories, SearchCursor after, int pageSize) {
+		// load application properties
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config == null)
+			return null;
+		
+		// parse list of categories
+		StringBuilder categoriesString = new StringBuilder();
+		for(String category : categories) {
+			categoriesString.append(category);
+			categoriesString.append(" ");
+		}
+		
+		// use keyset paginated filtered photo associations query
+		String queryString = config.getProperty("search.sql.query.filteredAssociationsPage");
+		
+		Query query = session.createSQLQuery(queryString)
+				.addScalar("photoId", Hibernate.INTEGER) // return the photo summary columns along with the score
+				.addScalar("photoName", Hibernate.STRING)
+				.addScalar("photoLink", Hibernate.STRING)
+				.addScalar("userId", Hibernate.INTEGER)
+				.addScalar("photoTimestamp", Hibernate.TIMESTAMP)
+				.addScalar("score", Hibernate.DOUBLE)
+				.setParameter("photoId", photoId) // set photo id
+				.setParameter("categories", categoriesString.toString()); // set categories to match against
+		
+		return toPage(query, "searchFilteredAssociatedPhotosPage", after, pageSize);
+	}
+	
+	/**
+	 * Search for a page of the photos whose categories or comments match the list of keywords
+	 * 
+	 * @param keywords	the list of keywords to match against
+	 * @param after		position of the page, null for the first page
+	 * @param pageSize	the max number of matching photos to return
+	 * @return a page of matching photo summaries ranked after the cursor
+	 */
+	public SearchPage searchPhotosByKeyword(List<String> keywords, SearchCursor after, int pageSize) {
+		// load application properties
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config == null)
+			return null;
+		
+		// use keyset paginated keyword-based search query
+		String queryString = config.getProperty("search.sql.query.keywordsPage");
+		
+		Query query = session.createSQLQuery(queryString)
+				.addScalar("photoId", Hibernate.INTEGER) // return the photo summary columns along with the score
+				.addScalar("photoName", Hibernate.STRING)
+				.addScalar("photoLink", Hibernate.STRING)
+				.addScalar("userId", Hibernate.INTEGER)
+				.addScalar("photoTimestamp", Hibernate.TIMESTAMP)
+				.addScalar("score", Hibernate.DOUBLE)
+				.setParameter("keywords", buildKeywordString(keywords)); // set keywords to match against
+		
+		return toPage(query, "searchPhotosByKeywordPage", after, pageSize);
+	}
+	
+	/**
+	 * Build the full-text boolean mode search string of the keywords, matching each keyword as a prefix
+	 * 
+	 * @param keywords	the list of keywords to match against
+	 * @return the keywords each followed by a wildcard
+	 */
+	static String buildKeywordString(List<String> keywords) {
+		StringBuilder keywordString = new StringBuilder();
+		for(String keyword : keywords) {
+			keywordString.append(keyword);
+			keywordString.append("* ");
+		}
+		return keywordString.toString();
+	}
+	
+	/**
+	 * Run a keyset paginated query returning (photo summary columns, score) rows
+	 * 
+	 * @param query		query with :afterScore, :afterPhotoId and :pageSize parameters
+	 * @param operation	name of the search, for the DAO metrics
+	 * @param after		position of the page, null for the first page
+	 * @param pageSize	the max number of matching photos to return
+	 * @return the page of photo summaries
+	 */
+	private SearchPage toPage(Query query, String operation, SearchCursor after, int pageSize) {
+		// the first page starts above any score
+		query.setParameter("afterScore", after == null ? Double.MAX_VALUE : after.getScore())
+				.setParameter("afterPhotoId", after == null ? Integer.MAX_VALUE : after.getPhotoId())
+				.setParameter("pageSize", pageSize);
+		
+		// execute query and retrieve list of ordered (photo summary columns, score) rows
+		List<Object[]> rows = list(query, operation);
+		
+		List<PhotoSummary> photos = new ArrayList<PhotoSummary>(rows.size());
+		int[] photoIds = new int[rows.size()];
+		double[] scores = new double[rows.size()];
+		for(int i = 0; i < photoIds.length; i++) {
+			Object[] row = rows.get(i);
+			photos.add(new PhotoSummary((Integer) row[0], (String) row[1], (String) row[2], (Integer) row[3], (Date) row[4]));
+			photoIds[i] = (Integer) row[0];
+			scores[i] = (Double) row[5];
+		}
+		
+		return new SearchPage(photos, new RankedPhotoIds(photoIds, scores), pageSize);
+	}
+	
+	/**
+	 * Execute a query, timing it under the Search entity of the DAO metrics
+	 * 
+	 * @param query
+	 * @param operation	name of the search
+	 * @return list of results
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> List<T> list(Query query, String operation) {
+		DaoMetrics.Timer timer = DaoMetrics.start("Search", operation);
+		try {
+			List<T> result = (List<T>) query.list();
+			timer.setRows(result.size());
+			return result;
+		}
+		catch(RuntimeException e) {
+			timer.fail();
+			throw e;
+		}
+		finally {
+			timer.stop();
+		}
+	}
+	
 	public Session getSession() {
 		return session;
 	}
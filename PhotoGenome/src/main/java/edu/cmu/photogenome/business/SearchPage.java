@@ -0,0 +1,47 @@
+package edu.cmu.photogenome.business;
+
+import java.util.List;
+
+import edu.cmu.photogenome.domain.PhotoSummary;
+import edu.cmu.photogenome.index.RankedPhotoIds;
+
+/**
+ * A page of search results along with the cursor to request the next page
+ */
+public class SearchPage {
+	
+	private final List<PhotoSummary> items;
+	private final RankedPhotoIds rankedPhotoIds;
+	private final String nextCursor;
+	
+	/**
+	 * @param items				summaries of the photos of the page in ranked order
+	 * @param rankedPhotoIds	ids and scores of the photos
+	 * @param pageSize			requested page size, a full page may be followed by another one
+	 */
+	public SearchPage(List<PhotoSummary> items, RankedPhotoIds rankedPhotoIds, int pageSize) {
+		this.items = items;
+		this.rankedPhotoIds = rankedPhotoIds;
+		
+		int size = rankedPhotoIds.size();
+		if(size > 0 && size == pageSize)
+			nextCursor = rankedPhotoIds.cursorAt(size - 1).encode();
+		else
+			nextCursor = null;
+	}
+	
+	public List<PhotoSummary> getItems() {
+		return items;
+	}
+	
+	public RankedPhotoIds getRankedPhotoIds() {
+		return rankedPhotoIds;
+	}
+	
+	/**
+	 * @return cursor for the next page, null if this is the last page
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+}
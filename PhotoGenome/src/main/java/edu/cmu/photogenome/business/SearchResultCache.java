@@ -0,0 +1,350 @@
+package edu.cmu.photogenome.business;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.domain.RegionComment;
+import edu.cmu.photogenome.index.KeywordIndex;
+import edu.cmu.photogenome.index.RankedPhotoIds;
+import edu.cmu.photogenome.index.Tokenizer;
+import edu.cmu.photogenome.util.ConfigUtil;
+import edu.cmu.photogenome.util.LruCache;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeListener;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
+
+/**
+ * Cache of the first page of ranked search results, keyed by normalized query and page size.
+ *
+ * Each entry remembers the terms a change must touch to affect it. When a photo changes, only the
+ * entries whose results contain the photo, whose source photo is the photo, or whose terms appear
+ * in the changed annotation are invalidated. A new photo may match any query through its metadata,
+ * which the change does not carry, so saving a photo invalidates all entries.
+ */
+public class SearchResultCache implements PhotoChangeListener {
+	
+	final Logger log = LoggerFactory.getLogger(SearchResultCache.class);
+	
+	private static final int DEFAULT_MAX_ENTRIES = 1000;
+	
+	private static final SearchResultCache instance;
+	
+	static {
+		Properties config = ConfigUtil.getApplicationProperties();
+		int maxEntries = DEFAULT_MAX_ENTRIES;
+		if(config != null)
+			maxEntries = Integer.parseInt(config.getProperty("search.cache.maxEntries", String.valueOf(DEFAULT_MAX_ENTRIES)));
+		
+		instance = new SearchResultCache(maxEntries);
+		PhotoChangeNotifier.addListener(instance);
+	}
+	
+	private static final String KEYWORD = "kw:";
+	private static final String ASSOCIATION = "assoc:";
+	private static final String FILTERED = "filter:";
+	private static final String PAGE = "#";
+	
+	private final LruCache<String, Entry> cache;
+	
+	// incremented on every invalidation, results computed across an invalidation are not cached
+	private long version;
+	private long invalidations;
+	
+	SearchResultCache(int maxEntries) {
+		cache = new LruCache<String, Entry>(maxEntries);
+	}
+	
+	/**
+	 * Get the shared cache instance
+	 * 
+	 * @return search result cache
+	 */
+	public static SearchResultCache getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Get the current version of the cache. Take the version before running a search and pass it
+	 * when caching the result, so that results which may have missed a change are dropped.
+	 * 
+	 * @return cache version
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Get the cached result of a keyword search
+	 * 
+	 * @param keywords
+	 * @param pageSize
+	 * @return ranked photo ids, or null if not cached
+	 */
+	public RankedPhotoIds getKeywordResult(List<String> keywords, int pageSize) {
+		return get(KEYWORD + normalize(keywords) + PAGE + pageSize);
+	}
+	
+	/**
+	 * Cache the result of a keyword search. The entry is invalidated by changes to the result photos
+	 * or by annotations with a term starting with one of the keywords.
+	 * 
+	 * @param keywords
+	 * @param pageSize
+	 * @param photoIds	ranked photo ids
+	 * @param version	cache version taken before the search
+	 */
+	public void putKeywordResult(List<String> keywords, int pageSize, RankedPhotoIds photoIds, long version) {
+		Set<String> terms = new HashSet<String>();
+		for(String keyword : keywords)
+			terms.addAll(Tokenizer.tokenize(keyword));
+		
+		put(KEYWORD + normalize(keywords) + PAGE + pageSize, new Entry(photoIds, -1, terms, true), version);
+	}
+	
+	/**
+	 * Get the cached associated photos of a photo
+	 * 
+	 * @param photoId
+	 * @param pageSize
+	 * @return ranked photo ids, or null if not cached
+	 */
+	public RankedPhotoIds getAssociationResult(int photoId, int pageSize) {
+		return get(ASSOCIATION + photoId + PAGE + pageSize);
+	}
+	
+	/**
+	 * Cache the associated photos of a photo. The entry is invalidated by changes to the photo, to
+	 * the result photos, or by annotations sharing a term with the photo.
+	 * 
+	 * @param photoId
+	 * @param pageSize
+	 * @param photoIds	ranked photo ids
+	 * @param version	cache version taken before the search
+	 */
+	public void putAssociationResult(int photoId, int pageSize, RankedPhotoIds photoIds, long version) {
+		put(ASSOCIATION + photoId + PAGE + pageSize, new Entry(photoIds, photoId, getPhotoTerms(photoId), false), version);
+	}
+	
+	/**
+	 * Get the cached category filtered associated photos of a photo
+	 * 
+	 * @param photoId
+	 * @param categories	merged category name and text values
+	 * @param pageSize
+	 * @return ranked photo ids, or null if not cached
+	 */
+	public RankedPhotoIds getFilteredResult(int photoId, List<String> categories, int pageSize) {
+		return get(FILTERED + photoId + ":" + normalize(categories) + PAGE + pageSize);
+	}
+	
+	/**
+	 * Cache the category filtered associated photos of a photo. The entry is invalidated by changes
+	 * to the photo, to the result photos, or by annotations sharing a term with the photo or the
+	 * categories.
+	 * 
+	 * @param photoId
+	 * @param categories	merged category name and text values
+	 * @param pageSize
+	 * @param photoIds		ranked photo ids
+	 * @param version		cache version taken before the search
+	 */
+	public void putFilteredResult(int photoId, List<String> categories, int pageSize, RankedPhotoIds photoIds, long version) {
+		Set<String> terms = getPhotoTerms(photoId);
+		if(terms != null)
+			for(String category : categories)
+				terms.addAll(Tokenizer.tokenize(category));
+		
+		put(FILTERED + photoId + ":" + normalize(categories) + PAGE + pageSize, new Entry(photoIds, photoId, terms, false), version);
+	}
+	
+	/**
+	 * Invalidate the associated photo results of a photo, e.g. after its stored neighbors were recomputed
+	 * 
+	 * @param photoId
+	 */
+	public void invalidateAssociations(int photoId) {
+		final String associationKey = ASSOCIATION + photoId + PAGE;
+		invalidate(new LruCache.Filter<String, Entry>() {
+			public boolean accept(String key, Entry entry) {
+				return key.startsWith(associationKey);
+			}
+		});
+	}
+	
+	/**
+	 * Invalidate the entries a committed change could affect
+	 */
+	public void photoChanged(PhotoChangeEvent event) {
+		if(event.getEntity() instanceof Photo && event.getAction() == PhotoChangeEvent.Action.SAVE) {
+			clear();
+			return;
+		}
+		
+		final int photoId = event.getPhotoId();
+		final Set<String> changedTerms = getTerms(event.getEntity());
+		
+		invalidate(new LruCache.Filter<String, Entry>() {
+			public boolean accept(String key, Entry entry) {
+				return entry.sourcePhotoId == photoId || entry.contains(photoId) || entry.matches(changedTerms);
+			}
+		});
+	}
+	
+	/**
+	 * Remove all entries
+	 */
+	public void clear() {
+		invalidate(new LruCache.Filter<String, Entry>() {
+			public boolean accept(String key, Entry entry) {
+				return true;
+			}
+		});
+	}
+	
+	/**
+	 * Get the cache counters
+	 * 
+	 * @return map of counter name to value
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("size", cache.size());
+		stats.put("maxEntries", cache.getMaxEntries());
+		stats.put("hits", cache.getHits());
+		stats.put("misses", cache.getMisses());
+		stats.put("evictions", cache.getEvictions());
+		synchronized(this) {
+			stats.put("invalidations", invalidations);
+		}
+		return stats;
+	}
+	
+	private RankedPhotoIds get(String key) {
+		Entry entry = cache.get(key);
+		return entry == null ? null : entry.photoIds;
+	}
+	
+	private synchronized void put(String key, Entry entry, long version) {
+		if(version == this.version)
+			cache.put(key, entry);
+	}
+	
+	private synchronized void invalidate(LruCache.Filter<String, Entry> filter) {
+		version++;
+		int removed = cache.removeIf(filter);
+		invalidations += removed;
+		if(removed > 0)
+			log.debug("Invalidated {} search results", removed);
+	}
+	
+	/**
+	 * Normalize a query into sorted, distinct, lower-cased values
+	 */
+	private static String normalize(Collection<String> values) {
+		Set<String> normalized = new TreeSet<String>();
+		for(String value : values) {
+			String v = value.trim().toLowerCase();
+			if(v.length() > 0)
+				normalized.add(v);
+		}
+		
+		StringBuilder key = new StringBuilder();
+		for(String value : normalized) {
+			if(key.length() > 0)
+				key.append(' ');
+			key.append(value);
+		}
+		return key.toString();
+	}
+	
+	/**
+	 * Get the indexed terms of a photo
+	 * 
+	 * @param photoId
+	 * @return set of terms, or null if the keyword index is not built and the terms are unknown
+	 */
+	private static Set<String> getPhotoTerms(int photoId) {
+		KeywordIndex index = KeywordIndex.getInstance();
+		if(!index.isBuilt())
+			return null;
+		return new HashSet<String>(index.getTerms(photoId));
+	}
+	
+	/**
+	 * Get the terms of a changed annotation
+	 * 
+	 * @param entity
+	 * @return set of terms, empty if the entity carries no searchable text
+	 */
+	private static Set<String> getTerms(Object entity) {
+		Set<String> terms = new HashSet<String>();
+		if(entity instanceof PhotoCategory) {
+			PhotoCategory c = (PhotoCategory) entity;
+			terms.addAll(Tokenizer.tokenizeCategory(c.getPhotoCategoryName(), c.getPhotoCategoryText()));
+		}
+		else if(entity instanceof PhotoComment)
+			terms.addAll(Tokenizer.tokenize(((PhotoComment) entity).getPhotoCommentText()));
+		else if(entity instanceof RegionCategory) {
+			RegionCategory c = (RegionCategory) entity;
+			terms.addAll(Tokenizer.tokenizeCategory(c.getCategoryName(), c.getRegionCategoryText()));
+		}
+		else if(entity instanceof RegionComment)
+			terms.addAll(Tokenizer.tokenize(((RegionComment) entity).getRegionCommentText()));
+		return terms;
+	}
+	
+	/**
+	 * Cached result along with what it depends on
+	 */
+	private static class Entry {
+		
+		final RankedPhotoIds photoIds;
+		final int sourcePhotoId;
+		// terms a change has to touch to affect the result, null if any change may
+		final Set<String> terms;
+		// whether the terms match changed terms by prefix rather than exactly
+		final boolean prefix;
+		
+		Entry(RankedPhotoIds photoIds, int sourcePhotoId, Set<String> terms, boolean prefix) {
+			this.photoIds = photoIds;
+			this.sourcePhotoId = sourcePhotoId;
+			this.terms = terms;
+			this.prefix = prefix;
+		}
+		
+		boolean contains(int photoId) {
+			return photoIds.contains(photoId);
+		}
+		
+		boolean matches(Set<String> changedTerms) {
+			if(terms == null)
+				return true;
+			
+			for(String changed : changedTerms) {
+				if(!prefix) {
+					if(terms.contains(changed))
+						return true;
+				}
+				else {
+					for(String term : terms)
+						if(changed.startsWith(term))
+							return true;
+				}
+			}
+			return false;
+		}
+	}
+}
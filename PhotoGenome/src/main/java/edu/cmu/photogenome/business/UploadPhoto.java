@@ -12,6 +12,7 @@ import java.util.Properties;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +20,8 @@ import edu.cmu.photogenome.dao.PhotoDao;
 import edu.cmu.photogenome.dao.PhotoDaoImpl;
 import edu.cmu.photogenome.domain.Photo;
 import edu.cmu.photogenome.util.ConfigUtil;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
 
 
 /**
@@ -52,6 +55,15 @@ public class UploadPhoto {
 		photoDao.setSession(session);
 	}
 	
+	/**
+	 * Set the Hibernate stateless session to use for bulk imports
+	 * 
+	 * @param statelessSession
+	 */
+	public void setStatelessSession(StatelessSession statelessSession) {
+		photoDao.setStatelessSession(statelessSession);
+	}
+	
 	/**
 	 * Delete a photo entity and the associated photo file
 	 * 
@@ -67,6 +79,7 @@ public class UploadPhoto {
 			log.debug("Deleting photo with ID = {}", photoId);
 			if(!photoDao.delete(photo))
 				return false;
+			PhotoChangeNotifier.fire(PhotoChangeEvent.Action.DELETE, photo);
 		}
 		else
 			log.debug("Photo with ID = {} does not exist. Nothing to delete", photoId);
@@ -126,8 +139,10 @@ public class UploadPhoto {
 
 		log.debug("Saving photo with userId={}, photoName={}", userId, photoName);
 		if(photoDao.save(photo)) {
-			if(savePhotoLink(photoFile, photo))// Save the photo file to some location
+			if(savePhotoLink(photoFile, photo)) { // Save the photo file to some location
+				PhotoChangeNotifier.fire(PhotoChangeEvent.Action.SAVE, photo);
 				return photo;
+			}
 			else
 				return null;
 		}
@@ -136,6 +151,30 @@ public class UploadPhoto {
 		}
 	}
 	
+	/**
+	 * Save a photo file and insert a database entry for it through the stateless session, for bulk 
+	 * imports. Unlike <code>savePhoto</code> the photo entity is not kept in a session.
+	 * 
+	 * @param userId	user who uploaded the photo
+	 * @param photoName	photo name
+	 * @param photoFile photo file to be saved
+	 * @return Photo entity if successful, else null
+	 */
+	public Photo importPhoto(int userId, String photoName, File photoFile) {
+		Photo photo = new Photo(userId, new Date());
+
+		log.debug("Importing photo with userId={}, photoName={}", userId, photoName);
+		if(!photoDao.insertStateless(photo))
+			return null;
+		
+		// the link is named after the photo id, known once inserted
+		if(!savePhotoLink(photoFile, photo) || !photoDao.updateStateless(photo))
+			return null;
+		
+		PhotoChangeNotifier.fire(PhotoChangeEvent.Action.SAVE, photo);
+		return photo;
+	}
+	
 	/**
 	 * Save a file to disk and set the photo link path on the photo entity
 	 * 
@@ -1,11 +1,18 @@
 package edu.cmu.photogenome.business;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import edu.cmu.photogenome.dao.BatchLoader;
 import edu.cmu.photogenome.dao.ImportedMetadataDao;
 import edu.cmu.photogenome.dao.ImportedMetadataDaoImpl;
 import edu.cmu.photogenome.dao.PhotoCategoryDao;
@@ -26,10 +33,16 @@ import edu.cmu.photogenome.domain.ImportedMetadata;
 import edu.cmu.photogenome.domain.Photo;
 import edu.cmu.photogenome.domain.PhotoCategory;
 import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoDetail;
 import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.PhotoSummary;
 import edu.cmu.photogenome.domain.RegionCategory;
 import edu.cmu.photogenome.domain.RegionComment;
 import edu.cmu.photogenome.domain.RegionCoordinate;
+import edu.cmu.photogenome.domain.RegionDetail;
+import edu.cmu.photogenome.index.RegionIndex;
+import edu.cmu.photogenome.util.ConfigUtil;
+import edu.cmu.photogenome.util.HibernateUtil;
 
 /**
  * The <code>ViewInformation</code> class gets all the relevant
@@ -51,6 +64,12 @@ public class ViewInformation {
 	private RegionCategoryDao regionCategoryDao;
 	private RegionCoordinateDao regionCoordinateDao;
 	private ImportedMetadataDao importedMetadataDao;
+	
+	// lookups of the regions and their annotations, batched and de-duplicated within a session
+	private BatchLoader<Integer, PhotoRegion> regionLoader;
+	private BatchLoader<Integer, List<RegionCoordinate>> regionCoordinateLoader;
+	private BatchLoader<Integer, List<RegionComment>> regionCommentLoader;
+	private BatchLoader<Integer, List<RegionCategory>> regionCategoryLoader;
 
 	
 	public ViewInformation() {
@@ -62,7 +81,7 @@ public class ViewInformation {
 		regionCategoryDao =new RegionCategoryDaoImpl();
 		regionCoordinateDao = new RegionCoordinateDaoImpl();
 		importedMetadataDao = new ImportedMetadataDaoImpl();
-		
+		createLoaders();
 	}
 	
 	/**
@@ -89,7 +108,54 @@ public class ViewInformation {
 		regionCategoryDao.setSession(session);
 		regionCoordinateDao.setSession(session);
 		importedMetadataDao.setSession(session);
-		}
+		clearLoaders();
+	}
+	
+	/**
+	 * Drop the regions and annotations loaded through the batch loaders, which are otherwise kept
+	 * until the session is changed
+	 */
+	public void clearLoaders() {
+		regionLoader.clear();
+		regionCoordinateLoader.clear();
+		regionCommentLoader.clear();
+		regionCategoryLoader.clear();
+	}
+	
+	/**
+	 * Create the batch loaders. A single key is looked up with the cached query by region id, 
+	 * several keys with one uncached IN query.
+	 */
+	private void createLoaders() {
+		regionLoader = BatchLoader.byId(photoRegionDao);
+		regionCoordinateLoader = new BatchLoader.Grouped<Integer, RegionCoordinate>() {
+			protected List<RegionCoordinate> fetchAll(List<Integer> regionIds) {
+				return regionIds.size() == 1 ? regionCoordinateDao.findByRegionId(regionIds.get(0))
+						: regionCoordinateDao.findByRegionIds(regionIds);
+			}
+			protected Integer getKey(RegionCoordinate coordinate) {
+				return coordinate.getRegionId();
+			}
+		};
+		regionCommentLoader = new BatchLoader.Grouped<Integer, RegionComment>() {
+			protected List<RegionComment> fetchAll(List<Integer> regionIds) {
+				return regionIds.size() == 1 ? regionCommentDao.findByRegionId(regionIds.get(0))
+						: regionCommentDao.findByRegionIds(regionIds);
+			}
+			protected Integer getKey(RegionComment comment) {
+				return comment.getRegionId();
+			}
+		};
+		regionCategoryLoader = new BatchLoader.Grouped<Integer, RegionCategory>() {
+			protected List<RegionCategory> fetchAll(List<Integer> regionIds) {
+				return regionIds.size() == 1 ? regionCategoryDao.findByRegionId(regionIds.get(0))
+						: regionCategoryDao.findByRegionIds(regionIds);
+			}
+			protected Integer getKey(RegionCategory category) {
+				return category.getRegionId();
+			}
+		};
+	}
 	
 	/**
 	 * Get the photo for the given photo id
@@ -121,6 +187,65 @@ public class ViewInformation {
 		return photoDao.findAll();
 	}
 	
+	/**
+	 * Get the summaries of the photos uploaded by a user
+	 * 
+	 * @param userId
+	 * @return	list of photo summaries, null if the photos could not be retrieved
+	 */
+	public List<PhotoSummary> getPhotoSummaries(int userId) {
+		return photoDao.findSummariesByUserId(userId);
+	}
+	
+	/**
+	 * Get the summaries of all the photos
+	 * 
+	 * @return	list of photo summaries, null if the photos could not be retrieved
+	 */
+	public List<PhotoSummary> getAllPhotoSummaries() {
+		return photoDao.findAllSummaries();
+	}
+	
+	/**
+	 * Get a page of the summaries of the photos uploaded by a user, ordered by photo id
+	 * 
+	 * @param userId
+	 * @param after		id of the last photo of the previous page, null for the first page
+	 * @param pageSize	requested page size, see {@link #getGalleryPageSize(int)}
+	 * @return	list of photo summaries, null if the photos could not be retrieved
+	 */
+	public List<PhotoSummary> getPhotoSummaries(int userId, Integer after, int pageSize) {
+		return photoDao.findSummariesPageByUserId(userId, after, getGalleryPageSize(pageSize));
+	}
+	
+	/**
+	 * Get a page of the summaries of all the photos, ordered by photo id
+	 * 
+	 * @param after		id of the last photo of the previous page, null for the first page
+	 * @param pageSize	requested page size, see {@link #getGalleryPageSize(int)}
+	 * @return	list of photo summaries, null if the photos could not be retrieved
+	 */
+	public List<PhotoSummary> getAllPhotoSummaries(Integer after, int pageSize) {
+		return photoDao.findSummariesPage(after, getGalleryPageSize(pageSize));
+	}
+	
+	/**
+	 * Get the size of the gallery pages, gallery.pageSize by default and capped at gallery.maxPageSize
+	 * 
+	 * @param pageSize	requested page size, 0 or less for the default
+	 * @return page size
+	 */
+	public int getGalleryPageSize(int pageSize) {
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config == null)
+			config = new Properties();
+		int defaultPageSize = Integer.parseInt(config.getProperty("gallery.pageSize", "50"));
+		int maxPageSize = Integer.parseInt(config.getProperty("gallery.maxPageSize", "200"));
+		if(pageSize <= 0)
+			return defaultPageSize;
+		return Math.min(pageSize, maxPageSize);
+	}
+	
 	public List<ImportedMetadata> getImportedMetadata(String property, Object value) {
 		return importedMetadataDao.findAllByCriteria(property, value);
 	}
@@ -199,10 +324,11 @@ public class ViewInformation {
 	 * Get the list of region comments for the given region id
 	 * 
 	 * @param regionId
-	 * @return list of region comments, null if region not fond
+	 * @return list of region comments, null if region not fond. The list is shared with the later 
+	 * 			lookups of the region and must not be modified.
 	 */
 	public List<RegionComment> getRegionComments(int regionId) {
-		return regionCommentDao.findByRegionId(regionId);
+		return regionCommentLoader.load(regionId);
 	}
 	
 	/**
@@ -219,10 +345,11 @@ public class ViewInformation {
 	 * Get the list of region categories for the given region id
 	 * 
 	 * @param regionId
-	 * @return list of region coordinates, null if region not found
+	 * @return list of region categories, null if region not found. The list is shared with the 
+	 * 			later lookups of the region and must not be modified.
 	 */
 	public List<RegionCategory> getRegionCategories(int regionId){
-		return regionCategoryDao.findByRegionId(regionId);
+		return regionCategoryLoader.load(regionId);
 	}
 	
 	/**
@@ -244,4 +371,223 @@ public class ViewInformation {
 	public List<RegionCoordinate> getRegionCoordinates(int photoId){
 		return regionCoordinateDao.findByPhotoId(photoId);
 	}
+	
+	/**
+	 * Get the region coordinates overlapping a rectangle, using the region index
+	 * 
+	 * @param photoId	photo to search, or null to search all photos
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return list of region coordinates, empty if none overlap, null if the index could not be built
+	 */
+	public List<RegionCoordinate> getRegionCoordinatesOverlapping(Integer photoId, int x, int y, int width, int height) {
+		if(!buildRegionIndex())
+			return null;
+		if(photoId == null)
+			return RegionIndex.getInstance().findOverlapping(x, y, width, height);
+		return RegionIndex.getInstance().findOverlapping(photoId, x, y, width, height);
+	}
+	
+	/**
+	 * Get the region coordinates of a photo containing a point, using the region index
+	 * 
+	 * @param photoId
+	 * @param x
+	 * @param y
+	 * @return list of region coordinates, empty if none contain the point, null if the index could not 
+	 * 			be built
+	 */
+	public List<RegionCoordinate> getRegionCoordinatesContaining(int photoId, int x, int y) {
+		if(!buildRegionIndex())
+			return null;
+		return RegionIndex.getInstance().findContaining(photoId, x, y);
+	}
+	
+	/**
+	 * Get the topmost region of a photo at a point, with its comments and categories
+	 * 
+	 * @param photoId
+	 * @param x
+	 * @param y
+	 * @return region details, null if no region contains the point or it could not be retrieved
+	 */
+	public RegionDetail getRegionAt(int photoId, int x, int y) {
+		if(!buildRegionIndex())
+			return null;
+		RegionCoordinate coordinate = RegionIndex.getInstance().findTopmost(photoId, x, y);
+		if(coordinate == null)
+			return null;
+		
+		PhotoRegion region = regionLoader.load(coordinate.getRegionId());
+		if(region == null)
+			return null;
+		
+		return new RegionDetail(region, coordinate, regionCommentLoader.load(region.getRegionId()),
+				regionCategoryLoader.load(region.getRegionId()));
+	}
+	
+	/**
+	 * Get regions with their coordinate, comments and categories. The regions and each kind of
+	 * annotation are loaded with one query for all the regions, and repeated region ids are loaded once.
+	 * 
+	 * @param regionIds
+	 * @return list of region details in the order of the region ids, regions not found are left out,
+	 * null if the annotations could not be retrieved
+	 */
+	public List<RegionDetail> getRegionDetails(List<Integer> regionIds) {
+		regionLoader.queueAll(regionIds);
+		regionCoordinateLoader.queueAll(regionIds);
+		regionCommentLoader.queueAll(regionIds);
+		regionCategoryLoader.queueAll(regionIds);
+		
+		List<RegionDetail> details = new ArrayList<RegionDetail>();
+		for(Integer regionId : new LinkedHashSet<Integer>(regionIds)) {
+			PhotoRegion region = regionLoader.load(regionId);
+			if(region == null)
+				continue;
+			
+			List<RegionCoordinate> coordinates = regionCoordinateLoader.load(regionId);
+			List<RegionComment> comments = regionCommentLoader.load(regionId);
+			List<RegionCategory> categories = regionCategoryLoader.load(regionId);
+			if(coordinates == null || comments == null || categories == null)
+				return null;
+			
+			details.add(new RegionDetail(region, coordinates.isEmpty() ? null : coordinates.get(0),
+					comments, categories));
+		}
+		return details;
+	}
+	
+	/**
+	 * Get a photo with its comments, categories and regions, each region with its coordinate, comments
+	 * and categories. The annotations of all the regions are loaded by photo id, so the number of 
+	 * queries does not depend on the number of regions.
+	 * 
+	 * @param photoId
+	 * @return photo details, null if the photo is not found or its annotations could not be retrieved
+	 */
+	public PhotoDetail getPhotoDetail(int photoId) {
+		Photo photo = photoDao.findById(photoId);
+		if(photo == null)
+			return null;
+		
+		List<PhotoComment> photoComments = photoCommentDao.findByPhotoId(photoId);
+		List<PhotoCategory> photoCategories = photoCategoryDao.findByPhotoId(photoId);
+		List<PhotoRegion> regions = photoRegionDao.findByPhotoId(photoId);
+		List<RegionCoordinate> coordinates = regionCoordinateDao.findByPhotoId(photoId);
+		List<RegionComment> regionComments = regionCommentDao.findByPhotoId(photoId);
+		List<RegionCategory> regionCategories = regionCategoryDao.findByPhotoId(photoId);
+		if(photoComments == null || photoCategories == null || regions == null || coordinates == null
+				|| regionComments == null || regionCategories == null)
+			return null;
+		
+		Map<Integer, RegionDetail> details = new LinkedHashMap<Integer, RegionDetail>();
+		for(PhotoRegion region : regions)
+			details.put(region.getRegionId(), new RegionDetail(region, null,
+					new ArrayList<RegionComment>(), new ArrayList<RegionCategory>()));
+		
+		for(RegionCoordinate coordinate : coordinates) {
+			RegionDetail detail = details.get(coordinate.getRegionId());
+			if(detail != null && detail.getCoordinate() == null)
+				detail.setCoordinate(coordinate);
+		}
+		for(RegionComment comment : regionComments) {
+			RegionDetail detail = details.get(comment.getRegionId());
+			if(detail != null)
+				detail.getRegionComments().add(comment);
+		}
+		for(RegionCategory category : regionCategories) {
+			RegionDetail detail = details.get(category.getRegionId());
+			if(detail != null)
+				detail.getRegionCategories().add(category);
+		}
+		
+		return new PhotoDetail(photo, photoComments, photoCategories,
+				new ArrayList<RegionDetail>(details.values()));
+	}
+	
+	/**
+	 * Get the summaries of the photos having a region covering more than a percentage of the frame.
+	 * Photos do not record their dimensions, so the frame size is given by the caller.
+	 * 
+	 * @param percent		percentage of the frame, between 0 and 100
+	 * @param frameWidth
+	 * @param frameHeight
+	 * @return list of photo summaries, null if the photos could not be retrieved
+	 */
+	public List<PhotoSummary> getPhotosWithRegionCovering(double percent, int frameWidth, int frameHeight) {
+		if(!buildRegionIndex())
+			return null;
+		int[] ids = RegionIndex.getInstance().findPhotosWithRegionCovering(percent / 100, frameWidth, frameHeight);
+		
+		List<Integer> photoIds = new ArrayList<Integer>(ids.length);
+		for(int id : ids)
+			photoIds.add(id);
+		return photoDao.findSummariesByIds(photoIds);
+	}
+	
+	/**
+	 * Build the region index from the stored region coordinates if it has not been built yet. The 
+	 * region endpoints all build the index this way on first use, reading the primary in a session of 
+	 * its own whatever the session of this object.
+	 * 
+	 * @return true if the index is built
+	 */
+	public boolean buildRegionIndex() {
+		return buildRegionIndex(false);
+	}
+	
+	/**
+	 * Reload the region index from the stored region coordinates if it is already built, to pick up 
+	 * the regions written by other application instances or the command-line import
+	 */
+	public void rebuildRegionIndex() {
+		if(RegionIndex.getInstance().isBuilt())
+			buildRegionIndex(true);
+	}
+	
+	/**
+	 * (Re)build the region index from the region coordinates stored on the primary. If they cannot be 
+	 * loaded the index is left as it was.
+	 * 
+	 * @param rebuild	true to reload the index if it is already built
+	 * @return true if the index is built
+	 */
+	private boolean buildRegionIndex(boolean rebuild) {
+		RegionIndex index = RegionIndex.getInstance();
+		
+		synchronized(index) {
+			if(index.isBuilt() && !rebuild)
+				return true;
+			
+			log.info("Building region index");
+			index.startBuild();
+			boolean loaded = false;
+			Session session = null;
+			try {
+				session = HibernateUtil.openPrimaryReadSession();
+				RegionCoordinateDao primaryDao = new RegionCoordinateDaoImpl();
+				primaryDao.setSession(session);
+				List<RegionCoordinate> coordinates = primaryDao.findAll();
+				if(coordinates != null) {
+					index.build(coordinates);
+					loaded = true;
+				}
+			}
+			catch(HibernateException e) {
+				log.warn(e.getMessage(), e);
+			}
+			finally {
+				if(!loaded) {
+					log.warn("Could not load the region index");
+					index.abortBuild();
+				}
+				if(session != null)
+					HibernateUtil.closePrimaryReadSession(session);
+			}
+			return index.isBuilt();
+		}
+	}
 }
@@ -0,0 +1,126 @@
+package edu.cmu.photogenome.business;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.dao.PhotoDao;
+import edu.cmu.photogenome.dao.PhotoDaoImpl;
+import edu.cmu.photogenome.util.ConfigUtil;
+
+/**
+ * Class for warming up the application before it serves its first requests: parses the native search
+ * queries, builds the in-memory indexes and runs the searches of the warm-up query set, so that their
+ * database pages, cache entries and index structures are loaded.
+ *
+ * The warm-up query set is configured by startup.warmup.photoIds, the photos whose details and
+ * associated photos are loaded, and startup.warmup.keywords, the keywords searched for.
+ */
+public class WarmUp {
+	
+	final Logger log = LoggerFactory.getLogger(WarmUp.class);
+	
+	private PhotoDao photoDao;
+	private Search search;
+	private SearchDataRetrieval searchDataRetrieval;
+	private ViewInformation viewInformation;
+	
+	public WarmUp() {
+		photoDao = new PhotoDaoImpl();
+		search = new Search();
+		searchDataRetrieval = new SearchDataRetrieval();
+		viewInformation = new ViewInformation();
+	}
+	
+	public WarmUp(Session session) {
+		this();
+		setSession(session);
+	}
+	
+	/**
+	 * Set the Hibernate session to use when calling DAOs
+	 * 
+	 * @param session
+	 */
+	public void setSession(Session session) {
+		photoDao.setSession(session);
+		search.setSession(session);
+		searchDataRetrieval.setSession(session);
+		viewInformation.setSession(session);
+	}
+	
+	/**
+	 * Run the warm-up. A failing step is logged and the next steps are still run.
+	 * 
+	 * @return false if warm-up is disabled or the configuration could not be loaded, true otherwise
+	 */
+	public boolean run() {
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config == null || !Boolean.parseBoolean(config.getProperty("startup.warmup.enabled")))
+			return false;
+		
+		try {
+			log.info("Parsed {} search queries", searchDataRetrieval.prepareQueries());
+		}
+		catch(Exception e) {
+			log.warn(e.getMessage(), e);
+		}
+		
+		try {
+			search.buildCategoryIndex();
+			viewInformation.buildRegionIndex();
+		}
+		catch(Exception e) {
+			log.warn(e.getMessage(), e);
+		}
+		
+		// the searches build the other indexes they use
+		List<Integer> photoIds = getPhotoIds(config.getProperty("startup.warmup.photoIds"));
+		try {
+			photoDao.findSummariesByIds(photoIds);
+			for(Integer photoId : photoIds)
+				search.getAssociatedPhotos(photoId);
+		}
+		catch(Exception e) {
+			log.warn(e.getMessage(), e);
+		}
+		
+		List<String> keywords = split(config.getProperty("startup.warmup.keywords"));
+		try {
+			if(!keywords.isEmpty()) {
+				search.getPhotosByKeyword(keywords);
+				search.getKeywordFacets(keywords);
+				search.getCompletions(keywords.get(0));
+			}
+		}
+		catch(Exception e) {
+			log.warn(e.getMessage(), e);
+		}
+		
+		return true;
+	}
+	
+	private List<Integer> getPhotoIds(String value) {
+		List<Integer> photoIds = new ArrayList<Integer>();
+		for(String id : split(value)) {
+			try {
+				photoIds.add(Integer.valueOf(id));
+			}
+			catch(NumberFormatException nfe) {
+				log.warn("Invalid warm-up photo id {}", id);
+			}
+		}
+		return photoIds;
+	}
+	
+	private List<String> split(String value) {
+		if(value == null || value.trim().length() == 0)
+			return new ArrayList<String>();
+		return new ArrayList<String>(Arrays.asList(value.trim().split("\\s*,\\s*")));
+	}
+}
@@ -0,0 +1,201 @@
+package edu.cmu.photogenome.dao;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loader batching and de-duplicating the lookups of one request by key.
+ *
+ * The keys to be looked up are collected with {@link #queue(Object)}, then the first {@link #load(Object)}
+ * of a key not loaded yet fetches all the queued keys at once, with one query. Each key is fetched at
+ * most once: the values loaded, including the missing ones, are kept and returned to later callers
+ * until {@link #clear()}. A loader is therefore meant to live no longer than the session of a request,
+ * and to be cleared when the entities it holds are written.
+ *
+ * A fetch that fails returns null, like the DAOs; its keys are not kept so they are fetched again
+ * by the next load.
+ *
+ * @param <K>	key type
+ * @param <V>	value type
+ */
+public abstract class BatchLoader<K, V> {
+	
+	private final Set<K> queued = new LinkedHashSet<K>();
+	private final Map<K, V> loaded = new HashMap<K, V>();
+	private int fetchCount;
+	
+	/**
+	 * Fetch the values of a list of keys
+	 * 
+	 * @param keys	distinct keys, none loaded yet
+	 * @return map of key to value, keys not found may be left out, null if the values could not be fetched
+	 */
+	protected abstract Map<K, V> fetch(List<K> keys);
+	
+	/**
+	 * @param key
+	 * @return value of a key not found by the fetch
+	 */
+	protected V missing(K key) {
+		return null;
+	}
+	
+	/**
+	 * Queue a key to be fetched along with the next load
+	 * 
+	 * @param key
+	 */
+	public void queue(K key) {
+		if(!loaded.containsKey(key))
+			queued.add(key);
+	}
+	
+	/**
+	 * Queue keys to be fetched along with the next load
+	 * 
+	 * @param keys
+	 */
+	public void queueAll(Collection<K> keys) {
+		for(K key : keys)
+			queue(key);
+	}
+	
+	/**
+	 * Get the value of a key, fetching it along with the queued keys if it is not loaded yet
+	 * 
+	 * @param key
+	 * @return the value, or the missing value if the key is not found, null if it could not be fetched
+	 */
+	public V load(K key) {
+		if(!loaded.containsKey(key)) {
+			queued.add(key);
+			dispatch();
+		}
+		return loaded.get(key);
+	}
+	
+	/**
+	 * Get the values of a list of keys, fetching the ones not loaded yet along with the queued keys
+	 * 
+	 * @param keys
+	 * @return map of key to value in the order of the keys, keys that could not be fetched are left out
+	 */
+	public Map<K, V> loadAll(Collection<K> keys) {
+		queueAll(keys);
+		dispatch();
+		
+		Map<K, V> values = new LinkedHashMap<K, V>();
+		for(K key : keys)
+			if(loaded.containsKey(key))
+				values.put(key, loaded.get(key));
+		return values;
+	}
+	
+	/**
+	 * Fetch the queued keys
+	 */
+	public void dispatch() {
+		if(queued.isEmpty())
+			return;
+		
+		List<K> keys = new ArrayList<K>(queued);
+		queued.clear();
+		fetchCount++;
+		Map<K, V> values = fetch(keys);
+		if(values == null)
+			return;
+		
+		for(K key : keys)
+			loaded.put(key, values.containsKey(key) ? values.get(key) : missing(key));
+	}
+	
+	/**
+	 * Drop the loaded values and the queued keys
+	 */
+	public void clear() {
+		queued.clear();
+		loaded.clear();
+	}
+	
+	/**
+	 * @return number of fetches run, that is of queries sent
+	 */
+	public int getFetchCount() {
+		return fetchCount;
+	}
+	
+	/**
+	 * Create a loader of entities by id using <code>findByIds</code> of a DAO
+	 * 
+	 * @param dao
+	 * @return loader of the entities, null for the ids not found
+	 */
+	public static <T, ID extends Serializable> BatchLoader<ID, T> byId(final GenericDao<T, ID> dao) {
+		return new BatchLoader<ID, T>() {
+			@SuppressWarnings("unchecked")
+			protected Map<ID, T> fetch(List<ID> keys) {
+				List<T> entities = dao.findByIds(keys);
+				if(entities == null)
+					return null;
+				
+				Map<ID, T> values = new HashMap<ID, T>();
+				for(T entity : entities)
+					values.put((ID) dao.getSession().getIdentifier(entity), entity);
+				return values;
+			}
+		};
+	}
+	
+	/**
+	 * Loader of the entities referencing a key, such as the comments of a region, grouping the
+	 * entities fetched for all the keys by their key. Keys not referenced load an empty list. The 
+	 * list of a key is returned again to later callers until the loader is cleared, so callers must 
+	 * not modify it, and copy it to build a list of their own.
+	 * 
+	 * @param <K>	key type
+	 * @param <T>	entity type
+	 */
+	public static abstract class Grouped<K, T> extends BatchLoader<K, List<T>> {
+		
+		/**
+		 * Fetch the entities referencing any of a list of keys
+		 * 
+		 * @param keys
+		 * @return list of entities, null if they could not be fetched
+		 */
+		protected abstract List<T> fetchAll(List<K> keys);
+		
+		/**
+		 * @param entity
+		 * @return key referenced by the entity
+		 */
+		protected abstract K getKey(T entity);
+		
+		protected Map<K, List<T>> fetch(List<K> keys) {
+			List<T> entities = fetchAll(keys);
+			if(entities == null)
+				return null;
+			
+			Map<K, List<T>> values = new HashMap<K, List<T>>();
+			for(T entity : entities) {
+				K key = getKey(entity);
+				List<T> group = values.get(key);
+				if(group == null)
+					values.put(key, group = new ArrayList<T>());
+				group.add(entity);
+			}
+			return values;
+		}
+		
+		protected List<T> missing(K key) {
+			return new ArrayList<T>();
+		}
+	}
+}
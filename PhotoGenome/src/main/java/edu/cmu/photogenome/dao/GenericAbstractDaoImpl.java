@@ -2,22 +2,61 @@ package edu.cmu.photogenome.dao;
 
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
+import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.StaleStateException;
+import org.hibernate.StatelessSession;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.EntityKey;
+import org.hibernate.engine.SessionImplementor;
 import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import edu.cmu.photogenome.util.ConfigUtil;
+import edu.cmu.photogenome.util.DaoMetrics;
+
 public abstract class GenericAbstractDaoImpl <T, ID extends Serializable> implements GenericDao<T, ID> {
 
 	final Logger log = LoggerFactory.getLogger(GenericAbstractDaoImpl.class);
 	
+	// query cache region of the lookups of the annotations of a photo or region
+	protected static final String ANNOTATION_QUERY_REGION = "query.annotations";
+	
+	private static final int DEFAULT_BATCH_SIZE = 50;
+	
+	// sizes of the IN lists sent by findByIds, so that only a few distinct statements are prepared
+	private static final int[] ID_CHUNK_SIZES = {1, 4, 16, 64, 256};
+	
+	// number of statements sent in one JDBC batch, also used for the batches of the session flushes
+	private static final int BATCH_SIZE;
+	
+	static {
+		Properties config = ConfigUtil.getApplicationProperties();
+		int batchSize = DEFAULT_BATCH_SIZE;
+		if(config != null)
+			batchSize = Integer.parseInt(config.getProperty("dao.batchSize", String.valueOf(DEFAULT_BATCH_SIZE)));
+		BATCH_SIZE = batchSize;
+	}
+	
 	protected Session session;
 	
+	// used by the bulk methods, which bypass the persistence context and the caches
+	protected StatelessSession statelessSession;
+	
     protected Class<T> type;
+    
+    private int batchSize = BATCH_SIZE;
 
     @SuppressWarnings("unchecked")
 	public GenericAbstractDaoImpl() {
@@ -31,6 +70,7 @@ public abstract class GenericAbstractDaoImpl <T, ID extends Serializable> implem
     public boolean delete(T entity) {
     	boolean result = false;
     	
+    	DaoMetrics.Timer timer = startTimer("delete");
     	try {
 			session.delete(entity);
 			result = true;
@@ -40,8 +80,12 @@ public abstract class GenericAbstractDaoImpl <T, ID extends Serializable> implem
     		result = true; // object does not exist, so return true
     	}
 		catch(Exception e) {
+			timer.fail();
 			log.warn(e.getMessage(), e);
 		}
+    	finally {
+    		timer.stop();
+    	}
     	
     	return result;
     }
@@ -53,34 +97,109 @@ public abstract class GenericAbstractDaoImpl <T, ID extends Serializable> implem
 	public T findById(ID id) {
 		T entity = null;
 
+		DaoMetrics.Timer timer = startTimer("findById");
 		try {
 			entity = (T) session.get(type, id);
+			timer.setRows(entity == null ? 0 : 1);
 		}
 		catch(Exception e) {
+			timer.fail();
 			log.warn(e.getMessage(), e);
 		}
+		finally {
+			timer.stop();
+		}
 		
 		return entity;
 	}
 	
 	/**
-	 * Find a list of entities matching the list of unique IDs
+	 * Find a list of entities matching the list of unique IDs. Entities already loaded in the session
+	 * or held by the second-level cache are not queried, the others are queried in chunks padded to
+	 * a few fixed sizes.
+	 * 
+	 * @param ids
+	 * @return list of the entities found, in the order of their first ID in the list
 	 */
 	@SuppressWarnings("unchecked")
 	public List<T> findByIds(List<ID> ids) {
 		List<T> list = null;
 		
 		ClassMetadata meta = session.getSessionFactory().getClassMetadata(type); // get the primary key for the current entity
+		DaoMetrics.Timer timer = startTimer("findByIds");
 		try {
-			list = (List<T>) session.createCriteria(type).add(Restrictions.in(meta.getIdentifierPropertyName(), ids)).list();
+			Map<ID, T> found = new HashMap<ID, T>();
+			List<ID> missing = new ArrayList<ID>();
+			for(ID id : new LinkedHashSet<ID>(ids)) {
+				T entity = findCached(id);
+				if(entity != null)
+					found.put(id, entity);
+				else
+					missing.add(id);
+			}
+			
+			int maxChunkSize = ID_CHUNK_SIZES[ID_CHUNK_SIZES.length - 1];
+			for(int start = 0; start < missing.size(); start += maxChunkSize) {
+				List<ID> chunk = padIds(missing.subList(start, Math.min(start + maxChunkSize, missing.size())));
+				for(T entity : (List<T>) session.createCriteria(type).add(Restrictions.in(meta.getIdentifierPropertyName(), chunk)).list())
+					found.put((ID) session.getIdentifier(entity), entity);
+			}
+			
+			// return the entities in the order of the requested ids
+			list = new ArrayList<T>(found.size());
+			for(ID id : new LinkedHashSet<ID>(ids)) {
+				T entity = found.get(id);
+				if(entity != null)
+					list.add(entity);
+			}
+			timer.setRows(list.size());
 		}
 		catch(Exception e) {
+			timer.fail();
 			log.warn(e.getMessage(), e);
 		}
+		finally {
+			timer.stop();
+		}
 		
 		return list;
 	}
 	
+	/**
+	 * Get an entity from the session, or from the second-level cache, without querying the database
+	 * 
+	 * @param id
+	 * @return the entity, or null if it is not cached
+	 */
+	private T findCached(ID id) {
+		SessionImplementor source = (SessionImplementor) session;
+		EntityPersister persister = source.getFactory().getEntityPersister(type.getName());
+		Object entity = source.getPersistenceContext().getEntity(new EntityKey(id, persister, source.getEntityMode()));
+		
+		if(entity == null && session.getSessionFactory().getCache().containsEntity(type, id))
+			entity = session.get(type, id); // assembled from the cached entry
+		
+		return type.cast(entity);
+	}
+	
+	/**
+	 * Pad a chunk of ids with its last id up to the next chunk size
+	 * 
+	 * @param ids	at most the largest chunk size of ids
+	 * @return padded ids
+	 */
+	private List<ID> padIds(List<ID> ids) {
+		int size = ID_CHUNK_SIZES[0];
+		for(int i = 1; size < ids.size(); i++)
+			size = ID_CHUNK_SIZES[i];
+		
+		List<ID> padded = new ArrayList<ID>(size);
+		padded.addAll(ids);
+		while(padded.size() < size)
+			padded.add(ids.get(ids.size() - 1));
+		return padded;
+	}
+	
 	/**
 	 * Find all entities
 	 */
@@ -88,12 +207,18 @@ public abstract class GenericAbstractDaoImpl <T, ID extends Serializable> implem
 	public List<T> findAll() {
 		List<T> list = null;
 		
+		DaoMetrics.Timer timer = startTimer("findAll");
 		try {
 			list = (List<T>) session.createCriteria(type).list();
+			timer.setRows(list.size());
 		}
 		catch(Exception e) {
+			timer.fail();
 			log.warn(e.getMessage(), e);
 		}
+		finally {
+			timer.stop();
+		}
 		
 		return list;
 	}
@@ -109,12 +234,137 @@ public abstract class GenericAbstractDaoImpl <T, ID extends Serializable> implem
 	public List<T> findAllByCriteria(String propertyName, Object value) {
 		List<T> list = null;
 		
+		DaoMetrics.Timer timer = startTimer("findAllByCriteria");
 		try {
 			list = (List<T>) session.createCriteria(type).add(Restrictions.eq(propertyName, value)).list();
+			timer.setRows(list.size());
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			timer.stop();
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Find a page of entities ordered by primary key, starting after the given id. The id of the last
+	 * entity of a page is the cursor of the next one: unlike an offset, it lets the database seek to
+	 * the page through the primary key index, so every page costs the same.
+	 * 
+	 * @param after		id of the last entity of the previous page, null for the first page
+	 * @param pageSize	max number of entities to return
+	 * @return List of entities, empty list past the last page
+	 */
+	public List<T> findPage(ID after, int pageSize) {
+		return findPage("findPage", null, after, pageSize);
+	}
+	
+	/**
+	 * Find a page of the entities where the given property matches the given value, ordered by
+	 * primary key and starting after the given id
+	 * 
+	 * @param propertyName
+	 * @param value
+	 * @param after		id of the last entity of the previous page, null for the first page
+	 * @param pageSize	max number of entities to return
+	 * @return List of matching entities, empty list past the last page
+	 * @see #findPage(Serializable, int)
+	 */
+	public List<T> findPageByCriteria(String propertyName, Object value, ID after, int pageSize) {
+		return findPage("findPageByCriteria", Restrictions.eq(propertyName, value), after, pageSize);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<T> findPage(String operation, Criterion restriction, ID after, int pageSize) {
+		List<T> list = null;
+		
+		DaoMetrics.Timer timer = startTimer(operation);
+		try {
+			String idName = session.getSessionFactory().getClassMetadata(type).getIdentifierPropertyName();
+			Criteria criteria = session.createCriteria(type);
+			if(restriction != null)
+				criteria.add(restriction);
+			if(after != null)
+				criteria.add(Restrictions.gt(idName, after));
+			list = (List<T>) criteria.addOrder(Order.asc(idName)).setMaxResults(pageSize).list();
+			timer.setRows(list.size());
 		}
 		catch(Exception e) {
+			timer.fail();
 			log.warn(e.getMessage(), e);
 		}
+		finally {
+			timer.stop();
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Find all entities where the given property matches the given value, caching the result in
+	 * the query cache. The cached result is dropped whenever the entity's table is written.
+	 * 
+	 * @param propertyName
+	 * @param value
+	 * @param cacheRegion	query cache region holding the result
+	 * @return List of matching entities, empty list if none match
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<T> findAllByCriteriaCached(String propertyName, Object value, String cacheRegion) {
+		List<T> list = null;
+		
+		DaoMetrics.Timer timer = startTimer("findAllByCriteriaCached");
+		try {
+			list = (List<T>) session.createCriteria(type).add(Restrictions.eq(propertyName, value))
+					.setCacheable(true).setCacheRegion(cacheRegion).list();
+			timer.setRows(list.size());
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			timer.stop();
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Find all entities where the given property matches any of the given values, querying them
+	 * in chunks of at most the largest chunk size of <code>findByIds</code>
+	 * 
+	 * @param propertyName
+	 * @param values
+	 * @return List of matching entities, empty list if none match
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<T> findAllByCriteriaIn(String propertyName, List<?> values) {
+		List<T> list = null;
+		
+		DaoMetrics.Timer timer = startTimer("findAllByCriteriaIn");
+		try {
+			List<Object> distinct = new ArrayList<Object>(new LinkedHashSet<Object>(values));
+			int maxChunkSize = ID_CHUNK_SIZES[ID_CHUNK_SIZES.length - 1];
+			list = new ArrayList<T>();
+			for(int start = 0; start < distinct.size(); start += maxChunkSize) {
+				List<Object> chunk = distinct.subList(start, Math.min(start + maxChunkSize, distinct.size()));
+				list.addAll((List<T>) session.createCriteria(type).add(Restrictions.in(propertyName, chunk)).list());
+			}
+			timer.setRows(list.size());
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+			list = null;
+		}
+		finally {
+			timer.stop();
+		}
 		
 		return list;
 	}
@@ -125,13 +375,19 @@ public abstract class GenericAbstractDaoImpl <T, ID extends Serializable> implem
 	public boolean save(T entity) {
 		boolean result = false;
 		
+		DaoMetrics.Timer timer = startTimer("save");
 		try {
 			session.save(entity);
 			result = true;
+			timer.setRows(1);
 		}
 		catch(Exception e) {
+			timer.fail();
 			log.warn(e.getMessage(), e);
 		}
+		finally {
+			timer.stop();
+		}
 		
 		return result;
 	}
@@ -142,17 +398,188 @@ public abstract class GenericAbstractDaoImpl <T, ID extends Serializable> implem
 	public boolean update(T entity) {
 		boolean result = false;
 		
+		DaoMetrics.Timer timer = startTimer("update");
 		try {
 			session.update(entity);
 			result = true;
+			timer.setRows(1);
 		}
 		catch(Exception e) {
+			timer.fail();
 			log.warn(e.getMessage(), e);
 		}
+		finally {
+			timer.stop();
+		}
 		
 		return result;
 	}
 	
+	/**
+	 * Save a list of entities. The ids of the entities are generated by the database, so each
+	 * entity is inserted on its own when it is saved.
+	 * 
+	 * @param entities
+	 * @return number of entities saved, less than the size of the list if one failed
+	 * @see #executeAll(String, List, Operation)
+	 */
+	public int saveAll(List<T> entities) {
+		return executeAll("saveAll", entities, Operation.SAVE);
+	}
+	
+	/**
+	 * Update a list of entities, the updates of each chunk being sent as JDBC batches
+	 * 
+	 * @param entities
+	 * @return number of entities updated, less than the size of the list if one failed
+	 * @see #executeAll(String, List, Operation)
+	 */
+	public int updateAll(List<T> entities) {
+		return executeAll("updateAll", entities, Operation.UPDATE);
+	}
+	
+	/**
+	 * Delete a list of entities, the deletes of each chunk being sent as JDBC batches. Unlike 
+	 * <code>delete</code>, an entity which does not exist fails its chunk.
+	 * 
+	 * @param entities
+	 * @return number of entities deleted, less than the size of the list if one failed
+	 * @see #executeAll(String, List, Operation)
+	 */
+	public int deleteAll(List<T> entities) {
+		return executeAll("deleteAll", entities, Operation.DELETE);
+	}
+	
+	/**
+	 * Run an operation on the entities of a list in chunks of the batch size. Each chunk is flushed, 
+	 * so that a failing statement is reported here rather than at commit, then its entities are 
+	 * evicted to keep the session small. The entities are detached afterwards, any other entity 
+	 * loaded in the session stays attached.
+	 * 
+	 * The operation stops at the first failure. The statement at fault in a failed flush is not known, 
+	 * so the whole chunk counts as failed, although some of its entities may have been written. The 
+	 * session can not be used any further and the caller must roll back the transaction.
+	 * 
+	 * @param name			name of the batch method, for the DAO metrics
+	 * @param entities
+	 * @param operation
+	 * @return number of entities written, which is also the index of the first entity of the failed 
+	 * 			chunk if the operation failed
+	 */
+	private int executeAll(String name, List<T> entities, Operation operation) {
+		int written = 0;
+		
+		DaoMetrics.Timer timer = startTimer(name);
+		try {
+			while(written < entities.size()) {
+				List<T> chunk = entities.subList(written, Math.min(written + batchSize, entities.size()));
+				for(T entity : chunk)
+					operation.execute(session, entity);
+				session.flush();
+				for(T entity : chunk)
+					session.evict(entity);
+				written += chunk.size();
+			}
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			timer.setRows(written);
+			timer.stop();
+		}
+		
+		return written;
+	}
+	
+	/**
+	 * Insert an entity through the stateless session. The entity is written immediately and is
+	 * not kept by any session, so bulk imports use constant memory. No cascade and no
+	 * second-level cache update takes place.
+	 * 
+	 * @param entity
+	 * @return true if inserted
+	 */
+	public boolean insertStateless(T entity) {
+		DaoMetrics.Timer timer = startTimer("insertStateless");
+		try {
+			statelessSession.insert(entity);
+			timer.setRows(1);
+			return true;
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+			return false;
+		}
+		finally {
+			timer.stop();
+		}
+	}
+	
+	/**
+	 * Update an entity through the stateless session, immediately and without dirty checking
+	 * 
+	 * @param entity
+	 * @return true if updated
+	 * @see #insertStateless(Object)
+	 */
+	public boolean updateStateless(T entity) {
+		DaoMetrics.Timer timer = startTimer("updateStateless");
+		try {
+			statelessSession.update(entity);
+			timer.setRows(1);
+			return true;
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+			return false;
+		}
+		finally {
+			timer.stop();
+		}
+	}
+	
+	/**
+	 * Start timing an operation on the entity of this DAO
+	 * 
+	 * @param operation	name of the operation
+	 * @return timer to stop when the operation ends
+	 * @see DaoMetrics
+	 */
+	protected DaoMetrics.Timer startTimer(String operation) {
+		return DaoMetrics.start(type.getSimpleName(), operation);
+	}
+	
+	/**
+	 * @return number of statements sent in one JDBC batch, given by dao.batchSize in the application properties
+	 */
+	public static int getDefaultBatchSize() {
+		return BATCH_SIZE;
+	}
+	
+	/**
+	 * @return number of statements sent in one JDBC batch by the bulk inserts, and number of entities 
+	 * 			flushed at once by the batch methods
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * Set the number of statements sent in one JDBC batch by the bulk inserts, and the number of 
+	 * entities flushed at once by the batch methods
+	 * 
+	 * @param batchSize
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize <= 0)
+			throw new IllegalArgumentException("batchSize must be positive");
+		this.batchSize = batchSize;
+	}
+	
     public Session getSession() {
     	return session;
     }
@@ -160,4 +587,36 @@ public abstract class GenericAbstractDaoImpl <T, ID extends Serializable> implem
     public void setSession(Session session) {
     	this.session = session;
     }
+    
+    public StatelessSession getStatelessSession() {
+    	return statelessSession;
+    }
+    
+    public void setStatelessSession(StatelessSession statelessSession) {
+    	this.statelessSession = statelessSession;
+    }
+    
+    /**
+     * Write operations of the batch methods
+     */
+    private enum Operation {
+    	
+    	SAVE {
+    		void execute(Session session, Object entity) {
+    			session.save(entity);
+    		}
+    	},
+    	UPDATE {
+    		void execute(Session session, Object entity) {
+    			session.update(entity);
+    		}
+    	},
+    	DELETE {
+    		void execute(Session session, Object entity) {
+    			session.delete(entity);
+    		}
+    	};
+    	
+    	abstract void execute(Session session, Object entity);
+    }
 }
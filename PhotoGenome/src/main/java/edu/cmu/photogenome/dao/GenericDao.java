@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.List;
 
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 
 public interface GenericDao<T, ID extends Serializable> {
 	
@@ -17,11 +18,29 @@ public interface GenericDao<T, ID extends Serializable> {
 	
 	public List<T> findAllByCriteria(String propertyName, Object value);
 	
+	public List<T> findPage(ID after, int pageSize);
+	
+	public List<T> findPageByCriteria(String propertyName, Object value, ID after, int pageSize);
+	
 	public boolean save(T entity);
 	
 	public boolean update(T entity);
 	
+	public int saveAll(List<T> entities);
+	
+	public int updateAll(List<T> entities);
+	
+	public int deleteAll(List<T> entities);
+	
+	public boolean insertStateless(T entity);
+	
+	public boolean updateStateless(T entity);
+	
 	public Session getSession();
 	
 	public void setSession(Session session);
+	
+	public StatelessSession getStatelessSession();
+	
+	public void setStatelessSession(StatelessSession statelessSession);
 }
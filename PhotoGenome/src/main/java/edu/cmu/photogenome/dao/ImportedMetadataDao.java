@@ -1,7 +1,10 @@
 package edu.cmu.photogenome.dao;
 
+import java.util.List;
+
 import edu.cmu.photogenome.domain.ImportedMetadata;
 
 public interface ImportedMetadataDao extends GenericDao<ImportedMetadata, Integer> {
-
+	
+	public int insertAll(List<ImportedMetadata> importedMetadata);
 }
@@ -1,7 +1,69 @@
 package edu.cmu.photogenome.dao;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+
 import edu.cmu.photogenome.domain.ImportedMetadata;
+import edu.cmu.photogenome.util.DaoMetrics;
 
 public class ImportedMetadataDaoImpl extends GenericAbstractDaoImpl<ImportedMetadata, Integer> implements ImportedMetadataDao {
-
+	
+	/**
+	 * Insert imported metadata through the connection of the stateless session, as JDBC batches of
+	 * the batch size. Hibernate does not batch the inserts of entities with identity ids, so the rows
+	 * are inserted directly and the ids of the entities are not set.
+	 * 
+	 * @param importedMetadata
+	 * @return number of rows inserted
+	 */
+	public int insertAll(List<ImportedMetadata> importedMetadata) {
+		if(importedMetadata.isEmpty())
+			return 0;
+		
+		int inserted = 0;
+		DaoMetrics.Timer timer = startTimer("insertAll");
+		try {
+			AbstractEntityPersister persister = (AbstractEntityPersister) ((SessionImplementor) statelessSession)
+					.getFactory().getEntityPersister(type.getName());
+			String sql = "insert into " + persister.getTableName()
+					+ " (" + persister.getPropertyColumnNames("photoId")[0]
+					+ ", " + persister.getPropertyColumnNames("importedMetadata")[0] + ") values (?, ?)";
+			
+			Connection connection = statelessSession.connection();
+			PreparedStatement statement = connection.prepareStatement(sql);
+			try {
+				int pending = 0;
+				for(ImportedMetadata metadata : importedMetadata) {
+					statement.setInt(1, metadata.getPhotoId());
+					statement.setString(2, metadata.getImportedMetadata());
+					statement.addBatch();
+					if(++pending == getBatchSize()) {
+						statement.executeBatch();
+						inserted += pending;
+						pending = 0;
+					}
+				}
+				if(pending > 0) {
+					statement.executeBatch();
+					inserted += pending;
+				}
+			}
+			finally {
+				statement.close();
+			}
+			timer.setRows(inserted);
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			timer.stop();
+		}
+		return inserted;
+	}
 }
@@ -10,6 +10,6 @@ public class PhotoCategoryDaoImpl extends GenericAbstractDaoImpl<PhotoCategory,
 
 	@SuppressWarnings("unchecked")
 	public List<PhotoCategory> findByPhotoId(int photoId) {
-		return findAllByCriteria("photoId", photoId);
+		return findAllByCriteriaCached("photoId", photoId, ANNOTATION_QUERY_REGION);
 	}
 }
@@ -10,7 +10,7 @@ public class PhotoCommentDaoImpl extends GenericAbstractDaoImpl<PhotoComment, In
 
 	@SuppressWarnings("unchecked")
 	public List<PhotoComment> findByPhotoId(int photoId) {
-		return findAllByCriteria("photoId", photoId);
+		return findAllByCriteriaCached("photoId", photoId, ANNOTATION_QUERY_REGION);
 	}
 
 }
@@ -1,7 +1,19 @@
 package edu.cmu.photogenome.dao;
 
+import java.util.List;
+
 import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoSummary;
 
 public interface PhotoDao extends GenericDao<Photo, Integer> {
 	
+	public List<PhotoSummary> findAllSummaries();
+	
+	public List<PhotoSummary> findSummariesByUserId(int userId);
+	
+	public List<PhotoSummary> findSummariesPage(Integer afterPhotoId, int pageSize);
+	
+	public List<PhotoSummary> findSummariesPageByUserId(int userId, Integer afterPhotoId, int pageSize);
+	
+	public List<PhotoSummary> findSummariesByIds(List<Integer> photoIds);
 }
@@ -1,7 +1,140 @@
 package edu.cmu.photogenome.dao;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.Query;
+
 import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoSummary;
+import edu.cmu.photogenome.util.DaoMetrics;
 
 public class PhotoDaoImpl extends GenericAbstractDaoImpl<Photo, Integer> implements PhotoDao {
-
+	
+	// select only the columns of a photo summary instead of hydrating full photo entities
+	private static final String SUMMARY_QUERY = "select new edu.cmu.photogenome.domain.PhotoSummary("
+			+ "p.photoId, p.photoName, p.photoLink, p.userId, p.photoTimestamp) from Photo p";
+	
+	/**
+	 * Find the summaries of all photos
+	 */
+	@SuppressWarnings("unchecked")
+	public List<PhotoSummary> findAllSummaries() {
+		List<PhotoSummary> list = null;
+		
+		DaoMetrics.Timer timer = startTimer("findAllSummaries");
+		try {
+			list = (List<PhotoSummary>) session.createQuery(SUMMARY_QUERY).list();
+			timer.setRows(list.size());
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			timer.stop();
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Find the summaries of the photos uploaded by a user
+	 */
+	@SuppressWarnings("unchecked")
+	public List<PhotoSummary> findSummariesByUserId(int userId) {
+		List<PhotoSummary> list = null;
+		
+		DaoMetrics.Timer timer = startTimer("findSummariesByUserId");
+		try {
+			list = (List<PhotoSummary>) session.createQuery(SUMMARY_QUERY + " where p.userId = :userId")
+					.setParameter("userId", userId).list();
+			timer.setRows(list.size());
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			timer.stop();
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Find a page of the summaries of all photos, ordered by photo id
+	 * 
+	 * @param afterPhotoId	id of the last photo of the previous page, null for the first page
+	 * @param pageSize		max number of summaries to return
+	 * @see GenericAbstractDaoImpl#findPage(java.io.Serializable, int)
+	 */
+	public List<PhotoSummary> findSummariesPage(Integer afterPhotoId, int pageSize) {
+		return findSummariesPage(null, afterPhotoId, pageSize);
+	}
+	
+	/**
+	 * Find a page of the summaries of the photos uploaded by a user, ordered by photo id
+	 * 
+	 * @param userId
+	 * @param afterPhotoId	id of the last photo of the previous page, null for the first page
+	 * @param pageSize		max number of summaries to return
+	 */
+	public List<PhotoSummary> findSummariesPageByUserId(int userId, Integer afterPhotoId, int pageSize) {
+		return findSummariesPage(userId, afterPhotoId, pageSize);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<PhotoSummary> findSummariesPage(Integer userId, Integer afterPhotoId, int pageSize) {
+		List<PhotoSummary> list = null;
+		
+		DaoMetrics.Timer timer = startTimer("findSummariesPage");
+		try {
+			// the same statement for every page, the first page starts after id 0
+			String hql = SUMMARY_QUERY + " where p.photoId > :afterPhotoId"
+					+ (userId == null ? "" : " and p.userId = :userId") + " order by p.photoId";
+			Query query = session.createQuery(hql)
+					.setParameter("afterPhotoId", afterPhotoId == null ? 0 : afterPhotoId.intValue());
+			if(userId != null)
+				query.setParameter("userId", userId);
+			list = (List<PhotoSummary>) query.setMaxResults(pageSize).list();
+			timer.setRows(list.size());
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			timer.stop();
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Find the summaries of the photos matching the list of ids, in no particular order
+	 */
+	@SuppressWarnings("unchecked")
+	public List<PhotoSummary> findSummariesByIds(List<Integer> photoIds) {
+		List<PhotoSummary> list = null;
+		
+		if(photoIds.isEmpty())
+			return new ArrayList<PhotoSummary>();
+		
+		DaoMetrics.Timer timer = startTimer("findSummariesByIds");
+		try {
+			list = (List<PhotoSummary>) session.createQuery(SUMMARY_QUERY + " where p.photoId in (:photoIds)")
+					.setParameterList("photoIds", photoIds).list();
+			timer.setRows(list.size());
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			timer.stop();
+		}
+		
+		return list;
+	}
 }
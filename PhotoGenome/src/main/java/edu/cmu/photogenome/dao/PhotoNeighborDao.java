@@ -0,0 +1,14 @@
+package edu.cmu.photogenome.dao;
+
+import java.util.List;
+
+import edu.cmu.photogenome.domain.PhotoNeighbor;
+
+public interface PhotoNeighborDao extends GenericDao<PhotoNeighbor, Integer> {
+	
+	public List<PhotoNeighbor> findByPhotoId(int photoId);
+	
+	public List<PhotoNeighbor> findByNeighborPhotoId(int neighborPhotoId);
+	
+	public boolean deleteByPhotoId(int photoId);
+}
@@ -0,0 +1,63 @@
+package edu.cmu.photogenome.dao;
+
+import java.util.List;
+
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+
+import edu.cmu.photogenome.domain.PhotoNeighbor;
+import edu.cmu.photogenome.util.DaoMetrics;
+
+public class PhotoNeighborDaoImpl extends GenericAbstractDaoImpl<PhotoNeighbor, Integer> implements PhotoNeighborDao {
+
+	/**
+	 * Find the neighbors of a photo ordered by rank
+	 */
+	@SuppressWarnings("unchecked")
+	public List<PhotoNeighbor> findByPhotoId(int photoId) {
+		List<PhotoNeighbor> list = null;
+		
+		DaoMetrics.Timer timer = startTimer("findByPhotoId");
+		try {
+			list = (List<PhotoNeighbor>) session.createCriteria(type).add(Restrictions.eq("photoId", photoId))
+					.addOrder(Order.asc("neighborRank")).list();
+			timer.setRows(list.size());
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			timer.stop();
+		}
+		
+		return list;
+	}
+	
+	public List<PhotoNeighbor> findByNeighborPhotoId(int neighborPhotoId) {
+		return findAllByCriteria("neighborPhotoId", neighborPhotoId);
+	}
+	
+	/**
+	 * Delete all neighbors of a photo
+	 */
+	public boolean deleteByPhotoId(int photoId) {
+		boolean result = false;
+		
+		DaoMetrics.Timer timer = startTimer("deleteByPhotoId");
+		try {
+			session.createQuery("delete from PhotoNeighbor where photoId = :photoId")
+					.setParameter("photoId", photoId).executeUpdate();
+			result = true;
+		}
+		catch(Exception e) {
+			timer.fail();
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			timer.stop();
+		}
+		
+		return result;
+	}
+}
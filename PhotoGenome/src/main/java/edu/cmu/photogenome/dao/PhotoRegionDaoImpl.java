@@ -10,6 +10,6 @@ public class PhotoRegionDaoImpl extends GenericAbstractDaoImpl<PhotoRegion, Inte
 
 	@SuppressWarnings("unchecked")
 	public List<PhotoRegion> findByPhotoId(int photoId) {
-		return findAllByCriteria("photoId", photoId);
+		return findAllByCriteriaCached("photoId", photoId, ANNOTATION_QUERY_REGION);
 	}
 }
@@ -7,4 +7,8 @@ import edu.cmu.photogenome.domain.RegionCategory;
 public interface RegionCategoryDao extends GenericDao<RegionCategory, Integer> {
 	
 	public List<RegionCategory> findByRegionId(int regionId);
+	
+	public List<RegionCategory> findByPhotoId(int photoId);
+	
+	public List<RegionCategory> findByRegionIds(List<Integer> regionIds);
 }
@@ -10,7 +10,16 @@ public class RegionCategoryDaoImpl extends GenericAbstractDaoImpl<RegionCategory
 
 	@SuppressWarnings("unchecked")
 	public List<RegionCategory> findByRegionId(int regionId) {
-		return findAllByCriteria("regionId", regionId);
+		return findAllByCriteriaCached("regionId", regionId, ANNOTATION_QUERY_REGION);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<RegionCategory> findByPhotoId(int photoId) {
+		return findAllByCriteriaCached("photoId", photoId, ANNOTATION_QUERY_REGION);
+	}
+	
+	public List<RegionCategory> findByRegionIds(List<Integer> regionIds) {
+		return findAllByCriteriaIn("regionId", regionIds);
 	}
 
 }
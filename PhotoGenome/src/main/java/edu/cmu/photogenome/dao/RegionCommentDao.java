@@ -7,4 +7,8 @@ import edu.cmu.photogenome.domain.RegionComment;
 public interface RegionCommentDao extends GenericDao<RegionComment, Integer> {
 	
 	public List<RegionComment> findByRegionId(int regionId);
+	
+	public List<RegionComment> findByPhotoId(int photoId);
+	
+	public List<RegionComment> findByRegionIds(List<Integer> regionIds);
 }
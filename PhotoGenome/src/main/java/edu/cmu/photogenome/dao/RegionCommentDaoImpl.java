@@ -10,6 +10,15 @@ public class RegionCommentDaoImpl extends GenericAbstractDaoImpl<RegionComment,
 
 	@SuppressWarnings("unchecked")
 	public List<RegionComment> findByRegionId(int regionId) {
-		return findAllByCriteria("regionId", regionId);
+		return findAllByCriteriaCached("regionId", regionId, ANNOTATION_QUERY_REGION);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public List<RegionComment> findByPhotoId(int photoId) {
+		return findAllByCriteriaCached("photoId", photoId, ANNOTATION_QUERY_REGION);
+	}
+	
+	public List<RegionComment> findByRegionIds(List<Integer> regionIds) {
+		return findAllByCriteriaIn("regionId", regionIds);
 	}
 }
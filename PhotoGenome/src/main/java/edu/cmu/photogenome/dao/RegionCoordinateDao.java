@@ -9,4 +9,6 @@ public interface RegionCoordinateDao extends GenericDao<RegionCoordinate, Intege
 	public List<RegionCoordinate> findByPhotoId(int photoId);
 	
 	public List<RegionCoordinate> findByRegionId(int regionId);
+	
+	public List<RegionCoordinate> findByRegionIds(List<Integer> regionIds);
 }
@@ -10,11 +10,15 @@ public class RegionCoordinateDaoImpl extends GenericAbstractDaoImpl<RegionCoordi
 
 	@SuppressWarnings("unchecked")
 	public List<RegionCoordinate> findByPhotoId(int photoId) {
-		return findAllByCriteria("photoId", photoId);
+		return findAllByCriteriaCached("photoId", photoId, ANNOTATION_QUERY_REGION);
 	}
 	
 	@SuppressWarnings("unchecked")
 	public List<RegionCoordinate> findByRegionId(int regionId) {
-		return findAllByCriteria("regionId", regionId);
+		return findAllByCriteriaCached("regionId", regionId, ANNOTATION_QUERY_REGION);
+	}
+	
+	public List<RegionCoordinate> findByRegionIds(List<Integer> regionIds) {
+		return findAllByCriteriaIn("regionId", regionIds);
 	}
 }
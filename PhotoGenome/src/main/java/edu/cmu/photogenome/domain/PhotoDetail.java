@@ -0,0 +1,61 @@
+package edu.cmu.photogenome.domain;
+
+import java.util.List;
+
+/**
+ * Photo with its comments, categories and regions, each region with its coordinates, comments
+ * and categories, so that a photo can be displayed from a single request.
+ */
+public class PhotoDetail implements java.io.Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Photo photo;
+	private List<PhotoComment> photoComments;
+	private List<PhotoCategory> photoCategories;
+	private List<RegionDetail> regions;
+	
+	public PhotoDetail() {
+	}
+	
+	public PhotoDetail(Photo photo, List<PhotoComment> photoComments,
+			List<PhotoCategory> photoCategories, List<RegionDetail> regions) {
+		this.photo = photo;
+		this.photoComments = photoComments;
+		this.photoCategories = photoCategories;
+		this.regions = regions;
+	}
+	
+	public Photo getPhoto() {
+		return this.photo;
+	}
+	
+	public void setPhoto(Photo photo) {
+		this.photo = photo;
+	}
+	
+	public List<PhotoComment> getPhotoComments() {
+		return this.photoComments;
+	}
+	
+	public void setPhotoComments(List<PhotoComment> photoComments) {
+		this.photoComments = photoComments;
+	}
+	
+	public List<PhotoCategory> getPhotoCategories() {
+		return this.photoCategories;
+	}
+	
+	public void setPhotoCategories(List<PhotoCategory> photoCategories) {
+		this.photoCategories = photoCategories;
+	}
+	
+	public List<RegionDetail> getRegions() {
+		return this.regions;
+	}
+	
+	public void setRegions(List<RegionDetail> regions) {
+		this.regions = regions;
+	}
+
+}
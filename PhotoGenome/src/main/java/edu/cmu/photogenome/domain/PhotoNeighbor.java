@@ -0,0 +1,97 @@
+package edu.cmu.photogenome.domain;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import static javax.persistence.GenerationType.IDENTITY;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * Precomputed associated photo: one row per (photo, neighbor) pair, ranked by similarity score
+ */
+@Entity
+@Table(name = "photoneighbor")
+public class PhotoNeighbor implements java.io.Serializable {
+
+	private Integer photoNeighborId;
+	private int photoId;
+	private int neighborPhotoId;
+	private int neighborRank;
+	private double neighborScore;
+	private Date photoNeighborTimestamp;
+
+	public PhotoNeighbor() {
+	}
+
+	public PhotoNeighbor(int photoId, int neighborPhotoId, int neighborRank,
+			double neighborScore, Date photoNeighborTimestamp) {
+		this.photoId = photoId;
+		this.neighborPhotoId = neighborPhotoId;
+		this.neighborRank = neighborRank;
+		this.neighborScore = neighborScore;
+		this.photoNeighborTimestamp = photoNeighborTimestamp;
+	}
+
+	@Id
+	@GeneratedValue(strategy = IDENTITY)
+	@Column(name = "photoNeighbor_id", unique = true, nullable = false)
+	public Integer getPhotoNeighborId() {
+		return this.photoNeighborId;
+	}
+
+	public void setPhotoNeighborId(Integer photoNeighborId) {
+		this.photoNeighborId = photoNeighborId;
+	}
+
+	@Column(name = "photo_id", nullable = false)
+	public int getPhotoId() {
+		return this.photoId;
+	}
+
+	public void setPhotoId(int photoId) {
+		this.photoId = photoId;
+	}
+
+	@Column(name = "neighbor_photo_id", nullable = false)
+	public int getNeighborPhotoId() {
+		return this.neighborPhotoId;
+	}
+
+	public void setNeighborPhotoId(int neighborPhotoId) {
+		this.neighborPhotoId = neighborPhotoId;
+	}
+
+	@Column(name = "neighbor_rank", nullable = false)
+	public int getNeighborRank() {
+		return this.neighborRank;
+	}
+
+	public void setNeighborRank(int neighborRank) {
+		this.neighborRank = neighborRank;
+	}
+
+	@Column(name = "neighbor_score", nullable = false)
+	public double getNeighborScore() {
+		return this.neighborScore;
+	}
+
+	public void setNeighborScore(double neighborScore) {
+		this.neighborScore = neighborScore;
+	}
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "photoNeighbor_timestamp", nullable = false, length = 19)
+	public Date getPhotoNeighborTimestamp() {
+		return this.photoNeighborTimestamp;
+	}
+
+	public void setPhotoNeighborTimestamp(Date photoNeighborTimestamp) {
+		this.photoNeighborTimestamp = photoNeighborTimestamp;
+	}
+
+}
@@ -0,0 +1,71 @@
+package edu.cmu.photogenome.domain;
+
+import java.util.Date;
+
+/**
+ * Read-only summary of a photo for list and search results. Holds only the columns needed to
+ * display a photo, without the description, metadata link and option columns of the entity.
+ */
+public class PhotoSummary implements java.io.Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Integer photoId;
+	private String photoName;
+	private String photoLink;
+	private int userId;
+	private Date photoTimestamp;
+	
+	public PhotoSummary() {
+	}
+	
+	public PhotoSummary(Integer photoId, String photoName, String photoLink,
+			int userId, Date photoTimestamp) {
+		this.photoId = photoId;
+		this.photoName = photoName;
+		this.photoLink = photoLink;
+		this.userId = userId;
+		this.photoTimestamp = photoTimestamp;
+	}
+	
+	public Integer getPhotoId() {
+		return this.photoId;
+	}
+	
+	public void setPhotoId(Integer photoId) {
+		this.photoId = photoId;
+	}
+	
+	public String getPhotoName() {
+		return this.photoName;
+	}
+	
+	public void setPhotoName(String photoName) {
+		this.photoName = photoName;
+	}
+	
+	public String getPhotoLink() {
+		return this.photoLink;
+	}
+	
+	public void setPhotoLink(String photoLink) {
+		this.photoLink = photoLink;
+	}
+	
+	public int getUserId() {
+		return this.userId;
+	}
+	
+	public void setUserId(int userId) {
+		this.userId = userId;
+	}
+	
+	public Date getPhotoTimestamp() {
+		return this.photoTimestamp;
+	}
+	
+	public void setPhotoTimestamp(Date photoTimestamp) {
+		this.photoTimestamp = photoTimestamp;
+	}
+
+}
@@ -0,0 +1,61 @@
+package edu.cmu.photogenome.domain;
+
+import java.util.List;
+
+/**
+ * Region of a photo with its coordinates, comments and categories, as returned by a hit-test
+ * or as part of a @PhotoDetail, so that a region can be displayed without further requests.
+ */
+public class RegionDetail implements java.io.Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private PhotoRegion region;
+	private RegionCoordinate coordinate;
+	private List<RegionComment> regionComments;
+	private List<RegionCategory> regionCategories;
+	
+	public RegionDetail() {
+	}
+	
+	public RegionDetail(PhotoRegion region, RegionCoordinate coordinate,
+			List<RegionComment> regionComments, List<RegionCategory> regionCategories) {
+		this.region = region;
+		this.coordinate = coordinate;
+		this.regionComments = regionComments;
+		this.regionCategories = regionCategories;
+	}
+	
+	public PhotoRegion getRegion() {
+		return this.region;
+	}
+	
+	public void setRegion(PhotoRegion region) {
+		this.region = region;
+	}
+	
+	public RegionCoordinate getCoordinate() {
+		return this.coordinate;
+	}
+	
+	public void setCoordinate(RegionCoordinate coordinate) {
+		this.coordinate = coordinate;
+	}
+	
+	public List<RegionComment> getRegionComments() {
+		return this.regionComments;
+	}
+	
+	public void setRegionComments(List<RegionComment> regionComments) {
+		this.regionComments = regionComments;
+	}
+	
+	public List<RegionCategory> getRegionCategories() {
+		return this.regionCategories;
+	}
+	
+	public void setRegionCategories(List<RegionCategory> regionCategories) {
+		this.regionCategories = regionCategories;
+	}
+
+}
@@ -0,0 +1,323 @@
+package edu.cmu.photogenome.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.domain.RegionComment;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeListener;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
+
+/**
+ * In-memory type-ahead index over the distinct category names and comment terms. Each completion
+ * is weighted by the number of categories having the name or comments containing the term, so the
+ * most used ones are suggested first.
+ *
+ * Once built, the index keeps itself up to date by listening to committed <code>PhotoChangeEvent</code>s.
+ */
+public class AutocompleteIndex implements PhotoChangeListener {
+	
+	final Logger log = LoggerFactory.getLogger(AutocompleteIndex.class);
+	
+	private static final AutocompleteIndex instance = new AutocompleteIndex();
+	
+	static {
+		PhotoChangeNotifier.addListener(instance);
+	}
+	
+	private static final String PHOTO_CATEGORY = "pcat:";
+	private static final String PHOTO_COMMENT = "pcom:";
+	private static final String REGION_CATEGORY = "rcat:";
+	private static final String REGION_COMMENT = "rcom:";
+	
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private final CompletionTrie trie = new CompletionTrie();
+	// photo id -> annotation key -> distinct completions of the annotation, to take them back on a change
+	private final Map<Integer, Map<String, Set<String>>> fields = new HashMap<Integer, Map<String, Set<String>>>();
+	
+	// events received while the index is being (re)built, replayed once the build completes
+	private List<PhotoChangeEvent> replayEvents;
+	private volatile boolean built;
+	
+	/**
+	 * Get the shared index instance
+	 * 
+	 * @return autocomplete index
+	 */
+	public static AutocompleteIndex getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Normalize typed text or a category name the way completions are stored
+	 * 
+	 * @param text
+	 * @return lower-cased text with runs of whitespace collapsed to a single space
+	 */
+	public static String normalize(String text) {
+		if(text == null)
+			return "";
+		return WHITESPACE.matcher(text.toLowerCase()).replaceAll(" ");
+	}
+	
+	/**
+	 * Mark the start of a full build. Changes published from now until <code>build</code>
+	 * completes are queued and applied on top of the loaded data.
+	 */
+	public void startBuild() {
+		lock.writeLock().lock();
+		try {
+			replayEvents = new ArrayList<PhotoChangeEvent>();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Abandon a full build whose data could not be loaded. The queued changes are dropped and the 
+	 * index keeps its contents, an index which was never built stays unbuilt.
+	 */
+	public void abortBuild() {
+		lock.writeLock().lock();
+		try {
+			replayEvents = null;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Replace the contents of the index with the given annotations
+	 * 
+	 * @param photoCategories
+	 * @param photoComments
+	 * @param regionCategories
+	 * @param regionComments
+	 */
+	public void build(Collection<PhotoCategory> photoCategories, Collection<PhotoComment> photoComments,
+			Collection<RegionCategory> regionCategories, Collection<RegionComment> regionComments) {
+		long start = System.currentTimeMillis();
+		
+		lock.writeLock().lock();
+		try {
+			trie.clear();
+			fields.clear();
+			
+			if(photoCategories != null)
+				for(PhotoCategory c : photoCategories)
+					index(c);
+			if(photoComments != null)
+				for(PhotoComment c : photoComments)
+					index(c);
+			if(regionCategories != null)
+				for(RegionCategory c : regionCategories)
+					index(c);
+			if(regionComments != null)
+				for(RegionComment c : regionComments)
+					index(c);
+			
+			if(replayEvents != null) {
+				for(PhotoChangeEvent event : replayEvents)
+					apply(event);
+				replayEvents = null;
+			}
+			built = true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+		
+		log.info("Built autocomplete index with {} completions in {} ms", trie.size(), System.currentTimeMillis() - start);
+	}
+	
+	/**
+	 * @return true once the index has been built
+	 */
+	public boolean isBuilt() {
+		return built;
+	}
+	
+	/**
+	 * Get the most used category names and comment terms starting with the typed text
+	 * 
+	 * @param prefix			typed text, leading whitespace is ignored
+	 * @param maxCompletions	maximum number of completions to return
+	 * @return completions ordered by descending use, empty if the prefix is blank
+	 */
+	public List<String> complete(String prefix, int maxCompletions) {
+		String normalized = normalize(prefix);
+		if(normalized.startsWith(" "))
+			normalized = normalized.substring(1);
+		if(normalized.length() == 0)
+			return new ArrayList<String>();
+		
+		lock.readLock().lock();
+		try {
+			return trie.complete(normalized, maxCompletions);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Update the index with a committed change
+	 */
+	public void photoChanged(PhotoChangeEvent event) {
+		lock.writeLock().lock();
+		try {
+			if(replayEvents != null)
+				replayEvents.add(event);
+			if(built || replayEvents != null)
+				apply(event);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Apply a change to the index, must be called while holding the write lock
+	 * 
+	 * @param event
+	 */
+	private void apply(PhotoChangeEvent event) {
+		Object entity = event.getEntity();
+		boolean deleted = event.getAction() == PhotoChangeEvent.Action.DELETE;
+		
+		if(entity instanceof PhotoCategory) {
+			PhotoCategory c = (PhotoCategory) entity;
+			if(deleted)
+				removeFields(c.getPhotoId(), PHOTO_CATEGORY + c.getPhotoCategoryId(), false);
+			else
+				index(c);
+		}
+		else if(entity instanceof PhotoComment) {
+			PhotoComment c = (PhotoComment) entity;
+			if(deleted)
+				removeFields(c.getPhotoId(), PHOTO_COMMENT + c.getPhotoCommentId(), false);
+			else
+				index(c);
+		}
+		else if(entity instanceof RegionCategory) {
+			RegionCategory c = (RegionCategory) entity;
+			if(deleted)
+				removeFields(c.getPhotoId(), REGION_CATEGORY + c.getRegionId() + ":" + c.getRegionCategoryId(), false);
+			else
+				index(c);
+		}
+		else if(entity instanceof RegionComment) {
+			RegionComment c = (RegionComment) entity;
+			if(deleted)
+				removeFields(c.getPhotoId(), REGION_COMMENT + c.getRegionId() + ":" + c.getRegionCommentId(), false);
+			else
+				index(c);
+		}
+		else if(entity instanceof PhotoRegion && deleted) {
+			PhotoRegion r = (PhotoRegion) entity;
+			removeFields(r.getPhotoId(), REGION_CATEGORY + r.getRegionId() + ":", true);
+			removeFields(r.getPhotoId(), REGION_COMMENT + r.getRegionId() + ":", true);
+		}
+		else if(entity instanceof Photo && deleted) {
+			removeFields(((Photo) entity).getPhotoId(), "", true);
+		}
+	}
+	
+	private void index(PhotoCategory c) {
+		setField(c.getPhotoId(), PHOTO_CATEGORY + c.getPhotoCategoryId(), categoryName(c.getPhotoCategoryName()));
+	}
+	
+	private void index(PhotoComment c) {
+		setField(c.getPhotoId(), PHOTO_COMMENT + c.getPhotoCommentId(), Tokenizer.tokenize(c.getPhotoCommentText()));
+	}
+	
+	private void index(RegionCategory c) {
+		setField(c.getPhotoId(), REGION_CATEGORY + c.getRegionId() + ":" + c.getRegionCategoryId(),
+				categoryName(c.getCategoryName()));
+	}
+	
+	private void index(RegionComment c) {
+		setField(c.getPhotoId(), REGION_COMMENT + c.getRegionId() + ":" + c.getRegionCommentId(),
+				Tokenizer.tokenize(c.getRegionCommentText()));
+	}
+	
+	private List<String> categoryName(String name) {
+		List<String> completions = new ArrayList<String>();
+		String normalized = normalize(name).trim();
+		if(normalized.length() > 0)
+			completions.add(normalized);
+		return completions;
+	}
+	
+	/**
+	 * Replace the completions of an annotation, taking back the weight of its previous completions
+	 * 
+	 * @param photoId
+	 * @param fieldKey
+	 * @param completions
+	 */
+	private void setField(int photoId, String fieldKey, Collection<String> completions) {
+		removeFields(photoId, fieldKey, false);
+		
+		Set<String> distinctCompletions = new LinkedHashSet<String>(completions);
+		if(distinctCompletions.isEmpty())
+			return;
+		
+		Map<String, Set<String>> photoFields = fields.get(photoId);
+		if(photoFields == null) {
+			photoFields = new HashMap<String, Set<String>>();
+			fields.put(photoId, photoFields);
+		}
+		photoFields.put(fieldKey, distinctCompletions);
+		
+		for(String completion : distinctCompletions)
+			trie.adjust(completion, 1);
+	}
+	
+	/**
+	 * Remove an annotation of a photo, or all of its annotations whose key starts with the given prefix
+	 * 
+	 * @param photoId
+	 * @param fieldKey
+	 * @param prefix	whether to remove every annotation whose key starts with fieldKey
+	 */
+	private void removeFields(int photoId, String fieldKey, boolean prefix) {
+		Map<String, Set<String>> photoFields = fields.get(photoId);
+		if(photoFields == null)
+			return;
+		
+		Iterator<Map.Entry<String, Set<String>>> it = photoFields.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<String, Set<String>> field = it.next();
+			if(prefix ? field.getKey().startsWith(fieldKey) : field.getKey().equals(fieldKey)) {
+				for(String completion : field.getValue())
+					trie.adjust(completion, -1);
+				it.remove();
+			}
+		}
+		if(photoFields.isEmpty())
+			fields.remove(photoId);
+	}
+}
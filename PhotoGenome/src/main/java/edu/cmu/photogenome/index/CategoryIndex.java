@@ -0,0 +1,295 @@
+package edu.cmu.photogenome.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeListener;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
+
+/**
+ * In-memory index from categories to the photos having them, either as a photo category or as the
+ * category of one of their regions. Categories are keyed by their name and text with all whitespace
+ * removed and lower-cased, and each key maps to a compressed bitmap of photo ids.
+ *
+ * Once built, the index keeps itself up to date by listening to committed <code>PhotoChangeEvent</code>s.
+ */
+public class CategoryIndex implements PhotoChangeListener {
+	
+	final Logger log = LoggerFactory.getLogger(CategoryIndex.class);
+	
+	private static final CategoryIndex instance = new CategoryIndex();
+	
+	static {
+		PhotoChangeNotifier.addListener(instance);
+	}
+	
+	private static final String PHOTO_CATEGORY = "pcat:";
+	private static final String REGION_CATEGORY = "rcat:";
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	// category key -> photos having the category
+	private final Map<String, IntBitmap> bitmaps = new HashMap<String, IntBitmap>();
+	// photo id -> category entity key -> category key, to find the keys a photo loses on a change
+	private final Map<Integer, Map<String, String>> categories = new HashMap<Integer, Map<String, String>>();
+	
+	// events received while the index is being (re)built, replayed once the build completes
+	private List<PhotoChangeEvent> replayEvents;
+	private volatile boolean built;
+	
+	/**
+	 * Get the shared index instance
+	 * 
+	 * @return category index
+	 */
+	public static CategoryIndex getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Get the index key of a category
+	 * 
+	 * @param name
+	 * @param text
+	 * @return name and text without whitespace, lower-cased
+	 */
+	public static String key(String name, String text) {
+		return key((name == null ? "" : name) + (text == null ? "" : text));
+	}
+	
+	/**
+	 * Get the index key of merged category name and text
+	 * 
+	 * @param category
+	 * @return category without whitespace, lower-cased
+	 */
+	public static String key(String category) {
+		return category.replaceAll("\\s", "").toLowerCase();
+	}
+	
+	/**
+	 * Mark the start of a full build. Changes published from now until <code>build</code>
+	 * completes are queued and applied on top of the loaded data.
+	 */
+	public void startBuild() {
+		lock.writeLock().lock();
+		try {
+			replayEvents = new ArrayList<PhotoChangeEvent>();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Abandon a full build whose data could not be loaded. The queued changes are dropped and the 
+	 * index keeps its contents, an index which was never built stays unbuilt.
+	 */
+	public void abortBuild() {
+		lock.writeLock().lock();
+		try {
+			replayEvents = null;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Replace the contents of the index with the given categories
+	 * 
+	 * @param photoCategories
+	 * @param regionCategories
+	 */
+	public void build(Collection<PhotoCategory> photoCategories, Collection<RegionCategory> regionCategories) {
+		long start = System.currentTimeMillis();
+		
+		lock.writeLock().lock();
+		try {
+			bitmaps.clear();
+			categories.clear();
+			
+			if(photoCategories != null)
+				for(PhotoCategory c : photoCategories)
+					setCategory(c.getPhotoId(), PHOTO_CATEGORY + c.getPhotoCategoryId(),
+							key(c.getPhotoCategoryName(), c.getPhotoCategoryText()));
+			if(regionCategories != null)
+				for(RegionCategory c : regionCategories)
+					setCategory(c.getPhotoId(), REGION_CATEGORY + c.getRegionId() + ":" + c.getRegionCategoryId(),
+							key(c.getCategoryName(), c.getRegionCategoryText()));
+			
+			if(replayEvents != null) {
+				for(PhotoChangeEvent event : replayEvents)
+					apply(event);
+				replayEvents = null;
+			}
+			built = true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+		
+		log.info("Built category index with {} categories for {} photos in {} ms",
+				bitmaps.size(), categories.size(), System.currentTimeMillis() - start);
+	}
+	
+	/**
+	 * @return true once the index has been built
+	 */
+	public boolean isBuilt() {
+		return built;
+	}
+	
+	/**
+	 * Get the photos having ANY of the categories
+	 * 
+	 * @param keys	category keys
+	 * @return new bitmap of photo ids
+	 */
+	public IntBitmap getPhotos(Collection<String> keys) {
+		IntBitmap photos = new IntBitmap();
+		
+		lock.readLock().lock();
+		try {
+			for(String key : keys) {
+				IntBitmap bitmap = bitmaps.get(key);
+				if(bitmap != null)
+					photos = photos.or(bitmap);
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		
+		return photos;
+	}
+	
+	/**
+	 * Update the index with a committed change
+	 */
+	public void photoChanged(PhotoChangeEvent event) {
+		lock.writeLock().lock();
+		try {
+			if(replayEvents != null)
+				replayEvents.add(event);
+			if(built || replayEvents != null)
+				apply(event);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Apply a change to the index, must be called while holding the write lock
+	 * 
+	 * @param event
+	 */
+	private void apply(PhotoChangeEvent event) {
+		Object entity = event.getEntity();
+		boolean deleted = event.getAction() == PhotoChangeEvent.Action.DELETE;
+		
+		if(entity instanceof PhotoCategory) {
+			PhotoCategory c = (PhotoCategory) entity;
+			String categoryKey = PHOTO_CATEGORY + c.getPhotoCategoryId();
+			if(deleted)
+				removeCategories(c.getPhotoId(), categoryKey, false);
+			else
+				setCategory(c.getPhotoId(), categoryKey, key(c.getPhotoCategoryName(), c.getPhotoCategoryText()));
+		}
+		else if(entity instanceof RegionCategory) {
+			RegionCategory c = (RegionCategory) entity;
+			String categoryKey = REGION_CATEGORY + c.getRegionId() + ":" + c.getRegionCategoryId();
+			if(deleted)
+				removeCategories(c.getPhotoId(), categoryKey, false);
+			else
+				setCategory(c.getPhotoId(), categoryKey, key(c.getCategoryName(), c.getRegionCategoryText()));
+		}
+		else if(entity instanceof PhotoRegion && deleted) {
+			PhotoRegion r = (PhotoRegion) entity;
+			removeCategories(r.getPhotoId(), REGION_CATEGORY + r.getRegionId() + ":", true);
+		}
+		else if(entity instanceof Photo && deleted) {
+			removeCategories(((Photo) entity).getPhotoId(), "", true);
+		}
+	}
+	
+	/**
+	 * Set the key of a photo or region category
+	 * 
+	 * @param photoId
+	 * @param categoryKey	key of the category entity
+	 * @param key			index key of the category
+	 */
+	private void setCategory(int photoId, String categoryKey, String key) {
+		removeCategories(photoId, categoryKey, false);
+		if(key.length() == 0)
+			return;
+		
+		Map<String, String> photoCategories = categories.get(photoId);
+		if(photoCategories == null) {
+			photoCategories = new HashMap<String, String>();
+			categories.put(photoId, photoCategories);
+		}
+		photoCategories.put(categoryKey, key);
+		
+		IntBitmap bitmap = bitmaps.get(key);
+		if(bitmap == null) {
+			bitmap = new IntBitmap();
+			bitmaps.put(key, bitmap);
+		}
+		bitmap.add(photoId);
+	}
+	
+	/**
+	 * Remove a category of a photo, or all of its categories whose entity key starts with the given
+	 * prefix. The photo is only removed from a key's bitmap when no other category of the photo has it.
+	 * 
+	 * @param photoId
+	 * @param categoryKey
+	 * @param prefix		whether to remove every category whose entity key starts with categoryKey
+	 */
+	private void removeCategories(int photoId, String categoryKey, boolean prefix) {
+		Map<String, String> photoCategories = categories.get(photoId);
+		if(photoCategories == null)
+			return;
+		
+		Set<String> removed = new HashSet<String>();
+		Iterator<Map.Entry<String, String>> it = photoCategories.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<String, String> category = it.next();
+			if(prefix ? category.getKey().startsWith(categoryKey) : category.getKey().equals(categoryKey)) {
+				removed.add(category.getValue());
+				it.remove();
+			}
+		}
+		
+		removed.removeAll(photoCategories.values());
+		for(String key : removed) {
+			IntBitmap bitmap = bitmaps.get(key);
+			if(bitmap != null) {
+				bitmap.remove(photoId);
+				if(bitmap.isEmpty())
+					bitmaps.remove(key);
+			}
+		}
+		if(photoCategories.isEmpty())
+			categories.remove(photoId);
+	}
+}
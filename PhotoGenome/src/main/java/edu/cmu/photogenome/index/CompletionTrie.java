@@ -0,0 +1,207 @@
+package edu.cmu.photogenome.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Weighted prefix tree of completion strings. Each node keeps the highest weight found in its
+ * subtree, so the top completions of a prefix are found best-first by only visiting the branches
+ * that can still beat the completions already found, without scanning every string under the prefix.
+ *
+ * Weights are adjusted incrementally, and strings whose weight drops to zero are pruned from the tree.
+ * This class is not thread safe; callers are expected to guard it with their own lock.
+ */
+public class CompletionTrie {
+	
+	private final Node root = new Node();
+	private int size;
+	
+	/**
+	 * Add to the weight of a string, inserting it if needed
+	 * 
+	 * @param string
+	 * @param delta		weight to add, negative to subtract
+	 */
+	public void adjust(String string, int delta) {
+		if(string.length() == 0 || delta == 0)
+			return;
+		
+		// walk down the tree, remembering the path to update the subtree weights on the way back
+		Node[] path = new Node[string.length() + 1];
+		path[0] = root;
+		Node node = root;
+		for(int i = 0; i < string.length(); i++) {
+			Node child = node.getChild(string.charAt(i));
+			if(child == null) {
+				if(delta < 0)
+					return;
+				child = node.addChild(string.charAt(i));
+			}
+			path[i + 1] = node = child;
+		}
+		
+		int weight = Math.max(0, node.weight + delta);
+		if(node.weight == 0 && weight > 0)
+			size++;
+		else if(node.weight > 0 && weight == 0)
+			size--;
+		node.weight = weight;
+		
+		for(int i = string.length(); i >= 0; i--) {
+			Node n = path[i];
+			n.updateMaxWeight();
+			if(i > 0 && n.maxWeight == 0)
+				path[i - 1].removeChild(string.charAt(i - 1));
+		}
+	}
+	
+	/**
+	 * Get the weight of a string
+	 * 
+	 * @param string
+	 * @return weight, 0 if the string is not in the tree
+	 */
+	public int getWeight(String string) {
+		Node node = find(string);
+		return node == null ? 0 : node.weight;
+	}
+	
+	/**
+	 * @return number of strings with a positive weight
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public void clear() {
+		root.labels = new char[0];
+		root.children = new Node[0];
+		root.weight = 0;
+		root.maxWeight = 0;
+		size = 0;
+	}
+	
+	/**
+	 * Find the highest weighted strings starting with a prefix. Strings of equal weight are returned
+	 * in alphabetical order.
+	 * 
+	 * @param prefix
+	 * @param maxCompletions	maximum number of strings to return
+	 * @return completions ordered by descending weight
+	 */
+	public List<String> complete(String prefix, int maxCompletions) {
+		List<String> completions = new ArrayList<String>();
+		Node start = find(prefix);
+		if(start == null || start.maxWeight == 0 || maxCompletions <= 0)
+			return completions;
+		
+		PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+		queue.add(new Entry(start, prefix, start.maxWeight, false));
+		while(!queue.isEmpty() && completions.size() < maxCompletions) {
+			Entry entry = queue.poll();
+			if(entry.complete) {
+				completions.add(entry.string);
+				continue;
+			}
+			
+			Node node = entry.node;
+			if(node.weight > 0)
+				queue.add(new Entry(node, entry.string, node.weight, true));
+			for(int i = 0; i < node.children.length; i++)
+				queue.add(new Entry(node.children[i], entry.string + node.labels[i], node.children[i].maxWeight, false));
+		}
+		return completions;
+	}
+	
+	private Node find(String string) {
+		Node node = root;
+		for(int i = 0; i < string.length() && node != null; i++)
+			node = node.getChild(string.charAt(i));
+		return node;
+	}
+	
+	/**
+	 * Tree node, with its children kept in arrays sorted by label to stay compact
+	 */
+	private static class Node {
+		
+		char[] labels = new char[0];
+		Node[] children = new Node[0];
+		// weight of the string ending at this node, 0 if none does
+		int weight;
+		// highest weight in the subtree rooted at this node
+		int maxWeight;
+		
+		Node getChild(char label) {
+			int index = Arrays.binarySearch(labels, label);
+			return index < 0 ? null : children[index];
+		}
+		
+		Node addChild(char label) {
+			int index = -Arrays.binarySearch(labels, label) - 1;
+			char[] newLabels = new char[labels.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(labels, 0, newLabels, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+			newLabels[index] = label;
+			newChildren[index] = new Node();
+			labels = newLabels;
+			children = newChildren;
+			return newChildren[index];
+		}
+		
+		void removeChild(char label) {
+			int index = Arrays.binarySearch(labels, label);
+			if(index < 0)
+				return;
+			
+			char[] newLabels = new char[labels.length - 1];
+			Node[] newChildren = new Node[children.length - 1];
+			System.arraycopy(labels, 0, newLabels, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(labels, index + 1, newLabels, index, newLabels.length - index);
+			System.arraycopy(children, index + 1, newChildren, index, newChildren.length - index);
+			labels = newLabels;
+			children = newChildren;
+		}
+		
+		void updateMaxWeight() {
+			maxWeight = weight;
+			for(Node child : children)
+				maxWeight = Math.max(maxWeight, child.maxWeight);
+		}
+	}
+	
+	/**
+	 * Queued subtree or completion, ordered by descending weight and then alphabetically. Every string
+	 * of a subtree sorts at or after its prefix, so completions of equal weight come out in alphabetical
+	 * order.
+	 */
+	private static class Entry implements Comparable<Entry> {
+		
+		final Node node;
+		final String string;
+		final int weight;
+		final boolean complete;
+		
+		Entry(Node node, String string, int weight, boolean complete) {
+			this.node = node;
+			this.string = string;
+			this.weight = weight;
+			this.complete = complete;
+		}
+		
+		public int compareTo(Entry other) {
+			if(weight != other.weight)
+				return weight > other.weight ? -1 : 1;
+			int order = string.compareTo(other.string);
+			if(order != 0)
+				return order;
+			return complete == other.complete ? 0 : (complete ? -1 : 1);
+		}
+	}
+}
@@ -0,0 +1,387 @@
+package edu.cmu.photogenome.index;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.PhotoSummary;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeListener;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
+
+/**
+ * In-memory index of the photos having each facet value, kept as one compressed bitmap of photo ids
+ * per value. Facets are the category names of the photo and its regions, the owning user and the
+ * upload month. Facet counts for a result set are the sizes of its intersections with the bitmaps.
+ *
+ * Once built, the index keeps itself up to date by listening to committed <code>PhotoChangeEvent</code>s.
+ */
+public class FacetIndex implements PhotoChangeListener {
+	
+	final Logger log = LoggerFactory.getLogger(FacetIndex.class);
+	
+	public static final String CATEGORY = "category";
+	public static final String USER = "user";
+	public static final String MONTH = "month";
+	
+	private static final FacetIndex instance = new FacetIndex();
+	
+	static {
+		PhotoChangeNotifier.addListener(instance);
+	}
+	
+	private static final String PHOTO_CATEGORY = "pcat:";
+	private static final String REGION_CATEGORY = "rcat:";
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	// facet -> value -> photos having the value
+	private final Map<String, Map<String, IntBitmap>> bitmaps = new LinkedHashMap<String, Map<String, IntBitmap>>();
+	// photo id -> category key -> category name, to find the names a photo loses on a change
+	private final Map<Integer, Map<String, String>> categories = new HashMap<Integer, Map<String, String>>();
+	// photo id -> user and month values
+	private final Map<Integer, String> users = new HashMap<Integer, String>();
+	private final Map<Integer, String> months = new HashMap<Integer, String>();
+	
+	// events received while the index is being (re)built, replayed once the build completes
+	private List<PhotoChangeEvent> replayEvents;
+	private volatile boolean built;
+	
+	FacetIndex() {
+		bitmaps.put(CATEGORY, new HashMap<String, IntBitmap>());
+		bitmaps.put(USER, new HashMap<String, IntBitmap>());
+		bitmaps.put(MONTH, new HashMap<String, IntBitmap>());
+	}
+	
+	/**
+	 * Get the shared index instance
+	 * 
+	 * @return facet index
+	 */
+	public static FacetIndex getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Mark the start of a full build. Changes published from now until <code>build</code>
+	 * completes are queued and applied on top of the loaded data.
+	 */
+	public void startBuild() {
+		lock.writeLock().lock();
+		try {
+			replayEvents = new ArrayList<PhotoChangeEvent>();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Abandon a full build whose data could not be loaded. The queued changes are dropped and the 
+	 * index keeps its contents, an index which was never built stays unbuilt.
+	 */
+	public void abortBuild() {
+		lock.writeLock().lock();
+		try {
+			replayEvents = null;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Replace the contents of the index with the given photos and categories
+	 * 
+	 * @param photos
+	 * @param photoCategories
+	 * @param regionCategories
+	 */
+	public void build(Collection<PhotoSummary> photos, Collection<PhotoCategory> photoCategories,
+			Collection<RegionCategory> regionCategories) {
+		long start = System.currentTimeMillis();
+		
+		lock.writeLock().lock();
+		try {
+			for(Map<String, IntBitmap> values : bitmaps.values())
+				values.clear();
+			categories.clear();
+			users.clear();
+			months.clear();
+			
+			if(photos != null)
+				for(PhotoSummary p : photos)
+					setPhoto(p.getPhotoId(), p.getUserId(), p.getPhotoTimestamp());
+			if(photoCategories != null)
+				for(PhotoCategory c : photoCategories)
+					setCategory(c.getPhotoId(), PHOTO_CATEGORY + c.getPhotoCategoryId(), c.getPhotoCategoryName());
+			if(regionCategories != null)
+				for(RegionCategory c : regionCategories)
+					setCategory(c.getPhotoId(), REGION_CATEGORY + c.getRegionId() + ":" + c.getRegionCategoryId(),
+							c.getCategoryName());
+			
+			if(replayEvents != null) {
+				for(PhotoChangeEvent event : replayEvents)
+					apply(event);
+				replayEvents = null;
+			}
+			built = true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+		
+		log.info("Built facet index for {} photos in {} ms", users.size(), System.currentTimeMillis() - start);
+	}
+	
+	/**
+	 * @return true once the index has been built
+	 */
+	public boolean isBuilt() {
+		return built;
+	}
+	
+	/**
+	 * Count the photos of a result set having each facet value
+	 * 
+	 * @param photoIds	ids of the photos in the result set
+	 * @param maxValues	maximum number of values returned per facet
+	 * @return facet -> value -> count, values ordered by descending count then by value,
+	 * 			values no photo of the result set has are left out
+	 */
+	public Map<String, Map<String, Integer>> count(int[] photoIds, int maxValues) {
+		IntBitmap results = IntBitmap.of(photoIds);
+		Map<String, Map<String, Integer>> facets = new LinkedHashMap<String, Map<String, Integer>>();
+		
+		lock.readLock().lock();
+		try {
+			for(Map.Entry<String, Map<String, IntBitmap>> facet : bitmaps.entrySet()) {
+				List<Map.Entry<String, Integer>> counts = new ArrayList<Map.Entry<String, Integer>>();
+				if(!results.isEmpty()) {
+					for(Map.Entry<String, IntBitmap> value : facet.getValue().entrySet()) {
+						int count = value.getValue().andCardinality(results);
+						if(count > 0)
+							counts.add(new AbstractMap.SimpleEntry<String, Integer>(value.getKey(), count));
+					}
+				}
+				facets.put(facet.getKey(), top(counts, maxValues));
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		
+		return facets;
+	}
+	
+	/**
+	 * Update the index with a committed change
+	 */
+	public void photoChanged(PhotoChangeEvent event) {
+		lock.writeLock().lock();
+		try {
+			if(replayEvents != null)
+				replayEvents.add(event);
+			if(built || replayEvents != null)
+				apply(event);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Apply a change to the index, must be called while holding the write lock
+	 * 
+	 * @param event
+	 */
+	private void apply(PhotoChangeEvent event) {
+		Object entity = event.getEntity();
+		boolean deleted = event.getAction() == PhotoChangeEvent.Action.DELETE;
+		
+		if(entity instanceof Photo) {
+			Photo p = (Photo) entity;
+			if(deleted)
+				removePhoto(p.getPhotoId());
+			else
+				setPhoto(p.getPhotoId(), p.getUserId(), p.getPhotoTimestamp());
+		}
+		else if(entity instanceof PhotoCategory) {
+			PhotoCategory c = (PhotoCategory) entity;
+			String key = PHOTO_CATEGORY + c.getPhotoCategoryId();
+			if(deleted)
+				removeCategories(c.getPhotoId(), key, false);
+			else
+				setCategory(c.getPhotoId(), key, c.getPhotoCategoryName());
+		}
+		else if(entity instanceof RegionCategory) {
+			RegionCategory c = (RegionCategory) entity;
+			String key = REGION_CATEGORY + c.getRegionId() + ":" + c.getRegionCategoryId();
+			if(deleted)
+				removeCategories(c.getPhotoId(), key, false);
+			else
+				setCategory(c.getPhotoId(), key, c.getCategoryName());
+		}
+		else if(entity instanceof PhotoRegion && deleted) {
+			PhotoRegion r = (PhotoRegion) entity;
+			removeCategories(r.getPhotoId(), REGION_CATEGORY + r.getRegionId() + ":", true);
+		}
+	}
+	
+	private void setPhoto(int photoId, int userId, Date timestamp) {
+		replace(USER, users, photoId, String.valueOf(userId));
+		replace(MONTH, months, photoId, timestamp == null ? null : month(timestamp));
+	}
+	
+	private void removePhoto(int photoId) {
+		replace(USER, users, photoId, null);
+		replace(MONTH, months, photoId, null);
+		removeCategories(photoId, "", true);
+	}
+	
+	/**
+	 * Replace the single value a photo has for a facet
+	 * 
+	 * @param facet
+	 * @param photoValues	photo id -> current value of the facet
+	 * @param photoId
+	 * @param value			new value, null to remove the photo from the facet
+	 */
+	private void replace(String facet, Map<Integer, String> photoValues, int photoId, String value) {
+		String old = value == null ? photoValues.remove(photoId) : photoValues.put(photoId, value);
+		if(old != null && !old.equals(value))
+			unset(facet, old, photoId);
+		if(value != null)
+			set(facet, value, photoId);
+	}
+	
+	/**
+	 * Set the name of a photo or region category
+	 * 
+	 * @param photoId
+	 * @param categoryKey
+	 * @param name
+	 */
+	private void setCategory(int photoId, String categoryKey, String name) {
+		removeCategories(photoId, categoryKey, false);
+		
+		name = name == null ? "" : name.trim();
+		if(name.length() == 0)
+			return;
+		
+		Map<String, String> photoCategories = categories.get(photoId);
+		if(photoCategories == null) {
+			photoCategories = new HashMap<String, String>();
+			categories.put(photoId, photoCategories);
+		}
+		photoCategories.put(categoryKey, name);
+		set(CATEGORY, name, photoId);
+	}
+	
+	/**
+	 * Remove a category of a photo, or all of its categories whose key starts with the given prefix.
+	 * A category name is only removed from the photo when no other category of the photo has it.
+	 * 
+	 * @param photoId
+	 * @param categoryKey
+	 * @param prefix		whether to remove every category whose key starts with categoryKey
+	 */
+	private void removeCategories(int photoId, String categoryKey, boolean prefix) {
+		Map<String, String> photoCategories = categories.get(photoId);
+		if(photoCategories == null)
+			return;
+		
+		Set<String> removed = new HashSet<String>();
+		Iterator<Map.Entry<String, String>> it = photoCategories.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<String, String> category = it.next();
+			if(prefix ? category.getKey().startsWith(categoryKey) : category.getKey().equals(categoryKey)) {
+				removed.add(category.getValue());
+				it.remove();
+			}
+		}
+		
+		removed.removeAll(photoCategories.values());
+		for(String name : removed)
+			unset(CATEGORY, name, photoId);
+		if(photoCategories.isEmpty())
+			categories.remove(photoId);
+	}
+	
+	private void set(String facet, String value, int photoId) {
+		Map<String, IntBitmap> values = bitmaps.get(facet);
+		IntBitmap bitmap = values.get(value);
+		if(bitmap == null) {
+			bitmap = new IntBitmap();
+			values.put(value, bitmap);
+		}
+		bitmap.add(photoId);
+	}
+	
+	private void unset(String facet, String value, int photoId) {
+		Map<String, IntBitmap> values = bitmaps.get(facet);
+		IntBitmap bitmap = values.get(value);
+		if(bitmap != null) {
+			bitmap.remove(photoId);
+			if(bitmap.isEmpty())
+				values.remove(value);
+		}
+	}
+	
+	/**
+	 * Get the upload month facet value of a timestamp
+	 * 
+	 * @param timestamp
+	 * @return month formatted as yyyy-MM
+	 */
+	private static String month(Date timestamp) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(timestamp);
+		int month = calendar.get(Calendar.MONTH) + 1;
+		return calendar.get(Calendar.YEAR) + (month < 10 ? "-0" : "-") + month;
+	}
+	
+	/**
+	 * Keep the values with the highest counts
+	 * 
+	 * @param counts
+	 * @param maxValues
+	 * @return value -> count ordered by descending count then by value
+	 */
+	private static Map<String, Integer> top(List<Map.Entry<String, Integer>> counts, int maxValues) {
+		Collections.sort(counts, new Comparator<Map.Entry<String, Integer>>() {
+			public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+				int c = b.getValue().compareTo(a.getValue());
+				return c != 0 ? c : a.getKey().compareTo(b.getKey());
+			}
+		});
+		
+		Map<String, Integer> top = new LinkedHashMap<String, Integer>();
+		for(Map.Entry<String, Integer> count : counts) {
+			if(top.size() == maxValues)
+				break;
+			top.put(count.getKey(), count.getValue());
+		}
+		return top;
+	}
+}
@@ -0,0 +1,400 @@
+package edu.cmu.photogenome.index;
+
+import java.util.Arrays;
+
+/**
+ * Compressed bitmap of int ids. Ids are split into chunks of 65536 by their high 16 bits. Each chunk
+ * keeps its low 16 bits either as a sorted array while it holds at most 4096 ids, or as a 65536 bit
+ * bitmap once it grows past that, so sparse and dense sets both stay small and intersections only
+ * visit the chunks present in both bitmaps.
+ *
+ * This class is not thread safe; callers are expected to guard it with their own lock.
+ */
+public class IntBitmap {
+	
+	// above this many ids a chunk takes less space as a bitmap than as an array
+	private static final int MAX_ARRAY_SIZE = 4096;
+	// 65536 bits per bitmap chunk
+	private static final int BITMAP_WORDS = 1024;
+	
+	// sorted high 16 bits of the chunks, with the matching chunk at the same position
+	private char[] keys = new char[0];
+	private Chunk[] chunks = new Chunk[0];
+	private int size;
+	
+	/**
+	 * Create a bitmap holding the given ids
+	 * 
+	 * @param ids	ids in any order, duplicates are ignored
+	 * @return bitmap of the ids
+	 */
+	public static IntBitmap of(int... ids) {
+		IntBitmap bitmap = new IntBitmap();
+		for(int id : ids)
+			bitmap.add(id);
+		return bitmap;
+	}
+	
+	/**
+	 * Add an id
+	 * 
+	 * @param id
+	 * @return true if the id was not in the bitmap yet
+	 */
+	public boolean add(int id) {
+		char key = (char) (id >>> 16);
+		int index = Arrays.binarySearch(keys, 0, size, key);
+		if(index < 0) {
+			index = -index - 1;
+			if(size == keys.length) {
+				keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+				chunks = Arrays.copyOf(chunks, keys.length);
+			}
+			System.arraycopy(keys, index, keys, index + 1, size - index);
+			System.arraycopy(chunks, index, chunks, index + 1, size - index);
+			keys[index] = key;
+			chunks[index] = new ArrayChunk();
+			size++;
+		}
+		
+		Chunk chunk = chunks[index];
+		if(!chunk.add((char) id))
+			return false;
+		if(chunk instanceof ArrayChunk && chunk.cardinality > MAX_ARRAY_SIZE)
+			chunks[index] = ((ArrayChunk) chunk).toBitmap();
+		return true;
+	}
+	
+	/**
+	 * Remove an id
+	 * 
+	 * @param id
+	 * @return true if the id was in the bitmap
+	 */
+	public boolean remove(int id) {
+		int index = Arrays.binarySearch(keys, 0, size, (char) (id >>> 16));
+		if(index < 0)
+			return false;
+		
+		Chunk chunk = chunks[index];
+		if(!chunk.remove((char) id))
+			return false;
+		
+		if(chunk.cardinality == 0) {
+			System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+			System.arraycopy(chunks, index + 1, chunks, index, size - index - 1);
+			chunks[--size] = null;
+		}
+		else if(chunk instanceof BitmapChunk && chunk.cardinality <= MAX_ARRAY_SIZE)
+			chunks[index] = ((BitmapChunk) chunk).toArray();
+		return true;
+	}
+	
+	public boolean contains(int id) {
+		int index = Arrays.binarySearch(keys, 0, size, (char) (id >>> 16));
+		return index >= 0 && chunks[index].contains((char) id);
+	}
+	
+	/**
+	 * @return number of ids in the bitmap
+	 */
+	public int getCardinality() {
+		int cardinality = 0;
+		for(int i = 0; i < size; i++)
+			cardinality += chunks[i].cardinality;
+		return cardinality;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Count the ids present in both this bitmap and another one, without building the intersection
+	 * 
+	 * @param other
+	 * @return size of the intersection
+	 */
+	public int andCardinality(IntBitmap other) {
+		int cardinality = 0;
+		int i = 0, j = 0;
+		while(i < size && j < other.size) {
+			if(keys[i] < other.keys[j])
+				i++;
+			else if(keys[i] > other.keys[j])
+				j++;
+			else
+				cardinality += chunks[i++].andCardinality(other.chunks[j++]);
+		}
+		return cardinality;
+	}
+	
+	/**
+	 * Get the union of this bitmap and another one, leaving both unchanged
+	 * 
+	 * @param other
+	 * @return new bitmap holding the ids present in either bitmap
+	 */
+	public IntBitmap or(IntBitmap other) {
+		IntBitmap union = new IntBitmap();
+		union.keys = new char[size + other.size];
+		union.chunks = new Chunk[union.keys.length];
+		
+		int i = 0, j = 0, n = 0;
+		while(i < size || j < other.size) {
+			if(j == other.size || (i < size && keys[i] < other.keys[j])) {
+				union.keys[n] = keys[i];
+				union.chunks[n++] = chunks[i++].copy();
+			}
+			else if(i == size || other.keys[j] < keys[i]) {
+				union.keys[n] = other.keys[j];
+				union.chunks[n++] = other.chunks[j++].copy();
+			}
+			else {
+				union.keys[n] = keys[i];
+				union.chunks[n++] = chunks[i++].or(other.chunks[j++]);
+			}
+		}
+		union.size = n;
+		return union;
+	}
+	
+	/**
+	 * @return the ids in ascending unsigned order
+	 */
+	public int[] toArray() {
+		int[] ids = new int[getCardinality()];
+		int n = 0;
+		for(int i = 0; i < size; i++)
+			n = chunks[i].copyTo(ids, n, keys[i] << 16);
+		return ids;
+	}
+	
+	/**
+	 * Low 16 bits of the ids sharing the same high 16 bits
+	 */
+	private static abstract class Chunk {
+		
+		int cardinality;
+		
+		abstract boolean add(char value);
+		
+		abstract boolean remove(char value);
+		
+		abstract boolean contains(char value);
+		
+		abstract int andCardinality(Chunk other);
+		
+		abstract Chunk or(Chunk other);
+		
+		abstract Chunk copy();
+		
+		/**
+		 * Copy the ids of the chunk into an array
+		 * 
+		 * @param ids		destination
+		 * @param offset	position of the first id
+		 * @param high		high 16 bits of the ids
+		 * @return position after the last id
+		 */
+		abstract int copyTo(int[] ids, int offset, int high);
+	}
+	
+	/**
+	 * Chunk holding its values in a sorted array
+	 */
+	private static class ArrayChunk extends Chunk {
+		
+		char[] values = new char[4];
+		
+		boolean add(char value) {
+			int index = Arrays.binarySearch(values, 0, cardinality, value);
+			if(index >= 0)
+				return false;
+			
+			index = -index - 1;
+			if(cardinality == values.length)
+				values = Arrays.copyOf(values, cardinality * 2);
+			System.arraycopy(values, index, values, index + 1, cardinality - index);
+			values[index] = value;
+			cardinality++;
+			return true;
+		}
+		
+		boolean remove(char value) {
+			int index = Arrays.binarySearch(values, 0, cardinality, value);
+			if(index < 0)
+				return false;
+			
+			System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+			cardinality--;
+			return true;
+		}
+		
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+		
+		int andCardinality(Chunk other) {
+			if(other instanceof BitmapChunk)
+				return other.andCardinality(this);
+			
+			ArrayChunk o = (ArrayChunk) other;
+			int count = 0;
+			int i = 0, j = 0;
+			while(i < cardinality && j < o.cardinality) {
+				if(values[i] < o.values[j])
+					i++;
+				else if(values[i] > o.values[j])
+					j++;
+				else {
+					count++;
+					i++;
+					j++;
+				}
+			}
+			return count;
+		}
+		
+		Chunk or(Chunk other) {
+			if(other instanceof BitmapChunk)
+				return other.or(this);
+			
+			ArrayChunk o = (ArrayChunk) other;
+			ArrayChunk union = new ArrayChunk();
+			union.values = new char[cardinality + o.cardinality];
+			int i = 0, j = 0, n = 0;
+			while(i < cardinality || j < o.cardinality) {
+				if(j == o.cardinality || (i < cardinality && values[i] < o.values[j]))
+					union.values[n++] = values[i++];
+				else if(i == cardinality || o.values[j] < values[i])
+					union.values[n++] = o.values[j++];
+				else {
+					union.values[n++] = values[i++];
+					j++;
+				}
+			}
+			union.cardinality = n;
+			return n > MAX_ARRAY_SIZE ? union.toBitmap() : union;
+		}
+		
+		Chunk copy() {
+			ArrayChunk copy = new ArrayChunk();
+			copy.values = Arrays.copyOf(values, Math.max(4, cardinality));
+			copy.cardinality = cardinality;
+			return copy;
+		}
+		
+		int copyTo(int[] ids, int offset, int high) {
+			for(int i = 0; i < cardinality; i++)
+				ids[offset++] = high | values[i];
+			return offset;
+		}
+		
+		BitmapChunk toBitmap() {
+			BitmapChunk bitmap = new BitmapChunk();
+			for(int i = 0; i < cardinality; i++)
+				bitmap.add(values[i]);
+			return bitmap;
+		}
+	}
+	
+	/**
+	 * Chunk holding its values as one bit each
+	 */
+	private static class BitmapChunk extends Chunk {
+		
+		final long[] words = new long[BITMAP_WORDS];
+		
+		boolean add(char value) {
+			long bit = 1L << value;
+			if((words[value >>> 6] & bit) != 0)
+				return false;
+			
+			words[value >>> 6] |= bit;
+			cardinality++;
+			return true;
+		}
+		
+		boolean remove(char value) {
+			long bit = 1L << value;
+			if((words[value >>> 6] & bit) == 0)
+				return false;
+			
+			words[value >>> 6] &= ~bit;
+			cardinality--;
+			return true;
+		}
+		
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+		
+		int andCardinality(Chunk other) {
+			int count = 0;
+			if(other instanceof BitmapChunk) {
+				long[] otherWords = ((BitmapChunk) other).words;
+				for(int i = 0; i < words.length; i++)
+					count += Long.bitCount(words[i] & otherWords[i]);
+			}
+			else {
+				ArrayChunk o = (ArrayChunk) other;
+				for(int i = 0; i < o.cardinality; i++)
+					if(contains(o.values[i]))
+						count++;
+			}
+			return count;
+		}
+		
+		Chunk or(Chunk other) {
+			BitmapChunk union = (BitmapChunk) copy();
+			if(other instanceof BitmapChunk) {
+				long[] otherWords = ((BitmapChunk) other).words;
+				union.cardinality = 0;
+				for(int i = 0; i < words.length; i++) {
+					union.words[i] |= otherWords[i];
+					union.cardinality += Long.bitCount(union.words[i]);
+				}
+			}
+			else {
+				ArrayChunk o = (ArrayChunk) other;
+				for(int i = 0; i < o.cardinality; i++)
+					union.add(o.values[i]);
+			}
+			return union;
+		}
+		
+		Chunk copy() {
+			BitmapChunk copy = new BitmapChunk();
+			System.arraycopy(words, 0, copy.words, 0, words.length);
+			copy.cardinality = cardinality;
+			return copy;
+		}
+		
+		int copyTo(int[] ids, int offset, int high) {
+			for(int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while(word != 0) {
+					ids[offset++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+			}
+			return offset;
+		}
+		
+		ArrayChunk toArray() {
+			ArrayChunk array = new ArrayChunk();
+			array.values = new char[cardinality];
+			int n = 0;
+			for(int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while(word != 0) {
+					array.values[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			array.cardinality = n;
+			return array;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package edu.cmu.photogenome.index;
+
+import java.util.Arrays;
+
+/**
+ * Posting list of photo ids kept as a sorted primitive int array, with a parallel array counting 
+ * how many times each photo was added. A photo is only removed from the list once every addition 
+ * has been matched by a removal.
+ * 
+ * This class is not thread safe; callers are expected to guard it with their own lock.
+ */
+public class IntPostingList {
+	
+	private static final int INITIAL_CAPACITY = 4;
+	
+	private int[] ids;
+	private int[] counts;
+	private int size;
+	
+	public IntPostingList() {
+		ids = new int[INITIAL_CAPACITY];
+		counts = new int[INITIAL_CAPACITY];
+	}
+	
+	/**
+	 * Add an occurrence of a photo
+	 * 
+	 * @param id	photo id
+	 */
+	public void add(int id) {
+		int index = Arrays.binarySearch(ids, 0, size, id);
+		if(index >= 0) {
+			counts[index]++;
+			return;
+		}
+		
+		index = -index - 1;
+		if(size == ids.length) {
+			ids = Arrays.copyOf(ids, size * 2);
+			counts = Arrays.copyOf(counts, size * 2);
+		}
+		System.arraycopy(ids, index, ids, index + 1, size - index);
+		System.arraycopy(counts, index, counts, index + 1, size - index);
+		ids[index] = id;
+		counts[index] = 1;
+		size++;
+	}
+	
+	/**
+	 * Remove an occurrence of a photo
+	 * 
+	 * @param id	photo id
+	 * @return true if the photo is no longer in the list
+	 */
+	public boolean remove(int id) {
+		int index = Arrays.binarySearch(ids, 0, size, id);
+		if(index < 0)
+			return true;
+		
+		if(--counts[index] > 0)
+			return false;
+		
+		System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+		System.arraycopy(counts, index + 1, counts, index, size - index - 1);
+		size--;
+		return true;
+	}
+	
+	/**
+	 * Remove every occurrence of a photo
+	 * 
+	 * @param id	photo id
+	 */
+	public void removeAll(int id) {
+		int index = Arrays.binarySearch(ids, 0, size, id);
+		if(index >= 0) {
+			counts[index] = 1;
+			remove(id);
+		}
+	}
+	
+	public boolean contains(int id) {
+		return Arrays.binarySearch(ids, 0, size, id) >= 0;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * @return a copy of the sorted photo ids
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(ids, size);
+	}
+	
+	/**
+	 * Merge several sorted, duplicate free id arrays into one
+	 * 
+	 * @param lists	arrays to merge
+	 * @return sorted array containing each id present in any of the arrays once
+	 */
+	public static int[] union(int[]... lists) {
+		int total = 0;
+		for(int[] list : lists)
+			total += list.length;
+		
+		int[] merged = new int[total];
+		int offset = 0;
+		for(int[] list : lists) {
+			System.arraycopy(list, 0, merged, offset, list.length);
+			offset += list.length;
+		}
+		Arrays.sort(merged);
+		
+		// remove duplicates in place
+		int unique = 0;
+		for(int i = 0; i < merged.length; i++)
+			if(unique == 0 || merged[unique - 1] != merged[i])
+				merged[unique++] = merged[i];
+		
+		return Arrays.copyOf(merged, unique);
+	}
+}
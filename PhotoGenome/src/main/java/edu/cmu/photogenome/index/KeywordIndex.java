@@ -0,0 +1,532 @@
+package edu.cmu.photogenome.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoMetadata;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.domain.RegionComment;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeListener;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
+
+/**
+ * In-memory inverted index from annotation terms to the photos carrying them. Terms are taken 
+ * from photo categories, photo comments, region categories, region comments and photo metadata.
+ * 
+ * Each annotation is indexed as a separate field of its photo, so that editing or deleting one 
+ * annotation only touches the terms of that annotation. Once built, the index keeps itself up to 
+ * date by listening to committed <code>PhotoChangeEvent</code>s. Metadata rows have no events of their 
+ * own, so the metadata of a photo is read again through the <code>PhotoMetadataLoader</code>, if set, 
+ * on each change of that photo.
+ */
+public class KeywordIndex implements PhotoChangeListener {
+	
+	final Logger log = LoggerFactory.getLogger(KeywordIndex.class);
+	
+	private static final KeywordIndex instance = new KeywordIndex();
+	
+	static {
+		PhotoChangeNotifier.addListener(instance);
+	}
+	
+	private static final String PHOTO_CATEGORY = "pcat:";
+	private static final String PHOTO_COMMENT = "pcom:";
+	private static final String REGION_CATEGORY = "rcat:";
+	private static final String REGION_COMMENT = "rcom:";
+	private static final String METADATA = "meta:";
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	// term -> photos containing the term
+	private final TreeMap<String, IntPostingList> postings = new TreeMap<String, IntPostingList>();
+	// photo id -> field key -> distinct terms of the field
+	private final Map<Integer, Map<String, Set<String>>> fields = new HashMap<Integer, Map<String, Set<String>>>();
+	
+	// events received while the index is being (re)built, replayed once the build completes
+	private List<PhotoChangeEvent> replayEvents;
+	// metadata read while the index is being (re)built, by photo id, replayed with the events
+	private Map<Integer, List<PhotoMetadata>> replayMetadata;
+	
+	private volatile PhotoMetadataLoader metadataLoader;
+	private volatile boolean built;
+	
+	/**
+	 * Get the shared index instance
+	 * 
+	 * @return keyword index
+	 */
+	public static KeywordIndex getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Mark the start of a full build. Changes published from now until <code>build</code> 
+	 * completes are queued and applied on top of the loaded data.
+	 */
+	public void startBuild() {
+		lock.writeLock().lock();
+		try {
+			replayEvents = new ArrayList<PhotoChangeEvent>();
+			replayMetadata = new HashMap<Integer, List<PhotoMetadata>>();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Abandon a full build whose data could not be loaded. The queued changes are dropped and the 
+	 * index keeps its contents, an index which was never built stays unbuilt.
+	 */
+	public void abortBuild() {
+		lock.writeLock().lock();
+		try {
+			replayEvents = null;
+			replayMetadata = null;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Replace the contents of the index with the given annotations
+	 * 
+	 * @param photoCategories
+	 * @param photoComments
+	 * @param regionCategories
+	 * @param regionComments
+	 * @param photoMetadata
+	 */
+	public void build(Collection<PhotoCategory> photoCategories, Collection<PhotoComment> photoComments, 
+			Collection<RegionCategory> regionCategories, Collection<RegionComment> regionComments, 
+			Collection<PhotoMetadata> photoMetadata) {
+		long start = System.currentTimeMillis();
+		
+		lock.writeLock().lock();
+		try {
+			postings.clear();
+			fields.clear();
+			
+			if(photoCategories != null)
+				for(PhotoCategory c : photoCategories)
+					index(c);
+			if(photoComments != null)
+				for(PhotoComment c : photoComments)
+					index(c);
+			if(regionCategories != null)
+				for(RegionCategory c : regionCategories)
+					index(c);
+			if(regionComments != null)
+				for(RegionComment c : regionComments)
+					index(c);
+			if(photoMetadata != null)
+				for(PhotoMetadata m : photoMetadata)
+					index(m);
+			
+			if(replayEvents != null) {
+				for(PhotoChangeEvent event : replayEvents)
+					apply(event);
+				for(Map.Entry<Integer, List<PhotoMetadata>> entry : replayMetadata.entrySet())
+					setMetadata(entry.getKey(), entry.getValue());
+				replayEvents = null;
+				replayMetadata = null;
+			}
+			built = true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+		
+		log.info("Built keyword index with {} terms for {} photos in {} ms", 
+				postings.size(), fields.size(), System.currentTimeMillis() - start);
+	}
+	
+	/**
+	 * Set the source the metadata of a changed photo is read again from
+	 * 
+	 * @param metadataLoader	loader, null to keep the metadata loaded by the build
+	 */
+	public void setMetadataLoader(PhotoMetadataLoader metadataLoader) {
+		this.metadataLoader = metadataLoader;
+	}
+	
+	/**
+	 * @return true once the index has been built
+	 */
+	public boolean isBuilt() {
+		return built;
+	}
+	
+	/**
+	 * Find the photos matching ANY of the keywords. A keyword matches every term it is a prefix of. 
+	 * Photos are ranked by the number of keywords they match, then by descending photo id.
+	 * 
+	 * @param keywords		keywords to match
+	 * @param maxMatches	maximum number of photo ids to return
+	 * @return ranked photo ids
+	 */
+	public int[] search(List<String> keywords, int maxMatches) {
+		return search(keywords, null, maxMatches).getPhotoIds();
+	}
+	
+	/**
+	 * Find a page of the photos matching ANY of the keywords, ranked as in <code>search(List, int)</code>. 
+	 * The score of each photo is the number of keywords it matches.
+	 * 
+	 * @param keywords	keywords to match
+	 * @param after		if not null, only photos ranked after this cursor are returned
+	 * @param pageSize	maximum number of photo ids to return
+	 * @return ranked photo ids with their scores
+	 */
+	public RankedPhotoIds search(List<String> keywords, SearchCursor after, int pageSize) {
+		// each token of the keywords is matched on its own
+		Set<String> terms = new LinkedHashSet<String>();
+		for(String keyword : keywords)
+			terms.addAll(Tokenizer.tokenize(keyword));
+		
+		int[] ids = new int[0];
+		int[] scores = new int[0];
+		
+		lock.readLock().lock();
+		try {
+			for(String term : terms) {
+				int[] matches = matchPrefix(term);
+				
+				// merge the matches into the running (id, score) arrays
+				int[] mergedIds = new int[ids.length + matches.length];
+				int[] mergedScores = new int[mergedIds.length];
+				int i = 0, j = 0, n = 0;
+				while(i < ids.length || j < matches.length) {
+					if(j == matches.length || (i < ids.length && ids[i] < matches[j])) {
+						mergedIds[n] = ids[i];
+						mergedScores[n++] = scores[i++];
+					}
+					else if(i == ids.length || matches[j] < ids[i]) {
+						mergedIds[n] = matches[j++];
+						mergedScores[n++] = 1;
+					}
+					else {
+						mergedIds[n] = ids[i];
+						mergedScores[n++] = scores[i++] + 1;
+						j++;
+					}
+				}
+				ids = Arrays.copyOf(mergedIds, n);
+				scores = Arrays.copyOf(mergedScores, n);
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		
+		return RankedPhotoIds.rank(ids, scores, after, pageSize);
+	}
+	
+	/**
+	 * Find all photos matching ANY of the keywords, unranked
+	 * 
+	 * @param keywords	keywords to match
+	 * @return sorted photo ids
+	 */
+	public int[] match(List<String> keywords) {
+		Set<String> terms = new LinkedHashSet<String>();
+		for(String keyword : keywords)
+			terms.addAll(Tokenizer.tokenize(keyword));
+		
+		lock.readLock().lock();
+		try {
+			int[][] lists = new int[terms.size()][];
+			int i = 0;
+			for(String term : terms)
+				lists[i++] = matchPrefix(term);
+			return IntPostingList.union(lists);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Get the distinct terms indexed for a photo
+	 * 
+	 * @param photoId
+	 * @return set of terms, empty if the photo has no indexed annotations
+	 */
+	public Set<String> getTerms(int photoId) {
+		Set<String> terms = new LinkedHashSet<String>();
+		
+		lock.readLock().lock();
+		try {
+			Map<String, Set<String>> photoFields = fields.get(photoId);
+			if(photoFields != null)
+				for(Set<String> fieldTerms : photoFields.values())
+					terms.addAll(fieldTerms);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		
+		return terms;
+	}
+	
+	/**
+	 * Get the ids of all photos with indexed annotations
+	 * 
+	 * @return sorted photo ids
+	 */
+	public int[] getPhotoIds() {
+		int[] photoIds;
+		
+		lock.readLock().lock();
+		try {
+			photoIds = new int[fields.size()];
+			int i = 0;
+			for(Integer photoId : fields.keySet())
+				photoIds[i++] = photoId;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		
+		Arrays.sort(photoIds);
+		return photoIds;
+	}
+	
+	/**
+	 * Update the index with a committed change
+	 */
+	public void photoChanged(PhotoChangeEvent event) {
+		// read outside the lock, the metadata of a deleted photo is removed with its other fields
+		int photoId = event.getPhotoId();
+		List<PhotoMetadata> metadata = null;
+		PhotoMetadataLoader loader = metadataLoader;
+		if(loader != null && photoId >= 0
+				&& !(event.getEntity() instanceof Photo && event.getAction() == PhotoChangeEvent.Action.DELETE)) {
+			try {
+				metadata = loader.load(photoId);
+			}
+			catch(RuntimeException e) {
+				// the event is still applied, the metadata is read again on the next change
+				log.warn(e.getMessage(), e);
+			}
+		}
+		
+		lock.writeLock().lock();
+		try {
+			if(replayEvents != null) {
+				replayEvents.add(event);
+				if(metadata != null)
+					replayMetadata.put(photoId, metadata);
+			}
+			if(built || replayEvents != null) {
+				apply(event);
+				if(metadata != null)
+					setMetadata(photoId, metadata);
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Apply a change to the index, must be called while holding the write lock
+	 * 
+	 * @param event
+	 */
+	private void apply(PhotoChangeEvent event) {
+		Object entity = event.getEntity();
+		boolean deleted = event.getAction() == PhotoChangeEvent.Action.DELETE;
+		
+		if(entity instanceof PhotoCategory) {
+			PhotoCategory c = (PhotoCategory) entity;
+			if(deleted)
+				removeField(c.getPhotoId(), PHOTO_CATEGORY + c.getPhotoCategoryId());
+			else
+				index(c);
+		}
+		else if(entity instanceof PhotoComment) {
+			PhotoComment c = (PhotoComment) entity;
+			if(deleted)
+				removeField(c.getPhotoId(), PHOTO_COMMENT + c.getPhotoCommentId());
+			else
+				index(c);
+		}
+		else if(entity instanceof RegionCategory) {
+			RegionCategory c = (RegionCategory) entity;
+			if(deleted)
+				removeField(c.getPhotoId(), REGION_CATEGORY + c.getRegionId() + ":" + c.getRegionCategoryId());
+			else
+				index(c);
+		}
+		else if(entity instanceof RegionComment) {
+			RegionComment c = (RegionComment) entity;
+			if(deleted)
+				removeField(c.getPhotoId(), REGION_COMMENT + c.getRegionId() + ":" + c.getRegionCommentId());
+			else
+				index(c);
+		}
+		else if(entity instanceof PhotoRegion && deleted) {
+			PhotoRegion r = (PhotoRegion) entity;
+			removeFields(r.getPhotoId(), REGION_CATEGORY + r.getRegionId() + ":");
+			removeFields(r.getPhotoId(), REGION_COMMENT + r.getRegionId() + ":");
+		}
+		else if(entity instanceof Photo && deleted) {
+			removeFields(((Photo) entity).getPhotoId(), "");
+		}
+	}
+	
+	private void index(PhotoCategory c) {
+		setField(c.getPhotoId(), PHOTO_CATEGORY + c.getPhotoCategoryId(), 
+				Tokenizer.tokenizeCategory(c.getPhotoCategoryName(), c.getPhotoCategoryText()));
+	}
+	
+	private void index(PhotoComment c) {
+		setField(c.getPhotoId(), PHOTO_COMMENT + c.getPhotoCommentId(), Tokenizer.tokenize(c.getPhotoCommentText()));
+	}
+	
+	private void index(RegionCategory c) {
+		setField(c.getPhotoId(), REGION_CATEGORY + c.getRegionId() + ":" + c.getRegionCategoryId(), 
+				Tokenizer.tokenizeCategory(c.getCategoryName(), c.getRegionCategoryText()));
+	}
+	
+	private void index(PhotoMetadata m) {
+		setField(m.getPhotoId(), METADATA + m.getPhotometadataId(), Tokenizer.tokenize(m.getPhotoMetadata()));
+	}
+	
+	/**
+	 * Replace the metadata fields of a photo, must be called while holding the write lock
+	 * 
+	 * @param photoId
+	 * @param metadata	current metadata rows of the photo
+	 */
+	private void setMetadata(int photoId, List<PhotoMetadata> metadata) {
+		removeFields(photoId, METADATA);
+		for(PhotoMetadata m : metadata)
+			if(m.getPhotoId() == photoId)
+				index(m);
+	}
+	
+	private void index(RegionComment c) {
+		setField(c.getPhotoId(), REGION_COMMENT + c.getRegionId() + ":" + c.getRegionCommentId(), 
+				Tokenizer.tokenize(c.getRegionCommentText()));
+	}
+	
+	/**
+	 * Replace the terms of a field, adding the photo to the postings of any new terms and 
+	 * removing it from the postings of terms no longer present
+	 * 
+	 * @param photoId
+	 * @param fieldKey
+	 * @param terms
+	 */
+	private void setField(int photoId, String fieldKey, Collection<String> terms) {
+		removeField(photoId, fieldKey);
+		
+		Set<String> distinctTerms = new LinkedHashSet<String>(terms);
+		if(distinctTerms.isEmpty())
+			return;
+		
+		Map<String, Set<String>> photoFields = fields.get(photoId);
+		if(photoFields == null) {
+			photoFields = new HashMap<String, Set<String>>();
+			fields.put(photoId, photoFields);
+		}
+		photoFields.put(fieldKey, distinctTerms);
+		
+		for(String term : distinctTerms) {
+			IntPostingList list = postings.get(term);
+			if(list == null) {
+				list = new IntPostingList();
+				postings.put(term, list);
+			}
+			list.add(photoId);
+		}
+	}
+	
+	private void removeField(int photoId, String fieldKey) {
+		Map<String, Set<String>> photoFields = fields.get(photoId);
+		if(photoFields == null)
+			return;
+		
+		Set<String> terms = photoFields.remove(fieldKey);
+		if(terms != null)
+			unpost(photoId, terms);
+		if(photoFields.isEmpty())
+			fields.remove(photoId);
+	}
+	
+	/**
+	 * Remove all fields of a photo whose key starts with the given prefix
+	 * 
+	 * @param photoId
+	 * @param fieldKeyPrefix
+	 */
+	private void removeFields(int photoId, String fieldKeyPrefix) {
+		Map<String, Set<String>> photoFields = fields.get(photoId);
+		if(photoFields == null)
+			return;
+		
+		Iterator<Map.Entry<String, Set<String>>> it = photoFields.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<String, Set<String>> field = it.next();
+			if(field.getKey().startsWith(fieldKeyPrefix)) {
+				unpost(photoId, field.getValue());
+				it.remove();
+			}
+		}
+		if(photoFields.isEmpty())
+			fields.remove(photoId);
+	}
+	
+	private void unpost(int photoId, Set<String> terms) {
+		for(String term : terms) {
+			IntPostingList list = postings.get(term);
+			if(list != null) {
+				list.remove(photoId);
+				if(list.isEmpty())
+					postings.remove(term);
+			}
+		}
+	}
+	
+	/**
+	 * Get the photos containing any term starting with the given prefix
+	 * 
+	 * @param prefix
+	 * @return sorted photo ids
+	 */
+	private int[] matchPrefix(String prefix) {
+		SortedMap<String, IntPostingList> range = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+		if(range.isEmpty())
+			return new int[0];
+		if(range.size() == 1)
+			return range.values().iterator().next().toArray();
+		
+		int[][] lists = new int[range.size()][];
+		int i = 0;
+		for(IntPostingList list : range.values())
+			lists[i++] = list.toArray();
+		return IntPostingList.union(lists);
+	}
+}
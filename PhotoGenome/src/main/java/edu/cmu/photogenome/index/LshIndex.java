@@ -0,0 +1,323 @@
+package edu.cmu.photogenome.index;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.util.ConfigUtil;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeListener;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
+
+/**
+ * Locality-sensitive hash index over the MinHash signatures of each photo's annotation terms.
+ *
+ * Each signature is cut into <code>bands</code> bands of <code>rows</code> values, and a photo is
+ * placed in one bucket per band. Photos sharing at least one bucket with the source photo are the
+ * candidates for association, so only those need to be scored. Two photos with Jaccard similarity
+ * s become candidates with probability 1 - (1 - s^rows)^bands.
+ *
+ * The candidates are ranked by the number of terms they share with the source photo, not by the 
+ * full-text relevance of search.sql.query.associationScores, which weighs the terms by their 
+ * frequency in the whole table. The associated photos found through this index are therefore not 
+ * the same as those of the query, and may come in another order.
+ *
+ * Terms are read from the <code>KeywordIndex</code>, which must be built first. After it is built
+ * the index follows committed <code>PhotoChangeEvent</code>s.
+ */
+public class LshIndex implements PhotoChangeListener {
+	
+	final Logger log = LoggerFactory.getLogger(LshIndex.class);
+	
+	private static final int DEFAULT_BANDS = 32;
+	private static final int DEFAULT_ROWS = 3;
+	private static final long SEED = 0x5eed1e55L;
+	
+	private static final LshIndex instance;
+	
+	static {
+		Properties config = ConfigUtil.getApplicationProperties();
+		int bands = DEFAULT_BANDS;
+		int rows = DEFAULT_ROWS;
+		if(config != null) {
+			bands = Integer.parseInt(config.getProperty("search.lsh.bands", String.valueOf(DEFAULT_BANDS)));
+			rows = Integer.parseInt(config.getProperty("search.lsh.rows", String.valueOf(DEFAULT_ROWS)));
+		}
+		
+		// the keyword index has to see each change before this index reads its terms
+		instance = new LshIndex(KeywordIndex.getInstance(), bands, rows);
+		PhotoChangeNotifier.addListener(instance);
+	}
+	
+	private final KeywordIndex keywordIndex;
+	private final int bands;
+	private final int rows;
+	private final MinHasher hasher;
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	// (band, hash of the band's rows) -> photos in the bucket
+	private final Map<Long, IntPostingList> buckets = new HashMap<Long, IntPostingList>();
+	// photo id -> signature
+	private final Map<Integer, int[]> signatures = new HashMap<Integer, int[]>();
+	
+	private volatile boolean built;
+	
+	LshIndex(KeywordIndex keywordIndex, int bands, int rows) {
+		if(bands <= 0 || rows <= 0)
+			throw new IllegalArgumentException("bands and rows must be positive");
+		
+		this.keywordIndex = keywordIndex;
+		this.bands = bands;
+		this.rows = rows;
+		this.hasher = new MinHasher(bands * rows, SEED);
+	}
+	
+	/**
+	 * Get the shared index instance
+	 * 
+	 * @return LSH index
+	 */
+	public static LshIndex getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * (Re)build the index from the terms currently held by the keyword index
+	 */
+	public void build() {
+		long start = System.currentTimeMillis();
+		
+		lock.writeLock().lock();
+		try {
+			buckets.clear();
+			signatures.clear();
+			
+			for(int photoId : keywordIndex.getPhotoIds())
+				update(photoId);
+			built = true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+		
+		log.info("Built LSH index with {} buckets for {} photos in {} ms",
+				buckets.size(), signatures.size(), System.currentTimeMillis() - start);
+	}
+	
+	/**
+	 * @return true once the index has been built
+	 */
+	public boolean isBuilt() {
+		return built;
+	}
+	
+	/**
+	 * Get the photos sharing at least one bucket with the given photo
+	 * 
+	 * @param photoId
+	 * @return sorted candidate photo ids, not including the photo itself
+	 */
+	public int[] getCandidates(int photoId) {
+		lock.readLock().lock();
+		try {
+			int[] signature = signatures.get(photoId);
+			if(signature == null)
+				return new int[0];
+			
+			int[][] lists = new int[bands][];
+			for(int band = 0; band < bands; band++) {
+				IntPostingList bucket = buckets.get(bucketKey(signature, band));
+				lists[band] = bucket == null ? new int[0] : bucket.toArray();
+			}
+			
+			int[] union = IntPostingList.union(lists);
+			int[] candidates = new int[union.length];
+			int n = 0;
+			for(int id : union)
+				if(id != photoId)
+					candidates[n++] = id;
+			
+			int[] result = new int[n];
+			System.arraycopy(candidates, 0, result, 0, n);
+			return result;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Find the photos most similar to the given photo among its candidates. Candidates are ranked by
+	 * the number of terms they share with the photo, then by descending photo id.
+	 * 
+	 * @param photoId		source photo
+	 * @param filterTerms	if not null, only candidates having at least one of these terms are returned
+	 * @param maxMatches	maximum number of photo ids to return
+	 * @return ranked photo ids
+	 */
+	public int[] findSimilar(int photoId, Collection<String> filterTerms, int maxMatches) {
+		return findSimilar(photoId, filterTerms, null, maxMatches).getPhotoIds();
+	}
+	
+	/**
+	 * Find a page of the photos most similar to the given photo, ranked as in 
+	 * <code>findSimilar(int, Collection, int)</code>. The score of each photo is the number of terms it 
+	 * shares with the given photo.
+	 * 
+	 * @param photoId		source photo
+	 * @param filterTerms	if not null, only candidates having at least one of these terms are returned
+	 * @param after			if not null, only photos ranked after this cursor are returned
+	 * @param pageSize		maximum number of photo ids to return
+	 * @return ranked photo ids with their scores
+	 */
+	public RankedPhotoIds findSimilar(int photoId, Collection<String> filterTerms, SearchCursor after, int pageSize) {
+		return rank(photoId, getCandidates(photoId), filterTerms, after, pageSize);
+	}
+	
+	/**
+	 * Find a page of the photos most similar to the given photo among the candidates present in the
+	 * given bitmap, ranked as in <code>findSimilar(int, Collection, int)</code>. The candidates are 
+	 * intersected with the bitmap before any of them is scored.
+	 * 
+	 * @param photoId		source photo
+	 * @param filterPhotos	if not null, only candidates in this bitmap are returned
+	 * @param after			if not null, only photos ranked after this cursor are returned
+	 * @param pageSize		maximum number of photo ids to return
+	 * @return ranked photo ids with their scores
+	 */
+	public RankedPhotoIds findSimilar(int photoId, IntBitmap filterPhotos, SearchCursor after, int pageSize) {
+		int[] candidates = getCandidates(photoId);
+		if(filterPhotos == null)
+			return rank(photoId, candidates, null, after, pageSize);
+		
+		int[] filtered = new int[candidates.length];
+		int n = 0;
+		for(int candidate : candidates)
+			if(filterPhotos.contains(candidate))
+				filtered[n++] = candidate;
+		
+		int[] matches = new int[n];
+		System.arraycopy(filtered, 0, matches, 0, n);
+		return rank(photoId, matches, null, after, pageSize);
+	}
+	
+	/**
+	 * Score the candidates by the number of terms they share with the given photo
+	 * 
+	 * @param photoId		source photo
+	 * @param candidates	photos to score
+	 * @param filterTerms	if not null, only candidates having at least one of these terms are returned
+	 * @param after			if not null, only photos ranked after this cursor are returned
+	 * @param pageSize		maximum number of photo ids to return
+	 * @return ranked photo ids with their scores
+	 */
+	private RankedPhotoIds rank(int photoId, int[] candidates, Collection<String> filterTerms, SearchCursor after, 
+			int pageSize) {
+		Set<String> terms = keywordIndex.getTerms(photoId);
+		
+		int[] ids = new int[candidates.length];
+		int[] scores = new int[candidates.length];
+		int n = 0;
+		for(int candidate : candidates) {
+			Set<String> candidateTerms = keywordIndex.getTerms(candidate);
+			if(filterTerms != null && !containsAny(candidateTerms, filterTerms))
+				continue;
+			
+			int shared = 0;
+			for(String term : terms)
+				if(candidateTerms.contains(term))
+					shared++;
+			if(shared > 0) {
+				ids[n] = candidate;
+				scores[n++] = shared;
+			}
+		}
+		
+		int[] matchIds = new int[n];
+		int[] matchScores = new int[n];
+		System.arraycopy(ids, 0, matchIds, 0, n);
+		System.arraycopy(scores, 0, matchScores, 0, n);
+		return RankedPhotoIds.rank(matchIds, matchScores, after, pageSize);
+	}
+	
+	/**
+	 * Re-hash a changed photo
+	 */
+	public void photoChanged(PhotoChangeEvent event) {
+		int photoId = event.getPhotoId();
+		if(photoId < 0)
+			return;
+		
+		lock.writeLock().lock();
+		try {
+			// changes made before the build are picked up by the build itself
+			if(built)
+				update(photoId);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Replace the signature of a photo with one computed from its current terms, must be called
+	 * while holding the write lock
+	 * 
+	 * @param photoId
+	 */
+	private void update(int photoId) {
+		int[] old = signatures.remove(photoId);
+		if(old != null) {
+			for(int band = 0; band < bands; band++) {
+				Long key = bucketKey(old, band);
+				IntPostingList bucket = buckets.get(key);
+				if(bucket != null) {
+					bucket.remove(photoId);
+					if(bucket.isEmpty())
+						buckets.remove(key);
+				}
+			}
+		}
+		
+		Set<String> terms = keywordIndex.getTerms(photoId);
+		if(terms.isEmpty())
+			return;
+		
+		int[] signature = hasher.signature(terms);
+		signatures.put(photoId, signature);
+		for(int band = 0; band < bands; band++) {
+			Long key = bucketKey(signature, band);
+			IntPostingList bucket = buckets.get(key);
+			if(bucket == null) {
+				bucket = new IntPostingList();
+				buckets.put(key, bucket);
+			}
+			bucket.add(photoId);
+		}
+	}
+	
+	/**
+	 * Hash the rows of one band of a signature into a bucket key
+	 */
+	private Long bucketKey(int[] signature, int band) {
+		int hash = 1;
+		for(int i = band * rows; i < (band + 1) * rows; i++)
+			hash = 31 * hash + signature[i];
+		return ((long) band << 32) | (hash & 0xffffffffL);
+	}
+	
+	private static boolean containsAny(Set<String> terms, Collection<String> filterTerms) {
+		for(String term : filterTerms)
+			if(terms.contains(term))
+				return true;
+		return false;
+	}
+}
@@ -0,0 +1,94 @@
+package edu.cmu.photogenome.index;
+
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * Computes MinHash signatures of term sets. The fraction of positions at which two signatures
+ * agree is an estimate of the Jaccard similarity of the two sets.
+ */
+public class MinHasher {
+	
+	private final long[] multipliers;
+	private final long[] offsets;
+	
+	/**
+	 * @param numHashes	length of the signatures
+	 * @param seed		seed for the hash functions, signatures are only comparable when
+	 * 					computed with the same seed
+	 */
+	public MinHasher(int numHashes, long seed) {
+		if(numHashes <= 0)
+			throw new IllegalArgumentException("numHashes must be positive");
+		
+		multipliers = new long[numHashes];
+		offsets = new long[numHashes];
+		
+		Random random = new Random(seed);
+		for(int i = 0; i < numHashes; i++) {
+			multipliers[i] = random.nextLong() | 1L; // odd multipliers are invertible mod 2^64
+			offsets[i] = random.nextLong();
+		}
+	}
+	
+	/**
+	 * @return length of the signatures
+	 */
+	public int getNumHashes() {
+		return multipliers.length;
+	}
+	
+	/**
+	 * Compute the signature of a set of terms
+	 * 
+	 * @param terms
+	 * @return signature, every position is <code>Integer.MAX_VALUE</code> if there are no terms
+	 */
+	public int[] signature(Collection<String> terms) {
+		int[] signature = new int[multipliers.length];
+		for(int i = 0; i < signature.length; i++)
+			signature[i] = Integer.MAX_VALUE;
+		
+		for(String term : terms) {
+			long h = mix(term.hashCode());
+			for(int i = 0; i < signature.length; i++) {
+				// keep the top 31 bits so the values compare as non-negative ints
+				int value = (int) (mix(multipliers[i] * h + offsets[i]) >>> 33);
+				if(value < signature[i])
+					signature[i] = value;
+			}
+		}
+		
+		return signature;
+	}
+	
+	/**
+	 * Estimate the Jaccard similarity of two term sets from their signatures
+	 * 
+	 * @param a
+	 * @param b
+	 * @return fraction of positions at which the signatures agree
+	 */
+	public static double similarity(int[] a, int[] b) {
+		if(a.length != b.length)
+			throw new IllegalArgumentException("Signatures have different lengths");
+		
+		int same = 0;
+		for(int i = 0; i < a.length; i++)
+			if(a[i] == b[i])
+				same++;
+		return (double) same / a.length;
+	}
+	
+	/**
+	 * 64-bit finalizer from MurmurHash3, spreads the bits of the input over the whole output
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
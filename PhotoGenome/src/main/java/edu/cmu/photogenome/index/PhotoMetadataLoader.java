@@ -0,0 +1,20 @@
+package edu.cmu.photogenome.index;
+
+import java.util.List;
+
+import edu.cmu.photogenome.domain.PhotoMetadata;
+
+/**
+ * Source of the metadata rows of a photo, read by <code>KeywordIndex</code> when the photo changes
+ * since metadata rows are not written through the change events.
+ */
+public interface PhotoMetadataLoader {
+	
+	/**
+	 * Read the current metadata rows of a photo
+	 * 
+	 * @param photoId
+	 * @return list of metadata rows, empty if the photo has none, null if they could not be read
+	 */
+	public List<PhotoMetadata> load(int photoId);
+}
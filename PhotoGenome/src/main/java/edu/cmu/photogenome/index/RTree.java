@@ -0,0 +1,372 @@
+package edu.cmu.photogenome.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * R-tree of values keyed by integer rectangles. Rectangles are half-open, covering the pixels from
+ * (x, y) up to but not including (x + width, y + height), so regions sharing an edge do not overlap.
+ * Nodes are split with Guttman's quadratic split, and entries of nodes left under-full by a removal
+ * are re-inserted.
+ *
+ * This class is not thread safe; callers are expected to guard it with their own lock.
+ *
+ * @param <T>	type of the values, removed by <code>equals</code>
+ */
+public class RTree<T> {
+	
+	private static final int MAX_ENTRIES = 16;
+	private static final int MIN_ENTRIES = 6;
+	
+	private Node root = new Node(true);
+	private int size;
+	
+	/**
+	 * Add a value
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param value
+	 */
+	public void insert(int x, int y, int width, int height, T value) {
+		insert(new Entry(x, y, x + width, y + height, null, value));
+		size++;
+	}
+	
+	/**
+	 * Remove a value added with the same rectangle
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param value
+	 * @return true if the value was found
+	 */
+	public boolean remove(int x, int y, int width, int height, T value) {
+		Entry target = new Entry(x, y, x + width, y + height, null, value);
+		List<Entry> orphans = new ArrayList<Entry>();
+		if(!remove(root, target, orphans))
+			return false;
+		
+		// shorten the tree while the root only has a single child
+		while(!root.leaf && root.entries.size() == 1)
+			root = root.entries.get(0).child;
+		if(!root.leaf && root.entries.isEmpty())
+			root = new Node(true);
+		
+		for(Entry orphan : orphans)
+			insert(orphan);
+		size--;
+		return true;
+	}
+	
+	/**
+	 * @return number of values in the tree
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Find the values whose rectangle overlaps the given one
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return matching values, in no particular order
+	 */
+	public List<T> findOverlapping(int x, int y, int width, int height) {
+		List<T> values = new ArrayList<T>();
+		if(width > 0 && height > 0)
+			findOverlapping(root, x, y, x + width, y + height, values);
+		return values;
+	}
+	
+	/**
+	 * Find the values whose rectangle contains the given point
+	 * 
+	 * @param x
+	 * @param y
+	 * @return matching values, in no particular order
+	 */
+	public List<T> findContaining(int x, int y) {
+		return findOverlapping(x, y, 1, 1);
+	}
+	
+	/**
+	 * @return all values, in no particular order
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> values() {
+		List<Entry> leaves = new ArrayList<Entry>(size);
+		collectLeaves(root, leaves);
+		List<T> values = new ArrayList<T>(size);
+		for(Entry leaf : leaves)
+			values.add((T) leaf.value);
+		return values;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void findOverlapping(Node node, int minX, int minY, int maxX, int maxY, List<T> values) {
+		for(Entry entry : node.entries) {
+			if(!entry.overlaps(minX, minY, maxX, maxY))
+				continue;
+			if(node.leaf)
+				values.add((T) entry.value);
+			else
+				findOverlapping(entry.child, minX, minY, maxX, maxY, values);
+		}
+	}
+	
+	private void insert(Entry entry) {
+		Entry split = insert(root, entry);
+		if(split != null) {
+			// grow the tree by one level
+			Node newRoot = new Node(false);
+			newRoot.entries.add(Entry.of(root));
+			newRoot.entries.add(split);
+			root = newRoot;
+		}
+	}
+	
+	/**
+	 * Insert a leaf entry below a node
+	 * 
+	 * @param node
+	 * @param entry
+	 * @return entry of the new sibling node if the node had to be split, null otherwise
+	 */
+	private Entry insert(Node node, Entry entry) {
+		if(node.leaf)
+			node.entries.add(entry);
+		else {
+			Entry subtree = chooseSubtree(node, entry);
+			Entry split = insert(subtree.child, entry);
+			subtree.fit(subtree.child);
+			if(split != null)
+				node.entries.add(split);
+		}
+		
+		return node.entries.size() > MAX_ENTRIES ? split(node) : null;
+	}
+	
+	/**
+	 * Choose the child needing the least enlargement to hold an entry, the smallest one on ties
+	 */
+	private Entry chooseSubtree(Node node, Entry entry) {
+		Entry best = null;
+		long bestEnlargement = 0, bestArea = 0;
+		for(Entry candidate : node.entries) {
+			long area = candidate.area();
+			long enlargement = candidate.unionArea(entry) - area;
+			if(best == null || enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+				best = candidate;
+				bestEnlargement = enlargement;
+				bestArea = area;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Split an overflowing node in two with the quadratic split
+	 * 
+	 * @param node	node to split, keeps the first group
+	 * @return entry of the new node holding the second group
+	 */
+	private Entry split(Node node) {
+		List<Entry> remaining = new ArrayList<Entry>(node.entries);
+		
+		// seed the groups with the pair of entries wasting the most area if put together
+		int seedA = 0, seedB = 1;
+		long worst = Long.MIN_VALUE;
+		for(int i = 0; i < remaining.size(); i++) {
+			for(int j = i + 1; j < remaining.size(); j++) {
+				Entry a = remaining.get(i), b = remaining.get(j);
+				long waste = a.unionArea(b) - a.area() - b.area();
+				if(waste > worst) {
+					worst = waste;
+					seedA = i;
+					seedB = j;
+				}
+			}
+		}
+		
+		Node sibling = new Node(node.leaf);
+		Entry groupA = Entry.copyBounds(remaining.get(seedA));
+		Entry groupB = Entry.copyBounds(remaining.get(seedB));
+		node.entries.clear();
+		node.entries.add(remaining.get(seedA));
+		sibling.entries.add(remaining.get(seedB));
+		remaining.remove(seedB);
+		remaining.remove(seedA);
+		
+		while(!remaining.isEmpty()) {
+			// give all remaining entries to a group that needs them to reach the minimum
+			if(node.entries.size() + remaining.size() == MIN_ENTRIES) {
+				node.entries.addAll(remaining);
+				break;
+			}
+			if(sibling.entries.size() + remaining.size() == MIN_ENTRIES) {
+				sibling.entries.addAll(remaining);
+				break;
+			}
+			
+			// assign next the entry with the strongest preference for one group
+			int next = 0;
+			long bestDifference = -1;
+			for(int i = 0; i < remaining.size(); i++) {
+				Entry entry = remaining.get(i);
+				long difference = Math.abs((groupA.unionArea(entry) - groupA.area()) - (groupB.unionArea(entry) - groupB.area()));
+				if(difference > bestDifference) {
+					bestDifference = difference;
+					next = i;
+				}
+			}
+			
+			Entry entry = remaining.remove(next);
+			long enlargementA = groupA.unionArea(entry) - groupA.area();
+			long enlargementB = groupB.unionArea(entry) - groupB.area();
+			boolean toA;
+			if(enlargementA != enlargementB)
+				toA = enlargementA < enlargementB;
+			else if(groupA.area() != groupB.area())
+				toA = groupA.area() < groupB.area();
+			else
+				toA = node.entries.size() <= sibling.entries.size();
+			
+			if(toA) {
+				node.entries.add(entry);
+				groupA.include(entry);
+			}
+			else {
+				sibling.entries.add(entry);
+				groupB.include(entry);
+			}
+		}
+		
+		return Entry.of(sibling);
+	}
+	
+	/**
+	 * Remove a leaf entry below a node, collecting the leaf entries of nodes left under-full
+	 * 
+	 * @param node
+	 * @param target
+	 * @param orphans	leaf entries to re-insert
+	 * @return true if the entry was found
+	 */
+	private boolean remove(Node node, Entry target, List<Entry> orphans) {
+		for(int i = 0; i < node.entries.size(); i++) {
+			Entry entry = node.entries.get(i);
+			if(node.leaf) {
+				if(entry.sameBounds(target) && entry.value.equals(target.value)) {
+					node.entries.remove(i);
+					return true;
+				}
+			}
+			else if(entry.contains(target) && remove(entry.child, target, orphans)) {
+				if(entry.child.entries.size() < MIN_ENTRIES) {
+					node.entries.remove(i);
+					collectLeaves(entry.child, orphans);
+				}
+				else
+					entry.fit(entry.child);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void collectLeaves(Node node, List<Entry> leaves) {
+		if(node.leaf)
+			leaves.addAll(node.entries);
+		else
+			for(Entry entry : node.entries)
+				collectLeaves(entry.child, leaves);
+	}
+	
+	private static class Node {
+		
+		final boolean leaf;
+		final List<Entry> entries = new ArrayList<Entry>(MAX_ENTRIES + 1);
+		
+		Node(boolean leaf) {
+			this.leaf = leaf;
+		}
+	}
+	
+	/**
+	 * Bounding rectangle of either a child node or a value
+	 */
+	private static class Entry {
+		
+		int minX, minY, maxX, maxY;
+		final Node child;
+		final Object value;
+		
+		Entry(int minX, int minY, int maxX, int maxY, Node child, Object value) {
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.child = child;
+			this.value = value;
+		}
+		
+		static Entry of(Node node) {
+			Entry entry = new Entry(0, 0, 0, 0, node, null);
+			entry.fit(node);
+			return entry;
+		}
+		
+		static Entry copyBounds(Entry entry) {
+			return new Entry(entry.minX, entry.minY, entry.maxX, entry.maxY, null, null);
+		}
+		
+		/**
+		 * Shrink or grow the rectangle to the bounds of a node's entries
+		 */
+		void fit(Node node) {
+			Entry first = node.entries.get(0);
+			minX = first.minX;
+			minY = first.minY;
+			maxX = first.maxX;
+			maxY = first.maxY;
+			for(Entry entry : node.entries)
+				include(entry);
+		}
+		
+		void include(Entry other) {
+			minX = Math.min(minX, other.minX);
+			minY = Math.min(minY, other.minY);
+			maxX = Math.max(maxX, other.maxX);
+			maxY = Math.max(maxY, other.maxY);
+		}
+		
+		long area() {
+			return (long) (maxX - minX) * (maxY - minY);
+		}
+		
+		long unionArea(Entry other) {
+			return (long) (Math.max(maxX, other.maxX) - Math.min(minX, other.minX))
+					* (Math.max(maxY, other.maxY) - Math.min(minY, other.minY));
+		}
+		
+		boolean overlaps(int otherMinX, int otherMinY, int otherMaxX, int otherMaxY) {
+			return minX < otherMaxX && otherMinX < maxX && minY < otherMaxY && otherMinY < maxY;
+		}
+		
+		boolean contains(Entry other) {
+			return minX <= other.minX && minY <= other.minY && maxX >= other.maxX && maxY >= other.maxY;
+		}
+		
+		boolean sameBounds(Entry other) {
+			return minX == other.minX && minY == other.minY && maxX == other.maxX && maxY == other.maxY;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package edu.cmu.photogenome.index;
+
+import java.util.Arrays;
+
+/**
+ * Photo ids with their scores, ordered by descending score then descending photo id
+ */
+public class RankedPhotoIds {
+	
+	private final int[] photoIds;
+	private final double[] scores;
+	
+	/**
+	 * @param photoIds	ranked photo ids
+	 * @param scores	score of each photo
+	 */
+	public RankedPhotoIds(int[] photoIds, double[] scores) {
+		if(photoIds.length != scores.length)
+			throw new IllegalArgumentException("Every photo id needs a score");
+		
+		this.photoIds = photoIds;
+		this.scores = scores;
+	}
+	
+	/**
+	 * Rank photos by descending score then descending photo id
+	 * 
+	 * @param ids		photo ids
+	 * @param scores	score of each photo id
+	 * @param after		if not null, only photos ranked after this cursor are kept
+	 * @param k			maximum number of photo ids to keep
+	 * @return the k highest ranked photos
+	 */
+	public static RankedPhotoIds rank(int[] ids, int[] scores, SearchCursor after, int k) {
+		// pack (score, id) into a single sortable key
+		long[] keys = new long[ids.length];
+		int n = 0;
+		for(int i = 0; i < ids.length; i++)
+			if(after == null || after.isBefore(scores[i], ids[i]))
+				keys[n++] = ((long) scores[i] << 32) | (ids[i] & 0xffffffffL);
+		Arrays.sort(keys, 0, n);
+		
+		int size = Math.min(k, n);
+		int[] rankedIds = new int[size];
+		double[] rankedScores = new double[size];
+		for(int i = 0; i < size; i++) {
+			long key = keys[n - 1 - i];
+			rankedIds[i] = (int) key;
+			rankedScores[i] = (int) (key >> 32);
+		}
+		return new RankedPhotoIds(rankedIds, rankedScores);
+	}
+	
+	/**
+	 * Get the page of photos ranked after a cursor
+	 * 
+	 * @param after		if not null, only photos ranked after this cursor are returned
+	 * @param pageSize	maximum number of photos to return
+	 * @return page of ranked photos
+	 */
+	public RankedPhotoIds page(SearchCursor after, int pageSize) {
+		int start = 0;
+		if(after != null)
+			while(start < photoIds.length && !after.isBefore(scores[start], photoIds[start]))
+				start++;
+		
+		int end = Math.min(photoIds.length, start + pageSize);
+		return new RankedPhotoIds(Arrays.copyOfRange(photoIds, start, end), Arrays.copyOfRange(scores, start, end));
+	}
+	
+	/**
+	 * Get the cursor positioned at a result
+	 * 
+	 * @param i	index of the result
+	 * @return cursor for the results ranked after it
+	 */
+	public SearchCursor cursorAt(int i) {
+		return new SearchCursor(scores[i], photoIds[i]);
+	}
+	
+	/**
+	 * @param photoId
+	 * @return true if the photo is one of the ranked photos
+	 */
+	public boolean contains(int photoId) {
+		for(int id : photoIds)
+			if(id == photoId)
+				return true;
+		return false;
+	}
+	
+	public int size() {
+		return photoIds.length;
+	}
+	
+	public int[] getPhotoIds() {
+		return photoIds.clone();
+	}
+	
+	public double[] getScores() {
+		return scores.clone();
+	}
+}
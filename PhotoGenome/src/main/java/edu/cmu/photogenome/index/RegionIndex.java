@@ -0,0 +1,354 @@
+package edu.cmu.photogenome.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.RegionCoordinate;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+import edu.cmu.photogenome.util.PhotoChangeListener;
+import edu.cmu.photogenome.util.PhotoChangeNotifier;
+
+/**
+ * In-memory spatial index of the region coordinates, with an R-tree per photo and a global one over
+ * all photos, plus the coordinates ordered by area for coverage queries. The index keeps its own
+ * copies of the coordinates, which are returned by the queries and must not be modified.
+ *
+ * Once built, the index keeps itself up to date by listening to committed <code>PhotoChangeEvent</code>s.
+ */
+public class RegionIndex implements PhotoChangeListener {
+	
+	final Logger log = LoggerFactory.getLogger(RegionIndex.class);
+	
+	private static final RegionIndex instance = new RegionIndex();
+	
+	static {
+		PhotoChangeNotifier.addListener(instance);
+	}
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	// region coordinate id -> indexed copy of the coordinate
+	private final Map<Integer, RegionCoordinate> coordinates = new HashMap<Integer, RegionCoordinate>();
+	// photo id -> coordinates of the photo's regions
+	private final Map<Integer, RTree<RegionCoordinate>> photoTrees = new HashMap<Integer, RTree<RegionCoordinate>>();
+	private RTree<RegionCoordinate> globalTree = new RTree<RegionCoordinate>();
+	// area -> coordinates of that area
+	private final TreeMap<Long, List<RegionCoordinate>> areas = new TreeMap<Long, List<RegionCoordinate>>();
+	
+	// events received while the index is being (re)built, replayed once the build completes
+	private List<PhotoChangeEvent> replayEvents;
+	private volatile boolean built;
+	
+	/**
+	 * Get the shared index instance
+	 * 
+	 * @return region index
+	 */
+	public static RegionIndex getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Mark the start of a full build. Changes published from now until <code>build</code>
+	 * completes are queued and applied on top of the loaded data.
+	 */
+	public void startBuild() {
+		lock.writeLock().lock();
+		try {
+			replayEvents = new ArrayList<PhotoChangeEvent>();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Abandon a full build whose data could not be loaded. The queued changes are dropped and the 
+	 * index keeps its contents, an index which was never built stays unbuilt.
+	 */
+	public void abortBuild() {
+		lock.writeLock().lock();
+		try {
+			replayEvents = null;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Replace the contents of the index with the given region coordinates
+	 * 
+	 * @param regionCoordinates
+	 */
+	public void build(Collection<RegionCoordinate> regionCoordinates) {
+		long start = System.currentTimeMillis();
+		
+		lock.writeLock().lock();
+		try {
+			coordinates.clear();
+			photoTrees.clear();
+			globalTree = new RTree<RegionCoordinate>();
+			areas.clear();
+			
+			if(regionCoordinates != null)
+				for(RegionCoordinate c : regionCoordinates)
+					add(c);
+			
+			if(replayEvents != null) {
+				for(PhotoChangeEvent event : replayEvents)
+					apply(event);
+				replayEvents = null;
+			}
+			built = true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+		
+		log.info("Built region index with {} coordinates for {} photos in {} ms",
+				coordinates.size(), photoTrees.size(), System.currentTimeMillis() - start);
+	}
+	
+	/**
+	 * @return true once the index has been built
+	 */
+	public boolean isBuilt() {
+		return built;
+	}
+	
+	/**
+	 * Find the region coordinates of a photo overlapping a rectangle
+	 * 
+	 * @param photoId
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return matching coordinates, in no particular order
+	 */
+	public List<RegionCoordinate> findOverlapping(int photoId, int x, int y, int width, int height) {
+		lock.readLock().lock();
+		try {
+			RTree<RegionCoordinate> tree = photoTrees.get(photoId);
+			return tree == null ? new ArrayList<RegionCoordinate>() : tree.findOverlapping(x, y, width, height);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Find the region coordinates of all photos overlapping a rectangle
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return matching coordinates, in no particular order
+	 */
+	public List<RegionCoordinate> findOverlapping(int x, int y, int width, int height) {
+		lock.readLock().lock();
+		try {
+			return globalTree.findOverlapping(x, y, width, height);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Find the region coordinates of a photo containing a point
+	 * 
+	 * @param photoId
+	 * @param x
+	 * @param y
+	 * @return matching coordinates, in no particular order
+	 */
+	public List<RegionCoordinate> findContaining(int photoId, int x, int y) {
+		lock.readLock().lock();
+		try {
+			RTree<RegionCoordinate> tree = photoTrees.get(photoId);
+			return tree == null ? new ArrayList<RegionCoordinate>() : tree.findContaining(x, y);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Find the topmost region coordinate of a photo containing a point. Regions are drawn in the order
+	 * they were added, so the topmost one is the most recently added.
+	 * 
+	 * @param photoId
+	 * @param x
+	 * @param y
+	 * @return topmost coordinate, or null if no region contains the point
+	 */
+	public RegionCoordinate findTopmost(int photoId, int x, int y) {
+		RegionCoordinate topmost = null;
+		for(RegionCoordinate c : findContaining(photoId, x, y))
+			if(topmost == null || c.getRegionCoordinateId() > topmost.getRegionCoordinateId())
+				topmost = c;
+		return topmost;
+	}
+	
+	/**
+	 * Find the photos having a region covering more than a fraction of a frame. Only the part of
+	 * a region inside the frame, anchored at (0, 0), is counted.
+	 * 
+	 * @param fraction		fraction of the frame, between 0 and 1
+	 * @param frameWidth
+	 * @param frameHeight
+	 * @return sorted photo ids
+	 */
+	public int[] findPhotosWithRegionCovering(double fraction, int frameWidth, int frameHeight) {
+		double minArea = fraction * frameWidth * frameHeight;
+		TreeSet<Integer> photoIds = new TreeSet<Integer>();
+		
+		lock.readLock().lock();
+		try {
+			// a region's area inside the frame is at most its whole area, so only larger ones are candidates
+			for(List<RegionCoordinate> candidates : areas.tailMap((long) Math.floor(minArea), true).values())
+				for(RegionCoordinate c : candidates)
+					if(clippedArea(c, frameWidth, frameHeight) > minArea)
+						photoIds.add(c.getPhotoId());
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		
+		int[] ids = new int[photoIds.size()];
+		int i = 0;
+		for(Integer photoId : photoIds)
+			ids[i++] = photoId;
+		return ids;
+	}
+	
+	/**
+	 * Update the index with a committed change
+	 */
+	public void photoChanged(PhotoChangeEvent event) {
+		lock.writeLock().lock();
+		try {
+			if(replayEvents != null)
+				replayEvents.add(event);
+			if(built || replayEvents != null)
+				apply(event);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Apply a change to the index, must be called while holding the write lock
+	 * 
+	 * @param event
+	 */
+	private void apply(PhotoChangeEvent event) {
+		Object entity = event.getEntity();
+		boolean deleted = event.getAction() == PhotoChangeEvent.Action.DELETE;
+		
+		if(entity instanceof RegionCoordinate) {
+			RegionCoordinate c = (RegionCoordinate) entity;
+			remove(c.getRegionCoordinateId());
+			if(!deleted)
+				add(c);
+		}
+		else if(entity instanceof PhotoRegion && deleted) {
+			int regionId = ((PhotoRegion) entity).getRegionId();
+			for(Integer id : idsOf(((PhotoRegion) entity).getPhotoId()))
+				if(coordinates.get(id).getRegionId() == regionId)
+					remove(id);
+		}
+		else if(entity instanceof Photo && deleted) {
+			for(Integer id : idsOf(((Photo) entity).getPhotoId()))
+				remove(id);
+		}
+	}
+	
+	/**
+	 * Get the ids of the coordinates of a photo
+	 */
+	private List<Integer> idsOf(int photoId) {
+		List<Integer> ids = new ArrayList<Integer>();
+		RTree<RegionCoordinate> tree = photoTrees.get(photoId);
+		if(tree != null)
+			for(RegionCoordinate c : tree.values())
+				ids.add(c.getRegionCoordinateId());
+		return ids;
+	}
+	
+	private void add(RegionCoordinate coordinate) {
+		if(coordinate.getRegionCoordinateId() == null)
+			return;
+		
+		// keep a copy so later changes to the entity do not corrupt the trees
+		RegionCoordinate c = new RegionCoordinate(coordinate.getRegionId(), coordinate.getPhotoId(),
+				coordinate.getUserId(), coordinate.getRegionX(), coordinate.getRegionY(), coordinate.getHeight(),
+				coordinate.getWidth(), coordinate.getRegionCoordinateTimestamp());
+		c.setRegionCoordinateId(coordinate.getRegionCoordinateId());
+		coordinates.put(c.getRegionCoordinateId(), c);
+		
+		RTree<RegionCoordinate> tree = photoTrees.get(c.getPhotoId());
+		if(tree == null) {
+			tree = new RTree<RegionCoordinate>();
+			photoTrees.put(c.getPhotoId(), tree);
+		}
+		tree.insert(c.getRegionX(), c.getRegionY(), c.getWidth(), c.getHeight(), c);
+		globalTree.insert(c.getRegionX(), c.getRegionY(), c.getWidth(), c.getHeight(), c);
+		
+		Long area = area(c);
+		List<RegionCoordinate> sameArea = areas.get(area);
+		if(sameArea == null) {
+			sameArea = new ArrayList<RegionCoordinate>(1);
+			areas.put(area, sameArea);
+		}
+		sameArea.add(c);
+	}
+	
+	private void remove(Integer regionCoordinateId) {
+		RegionCoordinate c = regionCoordinateId == null ? null : coordinates.remove(regionCoordinateId);
+		if(c == null)
+			return;
+		
+		RTree<RegionCoordinate> tree = photoTrees.get(c.getPhotoId());
+		tree.remove(c.getRegionX(), c.getRegionY(), c.getWidth(), c.getHeight(), c);
+		if(tree.size() == 0)
+			photoTrees.remove(c.getPhotoId());
+		globalTree.remove(c.getRegionX(), c.getRegionY(), c.getWidth(), c.getHeight(), c);
+		
+		Long area = area(c);
+		List<RegionCoordinate> sameArea = areas.get(area);
+		Iterator<RegionCoordinate> it = sameArea.iterator();
+		while(it.hasNext())
+			if(it.next() == c)
+				it.remove();
+		if(sameArea.isEmpty())
+			areas.remove(area);
+	}
+	
+	private static Long area(RegionCoordinate c) {
+		return (long) Math.max(0, c.getWidth()) * Math.max(0, c.getHeight());
+	}
+	
+	private static long clippedArea(RegionCoordinate c, int frameWidth, int frameHeight) {
+		long width = Math.min(c.getRegionX() + c.getWidth(), frameWidth) - Math.max(c.getRegionX(), 0);
+		long height = Math.min(c.getRegionY() + c.getHeight(), frameHeight) - Math.max(c.getRegionY(), 0);
+		return width <= 0 || height <= 0 ? 0 : width * height;
+	}
+}
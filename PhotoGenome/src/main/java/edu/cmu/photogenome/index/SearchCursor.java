@@ -0,0 +1,80 @@
+package edu.cmu.photogenome.index;
+
+/**
+ * Position in a ranked search result, given by the score and id of the last photo returned.
+ * Results are ordered by descending score, then descending photo id, so the next page holds
+ * the photos ranked after this position regardless of what was inserted before it.
+ *
+ * Cursors are passed to clients as opaque url-safe strings.
+ */
+public class SearchCursor {
+	
+	private final double score;
+	private final int photoId;
+	
+	public SearchCursor(double score, int photoId) {
+		this.score = score;
+		this.photoId = photoId;
+	}
+	
+	public double getScore() {
+		return score;
+	}
+	
+	public int getPhotoId() {
+		return photoId;
+	}
+	
+	/**
+	 * Check whether a result ranks after this position
+	 * 
+	 * @param score		score of the result
+	 * @param photoId	id of the result
+	 * @return true if the result belongs on a later page
+	 */
+	public boolean isBefore(double score, int photoId) {
+		return score < this.score || (score == this.score && photoId < this.photoId);
+	}
+	
+	/**
+	 * Encode the cursor for a client
+	 * 
+	 * @return opaque url-safe cursor string
+	 */
+	public String encode() {
+		return Long.toString(Double.doubleToLongBits(score), Character.MAX_RADIX) + "."
+				+ Integer.toString(photoId, Character.MAX_RADIX);
+	}
+	
+	/**
+	 * Decode a cursor received from a client
+	 * 
+	 * @param cursor	opaque cursor string, may be null or empty for the first page
+	 * @return the cursor, or null for the first page
+	 * @throws IllegalArgumentException if the cursor is malformed
+	 */
+	public static SearchCursor decode(String cursor) {
+		if(cursor == null || cursor.length() == 0)
+			return null;
+		
+		int separator = cursor.indexOf('.');
+		if(separator < 0)
+			throw new IllegalArgumentException("Malformed search cursor: " + cursor);
+		
+		try {
+			double score = Double.longBitsToDouble(Long.parseLong(cursor.substring(0, separator), Character.MAX_RADIX));
+			int photoId = Integer.parseInt(cursor.substring(separator + 1), Character.MAX_RADIX);
+			if(Double.isNaN(score))
+				throw new IllegalArgumentException("Malformed search cursor: " + cursor);
+			return new SearchCursor(score, photoId);
+		}
+		catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed search cursor: " + cursor, e);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return score + ":" + photoId;
+	}
+}
@@ -0,0 +1,67 @@
+package edu.cmu.photogenome.index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits annotation text into the lower-cased terms used by the in-memory search indexes.
+ */
+public class Tokenizer {
+	
+	private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s");
+	
+	/**
+	 * Split text into lower-cased alphanumeric terms
+	 * 
+	 * @param text	text to split, may be null
+	 * @return list of terms in the order they appear, empty if there are none
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<String>();
+		if(text == null)
+			return terms;
+		
+		for(String term : SEPARATOR.split(text.toLowerCase()))
+			if(term.length() > 0)
+				terms.add(term);
+		return terms;
+	}
+	
+	/**
+	 * Get the distinct terms of a category. Besides the terms of the name and text, the name and 
+	 * text are also merged into a single term with all whitespace removed, which is the form category 
+	 * data takes in the photo metadata and in category filtered searches.
+	 * 
+	 * @param name	category name
+	 * @param text	category text
+	 * @return set of distinct terms
+	 */
+	public static Set<String> tokenizeCategory(String name, String text) {
+		Set<String> terms = new LinkedHashSet<String>();
+		terms.addAll(tokenize(name));
+		terms.addAll(tokenize(text));
+		
+		String merged = mergeCategory(name, text);
+		if(merged.length() > 0)
+			terms.add(merged);
+		return terms;
+	}
+	
+	/**
+	 * Remove all whitespace and concatenate the lower-cased name and text of a category
+	 * 
+	 * @param name	category name, may be null
+	 * @param text	category text, may be null
+	 * @return merged category term
+	 */
+	public static String mergeCategory(String name, String text) {
+		String newName = name == null ? "" : WHITESPACE.matcher(name).replaceAll("");
+		String newText = text == null ? "" : WHITESPACE.matcher(text).replaceAll("");
+		
+		return (newName + newText).toLowerCase();
+	}
+}
@@ -0,0 +1,55 @@
+package edu.cmu.photogenome.util;
+
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.struts2.ServletActionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionInvocation;
+import com.opensymphony.xwork2.interceptor.AbstractInterceptor;
+
+/**
+ * Struts interceptor letting only administrators run the actions of the admin package, such as the
+ * statistics of the DAOs, caches and connection pools.
+ *
+ * The role of the user is kept in the HTTP session by @LoginAction on login. Requests of users not
+ * logged in with the admin.roleId role are answered with 403 Forbidden, without running the action.
+ */
+public class AdminInterceptor extends AbstractInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final Logger log = LoggerFactory.getLogger(AdminInterceptor.class);
+	
+	/**
+	 * HTTP session attribute holding the role id of the logged in user
+	 */
+	public static final String ROLE_ATTRIBUTE = AdminInterceptor.class.getName() + ".roleId";
+	
+	private int adminRoleId = 1;
+	
+	public AdminInterceptor() {
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config != null)
+			adminRoleId = Integer.parseInt(config.getProperty("admin.roleId", "1").trim());
+	}
+	
+	@Override
+	public String intercept(ActionInvocation invocation) throws Exception {
+		Map<String, Object> httpSession = invocation.getInvocationContext().getSession();
+		Object roleId = httpSession == null ? null : httpSession.get(ROLE_ATTRIBUTE);
+		if(roleId instanceof Integer && ((Integer) roleId).intValue() == adminRoleId)
+			return invocation.invoke();
+		
+		log.warn("Admin action {} refused", invocation.getProxy().getActionName());
+		HttpServletResponse response = ServletActionContext.getResponse();
+		if(response != null)
+			response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+		return Action.NONE;
+	}
+}
@@ -0,0 +1,55 @@
+package edu.cmu.photogenome.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Utility class reporting the hit, miss and put counts of the Hibernate second-level and query caches
+ */
+public class CacheStatistics {
+	
+	/**
+	 * Get the cache counters of a session factory, in total and by second-level cache region
+	 * 
+	 * @param sessionFactory
+	 * @return map of counter name to value, with the regions under "regions"
+	 */
+	public static Map<String, Object> getStats(SessionFactory sessionFactory) {
+		Statistics statistics = sessionFactory.getStatistics();
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		
+		stats.put("enabled", statistics.isStatisticsEnabled());
+		stats.put("secondLevelCache", counters(statistics.getSecondLevelCacheHitCount(),
+				statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount()));
+		stats.put("queryCache", counters(statistics.getQueryCacheHitCount(),
+				statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount()));
+		
+		Map<String, Object> regions = new TreeMap<String, Object>();
+		for(String name : statistics.getSecondLevelCacheRegionNames()) {
+			SecondLevelCacheStatistics region = statistics.getSecondLevelCacheStatistics(name);
+			if(region == null)
+				continue;
+			
+			Map<String, Object> counters = counters(region.getHitCount(), region.getMissCount(), region.getPutCount());
+			counters.put("elementsInMemory", region.getElementCountInMemory());
+			regions.put(name, counters);
+		}
+		stats.put("regions", regions);
+		
+		return stats;
+	}
+	
+	private static Map<String, Object> counters(long hits, long misses, long puts) {
+		Map<String, Object> counters = new LinkedHashMap<String, Object>();
+		counters.put("hits", hits);
+		counters.put("misses", misses);
+		counters.put("puts", puts);
+		counters.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+		return counters;
+	}
+}
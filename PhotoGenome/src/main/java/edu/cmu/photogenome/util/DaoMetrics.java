@@ -0,0 +1,316 @@
+package edu.cmu.photogenome.util;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latency, row and error counters of the DAO operations by entity and operation, along with the
+ * log of the slow SQL statements.
+ *
+ * Operations are timed with {@link #start(String, String)}. Their latencies are counted in a
+ * histogram of fixed buckets, so that percentiles can be estimated without keeping every sample.
+ * Statements taking at least dao.slowQueryMillis milliseconds are logged to the 
+ * edu.cmu.photogenome.slowquery logger and the last dao.slowQueryLogSize of them are kept for 
+ * {@link #getStats()}. The bind parameters may hold user data such as email addresses or password 
+ * hashes, so only their types are logged and they are not kept. A negative threshold disables the 
+ * slow query log.
+ */
+public class DaoMetrics {
+	
+	private static final Logger slowLog = LoggerFactory.getLogger("edu.cmu.photogenome.slowquery");
+	
+	// upper bounds in milliseconds of the latency buckets, the last bucket is unbounded
+	private static final long[] BUCKET_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500};
+	
+	private static final DaoMetrics instance = new DaoMetrics();
+	
+	// operation being timed on this thread, named in the slow query log
+	private static final ThreadLocal<String> currentOperation = new ThreadLocal<String>();
+	
+	private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<String, OperationStats>();
+	private final LinkedList<Map<String, Object>> slowStatements = new LinkedList<Map<String, Object>>();
+	private final AtomicLong slowStatementCount = new AtomicLong();
+	
+	private volatile long slowQueryMillis = 500;
+	private volatile int slowQueryLogSize = 50;
+	
+	private DaoMetrics() {
+		Properties config = ConfigUtil.getApplicationProperties();
+		if(config != null) {
+			slowQueryMillis = Long.parseLong(config.getProperty("dao.slowQueryMillis", "500").trim());
+			slowQueryLogSize = Integer.parseInt(config.getProperty("dao.slowQueryLogSize", "50").trim());
+		}
+	}
+	
+	public static DaoMetrics getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Start timing an operation on this thread
+	 * 
+	 * @param entity	entity or query group the operation is run on
+	 * @param operation	name of the operation
+	 * @return timer to stop when the operation ends
+	 */
+	public static Timer start(String entity, String operation) {
+		return new Timer(instance.getOperationStats(entity + "." + operation));
+	}
+	
+	/**
+	 * @return name of the operation being timed on this thread, null if none
+	 */
+	public static String getCurrentOperation() {
+		return currentOperation.get();
+	}
+	
+	/**
+	 * Record a statement taking at least the slow query threshold
+	 * 
+	 * @param sql			statement
+	 * @param parameters	bind parameters by index, null if the statement is not prepared
+	 * @param batchSize		number of parameter sets of a batch, 0 if the statement is not batched
+	 * @param nanos			execution time
+	 * @param failed		true if the statement failed
+	 */
+	public void recordSlowStatement(String sql, Map<Integer, Object> parameters, int batchSize, long nanos, boolean failed) {
+		long millis = nanos / 1000000;
+		String operation = currentOperation.get();
+		slowStatementCount.incrementAndGet();
+		slowLog.warn("{} ms{} in {}: {} {}", new Object[] {millis, batchSize > 0 ? " for a batch of " + batchSize : "",
+				operation == null ? "no DAO operation" : operation, sql, parameters == null ? "" : maskParameters(parameters)});
+		
+		Map<String, Object> statement = new LinkedHashMap<String, Object>();
+		statement.put("time", new Date());
+		statement.put("millis", millis);
+		statement.put("operation", operation);
+		statement.put("sql", sql);
+		statement.put("batchSize", batchSize);
+		statement.put("failed", failed);
+		
+		synchronized(slowStatements) {
+			slowStatements.addFirst(statement);
+			while(slowStatements.size() > slowQueryLogSize)
+				slowStatements.removeLast();
+		}
+	}
+	
+	/**
+	 * Describe bind parameters by their types only
+	 * 
+	 * @param parameters	bind parameters by index
+	 * @return type names of the parameter values in index order, null for null values
+	 */
+	static List<String> maskParameters(Map<Integer, Object> parameters) {
+		List<String> types = new ArrayList<String>(parameters.size());
+		for(Object value : parameters.values())
+			types.add(value == null ? null : value.getClass().getSimpleName());
+		return types;
+	}
+	
+	/**
+	 * @param nanos	execution time of a statement
+	 * @return true if the slow query log is enabled and the time reaches its threshold
+	 */
+	public boolean isSlow(long nanos) {
+		long threshold = slowQueryMillis;
+		return threshold >= 0 && nanos >= threshold * 1000000;
+	}
+	
+	/**
+	 * @return true if slow statements are logged
+	 */
+	public boolean isSlowQueryLogEnabled() {
+		return slowQueryMillis >= 0;
+	}
+	
+	/**
+	 * Get the counters of each operation and the last slow statements, most recent first
+	 * 
+	 * @return map of counter name to value, with the operations under "operations" and the
+	 * statements under "slowStatements"
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("slowQueryMillis", slowQueryMillis);
+		
+		Map<String, Object> byOperation = new TreeMap<String, Object>();
+		for(Map.Entry<String, OperationStats> entry : operations.entrySet())
+			byOperation.put(entry.getKey(), entry.getValue().getStats());
+		stats.put("operations", byOperation);
+		
+		stats.put("slowStatementCount", slowStatementCount.get());
+		synchronized(slowStatements) {
+			stats.put("slowStatements", new ArrayList<Map<String, Object>>(slowStatements));
+		}
+		return stats;
+	}
+	
+	/**
+	 * Drop all the counters and slow statements
+	 */
+	public void reset() {
+		operations.clear();
+		slowStatementCount.set(0);
+		synchronized(slowStatements) {
+			slowStatements.clear();
+		}
+	}
+	
+	public long getSlowQueryMillis() {
+		return slowQueryMillis;
+	}
+	
+	/**
+	 * Set the slow query threshold
+	 * 
+	 * @param slowQueryMillis	milliseconds, negative to disable the slow query log
+	 */
+	public void setSlowQueryMillis(long slowQueryMillis) {
+		this.slowQueryMillis = slowQueryMillis;
+	}
+	
+	private OperationStats getOperationStats(String name) {
+		OperationStats stats = operations.get(name);
+		if(stats == null) {
+			OperationStats created = new OperationStats(name);
+			stats = operations.putIfAbsent(name, created);
+			if(stats == null)
+				stats = created;
+		}
+		return stats;
+	}
+	
+	/**
+	 * Timer of one operation, to be stopped in a finally block
+	 */
+	public static class Timer {
+		
+		private final OperationStats stats;
+		private final String previousOperation;
+		private final long start;
+		private int rows;
+		private boolean failed;
+		
+		private Timer(OperationStats stats) {
+			this.stats = stats;
+			this.previousOperation = currentOperation.get();
+			currentOperation.set(stats.name);
+			this.start = System.nanoTime();
+		}
+		
+		/**
+		 * @param rows	number of rows read or written by the operation
+		 */
+		public void setRows(int rows) {
+			this.rows = rows;
+		}
+		
+		/**
+		 * Count the operation as failed
+		 */
+		public void fail() {
+			failed = true;
+		}
+		
+		/**
+		 * Record the operation
+		 */
+		public void stop() {
+			stats.record(System.nanoTime() - start, rows, failed);
+			if(previousOperation == null)
+				currentOperation.remove();
+			else
+				currentOperation.set(previousOperation);
+		}
+	}
+	
+	private static class OperationStats {
+		
+		private final String name;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong errors = new AtomicLong();
+		private final AtomicLong rows = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_MILLIS.length + 1);
+		
+		OperationStats(String name) {
+			this.name = name;
+		}
+		
+		void record(long nanos, int rowCount, boolean failed) {
+			count.incrementAndGet();
+			if(failed)
+				errors.incrementAndGet();
+			rows.addAndGet(rowCount);
+			totalNanos.addAndGet(nanos);
+			long max = maxNanos.get();
+			while(nanos > max && !maxNanos.compareAndSet(max, nanos))
+				max = maxNanos.get();
+			
+			int bucket = 0;
+			while(bucket < BUCKET_MILLIS.length && nanos > BUCKET_MILLIS[bucket] * 1000000)
+				bucket++;
+			buckets.incrementAndGet(bucket);
+		}
+		
+		Map<String, Object> getStats() {
+			Map<String, Object> stats = new LinkedHashMap<String, Object>();
+			long n = count.get();
+			stats.put("count", n);
+			stats.put("errors", errors.get());
+			stats.put("rows", rows.get());
+			stats.put("totalMillis", totalNanos.get() / 1000000);
+			stats.put("maxMillis", maxNanos.get() / 1000000.0);
+			stats.put("averageMillis", n == 0 ? 0.0 : totalNanos.get() / 1000000.0 / n);
+			
+			long[] counts = new long[buckets.length()];
+			for(int i = 0; i < counts.length; i++)
+				counts[i] = buckets.get(i);
+			stats.put("p50Millis", percentile(counts, 0.50));
+			stats.put("p95Millis", percentile(counts, 0.95));
+			stats.put("p99Millis", percentile(counts, 0.99));
+			
+			Map<String, Long> histogram = new LinkedHashMap<String, Long>();
+			for(int i = 0; i < BUCKET_MILLIS.length; i++)
+				histogram.put("<=" + BUCKET_MILLIS[i], counts[i]);
+			histogram.put(">" + BUCKET_MILLIS[BUCKET_MILLIS.length - 1], counts[BUCKET_MILLIS.length]);
+			stats.put("histogramMillis", histogram);
+			return stats;
+		}
+		
+		/**
+		 * @return upper bound of the bucket holding the percentile, or the max of the last bucket
+		 */
+		private double percentile(long[] counts, double p) {
+			long total = 0;
+			for(long c : counts)
+				total += c;
+			if(total == 0)
+				return 0.0;
+			
+			long rank = (long) Math.ceil(p * total);
+			long seen = 0;
+			for(int i = 0; i < BUCKET_MILLIS.length; i++) {
+				seen += counts[i];
+				if(seen >= rank)
+					return BUCKET_MILLIS[i];
+			}
+			return maxNanos.get() / 1000000.0;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package edu.cmu.photogenome.util;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an action method, or all methods of an action class, to run in a Hibernate @Session and 
+ * transaction opened by @HibernateSessionInterceptor for the request. The action receives the session 
+ * through @HibernateSessionAware.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface HibernateSession {
+	
+	/**
+	 * @return true if the action only reads, in which case the transaction is read-only and rolled back
+	 */
+	boolean readOnly() default false;
+}
@@ -0,0 +1,17 @@
+package edu.cmu.photogenome.util;
+
+import org.hibernate.Session;
+
+/**
+ * Implemented by the actions receiving the Hibernate @Session of the request from 
+ * @HibernateSessionInterceptor
+ */
+public interface HibernateSessionAware {
+	
+	/**
+	 * Set the Hibernate session of the request, before the action method is called
+	 * 
+	 * @param session
+	 */
+	public void setHibernateSession(Session session);
+}
@@ -0,0 +1,137 @@
+package edu.cmu.photogenome.util;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opensymphony.xwork2.ActionInvocation;
+import com.opensymphony.xwork2.interceptor.AbstractInterceptor;
+import com.opensymphony.xwork2.interceptor.PreResultListener;
+
+/**
+ * Struts interceptor running the action methods marked with @HibernateSession in one Hibernate
+ * session and transaction per request.
+ *
+ * The session is opened and the transaction begun before the action method is called, and the
+ * transaction is ended before the result is rendered: a read-only transaction is rolled back, any
+ * other transaction is committed unless the action called @HibernateUtil.setRollbackOnly(). The
+ * transaction is rolled back if the action method throws. Methods not marked are invoked as is.
+ *
+ * Read-only sessions are opened on a read replica when one is usable, any other session on the primary.
+ * The time of the last write committed for a user is kept in the HTTP session, so that the reads of
+ * that user go to the primary until the replicas have the write, see @ReplicaRouter. This applies
+ * to every action, including those opening their sessions themselves.
+ */
+public class HibernateSessionInterceptor extends AbstractInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final Logger log = LoggerFactory.getLogger(HibernateSessionInterceptor.class);
+	
+	/**
+	 * HTTP session attribute holding the time of the last write of the user
+	 */
+	public static final String LAST_WRITE_ATTRIBUTE = HibernateSessionInterceptor.class.getName() + ".lastWriteMillis";
+	
+	@Override
+	public String intercept(ActionInvocation invocation) throws Exception {
+		final Map<String, Object> httpSession = invocation.getInvocationContext().getSession();
+		Object lastWrite = httpSession == null ? null : httpSession.get(LAST_WRITE_ATTRIBUTE);
+		final long lastWriteMillis = lastWrite instanceof Long ? ((Long) lastWrite).longValue() : 0;
+		HibernateUtil.setLastWriteMillis(lastWriteMillis);
+		
+		try {
+			HibernateSession annotation = getAnnotation(invocation);
+			if(annotation == null) {
+				storeLastWrite(invocation, httpSession, lastWriteMillis);
+				return invocation.invoke();
+			}
+			return intercept(invocation, annotation, httpSession, lastWriteMillis);
+		}
+		finally {
+			HibernateUtil.clearLastWriteMillis();
+		}
+	}
+	
+	private String intercept(ActionInvocation invocation, HibernateSession annotation, Map<String, Object> httpSession,
+			long lastWriteMillis) throws Exception {
+		final boolean readOnly = annotation.readOnly();
+		final Session session = (readOnly ? HibernateUtil.getReadSessionFactory()
+				: HibernateUtil.getSessionFactory()).openSession();
+		HibernateUtil.clearRollbackOnly();
+		HibernateUtil.beginTransaction(session, readOnly);
+		
+		Object action = invocation.getAction();
+		if(action instanceof HibernateSessionAware)
+			((HibernateSessionAware) action).setHibernateSession(session);
+		
+		// the results serialize detached entities, as when the actions ended the transactions themselves
+		invocation.addPreResultListener(new PreResultListener() {
+			public void beforeResult(ActionInvocation invocation, String resultCode) {
+				endTransaction(session, readOnly);
+			}
+		});
+		storeLastWrite(invocation, httpSession, lastWriteMillis);
+		
+		try {
+			return invocation.invoke();
+		}
+		finally {
+			// the action method threw before its result
+			if(session.isOpen())
+				HibernateUtil.rollbackTransaction(session);
+			HibernateUtil.clearRollbackOnly();
+		}
+	}
+	
+	/**
+	 * Store the time of a write committed by the action in the HTTP session, once the transaction is 
+	 * over and before the result is rendered, as the response may be committed afterwards
+	 */
+	private void storeLastWrite(ActionInvocation invocation, final Map<String, Object> httpSession,
+			final long lastWriteMillis) {
+		if(httpSession == null)
+			return;
+		
+		invocation.addPreResultListener(new PreResultListener() {
+			public void beforeResult(ActionInvocation invocation, String resultCode) {
+				Long millis = HibernateUtil.getLastWriteMillis();
+				if(millis != null && millis.longValue() != lastWriteMillis)
+					httpSession.put(LAST_WRITE_ATTRIBUTE, millis);
+			}
+		});
+	}
+	
+	private void endTransaction(Session session, boolean readOnly) {
+		if(readOnly || HibernateUtil.isRollbackOnly()) {
+			HibernateUtil.rollbackTransaction(session);
+			return;
+		}
+		
+		try {
+			HibernateUtil.commitTransaction(session);
+		}
+		catch(RuntimeException e) {
+			log.warn(e.getMessage(), e);
+			if(session.isOpen())
+				HibernateUtil.rollbackTransaction(session);
+		}
+	}
+	
+	private HibernateSession getAnnotation(ActionInvocation invocation) {
+		Class<?> actionClass = invocation.getAction().getClass();
+		String methodName = invocation.getProxy().getMethod();
+		try {
+			Method method = actionClass.getMethod(methodName == null ? "execute" : methodName);
+			if(method.isAnnotationPresent(HibernateSession.class))
+				return method.getAnnotation(HibernateSession.class);
+		}
+		catch(NoSuchMethodException e) {
+			// Struts fails the invocation itself
+		}
+		return actionClass.getAnnotation(HibernateSession.class);
+	}
+}
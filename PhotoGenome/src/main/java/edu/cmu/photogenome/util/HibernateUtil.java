@@ -1,18 +1,52 @@
 package edu.cmu.photogenome.util;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
 import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+import org.hibernate.connection.ConnectionProvider;
 import org.hibernate.context.ManagedSessionContext;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.jdbc.Work;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.dao.GenericAbstractDaoImpl;
 
 /**
  * Utility class for retrieving a Hibernate @SessionFactory and for starting, committing, and rolling
  * back Hibernate @Session transactions.
+ *
+ * Besides the @SessionFactory of the primary database, read-only sessions can be opened on read
+ * replicas listed by replica.configs in the application properties, see @ReplicaRouter.
  */
 public class HibernateUtil {
 
-	private static SessionFactory sessionFactory;
+	private static final Logger log = LoggerFactory.getLogger(HibernateUtil.class);
+	
+	private static volatile SessionFactory sessionFactory;
+	
+	private static volatile ReplicaRouter replicaRouter;
+	
+	// set once the application stops, so that no factory is built again
+	private static volatile boolean closed;
+	
+	// property of the Hibernate config file of a replica giving its lag query
+	private static final String LAG_QUERY_PROPERTY = "hibernate.replica.lag_query";
+	
+	private static final ThreadLocal<Boolean> rollbackOnly = new ThreadLocal<Boolean>();
+	// time of the last write of the user of the current request, not set outside requests
+	private static final ThreadLocal<Long> lastWriteMillis = new ThreadLocal<Long>();
 	
 	/**
 	 * Create a new @SessionFactory using the default Hibernate config file
@@ -22,7 +56,7 @@ public class HibernateUtil {
 	private static SessionFactory buildSessionFactory() {
         try {
             // Create the SessionFactory from hibernate.cfg.xml
-            return new Configuration().configure().buildSessionFactory();
+            return setBatchSize(new Configuration().configure()).buildSessionFactory();
         }
         catch (Throwable ex) {
             throw new ExceptionInInitializerError(ex);
@@ -37,22 +71,45 @@ public class HibernateUtil {
 	 */
     private static SessionFactory buildSessionFactory(String hibernateCfgXml) {
         try {
-            return new Configuration().configure(hibernateCfgXml).buildSessionFactory();
+            return setBatchSize(new Configuration().configure(hibernateCfgXml)).buildSessionFactory();
         }
         catch (Throwable ex) {
             throw new ExceptionInInitializerError(ex);
         }
     }
     
+    /**
+     * Send the statements of each flush as JDBC batches of dao.batchSize statements, unless the
+     * Hibernate config file sets its own batch size
+     * 
+     * @param configuration
+     * @return the configuration
+     */
+    private static Configuration setBatchSize(Configuration configuration) {
+    	if(configuration.getProperty(Environment.STATEMENT_BATCH_SIZE) == null)
+    		configuration.setProperty(Environment.STATEMENT_BATCH_SIZE,
+    				String.valueOf(GenericAbstractDaoImpl.getDefaultBatchSize()));
+    	return configuration;
+    }
+    
     /**
      * Retrieve a @SessionFactory using the default Hibernate config file
      * 
      * @return	@SessionFactory instance
+     * @throws IllegalStateException if the @SessionFactory was closed
      */
     public static SessionFactory getSessionFactory() {
-    	if(sessionFactory == null)
-    		sessionFactory = buildSessionFactory();
-    	return sessionFactory;
+    	SessionFactory factory = sessionFactory;
+    	if(factory == null) {
+    		// build the factory once even if several threads ask for it at the same time
+    		synchronized(HibernateUtil.class) {
+    			checkNotClosed();
+    			if(sessionFactory == null)
+    				sessionFactory = buildSessionFactory();
+    			factory = sessionFactory;
+    		}
+    	}
+    	return factory;
     }
     
     /**
@@ -60,11 +117,185 @@ public class HibernateUtil {
      * 
      * @param hibernateCfgXml	Hibernate config file to use
      * @return @SessionFactory instance
+     * @throws IllegalStateException if the @SessionFactory was closed
      */
     public static SessionFactory getSessionFactory(String hibernateCfgXml) {
-    	if(sessionFactory == null)
-    		sessionFactory = buildSessionFactory(hibernateCfgXml);
-    	return sessionFactory;
+    	SessionFactory factory = sessionFactory;
+    	if(factory == null) {
+    		synchronized(HibernateUtil.class) {
+    			checkNotClosed();
+    			if(sessionFactory == null)
+    				sessionFactory = buildSessionFactory(hibernateCfgXml);
+    			factory = sessionFactory;
+    		}
+    	}
+    	return factory;
+    }
+    
+    /**
+     * Retrieve the @SessionFactory of a read-only session: a read replica lagging no more than 
+     * replica.maxLagSeconds, or the primary @SessionFactory if there is none or the user of the 
+     * current request wrote too recently for the replicas to have the write
+     * 
+     * @return @SessionFactory instance
+     */
+    public static SessionFactory getReadSessionFactory() {
+    	SessionFactory primary = getSessionFactory();
+    	Long lastWrite = lastWriteMillis.get();
+    	if(lastWrite == null)
+    		return getReplicaRouter().select(primary);
+    	return getReplicaRouter().select(primary, lastWrite.longValue());
+    }
+    
+    /**
+     * Open a session on the primary for reading the data an in-memory index is built from, in a 
+     * read-only transaction of its own. A lagging replica could miss changes whose events the index 
+     * has already been given. The session is not bound to the thread and does not hold back 
+     * the change events, so it may be opened while the request has a transaction open. End it with 
+     * @closePrimaryReadSession.
+     * 
+     * @return session on the primary
+     */
+    public static Session openPrimaryReadSession() {
+    	Session session = getSessionFactory().openSession();
+    	session.setDefaultReadOnly(true);
+    	session.setFlushMode(FlushMode.MANUAL);
+    	session.beginTransaction();
+    	return session;
+    }
+    
+    /**
+     * Roll back the transaction of a session opened with @openPrimaryReadSession and close it
+     * 
+     * @param session
+     */
+    public static void closePrimaryReadSession(Session session) {
+    	try {
+    		if(session.getTransaction().isActive())
+    			session.getTransaction().rollback();
+    	}
+    	finally {
+    		session.close();
+    	}
+    }
+    
+    /**
+     * Retrieve the router of the read-only sessions, building the replica @SessionFactory instances
+     * on first use
+     * 
+     * @return @ReplicaRouter instance
+     * @throws IllegalStateException if the @SessionFactory was closed
+     */
+    public static ReplicaRouter getReplicaRouter() {
+    	ReplicaRouter router = replicaRouter;
+    	if(router == null) {
+    		synchronized(HibernateUtil.class) {
+    			checkNotClosed();
+    			if(replicaRouter == null)
+    				replicaRouter = buildReplicaRouter();
+    			router = replicaRouter;
+    		}
+    	}
+    	return router;
+    }
+    
+    /**
+     * Check whether a session was opened on a read replica, whose data may lag behind the primary
+     * 
+     * @param session
+     * @return true if the session is the one of a replica
+     */
+    public static boolean isReplicaSession(Session session) {
+    	ReplicaRouter router = replicaRouter;
+    	return session != null && router != null && router.isReplica(session.getSessionFactory());
+    }
+    
+    /**
+     * Create the router of the read-only sessions from the replica.* application properties
+     * 
+     * @return @ReplicaRouter instance, without replicas if none is configured
+     */
+    private static ReplicaRouter buildReplicaRouter() {
+    	Properties config = ConfigUtil.getApplicationProperties();
+    	if(config == null)
+    		return new ReplicaRouter(new ArrayList<ReplicaRouter.Replica>(), false, 0, 0);
+    	
+    	List<ReplicaRouter.Replica> replicas = new ArrayList<ReplicaRouter.Replica>();
+    	for(String hibernateCfgXml : config.getProperty("replica.configs", "").trim().split("\\s+")) {
+    		if(hibernateCfgXml.length() == 0)
+    			continue;
+    		try {
+    			Configuration configuration = configureReplica(new Configuration().configure(hibernateCfgXml));
+    			replicas.add(new ReplicaRouter.Replica(hibernateCfgXml, configuration.buildSessionFactory(),
+    					configuration.getProperty(LAG_QUERY_PROPERTY)));
+    		}
+    		catch(RuntimeException e) {
+    			// the reads go to the other replicas or the primary
+    			log.warn(e.getMessage(), e);
+    		}
+    	}
+    	
+    	boolean leastLoaded = "leastLoaded".equals(config.getProperty("replica.selection", "roundRobin").trim());
+    	long maxLagSeconds = Long.parseLong(config.getProperty("replica.maxLagSeconds", "5").trim());
+    	long lagCheckMillis = Long.parseLong(config.getProperty("replica.lagCheckSeconds", "5").trim()) * 1000;
+    	return new ReplicaRouter(replicas, leastLoaded, maxLagSeconds, lagCheckMillis);
+    }
+    
+    private static void checkNotClosed() {
+    	if(closed)
+    		throw new IllegalStateException("The session factory was closed");
+    }
+    
+    /**
+     * Disable the second-level and query caches of a replica. The cache regions are shared with the
+     * primary, which would then be given the stale entities and results read on a lagging replica.
+     * 
+     * @param configuration	Hibernate configuration of a replica
+     * @return the configuration
+     */
+    static Configuration configureReplica(Configuration configuration) {
+    	configuration.setProperty(Environment.USE_SECOND_LEVEL_CACHE, "false");
+    	configuration.setProperty(Environment.USE_QUERY_CACHE, "false");
+    	return configuration;
+    }
+    
+    /**
+     * Close the @SessionFactory and its connection pool, if it was built, along with the replicas.
+     * No @SessionFactory can be retrieved afterwards.
+     */
+    public static synchronized void closeSessionFactory() {
+    	closed = true;
+    	if(sessionFactory != null && !sessionFactory.isClosed())
+    		sessionFactory.close();
+    	sessionFactory = null;
+    	if(replicaRouter != null)
+    		replicaRouter.close();
+    	replicaRouter = null;
+    }
+    
+    /**
+     * Get the counters of the connection pool of the @SessionFactory
+     * 
+     * @return map of counter name to value, empty if the connections are not pooled by @PooledConnectionProvider
+     */
+    public static Map<String, Object> getConnectionPoolStats() {
+    	ConnectionProvider provider = ((SessionFactoryImplementor) getSessionFactory()).getConnectionProvider();
+    	if(provider instanceof PooledConnectionProvider)
+    		return ((PooledConnectionProvider) provider).getStats();
+    	return Collections.emptyMap();
+    }
+    
+    /**
+     * Open the minimum number of connections of the connection pool of the @SessionFactory
+     * 
+     * @return number of connections opened, 0 if the connections are not pooled by @PooledConnectionProvider
+     * @throws SQLException
+     */
+    public static int prestartConnectionPool() throws SQLException {
+    	ConnectionProvider provider = ((SessionFactoryImplementor) getSessionFactory()).getConnectionProvider();
+    	if(provider instanceof PooledConnectionProvider)
+    		return ((PooledConnectionProvider) provider).prestart();
+    	return 0;
     }
     
     /**
@@ -76,18 +307,87 @@ public class HibernateUtil {
         session.setFlushMode(FlushMode.MANUAL);
         ManagedSessionContext.bind((org.hibernate.classic.Session) session);
         session.beginTransaction();
+        PhotoChangeNotifier.beginTransaction(); // hold back change events until commit
+    }
+    
+    /**
+     * Begin a Hibernate transaction, read-only if readOnly is true: entities are loaded read-only so 
+     * Hibernate keeps no snapshot of them and does not check them for changes, and the JDBC connection 
+     * is set read-only. Changes made to the entities of a read-only transaction are never written.
+     * 
+     * @param session
+     * @param readOnly
+     */
+    public static void beginTransaction(Session session, boolean readOnly) {
+    	session.setDefaultReadOnly(readOnly);
+    	if(readOnly)
+    		setConnectionReadOnly(session, true);
+    	beginTransaction(session);
+    }
+    
+    /**
+     * Mark the transaction of the current request to be rolled back instead of committed by 
+     * @HibernateSessionInterceptor
+     */
+    public static void setRollbackOnly() {
+    	rollbackOnly.set(Boolean.TRUE);
     }
     
     /**
-     * Commit a Hibernate transaction
+     * @return true if the transaction of the current request is to be rolled back
+     */
+    public static boolean isRollbackOnly() {
+    	return Boolean.TRUE.equals(rollbackOnly.get());
+    }
+    
+    /**
+     * Clear the rollback mark of the current request
+     */
+    public static void clearRollbackOnly() {
+    	rollbackOnly.remove();
+    }
+    
+    /**
+     * Set the time of the last write of the user of the current request, as kept by 
+     * @HibernateSessionInterceptor. The read-only sessions of the request go to the primary for a while 
+     * after that write, and a write committed on the primary during the request updates it.
+     * 
+     * @param millis	time of the last write, 0 if the user has not written
+     */
+    public static void setLastWriteMillis(long millis) {
+    	lastWriteMillis.set(millis);
+    }
+    
+    /**
+     * @return time of the last write of the user of the current request, null outside requests
+     */
+    public static Long getLastWriteMillis() {
+    	return lastWriteMillis.get();
+    }
+    
+    /**
+     * Clear the time of the last write once the request is over
+     */
+    public static void clearLastWriteMillis() {
+    	lastWriteMillis.remove();
+    }
+    
+    /**
+     * Commit a Hibernate transaction. After a commit on the primary during a request, the reads of the 
+     * user of the request are not routed to the replicas for a while, see @ReplicaRouter. Commits made 
+     * outside requests, such as by the background threads, leave the reads on the replicas.
      * 
      * @param session
      */
     public static void commitTransaction(Session session) {
-		ManagedSessionContext.unbind(sessionFactory);
+		ManagedSessionContext.unbind(session.getSessionFactory());
+		boolean write = !session.isDefaultReadOnly() && session.getSessionFactory() == sessionFactory;
 		session.flush();
 		session.getTransaction().commit();
+		if(write && lastWriteMillis.get() != null)
+			lastWriteMillis.set(System.currentTimeMillis());
 		session.close();
+		PhotoChangeNotifier.commitTransaction();
     }
     
     /**
@@ -96,9 +396,26 @@ public class HibernateUtil {
      * @param session
      */
     public static void rollbackTransaction(Session session) {
-		ManagedSessionContext.unbind(sessionFactory);
-		session.flush();
+		ManagedSessionContext.unbind(session.getSessionFactory()); // the primary or a replica
+		// nothing to flush, the changes are discarded
+		if(session.isDefaultReadOnly())
+			setConnectionReadOnly(session, false);
 		session.getTransaction().rollback();
 		session.close();
+		PhotoChangeNotifier.rollbackTransaction();
+    }
+    
+    private static void setConnectionReadOnly(Session session, final boolean readOnly) {
+    	try {
+    		session.doWork(new Work() {
+    			public void execute(Connection connection) throws SQLException {
+    				connection.setReadOnly(readOnly);
+    			}
+    		});
+    	}
+    	catch(HibernateException e) {
+    		// the transaction is still read-only for Hibernate
+    		log.warn(e.getMessage(), e);
+    	}
     }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package edu.cmu.photogenome.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe cache holding a bounded number of entries, evicting the least recently used entry
+ * when full. Counts hits, misses and evictions.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+	
+	private final int maxEntries;
+	private final LinkedHashMap<K, V> entries;
+	
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	/**
+	 * @param maxEntries	maximum number of entries held at once
+	 */
+	public LruCache(int maxEntries) {
+		if(maxEntries <= 0)
+			throw new IllegalArgumentException("maxEntries must be positive");
+		
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				if(size() > LruCache.this.maxEntries) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Get a cached value, marking it as most recently used
+	 * 
+	 * @param key
+	 * @return cached value, or null if there is none
+	 */
+	public synchronized V get(K key) {
+		V value = entries.get(key);
+		if(value == null)
+			misses++;
+		else
+			hits++;
+		return value;
+	}
+	
+	/**
+	 * Cache a value, evicting the least recently used entry if the cache is full
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public synchronized void put(K key, V value) {
+		entries.put(key, value);
+	}
+	
+	/**
+	 * Remove a cached value
+	 * 
+	 * @param key
+	 * @return the removed value, or null if there was none
+	 */
+	public synchronized V remove(K key) {
+		return entries.remove(key);
+	}
+	
+	/**
+	 * Remove the entries accepted by a filter
+	 * 
+	 * @param filter
+	 * @return number of entries removed
+	 */
+	public synchronized int removeIf(Filter<K, V> filter) {
+		int removed = 0;
+		Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<K, V> entry = it.next();
+			if(filter.accept(entry.getKey(), entry.getValue())) {
+				it.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+	
+	/**
+	 * Remove all entries, the counters are kept
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * Selects cache entries
+	 */
+	public interface Filter<K, V> {
+		boolean accept(K key, V value);
+	}
+}
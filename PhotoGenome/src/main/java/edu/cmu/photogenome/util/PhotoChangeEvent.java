@@ -0,0 +1,66 @@
+package edu.cmu.photogenome.util;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.domain.RegionComment;
+import edu.cmu.photogenome.domain.RegionCoordinate;
+
+/**
+ * Describes a change made to a photo or to one of the entities annotating it 
+ * (categories, comments, regions and region coordinates).
+ */
+public class PhotoChangeEvent {
+
+	public enum Action { SAVE, UPDATE, DELETE }
+	
+	private final Action action;
+	private final Object entity;
+	
+	/**
+	 * @param action	the kind of change
+	 * @param entity	the entity that was saved, updated or deleted
+	 */
+	public PhotoChangeEvent(Action action, Object entity) {
+		this.action = action;
+		this.entity = entity;
+	}
+	
+	public Action getAction() {
+		return action;
+	}
+	
+	public Object getEntity() {
+		return entity;
+	}
+	
+	/**
+	 * Get the id of the photo affected by this change
+	 * 
+	 * @return the photo id, or -1 if the entity is not attached to a photo
+	 */
+	public int getPhotoId() {
+		if(entity instanceof Photo)
+			return ((Photo) entity).getPhotoId();
+		if(entity instanceof PhotoCategory)
+			return ((PhotoCategory) entity).getPhotoId();
+		if(entity instanceof PhotoComment)
+			return ((PhotoComment) entity).getPhotoId();
+		if(entity instanceof PhotoRegion)
+			return ((PhotoRegion) entity).getPhotoId();
+		if(entity instanceof RegionCategory)
+			return ((RegionCategory) entity).getPhotoId();
+		if(entity instanceof RegionComment)
+			return ((RegionComment) entity).getPhotoId();
+		if(entity instanceof RegionCoordinate)
+			return ((RegionCoordinate) entity).getPhotoId();
+		return -1;
+	}
+	
+	@Override
+	public String toString() {
+		return action + " " + entity.getClass().getSimpleName() + " on photo " + getPhotoId();
+	}
+}
@@ -0,0 +1,15 @@
+package edu.cmu.photogenome.util;
+
+/**
+ * Listener notified when a photo, or any of the annotations attached to it, is created, 
+ * updated or deleted. Listeners are registered with <code>PhotoChangeNotifier</code>.
+ */
+public interface PhotoChangeListener {
+	
+	/**
+	 * Handle a committed change to a photo or one of its annotations
+	 * 
+	 * @param event	the change that was made
+	 */
+	public void photoChanged(PhotoChangeEvent event);
+}
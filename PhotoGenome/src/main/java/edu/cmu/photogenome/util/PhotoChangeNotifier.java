@@ -0,0 +1,102 @@
+package edu.cmu.photogenome.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utility class for publishing <code>PhotoChangeEvent</code>s to registered listeners.
+ * 
+ * Events fired while a transaction started through <code>HibernateUtil</code> is open on the 
+ * current thread are held back until that transaction commits, and are dropped if it rolls back, 
+ * so listeners only ever see changes that actually reached the database.
+ */
+public class PhotoChangeNotifier {
+
+	final static Logger log = LoggerFactory.getLogger(PhotoChangeNotifier.class);
+	
+	private static final List<PhotoChangeListener> listeners = new CopyOnWriteArrayList<PhotoChangeListener>();
+	
+	private static final ThreadLocal<List<PhotoChangeEvent>> pendingEvents = new ThreadLocal<List<PhotoChangeEvent>>();
+	
+	/**
+	 * Register a listener to be notified of photo changes
+	 * 
+	 * @param listener
+	 */
+	public static void addListener(PhotoChangeListener listener) {
+		if(!listeners.contains(listener))
+			listeners.add(listener);
+	}
+	
+	/**
+	 * Unregister a listener
+	 * 
+	 * @param listener
+	 */
+	public static void removeListener(PhotoChangeListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Fire a change event. The event is queued if a transaction is open on the current thread, 
+	 * otherwise it is published immediately.
+	 * 
+	 * @param action	the kind of change
+	 * @param entity	the changed entity
+	 */
+	public static void fire(PhotoChangeEvent.Action action, Object entity) {
+		PhotoChangeEvent event = new PhotoChangeEvent(action, entity);
+		List<PhotoChangeEvent> pending = pendingEvents.get();
+		if(pending != null)
+			pending.add(event);
+		else
+			publish(event);
+	}
+	
+	/**
+	 * Start queueing events fired on the current thread
+	 */
+	public static void beginTransaction() {
+		pendingEvents.set(new ArrayList<PhotoChangeEvent>());
+	}
+	
+	/**
+	 * Publish all events queued on the current thread
+	 */
+	public static void commitTransaction() {
+		List<PhotoChangeEvent> pending = pendingEvents.get();
+		pendingEvents.remove();
+		if(pending != null)
+			for(PhotoChangeEvent event : pending)
+				publish(event);
+	}
+	
+	/**
+	 * Discard all events queued on the current thread
+	 */
+	public static void rollbackTransaction() {
+		pendingEvents.remove();
+	}
+	
+	/**
+	 * Deliver an event to every listener. A failing listener is logged and does not prevent 
+	 * the remaining listeners from being notified.
+	 * 
+	 * @param event
+	 */
+	private static void publish(PhotoChangeEvent event) {
+		log.debug("Publishing photo change: {}", event);
+		for(PhotoChangeListener listener : listeners) {
+			try {
+				listener.photoChanged(event);
+			}
+			catch(RuntimeException e) {
+				log.warn(e.getMessage(), e);
+			}
+		}
+	}
+}
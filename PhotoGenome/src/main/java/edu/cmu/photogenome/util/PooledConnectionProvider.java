@@ -0,0 +1,195 @@
+package edu.cmu.photogenome.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.Environment;
+import org.hibernate.connection.ConnectionProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import com.mchange.v2.c3p0.DataSources;
+
+/**
+ * Hibernate @ConnectionProvider handing out connections from a c3p0 pool, configured by the
+ * hibernate.pool.* properties of the Hibernate config file:
+ *
+ * <ul>
+ * <li>min_size, max_size: number of pooled connections</li>
+ * <li>checkout_timeout: milliseconds to wait for a free connection before failing, 0 to wait forever</li>
+ * <li>test_query, idle_test_period, test_on_checkout: connection validation, idle connections are tested
+ * every idle_test_period seconds and connections when returned to the pool</li>
+ * <li>max_idle_time: seconds before an unused connection is closed</li>
+ * <li>leak_timeout: seconds before a connection not returned to the pool is closed, 0 to disable</li>
+ * <li>leak_stack_traces: true to log the stack trace of the checkout of each connection closed by the
+ * leak timeout, false by default as a stack trace is then taken on every checkout</li>
+ * <li>statement_cache_size: prepared statements cached by connection</li>
+ * </ul>
+ *
+ * The time waited for a connection and the checkouts that timed out are counted for {@link #getStats()}.
+ * Unless the slow query log is disabled, connections are wrapped by @StatementTimer to log slow statements.
+ */
+public class PooledConnectionProvider implements ConnectionProvider {
+	
+	private static final Logger log = LoggerFactory.getLogger(PooledConnectionProvider.class);
+	
+	public static final String POOL_PREFIX = "hibernate.pool.";
+	
+	private ComboPooledDataSource dataSource;
+	private int checkoutTimeout;
+	
+	private final AtomicLong checkouts = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	
+	public void configure(Properties props) throws HibernateException {
+		int minSize = getInt(props, "min_size", 5);
+		int maxSize = getInt(props, "max_size", 20);
+		checkoutTimeout = getInt(props, "checkout_timeout", 10000);
+		
+		dataSource = new ComboPooledDataSource();
+		try {
+			dataSource.setDriverClass(props.getProperty(Environment.DRIVER));
+		}
+		catch(Exception e) {
+			throw new HibernateException("Could not load JDBC driver " + props.getProperty(Environment.DRIVER), e);
+		}
+		dataSource.setJdbcUrl(props.getProperty(Environment.URL));
+		dataSource.setUser(props.getProperty(Environment.USER));
+		dataSource.setPassword(props.getProperty(Environment.PASS));
+		dataSource.setDataSourceName("photogenome");
+		
+		dataSource.setMinPoolSize(minSize);
+		dataSource.setInitialPoolSize(minSize);
+		dataSource.setMaxPoolSize(maxSize);
+		dataSource.setCheckoutTimeout(checkoutTimeout);
+		dataSource.setMaxIdleTime(getInt(props, "max_idle_time", 1800));
+		
+		dataSource.setPreferredTestQuery(props.getProperty(POOL_PREFIX + "test_query", "SELECT 1"));
+		dataSource.setIdleConnectionTestPeriod(getInt(props, "idle_test_period", 60));
+		dataSource.setTestConnectionOnCheckin(true);
+		dataSource.setTestConnectionOnCheckout(Boolean.parseBoolean(props.getProperty(POOL_PREFIX + "test_on_checkout", "false")));
+		
+		dataSource.setUnreturnedConnectionTimeout(getInt(props, "leak_timeout", 300));
+		dataSource.setDebugUnreturnedConnectionStackTraces(
+				Boolean.parseBoolean(props.getProperty(POOL_PREFIX + "leak_stack_traces", "false")));
+		
+		dataSource.setMaxStatementsPerConnection(getInt(props, "statement_cache_size", 50));
+		
+		log.info("Connection pool of {} to {} connections for {}",
+				new Object[] {minSize, maxSize, props.getProperty(Environment.URL)});
+	}
+	
+	public Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			Connection connection = dataSource.getConnection();
+			checkouts.incrementAndGet();
+			return DaoMetrics.getInstance().isSlowQueryLogEnabled() ? StatementTimer.wrap(connection) : connection;
+		}
+		catch(SQLException e) {
+			// c3p0 fails a checkout waiting longer than the timeout
+			if(checkoutTimeout > 0 && System.nanoTime() - start >= checkoutTimeout * 1000000L) {
+				timeouts.incrementAndGet();
+				log.warn("No connection available after {} ms", checkoutTimeout);
+			}
+			else
+				failures.incrementAndGet();
+			throw e;
+		}
+		finally {
+			recordWait(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Open the minimum number of connections of the pool by checking them all out at once, so that the 
+	 * first requests do not wait for connections to be opened. These checkouts are not counted.
+	 * 
+	 * @return number of connections opened
+	 * @throws SQLException
+	 */
+	public int prestart() throws SQLException {
+		List<Connection> connections = new ArrayList<Connection>();
+		try {
+			for(int i = 0; i < dataSource.getMinPoolSize(); i++)
+				connections.add(dataSource.getConnection());
+		}
+		finally {
+			for(Connection connection : connections)
+				connection.close();
+		}
+		return connections.size();
+	}
+	
+	public void closeConnection(Connection connection) throws SQLException {
+		connection.close();
+	}
+	
+	public void close() throws HibernateException {
+		try {
+			DataSources.destroy(dataSource);
+		}
+		catch(SQLException e) {
+			log.warn(e.getMessage(), e);
+		}
+	}
+	
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+	
+	/**
+	 * Get the size, wait time and timeout counters of the pool
+	 * 
+	 * @return map of counter name to value
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("minSize", dataSource.getMinPoolSize());
+		stats.put("maxSize", dataSource.getMaxPoolSize());
+		try {
+			stats.put("connections", dataSource.getNumConnectionsDefaultUser());
+			stats.put("active", dataSource.getNumBusyConnectionsDefaultUser());
+			stats.put("idle", dataSource.getNumIdleConnectionsDefaultUser());
+			stats.put("waiting", dataSource.getNumThreadsAwaitingCheckoutDefaultUser());
+			stats.put("cachedStatements", dataSource.getStatementCacheNumStatementsAllUsers());
+		}
+		catch(SQLException e) {
+			log.warn(e.getMessage(), e);
+		}
+		
+		long count = checkouts.get();
+		stats.put("checkouts", count);
+		stats.put("timeouts", timeouts.get());
+		stats.put("failures", failures.get());
+		stats.put("totalWaitMillis", totalWaitNanos.get() / 1000000);
+		stats.put("maxWaitMillis", maxWaitNanos.get() / 1000000);
+		stats.put("averageWaitMillis", count == 0 ? 0.0 : totalWaitNanos.get() / 1000000.0 / count);
+		return stats;
+	}
+	
+	private void recordWait(long nanos) {
+		totalWaitNanos.addAndGet(nanos);
+		long max = maxWaitNanos.get();
+		while(nanos > max && !maxWaitNanos.compareAndSet(max, nanos))
+			max = maxWaitNanos.get();
+	}
+	
+	private static int getInt(Properties props, String name, int defaultValue) {
+		String value = props.getProperty(POOL_PREFIX + name);
+		if(value == null || value.trim().length() == 0)
+			return defaultValue;
+		return Integer.parseInt(value.trim());
+	}
+}
@@ -0,0 +1,28 @@
+package edu.cmu.photogenome.util;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet for load balancer health checks. Responds 200 once the application started and warmed up
+ * (see @WarmUpListener) and 503 before, or if the start failed, with the start state as text.
+ */
+public class ReadinessServlet extends HttpServlet {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		WarmUpListener.State state = WarmUpListener.getState();
+		
+		response.setStatus(state == WarmUpListener.State.READY ? HttpServletResponse.SC_OK
+				: HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		response.setContentType("text/plain");
+		response.setHeader("Cache-Control", "no-cache");
+		response.getWriter().print(state.name());
+	}
+}
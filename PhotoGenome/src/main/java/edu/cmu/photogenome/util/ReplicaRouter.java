@@ -0,0 +1,277 @@
+package edu.cmu.photogenome.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.jdbc.Work;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Router of the read-only sessions between the read replicas of the database, falling back to the
+ * primary when no replica is usable.
+ *
+ * A replica is picked in turn, or as the one with the fewest busy connections. The replication lag
+ * of each replica is measured with its lag query at most once every lag check period, by the thread
+ * selecting it; a replica lagging more than the max lag, or whose lag could not be measured, is
+ * skipped until its next check.
+ *
+ * A replica within the max lag may still miss the last writes, which the pages reloaded right after
+ * a change must show. The reads of a user therefore go to the primary for the max lag and the lag
+ * check period after the last write of that user committed on the primary, while the reads of the
+ * other users stay on the replicas.
+ */
+public class ReplicaRouter {
+	
+	private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+	
+	/**
+	 * Lag query of MySQL replicas, whose Seconds_Behind_Master column is read
+	 */
+	public static final String DEFAULT_LAG_QUERY = "SHOW SLAVE STATUS";
+	
+	private static final String LAG_COLUMN = "Seconds_Behind_Master";
+	
+	private final List<Replica> replicas;
+	private final boolean leastLoaded;
+	private final long maxLagSeconds;
+	private final long lagCheckMillis;
+	// time the reads of a user go to the primary after a write of that user
+	private final long writeWindowMillis;
+	
+	private final AtomicInteger next = new AtomicInteger();
+	private final AtomicLong replicaReads = new AtomicLong();
+	private final AtomicLong primaryReads = new AtomicLong();
+	
+	/**
+	 * @param replicas			replicas to route to, none to always use the primary
+	 * @param leastLoaded		true to pick the replica with the fewest busy connections, false to pick them in turn
+	 * @param maxLagSeconds		max replication lag of a replica to route to
+	 * @param lagCheckMillis	min time between two measures of the lag of a replica
+	 */
+	public ReplicaRouter(List<Replica> replicas, boolean leastLoaded, long maxLagSeconds, long lagCheckMillis) {
+		this.replicas = Collections.unmodifiableList(new ArrayList<Replica>(replicas));
+		this.leastLoaded = leastLoaded;
+		this.maxLagSeconds = maxLagSeconds;
+		this.lagCheckMillis = lagCheckMillis;
+		this.writeWindowMillis = maxLagSeconds * 1000 + lagCheckMillis;
+	}
+	
+	/**
+	 * Select the @SessionFactory of a read-only session of a user
+	 * 
+	 * @param primary			@SessionFactory of the primary
+	 * @param lastWriteMillis	time of the last write of the user committed on the primary, 0 if none
+	 * @return @SessionFactory of a usable replica, or the primary if there is none or the write was
+	 * 			committed too recently
+	 */
+	public SessionFactory select(SessionFactory primary, long lastWriteMillis) {
+		if(System.currentTimeMillis() - lastWriteMillis < writeWindowMillis) {
+			primaryReads.incrementAndGet();
+			return primary;
+		}
+		return select(primary);
+	}
+	
+	/**
+	 * Select the @SessionFactory of a read-only session not made for a user who may have written
+	 * 
+	 * @param primary	@SessionFactory of the primary
+	 * @return @SessionFactory of a usable replica, or the primary if there is none
+	 */
+	public SessionFactory select(SessionFactory primary) {
+		int size = replicas.size();
+		if(size > 0) {
+			// start from the next replica in turn, so that ties of the least-loaded selection rotate too
+			int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+			Replica selected = null;
+			int selectedLoad = Integer.MAX_VALUE;
+			for(int i = 0; i < size; i++) {
+				Replica replica = replicas.get((start + i) % size);
+				if(!isUsable(replica))
+					continue;
+				if(!leastLoaded) {
+					selected = replica;
+					break;
+				}
+				int load = replica.getLoad();
+				if(load < selectedLoad) {
+					selected = replica;
+					selectedLoad = load;
+				}
+			}
+			if(selected != null) {
+				replicaReads.incrementAndGet();
+				return selected.getSessionFactory();
+			}
+		}
+		primaryReads.incrementAndGet();
+		return primary;
+	}
+	
+	private boolean isUsable(Replica replica) {
+		long now = System.currentTimeMillis();
+		if(now - replica.checkedAt >= lagCheckMillis && replica.checking.compareAndSet(false, true)) {
+			try {
+				replica.lagSeconds = replica.measureLag();
+				if(replica.lagSeconds > maxLagSeconds)
+					log.warn("Replica {} is {} seconds behind, reading from the other replicas or the primary",
+							replica.getName(), replica.lagSeconds);
+			}
+			catch(Exception e) {
+				replica.lagSeconds = -1;
+				log.warn(e.getMessage(), e);
+			}
+			finally {
+				replica.checkedAt = now;
+				replica.checking.set(false);
+			}
+		}
+		long lag = replica.lagSeconds;
+		return lag >= 0 && lag <= maxLagSeconds;
+	}
+	
+	/**
+	 * @param sessionFactory
+	 * @return true if the @SessionFactory is the one of a replica
+	 */
+	public boolean isReplica(SessionFactory sessionFactory) {
+		for(Replica replica : replicas)
+			if(replica.getSessionFactory() == sessionFactory)
+				return true;
+		return false;
+	}
+	
+	public List<Replica> getReplicas() {
+		return replicas;
+	}
+	
+	/**
+	 * @return number of read-only sessions routed to a replica
+	 */
+	public long getReplicaReads() {
+		return replicaReads.get();
+	}
+	
+	/**
+	 * @return number of read-only sessions routed to the primary
+	 */
+	public long getPrimaryReads() {
+		return primaryReads.get();
+	}
+	
+	/**
+	 * Close the @SessionFactory of each replica
+	 */
+	public void close() {
+		for(Replica replica : replicas)
+			if(!replica.getSessionFactory().isClosed())
+				replica.getSessionFactory().close();
+	}
+	
+	/**
+	 * Read replica of the database, with the last replication lag measured
+	 */
+	public static class Replica {
+		
+		private final String name;
+		private final SessionFactory sessionFactory;
+		private final String lagQuery;
+		
+		private volatile long lagSeconds = -1; // -1 if not measured or not replicating
+		private volatile long checkedAt = Long.MIN_VALUE / 2;
+		private final AtomicBoolean checking = new AtomicBoolean();
+		
+		/**
+		 * @param name				name of the replica in the log
+		 * @param sessionFactory	@SessionFactory of the replica
+		 * @param lagQuery			query returning the lag in seconds in its Seconds_Behind_Master or first
+		 * 							column, null for the lag query of MySQL
+		 */
+		public Replica(String name, SessionFactory sessionFactory, String lagQuery) {
+			this.name = name;
+			this.sessionFactory = sessionFactory;
+			this.lagQuery = lagQuery == null ? DEFAULT_LAG_QUERY : lagQuery;
+		}
+		
+		/**
+		 * Measure the replication lag with the lag query
+		 * 
+		 * @return lag in seconds, -1 if the replica is not replicating
+		 */
+		protected long measureLag() {
+			final long[] lag = {-1};
+			Session session = sessionFactory.openSession();
+			try {
+				session.doWork(new Work() {
+					public void execute(Connection connection) throws SQLException {
+						Statement statement = connection.createStatement();
+						try {
+							ResultSet result = statement.executeQuery(lagQuery);
+							if(result.next()) {
+								long seconds = result.getLong(getLagColumn(result.getMetaData()));
+								if(!result.wasNull())
+									lag[0] = seconds;
+							}
+						}
+						finally {
+							statement.close();
+						}
+					}
+				});
+			}
+			finally {
+				session.close();
+			}
+			return lag[0];
+		}
+		
+		private static int getLagColumn(ResultSetMetaData meta) throws SQLException {
+			for(int i = 1; i <= meta.getColumnCount(); i++)
+				if(LAG_COLUMN.equalsIgnoreCase(meta.getColumnLabel(i)))
+					return i;
+			return 1;
+		}
+		
+		/**
+		 * @return number of busy connections to the replica, 0 if the connections are not pooled by @PooledConnectionProvider
+		 */
+		protected int getLoad() {
+			ConnectionProvider provider = ((SessionFactoryImplementor) sessionFactory).getConnectionProvider();
+			if(provider instanceof PooledConnectionProvider) {
+				Object active = ((PooledConnectionProvider) provider).getStats().get("active");
+				if(active instanceof Number)
+					return ((Number) active).intValue();
+			}
+			return 0;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public SessionFactory getSessionFactory() {
+			return sessionFactory;
+		}
+		
+		/**
+		 * @return last replication lag measured in seconds, -1 if not measured or not replicating
+		 */
+		public long getLagSeconds() {
+			return lagSeconds;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package edu.cmu.photogenome.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the computation and callers
+ * arriving while it is in flight wait for it and share its result, or its exception. Nothing is
+ * kept once the computation completes, so a later call runs it again.
+ *
+ * Shared results are handed to several threads and must not be modified by the callers.
+ *
+ * @param <K> key type
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+	
+	private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+	
+	private final AtomicLong executions = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	
+	/**
+	 * Run a computation unless one is already in flight for the key, in which case wait for its result
+	 * 
+	 * @param key
+	 * @param computation
+	 * @return result of the computation
+	 * @throws Exception	exception thrown by the computation, or if interrupted while waiting
+	 */
+	public V execute(K key, Callable<V> computation) throws Exception {
+		FutureTask<V> task = new FutureTask<V>(computation);
+		FutureTask<V> running = inFlight.putIfAbsent(key, task);
+		if(running != null) {
+			coalesced.incrementAndGet();
+			return getResult(running);
+		}
+		
+		executions.incrementAndGet();
+		try {
+			task.run();
+		}
+		finally {
+			inFlight.remove(key, task);
+		}
+		return getResult(task);
+	}
+	
+	/**
+	 * @return number of computations run
+	 */
+	public long getExecutions() {
+		return executions.get();
+	}
+	
+	/**
+	 * @return number of calls that shared the result of a computation in flight
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+	
+	/**
+	 * Get the counters
+	 * 
+	 * @return map of counter name to value
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("inFlight", inFlight.size());
+		stats.put("executions", executions.get());
+		stats.put("coalesced", coalesced.get());
+		return stats;
+	}
+	
+	private V getResult(FutureTask<V> task) throws Exception {
+		try {
+			return task.get();
+		}
+		catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof Exception)
+				throw (Exception) cause;
+			if(cause instanceof Error)
+				throw (Error) cause;
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package edu.cmu.photogenome.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wrapper of JDBC connections timing the statements they execute, so that the statements reaching
+ * the slow query threshold of @DaoMetrics are logged with their SQL and bind parameters.
+ *
+ * The bind parameters of a prepared statement are recorded as they are set. Only the parameters of
+ * the last parameter set of a batch are logged, along with the size of the batch.
+ */
+public class StatementTimer {
+	
+	// longest bind parameter value logged, longer strings are truncated
+	private static final int MAX_PARAMETER_LENGTH = 100;
+	
+	/**
+	 * Wrap a connection so that the statements it creates are timed
+	 * 
+	 * @param connection
+	 * @return wrapping connection
+	 */
+	public static Connection wrap(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(StatementTimer.class.getClassLoader(),
+				new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+	}
+	
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch(InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+	
+	private static class ConnectionHandler implements InvocationHandler {
+		
+		private final Connection connection;
+		
+		ConnectionHandler(Connection connection) {
+			this.connection = connection;
+		}
+		
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result = StatementTimer.invoke(connection, method, args);
+			String name = method.getName();
+			
+			if(name.equals("prepareCall"))
+				return wrap(result, CallableStatement.class, (String) args[0]);
+			if(name.equals("prepareStatement"))
+				return wrap(result, PreparedStatement.class, (String) args[0]);
+			if(name.equals("createStatement"))
+				return wrap(result, Statement.class, null);
+			return result;
+		}
+		
+		private Object wrap(Object statement, Class<?> type, String sql) {
+			return Proxy.newProxyInstance(StatementTimer.class.getClassLoader(), new Class<?>[] {type},
+					new StatementHandler(statement, sql));
+		}
+	}
+	
+	private static class StatementHandler implements InvocationHandler {
+		
+		private final Object statement;
+		private final String sql; // null for a plain statement, whose SQL is given on execution
+		private final Map<Integer, Object> parameters;
+		private int batchSize;
+		
+		StatementHandler(Object statement, String sql) {
+			this.statement = statement;
+			this.sql = sql;
+			this.parameters = sql == null ? null : new TreeMap<Integer, Object>();
+		}
+		
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			
+			if(name.startsWith("execute"))
+				return execute(method, args);
+			
+			if(parameters != null) {
+				if(name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer)
+					parameters.put((Integer) args[0], describe(name.equals("setNull") ? null : args[1]));
+				else if(name.equals("clearParameters"))
+					parameters.clear();
+			}
+			if(name.equals("addBatch"))
+				batchSize++;
+			else if(name.equals("clearBatch"))
+				batchSize = 0;
+			
+			return StatementTimer.invoke(statement, method, args);
+		}
+		
+		private Object execute(Method method, Object[] args) throws Throwable {
+			String executed = sql != null ? sql : args != null && args.length > 0 ? (String) args[0] : null;
+			int batch = method.getName().equals("executeBatch") ? batchSize : 0;
+			boolean failed = true;
+			long start = System.nanoTime();
+			try {
+				Object result = StatementTimer.invoke(statement, method, args);
+				failed = false;
+				return result;
+			}
+			finally {
+				long nanos = System.nanoTime() - start;
+				DaoMetrics metrics = DaoMetrics.getInstance();
+				if(metrics.isSlow(nanos))
+					metrics.recordSlowStatement(executed, parameters == null ? null
+							: new TreeMap<Integer, Object>(parameters), batch, nanos, failed);
+				if(batch > 0)
+					batchSize = 0;
+			}
+		}
+		
+		private Object describe(Object value) {
+			if(value instanceof byte[])
+				return "byte[" + ((byte[]) value).length + "]";
+			if(value instanceof String && ((String) value).length() > MAX_PARAMETER_LENGTH)
+				return ((String) value).substring(0, MAX_PARAMETER_LENGTH) + "...";
+			return value;
+		}
+	}
+}
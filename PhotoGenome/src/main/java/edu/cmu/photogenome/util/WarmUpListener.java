@@ -0,0 +1,103 @@
+package edu.cmu.photogenome.util;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.photogenome.business.AssociationRefresher;
+import edu.cmu.photogenome.business.IndexRebuilder;
+import edu.cmu.photogenome.business.WarmUp;
+
+/**
+ * Listener building the Hibernate @SessionFactory when the application starts, instead of on the first
+ * request. The factory is built in a background thread which then opens the pooled connections,
+ * runs the warm-up (see @WarmUp) and schedules the index rebuilds (see @IndexRebuilder). The
+ * application is ready, as reported by @ReadinessServlet, once this thread is done. When the
+ * application stops, the background threads are stopped and the factory is closed.
+ */
+public class WarmUpListener implements ServletContextListener {
+	
+	private static final Logger log = LoggerFactory.getLogger(WarmUpListener.class);
+	
+	public enum State { STARTING, READY, FAILED }
+	
+	private static volatile State state = State.STARTING;
+	
+	private Thread thread;
+	
+	public void contextInitialized(ServletContextEvent event) {
+		state = State.STARTING;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				warmUp();
+			}
+		}, "photogenome-warmup");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	public void contextDestroyed(ServletContextEvent event) {
+		if(thread != null) {
+			thread.interrupt();
+			try {
+				thread.join(10000);
+			}
+			catch(InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		// stop the background work using the database before closing the factory
+		AssociationRefresher.getInstance().shutdown();
+		IndexRebuilder.getInstance().shutdown();
+		HibernateUtil.closeSessionFactory();
+	}
+	
+	/**
+	 * @return state of the application start
+	 */
+	public static State getState() {
+		return state;
+	}
+	
+	/**
+	 * @return true if the application started and is ready to serve requests
+	 */
+	public static boolean isReady() {
+		return state == State.READY;
+	}
+	
+	private void warmUp() {
+		long start = System.currentTimeMillis();
+		try {
+			HibernateUtil.getSessionFactory();
+			log.info("Opened {} pooled connections", HibernateUtil.prestartConnectionPool());
+		}
+		catch(Throwable t) {
+			// without a session factory no request can be served
+			log.error("Could not build the session factory", t);
+			state = State.FAILED;
+			return;
+		}
+		
+		Session session = HibernateUtil.getSessionFactory().openSession();
+		try {
+			HibernateUtil.beginTransaction(session);
+			new WarmUp(session).run();
+		}
+		catch(Exception e) {
+			log.warn(e.getMessage(), e);
+		}
+		finally {
+			if(session.isOpen())
+				HibernateUtil.rollbackTransaction(session);
+		}
+		
+		IndexRebuilder.getInstance().start();
+		state = State.READY;
+		log.info("Ready after {} ms", System.currentTimeMillis() - start);
+	}
+}
@@ -0,0 +1,13 @@
+-- Precomputed associated photos of each photo, kept up to date by AssociationRefresher
+-- when search.neighbors.enabled is set. Run against both PG_DB and PG_DB_TEST.
+CREATE TABLE IF NOT EXISTS photoneighbor (
+  photoNeighbor_id INT NOT NULL AUTO_INCREMENT,
+  photo_id INT NOT NULL,
+  neighbor_photo_id INT NOT NULL,
+  neighbor_rank INT NOT NULL,
+  neighbor_score DOUBLE NOT NULL,
+  photoNeighbor_timestamp DATETIME NOT NULL,
+  PRIMARY KEY (photoNeighbor_id),
+  KEY photoneighbor_photo_rank (photo_id, neighbor_rank),
+  KEY photoneighbor_neighbor (neighbor_photo_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -416,10 +416,7 @@ Enter Comments Here.
 
 $(window).load(function () {
 		if(sessionStorage.length > 0){
-			getPhotoIdFromQS();
-			getRegionCoordinates();
-			getPhotoComments(); 
-			getPhotoCategories();	
+			getPhotoDetail(sessionStorage.getItem("photoId"));
 			getImportedMetadataByPhotoId();		
 	}
 		else {
@@ -430,11 +427,20 @@ $(window).load(function () {
 });
 
 
-function getPhotoIdFromQS(){
-	getPhotoLink(sessionStorage.getItem("photoId"));
-	
-	
-}
+// the photo with its comments and categories in a single request
+function getPhotoDetail(photoId){
+	$.getJSON(
+		'getPhotoDetail.action' , {photoId:photoId},
+		function(jsonPhotoDetail) {
+			if(!jsonPhotoDetail.items)
+				return;
+			$('#canvasImg').attr("src",jsonPhotoDetail.items.photo.photoLink);
+			$('#canvas').attr("photoId",jsonPhotoDetail.items.photo.photoId);
+			showPhotoComments(jsonPhotoDetail.items.photoComments);
+			showPhotoCategories(jsonPhotoDetail.items.photoCategories);
+		});
+	return false;
+};
 
 function getAssociatedPhotos(){
 	window.location = "ViewAssociatedPhotos.jsp";
@@ -501,22 +507,25 @@ function getPhotoLink(photoId){
 	 $.getJSON(
          	  'getPhotoCategories.action' , {photoId:sessionStorage.getItem("photoId")},
          	  function(jsonPhotoCategories) {
-         		 	for (category in jsonPhotoCategories.items) {
+         		 showPhotoCategories(jsonPhotoCategories.items);
+    	            	  });
+         	 return false;
+         	};	
+ function showPhotoCategories(items){
+         		 	for (category in items) {
          		 		$('#photoCategories').append('<div class="box"> <div photoCategoryId="'
-         		 				+jsonPhotoCategories.items[category].photoCategoryId+
+         		 				+items[category].photoCategoryId+
          		 				'" class="PCatFilterSelect_box"></div> <div photoCategoryId="'
-         		 				+jsonPhotoCategories.items[category].photoCategoryId+
+         		 				+items[category].photoCategoryId+
          		 				'" class="PCatedit_box"></div> <div photoCategoryId="'
-         		 				+jsonPhotoCategories.items[category].photoCategoryId+
-         		 				'"class="PCatclose_box"></div> <h6>'+getUserFirstName(jsonPhotoCategories.items[category].userId)+'</h6><table><tr><td valign="top" width="90%"><div  photoCategoryId="'
-         		 				+jsonPhotoCategories.items[category].photoCategoryId+'" class="PCatcomment_box">'
-         		 				+jsonPhotoCategories.items[category].photoCategoryName+':'+jsonPhotoCategories.items[category].photoCategoryText+
+         		 				+items[category].photoCategoryId+
+         		 				'"class="PCatclose_box"></div> <h6>'+getUserFirstName(items[category].userId)+'</h6><table><tr><td valign="top" width="90%"><div  photoCategoryId="'
+         		 				+items[category].photoCategoryId+'" class="PCatcomment_box">'
+         		 				+items[category].photoCategoryName+':'+items[category].photoCategoryText+
          		 				'</div></td><td valign="top" width="10%"><div photoCategoryId="'
-         		 				+jsonPhotoCategories.items[category].photoCategoryId+
+         		 				+items[category].photoCategoryId+
          		 				'" class="PCatsubmit_box"></div></td></tr></table></div>');
     	                 }
-    	            	  });
-         	 return false;
          	};	
       
 function getRegionCategories(regionId){
@@ -524,69 +533,79 @@ function getRegionCategories(regionId){
 	$.getJSON(
     	'getRegionCategories.action' , {regionId:regionId},
          	  function(jsonRegionCategories) {
-    		for (category in jsonRegionCategories.items) {
+    		showRegionCategories(jsonRegionCategories.items);
+    		  });
+       return false;
+  };
+function showRegionCategories(items){
+    		for (category in items) {
     		 	  $('#regionCategories').append('<div class="box"> <div regionCategoryId="'
-   		 				+jsonRegionCategories.items[category].regionCategoryId+
+   		 				+items[category].regionCategoryId+
  		 				'" class="RCatFilterSelect_box"></div> <div regionCategoryId="'
-	         			  +jsonRegionCategories.items[category].regionCategoryId+
+	         			  +items[category].regionCategoryId+
 	         			  '" class="RCatedit_box"></div> <div regionCategoryId="'
-	         			  +jsonRegionCategories.items[category].regionCategoryId+
-	         			  '" class="RCatclose_box"></div> <h6>'+getUserFirstName(jsonRegionCategories.items[category].userId)+'</h6><table><tr><td valign="top" width="90%"><div regionCategoryId="'
-	         			  +jsonRegionCategories.items[category].regionCategoryId+
+	         			  +items[category].regionCategoryId+
+	         			  '" class="RCatclose_box"></div> <h6>'+getUserFirstName(items[category].userId)+'</h6><table><tr><td valign="top" width="90%"><div regionCategoryId="'
+	         			  +items[category].regionCategoryId+
 	         			  '" class="RCatcomment_box">'
-	         			  +jsonRegionCategories.items[category].categoryName+
-	         			  ':'+jsonRegionCategories.items[category].regionCategoryText+
+	         			  +items[category].categoryName+
+	         			  ':'+items[category].regionCategoryText+
 	         			  '</div></td><td valign="top" width="10%"><div regionCategoryId="'
-	         			  +jsonRegionCategories.items[category].regionCatgoryId+
+	         			  +items[category].regionCatgoryId+
 	         			  '"class="RCatsubmit_box"></div></td></tr></table></div>');
 	         	  }
-    		  });
-       return false;
   };	
 function getPhotoComments(){
 	  $.getJSON(
          'getPhotoComments.action' , {photoId:sessionStorage.getItem("photoId")},
          	  function(jsonPhotoComments) {
-        	  for (comment in jsonPhotoComments.items) {
+        	  showPhotoComments(jsonPhotoComments.items);
+         });
+      return false;
+  };	
+function showPhotoComments(items){
+        	  for (comment in items) {
         		  $('#photoComments').append('<div class="box"> <div photoCommentId="'
-   		 				+jsonPhotoComments.items[comment].photoCommentId+
+   		 				+items[comment].photoCommentId+
  		 				'" class="PCFilterSelect_box"></div> <div photoCommentId="'
-        				  +jsonPhotoComments.items[comment].photoCommentId+
+        				  +items[comment].photoCommentId+
         				  '" class="PCedit_box"></div> <div photoCommentId="'
-        				  +jsonPhotoComments.items[comment].photoCommentId+
-        				  '"class="PCclose_box"></div> <h6>'+getUserFirstName(jsonPhotoComments.items[comment].userId)+'</h6><table><tr><td valign="top" width="90%"><div photoCommentId="'
-        				  +jsonPhotoComments.items[comment].photoCommentId+
+        				  +items[comment].photoCommentId+
+        				  '"class="PCclose_box"></div> <h6>'+getUserFirstName(items[comment].userId)+'</h6><table><tr><td valign="top" width="90%"><div photoCommentId="'
+        				  +items[comment].photoCommentId+
         				  '" class="PCcomment_box">'
-        				  +jsonPhotoComments.items[comment].photoCommentText+
+        				  +items[comment].photoCommentText+
         				  '</div></td><td valign="top" width="10%"><div photoCommentId="'
-        				  +jsonPhotoComments.items[comment].photoCommentId+
+        				  +items[comment].photoCommentId+
         				  '"class="PCsubmit_box"></div></td></tr></table></div>');
 	         	  }
-         });
-      return false;
   };	
 
   function getRegionComments(regionId){
 	  $.getJSON(
          'getRegionComments.action' , {regionId:regionId},
          	  function(jsonRegionComments) {
-        	 for (comment in jsonRegionComments.items) {
+        	 showRegionComments(jsonRegionComments.items);
+         });
+      return false;
+  };
+
+  function showRegionComments(items){
+        	 for (comment in items) {
 	         	  $('#regionComments').append('<div class="box"> <div regionCommentId="'
-	   		 				+jsonRegionComments.items[comment].regionCommentId+
+	   		 				+items[comment].regionCommentId+
 	 		 				'" class="RCFilterSelect_box"></div> <div regionCommentId="'
-	         			  +jsonRegionComments.items[comment].regionCommentId+
+	         			  +items[comment].regionCommentId+
 	         			  '" class="RCedit_box"></div><div regionCommentId="'
-	         			  +jsonRegionComments.items[comment].regionCommentId+
-	         			  '" class="RCclose_box"></div> <h6>'+getUserFirstName(jsonRegionComments.items[comment].userId)+'</h6><table><tr><td valign="top" width="90%"><div regionCommentId="'
-	         			  +jsonRegionComments.items[comment].regionCommentId+
+	         			  +items[comment].regionCommentId+
+	         			  '" class="RCclose_box"></div> <h6>'+getUserFirstName(items[comment].userId)+'</h6><table><tr><td valign="top" width="90%"><div regionCommentId="'
+	         			  +items[comment].regionCommentId+
 	         			  '" class="RCcomment_box">'
-	         			  +jsonRegionComments.items[comment].regionCommentText+
+	         			  +items[comment].regionCommentText+
 	         			  '</div></td><td valign="top" width="10%"><div regionCommentId="'
-	         			  +jsonRegionComments.items[comment].regionCommentId+
+	         			  +items[comment].regionCommentId+
 	         			  '"class="RCsubmit_box"></div></td></tr></table></div>');
 	         	  }
-         });
-      return false;
   };
 
   function getRegionCoordinates(){
@@ -604,6 +623,41 @@ function getPhotoComments(){
 	       return false;
 	  };	
 	  
+	  // hit-test on the server rather than loading all the regions of the photo up front,
+	  // revealing each region the first time the mouse passes over it
+	  var hitTestPending = false;
+	  function getRegionAt(x,y){
+		  if(hitTestPending)
+			  return false;
+		  hitTestPending = true;
+		  $.ajax({
+			  url: 'getRegionAt.action',
+			  dataType: 'json',
+			  data: {photoId:sessionStorage.getItem("photoId"),x:parseInt(x),y:parseInt(y)},
+			  success: function(jsonRegionAt) {
+				  var detail = jsonRegionAt.items;
+				  if(detail) {
+					  addBox(detail.coordinate.regionX,
+							  detail.coordinate.regionY,
+							  detail.coordinate.width,
+							  detail.coordinate.height,
+							  detail.region.regionId,
+							  detail);
+				  }
+			  },
+			  complete: function() {
+				  hitTestPending = false;
+			  }
+		  });
+		  return false;
+	  };
+	  
+	  $(function () {
+		  $('#canvas').mousemove(function (event) {
+			  getRegionAt(event.pageX, event.pageY);
+		  });
+	  });
+	  
 	  	function getImportedMetadataByPhotoId(){
      		
     		 $.getJSON(
@@ -790,8 +844,10 @@ function getPhotoComments(){
 	      return false;
 	  };
   
-function addBox(x,y,w,h,regionId){
+function addBox(x,y,w,h,regionId,detail){
 	var canvas = $('#canvas');
+	if($('#'+'regionx_' + x + '_y_' +y+'_w_' + w + '_h_' + h).length > 0)
+		return;
 	 canvas.append('<div id="'+'regionx_' + x + '_y_' +y+'_w_' + w + '_h_' + h+'"></div>');
 	 $('#'+'regionx_' + x + '_y_' +y+'_w_' + w + '_h_' + h).addClass('ui-boxer')
 	     .css({ border: '2px solid white',
@@ -806,8 +862,15 @@ function addBox(x,y,w,h,regionId){
 			jQuery('#regionCategories').html('');
 			$('#txtRegionCategories').attr('disabled', false).focus();
 		    $('#txtRegionComments').attr('disabled', false).focus();
-		    getRegionComments(regionId);
-			getRegionCategories(regionId);
+		    if(detail) {
+		    	// the hit-test already returned the comments and categories of the region
+		    	showRegionComments(detail.regionComments);
+		    	showRegionCategories(detail.regionCategories);
+		    }
+		    else {
+		    	getRegionComments(regionId);
+		    	getRegionCategories(regionId);
+		    }
 			$('#submitRCom').attr('currentRegionId', regionId);
 			$('#submitRCat').attr('currentRegionId', regionId);
 			$('.ui-boxer').each(function() {
@@ -58,6 +58,7 @@
 <table width="100%" bordercolor="black">
 <tr><td width="70%" bordercolor="black" valign="top">
 <div id="canvas" style="border:solid black;"></div>
+<input type="button" id="submitMore" value="More" style="display:none"/>
 </td><td valign="top">
 </td>
 </tr>
@@ -68,7 +69,7 @@
 
 $(window).load(function () {
 	if(sessionStorage.length > 0){
-		getPhotosByUserId(	sessionStorage.getItem("userId")); 
+		getPhotosByUserId(	sessionStorage.getItem("userId"), null); 
 		
 	}
 		else {
@@ -79,6 +80,15 @@ $(window).load(function () {
 	
 });
 
+$(document).ready(function() {
+	$('#submitMore').click(function(event) {
+		getPhotosByUserId(sessionStorage.getItem("userId"), nextCursor);
+	});
+});
+
+var nextCursor = null;
+var galleryPageSize = 50;
+
 function getPhotoLink(){
 	 $.getJSON(
         	  'getPhoto.action' , {photoId:$('#canvas').attr('photoId')},
@@ -90,9 +100,13 @@ function getPhotoLink(){
         	 return false;
         	};
         	
-function getPhotosByUserId(userId){
+// get a page of photos, the first page is requested with a null cursor
+function getPhotosByUserId(userId, cursor){
+	  var params = {userId:userId, pageSize:galleryPageSize};
+	  if(cursor != null)
+		  params.cursor = cursor;
 	  $.getJSON(
-         'getPhotosByUserId.action' , {userId:userId},
+         'getPhotosByUserId.action' , params,
          	  function(jsonPhotos) {
         	 var rowLength=0; 
         	 for (photo in jsonPhotos.items) {
@@ -103,6 +117,12 @@ function getPhotosByUserId(userId){
            				  '" class="Photo"  src="'+jsonPhotos.items[photo].photoLink +'"> </img></div>');
         			 rowLength++;
         	}
+        	// only offer more photos if the page was full
+        	nextCursor = jsonPhotos.nextCursor;
+        	if(nextCursor)
+        		$('#submitMore').show();
+        	else
+        		$('#submitMore').hide();
          });
       return false;
   };	
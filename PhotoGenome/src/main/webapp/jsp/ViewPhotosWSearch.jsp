@@ -34,7 +34,16 @@
       	  $('#submitSK').click(function(event) {  
       		var keywords=$('#txtSearchKeywords').val();
       		jQuery('#canvas').html('');
-      		getPhotosByKeywords(keywords);  
+      		searchKeywords = keywords;
+      		getPhotosByKeywords(keywords, null);  
+      	  });
+      	  
+      	  $('#submitMore').click(function(event) {  
+      		getPhotosByKeywords(searchKeywords, nextCursor);  
+      	  });
+      	  
+      	  $('#txtSearchKeywords').keyup(function(event) {  
+      		getCompletions($(this).val());  
       	  });
       	  
 		  
@@ -69,10 +78,13 @@
 Space separated keywords 
 </textarea>
 <input type="button" id="submitSK" value="Search"/>
+<div id="completions"></div>
 </td></tr>
 <tr><td width="70%" bordercolor="black" valign="top">
 <div id="canvas" style="border:solid black;"></div>
+<input type="button" id="submitMore" value="More" style="display:none"/>
 </td><td valign="top">
+<div id="facets"></div>
 </td>
 </tr>
 </table>
@@ -87,9 +99,17 @@ $(window).load(function () {
 	}
 });
 
-function getPhotosByKeywords(keywords){
+var searchKeywords = null;
+var nextCursor = null;
+var searchPageSize = 20;
+
+// get a page of photos, the first page is requested with a null cursor
+function getPhotosByKeywords(keywords, cursor){
+	  var params = {keywords:keywords, pageSize:searchPageSize};
+	  if(cursor != null)
+		  params.cursor = cursor;
 	  $.getJSON(
-         'getPhotosByKeywords.action' , {keywords:keywords},
+         'getPhotosByKeywords.action' , params,
          	  function(jsonPhotos) {
         	 for (photo in jsonPhotos.items) {
         			 $('#canvas').append('<div class="P_box"> <div photoId="'
@@ -98,10 +118,57 @@ function getPhotosByKeywords(keywords){
            				  +jsonPhotos.items[photo].photoId+
            				  '" class="Photo"  src="'+jsonPhotos.items[photo].photoLink +'"> </img></div>');
         	}
+        	if(jsonPhotos.facets)
+        		showFacets(jsonPhotos.facets);
+        	// only offer more photos if the page was full
+        	nextCursor = jsonPhotos.nextCursor;
+        	if(nextCursor)
+        		$('#submitMore').show();
+        	else
+        		$('#submitMore').hide();
          });
       return false;
   };	
 
+// suggest completions for the last keyword being typed
+function getCompletions(text){
+	  var words = text.split(' ');
+	  var prefix = words[words.length - 1];
+	  if(prefix.length == 0) {
+		  $('#completions').html('');
+		  return false;
+	  }
+	  $.getJSON(
+         'getCompletions.action' , {prefix:prefix},
+         	  function(jsonCompletions) {
+        	 // drop the answer if the box changed while it was on its way
+        	 if($('#txtSearchKeywords').val() != text)
+        		 return;
+        	 $('#completions').html('');
+        	 for (i in jsonCompletions.items) {
+        		 var completion = jsonCompletions.items[i];
+        		 $('#completions').append($('<a href="#"></a>').text(completion).click(function() {
+        			 words[words.length - 1] = $(this).text();
+        			 $('#txtSearchKeywords').val(words.join(' ') + ' ');
+        			 $('#completions').html('');
+        			 return false;
+        		 })).append(' ');
+        	 }
+         });
+      return false;
+  };
+
+// list the photo counts by category, user and upload month of the results
+function showFacets(facets){
+	  $('#facets').html('');
+	  for (facet in facets) {
+		  var list = $('<ul></ul>');
+		  for (value in facets[facet])
+			  list.append($('<li></li>').text(value + ' (' + facets[facet][value] + ')'));
+		  $('#facets').append($('<b></b>').text(facet)).append(list);
+	  }
+  };
+
 		function deletePhoto(photoId){
 						$.getJSON(
 					    	'deletePhoto.action' , {userId:1000,photoId:parseInt(photoId)},
@@ -12,6 +12,7 @@ import edu.cmu.photogenome.domain.Photo;
 import edu.cmu.photogenome.domain.PhotoCategory;
 import edu.cmu.photogenome.domain.PhotoComment;
 import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.PhotoSummary;
 import edu.cmu.photogenome.domain.RegionCategory;
 import edu.cmu.photogenome.domain.RegionComment;
 import edu.cmu.photogenome.domain.RegionCoordinate;
@@ -62,13 +63,33 @@ public class ViewInformationActionTest extends StrutsTestCase {
 		String result = proxy.execute();
 		Map<String, Object> jsonData = viewInfoAction.getJsonGetPhotos();
 		assertNotNull(jsonData);
-		List<Photo> list = (List<Photo>) jsonData.get("items");
+		List<PhotoSummary> list = (List<PhotoSummary>) jsonData.get("items");
 		assertEquals(2, list.size());
-		for(Photo p : list)
+		for(PhotoSummary p : list)
 			assertEquals(1000, p.getUserId());
 		assertEquals("success", result);
 	}
 	
+	/**
+	 * Test getting the photos of a user page by page
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetPhotosByUserIdPage() throws Exception {
+		request.setParameter("userId", "1000");
+		request.setParameter("pageSize", "1");
+		ActionProxy proxy= getActionProxy("/getPhotosByUserId");
+		ViewInformationAction viewInfoAction = (ViewInformationAction) proxy.getAction();
+		String result = proxy.execute();
+		Map<String, Object> jsonData = viewInfoAction.getJsonGetPhotos();
+		assertNotNull(jsonData);
+		List<PhotoSummary> list = (List<PhotoSummary>) jsonData.get("items");
+		assertEquals(1, list.size());
+		assertEquals(1, list.get(0).getPhotoId().intValue());
+		assertEquals(1, jsonData.get("nextCursor"));
+		assertEquals("success", result);
+	}
+	
 	/**
 	 * Test getting empty list of photos
 	 * @throws Exception
@@ -81,7 +102,7 @@ public class ViewInformationActionTest extends StrutsTestCase {
 		String result = proxy.execute();
 		Map<String, Object> jsonData = viewInfoAction.getJsonGetPhotos();
 		assertNotNull(jsonData);
-		List<Photo> list = (List<Photo>) jsonData.get("items");
+		List<PhotoSummary> list = (List<PhotoSummary>) jsonData.get("items");
 		assertEquals(0, list.size());
 		assertEquals("success", result);
 	}
@@ -0,0 +1,163 @@
+package edu.cmu.photogenome.business;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoNeighbor;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+
+/**
+ * JUnit test case for queueing the neighbor refreshes, without running them
+ */
+public class AssociationRefresherTest {
+	
+	/**
+	 * Executor keeping the tasks it is given
+	 */
+	private static class QueueingExecutor extends AbstractExecutorService {
+		
+		private List<Runnable> tasks = new ArrayList<Runnable>();
+		private boolean shutdown;
+		
+		public void execute(Runnable task) {
+			if(shutdown)
+				throw new RejectedExecutionException();
+			tasks.add(task);
+		}
+		
+		public void shutdown() {
+			shutdown = true;
+		}
+		
+		public List<Runnable> shutdownNow() {
+			shutdown = true;
+			return tasks;
+		}
+		
+		public boolean isShutdown() {
+			return shutdown;
+		}
+		
+		public boolean isTerminated() {
+			return shutdown;
+		}
+		
+		public boolean awaitTermination(long timeout, TimeUnit unit) {
+			return true;
+		}
+	}
+	
+	private PhotoChangeEvent categorySaved(int photoId) {
+		return new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, new PhotoCategory(photoId, 1000, new Date()));
+	}
+	
+	@Test
+	public void testChangesQueuedOnce() {
+		QueueingExecutor executor = new QueueingExecutor();
+		AssociationRefresher refresher = new AssociationRefresher(executor, true, 60000);
+		refresher.photoChanged(categorySaved(1));
+		refresher.photoChanged(categorySaved(1));
+		refresher.photoChanged(categorySaved(2));
+		assertEquals(2, executor.tasks.size());
+	}
+	
+	@Test
+	public void testChangesIgnoredAfterShutdown() {
+		QueueingExecutor executor = new QueueingExecutor();
+		AssociationRefresher refresher = new AssociationRefresher(executor, true, 60000);
+		refresher.shutdown();
+		refresher.photoChanged(categorySaved(1));
+		assertTrue(executor.tasks.isEmpty());
+	}
+	
+	@Test
+	public void testDisabledIgnoresChanges() {
+		QueueingExecutor executor = new QueueingExecutor();
+		AssociationRefresher refresher = new AssociationRefresher(executor, false, 60000);
+		refresher.photoChanged(categorySaved(1));
+		refresher.schedule(2, true);
+		assertTrue(executor.tasks.isEmpty());
+	}
+	
+	@Test
+	public void testPhotoUpdateIgnored() {
+		QueueingExecutor executor = new QueueingExecutor();
+		AssociationRefresher refresher = new AssociationRefresher(executor, true, 60000);
+		Photo photo = new Photo(1000, new Date());
+		photo.setPhotoId(1);
+		refresher.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.UPDATE, photo));
+		assertTrue(executor.tasks.isEmpty());
+		
+		// a new photo may match others through its metadata
+		refresher.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, photo));
+		assertEquals(1, executor.tasks.size());
+	}
+	
+	@Test
+	public void testNoNeighborsUntilChanged() {
+		AssociationRefresher refresher = new AssociationRefresher(new QueueingExecutor(), true, 60000);
+		refresher.refreshed(1, 0);
+		refresher.refreshed(2, 3);
+		assertTrue(refresher.hasNoNeighbors(1));
+		assertFalse(refresher.hasNoNeighbors(2));
+		
+		refresher.photoChanged(categorySaved(1));
+		assertFalse(refresher.hasNoNeighbors(1));
+	}
+	
+	@Test
+	public void testNoNeighborsExpires() {
+		AssociationRefresher refresher = new AssociationRefresher(new QueueingExecutor(), true, 0);
+		refresher.refreshed(1, 0);
+		assertFalse(refresher.hasNoNeighbors(1));
+	}
+	
+	@Test
+	public void testNoNeighborsNotKeptWhenQueuedAgain() {
+		// the photo changed while its refresh was running
+		AssociationRefresher refresher = new AssociationRefresher(new QueueingExecutor(), true, 60000);
+		refresher.schedule(1, false);
+		refresher.refreshed(1, 0);
+		assertFalse(refresher.hasNoNeighbors(1));
+	}
+	
+	@Test
+	public void testCascadePhotoIds() {
+		List<PhotoNeighbor> referencing = Arrays.asList(new PhotoNeighbor(2, 1, 0, 0.5, new Date()),
+				new PhotoNeighbor(3, 1, 4, 0.1, new Date()));
+		List<Object[]> scores = Arrays.asList(new Object[] {3, 0.9}, new Object[] {4, 0.7}, new Object[] {1, 0.2});
+		
+		// the photos which listed photo 1 and the photos it now lists, which may now list it
+		assertEquals(Arrays.asList(2, 3, 4),
+				new ArrayList<Integer>(AssociationRefresher.getCascadePhotoIds(1, null, referencing, scores)));
+		assertEquals(Arrays.asList(3, 4),
+				new ArrayList<Integer>(AssociationRefresher.getCascadePhotoIds(1, null, null, scores)));
+	}
+	
+	@Test
+	public void testCascadeSkipsUnchangedScores() {
+		List<PhotoNeighbor> previous = Arrays.asList(new PhotoNeighbor(1, 3, 0, 0.9, new Date()),
+				new PhotoNeighbor(1, 4, 1, 0.5, new Date()), new PhotoNeighbor(1, 5, 2, 0.4, new Date()));
+		List<PhotoNeighbor> referencing = Arrays.asList(new PhotoNeighbor(2, 1, 0, 0.5, new Date()),
+				new PhotoNeighbor(3, 1, 4, 0.1, new Date()));
+		List<Object[]> scores = Arrays.asList(new Object[] {3, 0.9005}, new Object[] {4, 0.7}, new Object[] {6, 0.3});
+		
+		// photo 2 may drop photo 1, photo 3 kept its score, photo 4 changed, photo 5 does not list 
+		// photo 1 and photo 6 is new
+		assertEquals(Arrays.asList(2, 4, 6),
+				new ArrayList<Integer>(AssociationRefresher.getCascadePhotoIds(1, previous, referencing, scores)));
+	}
+}
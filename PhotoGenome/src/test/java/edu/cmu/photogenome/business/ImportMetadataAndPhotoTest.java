@@ -7,6 +7,7 @@ import java.io.File;
 import java.util.List;
 
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.junit.Test;
 
 import edu.cmu.photogenome.dao.ImportedMetadataDao;
@@ -44,5 +45,36 @@ public class ImportMetadataAndPhotoTest extends HibernateDbUnitTestCase {
 		}
 		
 	}
+	
+	@Test
+	public void testImportMetadataAndPhotoStateless() throws Exception {
+		int userId = 1002;
+		File dir = new File(this.getClass().getClassLoader().getResource("imported_images").toURI());
+		
+		StatelessSession statelessSession = session.getSessionFactory().openStatelessSession();
+		try {
+			ImportMetadataAndPhoto importMetadata = new ImportMetadataAndPhoto(statelessSession);
+			importMetadata.getPhotoAndMetadata(dir.toString(), userId);
+		}
+		finally {
+			statelessSession.close();
+		}
+		
+		// the import committed, the photos are read back by the session of the test
+		PhotoDao photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		List<Photo> photos = photoDao.findAllByCriteria("userId", userId);
+		assertNotNull(photos);
+		assertEquals(2, photos.size());
+		
+		ImportedMetadataDao importDao = new ImportedMetadataDaoImpl();
+		importDao.setSession(session);
+		for(Photo photo : photos) {
+			assertNotNull(photo.getPhotoLink());
+			List<ImportedMetadata> importDataList = importDao.findAllByCriteria("photoId", photo.getPhotoId());
+			assertEquals(1, importDataList.size());
+			assertNotNull(importDataList.get(0).getImportedMetadata());
+		}
+	}
 
 }
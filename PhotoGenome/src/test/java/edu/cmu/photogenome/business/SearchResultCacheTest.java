@@ -0,0 +1,138 @@
+package edu.cmu.photogenome.business;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.index.RankedPhotoIds;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+
+/**
+ * JUnit test case for the search result cache
+ */
+public class SearchResultCacheTest {
+	
+	private static final int PAGE = 20;
+	
+	private SearchResultCache cache;
+	
+	@Before
+	public void setUp() {
+		cache = new SearchResultCache(2);
+	}
+	
+	@Test
+	public void testKeywordKeyNormalized() {
+		cache.putKeywordResult(Arrays.asList("Hall", "hamerschlag"), PAGE, ranked(3, 1), cache.getVersion());
+		
+		assertArrayEquals(new int[] {3, 1}, cache.getKeywordResult(Arrays.asList("hamerschlag", "HALL", "hall"), PAGE).getPhotoIds());
+		assertNull(cache.getKeywordResult(Arrays.asList("hamerschlag"), PAGE));
+		assertEquals(1L, cache.getStats().get("hits"));
+		assertEquals(1L, cache.getStats().get("misses"));
+	}
+	
+	@Test
+	public void testEviction() {
+		cache.putAssociationResult(1, PAGE, ranked(2), cache.getVersion());
+		cache.putAssociationResult(2, PAGE, ranked(1), cache.getVersion());
+		cache.getAssociationResult(1, PAGE);
+		cache.putAssociationResult(3, PAGE, ranked(1), cache.getVersion());
+		
+		assertArrayEquals(new int[] {2}, cache.getAssociationResult(1, PAGE).getPhotoIds());
+		assertNull(cache.getAssociationResult(2, PAGE));
+		assertEquals(1L, cache.getStats().get("evictions"));
+	}
+	
+	@Test
+	public void testStaleVersionNotCached() {
+		long version = cache.getVersion();
+		cache.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, photoComment(1, 5, "unrelated")));
+		cache.putKeywordResult(Arrays.asList("hall"), PAGE, ranked(3), version);
+		
+		assertNull(cache.getKeywordResult(Arrays.asList("hall"), PAGE));
+	}
+	
+	@Test
+	public void testInvalidateByTerm() {
+		cache.putKeywordResult(Arrays.asList("hall"), PAGE, ranked(3), cache.getVersion());
+		cache.putKeywordResult(Arrays.asList("mountain"), PAGE, ranked(4), cache.getVersion());
+		
+		// a new comment with a term starting with "hall" may add photo 7 to the first result only
+		cache.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, photoComment(1, 7, "Hallway")));
+		
+		assertNull(cache.getKeywordResult(Arrays.asList("hall"), PAGE));
+		assertArrayEquals(new int[] {4}, cache.getKeywordResult(Arrays.asList("mountain"), PAGE).getPhotoIds());
+		assertEquals(1L, cache.getStats().get("invalidations"));
+	}
+	
+	@Test
+	public void testInvalidateByPhoto() {
+		cache.putKeywordResult(Arrays.asList("hall"), PAGE, ranked(3), cache.getVersion());
+		cache.putKeywordResult(Arrays.asList("mountain"), PAGE, ranked(4), cache.getVersion());
+		
+		// deleting a photo only affects the results containing it
+		Photo photo = new Photo(1000, new Date());
+		photo.setPhotoId(3);
+		cache.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, photo));
+		
+		assertNull(cache.getKeywordResult(Arrays.asList("hall"), PAGE));
+		assertArrayEquals(new int[] {4}, cache.getKeywordResult(Arrays.asList("mountain"), PAGE).getPhotoIds());
+	}
+	
+	@Test
+	public void testInvalidateByPhotoSave() {
+		cache.putKeywordResult(Arrays.asList("hall"), PAGE, ranked(3), cache.getVersion());
+		cache.putAssociationResult(5, PAGE, ranked(4), cache.getVersion());
+		
+		// the metadata of a new photo may match any query
+		Photo photo = new Photo(1000, new Date());
+		photo.setPhotoId(9);
+		cache.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, photo));
+		
+		assertNull(cache.getKeywordResult(Arrays.asList("hall"), PAGE));
+		assertNull(cache.getAssociationResult(5, PAGE));
+	}
+	
+	@Test
+	public void testInvalidateBySourcePhoto() {
+		cache.putAssociationResult(5, PAGE, ranked(4), cache.getVersion());
+		cache.invalidateAssociations(6);
+		assertArrayEquals(new int[] {4}, cache.getAssociationResult(5, PAGE).getPhotoIds());
+		
+		cache.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, photoComment(2, 5, "tree")));
+		assertNull(cache.getAssociationResult(5, PAGE));
+	}
+	
+	@Test
+	public void testKeyedByPageSize() {
+		cache.putAssociationResult(5, PAGE, ranked(4, 3), cache.getVersion());
+		assertNull(cache.getAssociationResult(5, 1));
+		
+		cache.putAssociationResult(5, 1, ranked(4), cache.getVersion());
+		cache.invalidateAssociations(5);
+		assertNull(cache.getAssociationResult(5, PAGE));
+		assertNull(cache.getAssociationResult(5, 1));
+	}
+	
+	private RankedPhotoIds ranked(int... photoIds) {
+		double[] scores = new double[photoIds.length];
+		for(int i = 0; i < scores.length; i++)
+			scores[i] = photoIds.length - i;
+		return new RankedPhotoIds(photoIds, scores);
+	}
+	
+	private PhotoComment photoComment(int id, int photoId, String text) {
+		PhotoComment comment = new PhotoComment(photoId, 1000, new Date());
+		comment.setPhotoCommentId(id);
+		comment.setPhotoCommentText(text);
+		return comment;
+	}
+}
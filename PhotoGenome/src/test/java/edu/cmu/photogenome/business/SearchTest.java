@@ -1,11 +1,13 @@
 package edu.cmu.photogenome.business;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 import org.junit.Test;
 
-import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoSummary;
 import edu.cmu.photogenome.util.HibernateDbUnitTestCase;
 
 public class SearchTest extends HibernateDbUnitTestCase{
@@ -15,7 +17,7 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		int photoId = 1;
 		
 		Search search = new Search(session);
-		List<Photo> results = search.getAssociatedPhotos(photoId);
+		List<PhotoSummary> results = search.getAssociatedPhotos(photoId);
 		
 		assertNotNull(results);
 	}
@@ -25,7 +27,7 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		int photoId = -1;
 		
 		Search search = new Search(session);
-		List<Photo> results = search.getAssociatedPhotos(photoId);
+		List<PhotoSummary> results = search.getAssociatedPhotos(photoId);
 		
 		assertNotNull(results);
 		assertEquals(0, results.size());
@@ -37,7 +39,7 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		List<Integer> photoCategoryIdList = new ArrayList<Integer>();
 		List<Integer> regionCategoryIdList = new ArrayList<Integer>();
 		Search search = new Search(session);
-		List<Photo> results = null;
+		List<PhotoSummary> results = null;
 		
 		photoCategoryIdList.add(1);
 		regionCategoryIdList.add(1);
@@ -45,7 +47,7 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		assertNotNull(results);
 		assertEquals(2, results.size());
 		System.out.println("size = " + results.size());
-		for(Photo p : results)
+		for(PhotoSummary p : results)
 			System.out.println(p.getPhotoId());
 	}
 
@@ -55,7 +57,7 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		List<Integer> photoCategoryIdList = new ArrayList<Integer>();
 		List<Integer> regionCategoryIdList = new ArrayList<Integer>();
 		Search search = new Search(session);
-		List<Photo> results = null;
+		List<PhotoSummary> results = null;
 		
 		results = search.getFilteredAssociatedPhotosByCategoryId(photoId, photoCategoryIdList, regionCategoryIdList);
 		assertNotNull(results);
@@ -68,7 +70,7 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		List<String> photoCategoryList = new ArrayList<String>();
 		List<String> regionCategoryList = new ArrayList<String>();
 		Search search = new Search(session);
-		List<Photo> results = null;
+		List<PhotoSummary> results = null;
 		
 		photoCategoryList.add("buildingHamerschlagHall");
 		regionCategoryList.add("personTyler");
@@ -76,7 +78,7 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		assertNotNull(results);
 		assertEquals(2, results.size());
 		System.out.println("size = " + results.size());
-		for(Photo p : results)
+		for(PhotoSummary p : results)
 			System.out.println(p.getPhotoId());
 	}
 
@@ -86,7 +88,7 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		List<String> photoCategoryList = new ArrayList<String>();
 		List<String> regionCategoryList = new ArrayList<String>();
 		Search search = new Search(session);
-		List<Photo> results = null;
+		List<PhotoSummary> results = null;
 		
 		results = search.getFilteredAssociatedPhotosByCategoryValue(photoId, photoCategoryList, regionCategoryList);
 		assertNotNull(results);
@@ -99,7 +101,7 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		List<String> photoCategoryList = new ArrayList<String>();
 		List<String> regionCategoryList = new ArrayList<String>();
 		Search search = new Search(session);
-		List<Photo> results = null;
+		List<PhotoSummary> results = null;
 		
 		results = search.getFilteredAssociatedPhotosByCategoryValue(photoId, photoCategoryList, regionCategoryList);
 		assertNotNull(results);
@@ -111,7 +113,7 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		int photoId = 1;
 		
 		Search search = new Search(session);
-		List<Photo> results = search.getAssociatedPhotos(photoId);
+		List<PhotoSummary> results = search.getAssociatedPhotos(photoId);
 		
 		assertNotNull(results);
 	}
@@ -121,9 +123,43 @@ public class SearchTest extends HibernateDbUnitTestCase{
 		int photoId = 1;
 		
 		Search search = new Search(session);
-		List<Photo> results = search.getAssociatedPhotos(photoId);
+		List<PhotoSummary> results = search.getAssociatedPhotos(photoId);
 		
 		assertNotNull(results);
 		assertEquals(0, results.size());
 	}
+	
+	@Test
+	public void testGetPhotosByKeywordPages() {
+		// matched by photo 1 through its categories, photo 2 through its comment and photos 2 and 3
+		// through their metadata
+		List<String> keywords = Arrays.asList("hall", "weeks", "personTyler");
+		Search search = new Search(session);
+		List<Integer> expected = new ArrayList<Integer>();
+		for(PhotoSummary photo : search.getPhotosByKeyword(keywords))
+			expected.add(photo.getPhotoId());
+		assertTrue(expected.size() >= 2);
+		
+		// the pages of one photo, concatenated, are the unpaginated result
+		List<Integer> paged = new ArrayList<Integer>();
+		SearchPage page = search.getPhotosByKeyword(keywords, null, 1);
+		assertNotNull(page.getNextCursor());
+		while(true) {
+			assertNotNull(page);
+			assertTrue(page.getItems().size() <= 1);
+			for(PhotoSummary photo : page.getItems())
+				paged.add(photo.getPhotoId());
+			if(page.getNextCursor() == null || paged.size() > expected.size())
+				break;
+			page = search.getPhotosByKeyword(keywords, page.getNextCursor(), 1);
+		}
+		assertEquals(expected, paged);
+		assertEquals(paged.size(), new HashSet<Integer>(paged).size());
+	}
+	
+	@Test
+	public void testGetPhotosByKeywordInvalidCursor() {
+		Search search = new Search(session);
+		assertNull(search.getPhotosByKeyword(Arrays.asList("hall"), "not a cursor", 1));
+	}
 }
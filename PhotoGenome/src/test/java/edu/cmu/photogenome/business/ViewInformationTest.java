@@ -1,6 +1,7 @@
 package edu.cmu.photogenome.business;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -9,10 +10,13 @@ import org.springframework.util.StopWatch;
 import edu.cmu.photogenome.domain.Photo;
 import edu.cmu.photogenome.domain.PhotoCategory;
 import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoDetail;
 import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.PhotoSummary;
 import edu.cmu.photogenome.domain.RegionCategory;
 import edu.cmu.photogenome.domain.RegionComment;
 import edu.cmu.photogenome.domain.RegionCoordinate;
+import edu.cmu.photogenome.domain.RegionDetail;
 import edu.cmu.photogenome.util.HibernateDbUnitTestCase;
 
 /**
@@ -50,6 +54,48 @@ public class ViewInformationTest extends HibernateDbUnitTestCase {
 		assertTrue(timer.getTotalTimeSeconds() < testTimeSeconds);
 	}
 	
+	@Test
+	public void testGetPhotoDetail() {
+		ViewInformation vi = new ViewInformation(session);
+		PhotoDetail detail = null;
+		detail = vi.getPhotoDetail(1);
+		assertNotNull(detail);
+		assertEquals(1, detail.getPhoto().getPhotoId().intValue());
+		assertEquals(1, detail.getPhotoComments().size());
+		assertEquals(2, detail.getRegions().size());
+		
+		RegionDetail region = detail.getRegions().get(0);
+		assertEquals(1, region.getRegion().getRegionId().intValue());
+		assertEquals(1, region.getCoordinate().getRegionCoordinateId().intValue());
+		assertEquals(1, region.getRegionComments().size());
+		assertEquals(1, region.getRegionComments().get(0).getRegionCommentId().intValue());
+		assertEquals(1, region.getRegionCategories().size());
+		assertEquals(1, region.getRegionCategories().get(0).getRegionCategoryId().intValue());
+	}
+	
+	@Test
+	public void testGetPhotoDetailNull() {
+		ViewInformation vi = new ViewInformation(session);
+		PhotoDetail detail = null;
+		detail = vi.getPhotoDetail(-1);
+		assertNull(detail);
+	}
+	
+	@Test
+	public void testGetRegionDetails() {
+		ViewInformation vi = new ViewInformation(session);
+		List<RegionDetail> list = null;
+		list = vi.getRegionDetails(Arrays.asList(2, 1, 2, -1));
+		assertNotNull(list);
+		assertEquals(2, list.size());
+		assertEquals(2, list.get(0).getRegion().getRegionId().intValue());
+		assertEquals(2, list.get(0).getCoordinate().getRegionCoordinateId().intValue());
+		assertEquals(1, list.get(0).getRegionComments().size());
+		assertEquals(2, list.get(0).getRegionComments().get(0).getRegionCommentId().intValue());
+		assertEquals(1, list.get(1).getRegionCategories().size());
+		assertEquals(1, list.get(1).getRegionCategories().get(0).getRegionCategoryId().intValue());
+	}
+	
 	@Test
 	public void testGetAllPhotos() {
 		ViewInformation vi = new ViewInformation(session);
@@ -71,6 +117,51 @@ public class ViewInformationTest extends HibernateDbUnitTestCase {
 		assertEquals(0, list.size());
 	}
 	
+	@Test
+	public void testGetAllPhotoSummaries() {
+		ViewInformation vi = new ViewInformation(session);
+		List<PhotoSummary> list = null;
+		list = vi.getAllPhotoSummaries();
+		assertNotNull(list);
+		assertEquals(4, list.size());
+	}
+	
+	@Test
+	public void testGetAllPhotoSummariesPage() {
+		ViewInformation vi = new ViewInformation(session);
+		List<PhotoSummary> list = null;
+		list = vi.getAllPhotoSummaries(null, 3);
+		assertNotNull(list);
+		assertEquals(3, list.size());
+		list = vi.getAllPhotoSummaries(3, 3);
+		assertNotNull(list);
+		assertEquals(1, list.size());
+		assertEquals(4, list.get(0).getPhotoId().intValue());
+	}
+	
+	@Test
+	public void testGetPhotoSummariesPage() {
+		ViewInformation vi = new ViewInformation(session);
+		List<PhotoSummary> list = null;
+		list = vi.getPhotoSummaries(1000, 1, 10);
+		assertNotNull(list);
+		assertEquals(1, list.size());
+		assertEquals(2, list.get(0).getPhotoId().intValue());
+	}
+	
+	@Test
+	public void testGetPhotoSummaries() {
+		ViewInformation vi = new ViewInformation(session);
+		List<PhotoSummary> list = null;
+		list = vi.getPhotoSummaries(1000);
+		assertNotNull(list);
+		assertEquals(2, list.size());
+		assertEquals(1000, list.get(0).getUserId());
+		list = vi.getPhotoSummaries(1002);
+		assertNotNull(list);
+		assertEquals(0, list.size());
+	}
+	
 	@Test
 	public void testGetPhotoComment() {
 		ViewInformation vi = new ViewInformation(session);
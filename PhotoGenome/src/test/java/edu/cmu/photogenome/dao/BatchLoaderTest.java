@@ -0,0 +1,112 @@
+package edu.cmu.photogenome.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * JUnit test case for batching and de-duplicating lookups
+ */
+public class BatchLoaderTest {
+	
+	/**
+	 * Loader of the square of positive keys, recording the keys of each fetch
+	 */
+	private static class SquareLoader extends BatchLoader<Integer, Integer> {
+		
+		private List<List<Integer>> fetches = new ArrayList<List<Integer>>();
+		private boolean failing;
+		
+		protected Map<Integer, Integer> fetch(List<Integer> keys) {
+			fetches.add(keys);
+			if(failing)
+				return null;
+			
+			Map<Integer, Integer> values = new HashMap<Integer, Integer>();
+			for(Integer key : keys)
+				if(key > 0)
+					values.put(key, key * key);
+			return values;
+		}
+	}
+	
+	@Test
+	public void testQueuedKeysFetchedOnce() {
+		SquareLoader loader = new SquareLoader();
+		loader.queueAll(Arrays.asList(1, 2, 3, 2, 1));
+		
+		assertEquals(4, loader.load(2).intValue());
+		assertEquals(9, loader.load(3).intValue());
+		assertEquals(1, loader.load(1).intValue());
+		assertEquals(1, loader.getFetchCount());
+		assertEquals(Arrays.asList(1, 2, 3), loader.fetches.get(0));
+	}
+	
+	@Test
+	public void testLoadedKeysNotFetchedAgain() {
+		SquareLoader loader = new SquareLoader();
+		loader.load(1);
+		loader.queue(1);
+		loader.queue(2);
+		
+		Map<Integer, Integer> values = loader.loadAll(Arrays.asList(2, 1));
+		assertEquals(Arrays.asList(2, 1), new ArrayList<Integer>(values.keySet()));
+		assertEquals(2, loader.getFetchCount());
+		assertEquals(Arrays.asList(2), loader.fetches.get(1));
+	}
+	
+	@Test
+	public void testMissingKeyKept() {
+		SquareLoader loader = new SquareLoader();
+		assertNull(loader.load(-1));
+		assertNull(loader.load(-1));
+		assertEquals(1, loader.getFetchCount());
+	}
+	
+	@Test
+	public void testFailedFetchRetried() {
+		SquareLoader loader = new SquareLoader();
+		loader.failing = true;
+		assertNull(loader.load(1));
+		assertTrue(loader.loadAll(Arrays.asList(1)).isEmpty());
+		
+		loader.failing = false;
+		assertEquals(1, loader.load(1).intValue());
+		assertEquals(3, loader.getFetchCount());
+	}
+	
+	@Test
+	public void testClear() {
+		SquareLoader loader = new SquareLoader();
+		loader.load(1);
+		loader.clear();
+		loader.load(1);
+		assertEquals(2, loader.getFetchCount());
+	}
+	
+	@Test
+	public void testGrouped() {
+		BatchLoader<Integer, List<String>> loader = new BatchLoader.Grouped<Integer, String>() {
+			protected List<String> fetchAll(List<Integer> keys) {
+				return Arrays.asList("1a", "2a", "1b");
+			}
+			protected Integer getKey(String value) {
+				return Integer.valueOf(value.substring(0, 1));
+			}
+		};
+		loader.queueAll(Arrays.asList(1, 2, 3));
+		
+		assertEquals(Arrays.asList("1a", "1b"), loader.load(1));
+		assertEquals(Arrays.asList("2a"), loader.load(2));
+		assertTrue(loader.load(3).isEmpty());
+		assertEquals(1, loader.getFetchCount());
+	}
+}
@@ -4,10 +4,12 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import org.hibernate.SessionFactory;
 import org.junit.Test;
 
 import edu.cmu.photogenome.domain.Photo;
 import edu.cmu.photogenome.util.HibernateDbUnitTestCase;
+import edu.cmu.photogenome.util.HibernateUtil;
 
 /**
  * Uses the PhotoDaoImpl class to test the GenericAbstractDaoImpl class methods
@@ -57,6 +59,38 @@ public class GenericAbstractDaoImplTest extends HibernateDbUnitTestCase {
 		assertEquals(3, photoList.get(1).getPhotoId().intValue());
 	}
 	
+	@Test
+	public void testFindByIdsOrder() {
+		PhotoDao photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		Photo loaded = photoDao.findById(1);
+		List<Integer> idList = new ArrayList<Integer>();
+		idList.add(3);
+		idList.add(-1);
+		idList.add(1);
+		idList.add(3);
+		List<Photo> photoList = photoDao.findByIds(idList);
+		assertNotNull(photoList);
+		assertEquals(2, photoList.size());
+		assertEquals(3, photoList.get(0).getPhotoId().intValue());
+		// entities already in the session are returned as is
+		assertSame(loaded, photoList.get(1));
+	}
+	
+	@Test
+	public void testFindByIdsChunked() {
+		PhotoDao photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		List<Integer> idList = new ArrayList<Integer>();
+		for(int id = 1000; id > -1000; id--)
+			idList.add(id);
+		List<Photo> photoList = photoDao.findByIds(idList);
+		assertNotNull(photoList);
+		assertEquals(4, photoList.size());
+		for(int i = 1; i < photoList.size(); i++)
+			assertTrue(photoList.get(i - 1).getPhotoId() > photoList.get(i).getPhotoId());
+	}
+	
 	@Test
 	public void testFindByIdsEmpty() {
 		PhotoDao photoDao = new PhotoDaoImpl();
@@ -91,6 +125,38 @@ public class GenericAbstractDaoImplTest extends HibernateDbUnitTestCase {
 			assertEquals(1000, p.getUserId());
 	}
 	
+	@Test
+	public void testFindPage() {
+		PhotoDao photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		List<Photo> list = null;
+		list = photoDao.findPage(null, 3);
+		assertNotNull(list);
+		assertEquals(3, list.size());
+		assertEquals(1, list.get(0).getPhotoId().intValue());
+		assertEquals(3, list.get(2).getPhotoId().intValue());
+		
+		list = photoDao.findPage(list.get(2).getPhotoId(), 3);
+		assertNotNull(list);
+		assertEquals(1, list.size());
+		assertEquals(4, list.get(0).getPhotoId().intValue());
+		
+		list = photoDao.findPage(4, 3);
+		assertNotNull(list);
+		assertEquals(0, list.size());
+	}
+	
+	@Test
+	public void testFindPageByCriteria() {
+		PhotoDao photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		List<Photo> list = null;
+		list = photoDao.findPageByCriteria("userId", 1001, 3, 10);
+		assertNotNull(list);
+		assertEquals(1, list.size());
+		assertEquals(4, list.get(0).getPhotoId().intValue());
+	}
+	
 	@Test
 	public void testFindAllByCriteriaEmpty() {
 		PhotoDao photoDao = new PhotoDaoImpl();
@@ -126,5 +192,84 @@ public class GenericAbstractDaoImplTest extends HibernateDbUnitTestCase {
 		photo = photoDao.findById(photoId);
 		assertEquals(photoName, photo.getPhotoName());
 	}
+	
+	@Test
+	public void testSaveAll() {
+		PhotoDaoImpl photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		List<Photo> photos = new ArrayList<Photo>();
+		for(int i = 0; i < 5; i++)
+			photos.add(new Photo(1000, new Date()));
+		assertEquals(5, photoDao.saveAll(photos));
+		for(Photo photo : photos)
+			assertNotNull(photoDao.findById(photo.getPhotoId()));
+		assertEquals(9, photoDao.findAll().size());
+	}
+	
+	@Test
+	public void testUpdateAll() {
+		PhotoDaoImpl photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		List<Photo> photos = photoDao.findAll();
+		for(Photo photo : photos)
+			photo.setPhotoName("Renamed");
+		assertEquals(photos.size(), photoDao.updateAll(photos));
+		// the written entities are evicted
+		assertFalse(session.contains(photos.get(0)));
+		for(Photo photo : photoDao.findAll())
+			assertEquals("Renamed", photo.getPhotoName());
+	}
+	
+	@Test
+	public void testSaveAllInChunks() {
+		PhotoDaoImpl photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		photoDao.setBatchSize(2);
+		Photo loaded = photoDao.findById(1);
+		List<Photo> photos = new ArrayList<Photo>();
+		for(int i = 0; i < 5; i++)
+			photos.add(new Photo(1000, new Date()));
+		assertEquals(5, photoDao.saveAll(photos));
+		assertEquals(9, photoDao.findAll().size());
+		// only the entities of the chunks are evicted
+		assertFalse(session.contains(photos.get(4)));
+		assertTrue(session.contains(loaded));
+	}
+	
+	@Test
+	public void testDeleteAll() {
+		PhotoDao photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		List<Integer> idList = new ArrayList<Integer>();
+		idList.add(1);
+		idList.add(3);
+		assertEquals(2, photoDao.deleteAll(photoDao.findByIds(idList)));
+		assertNull(photoDao.findById(1));
+		assertNull(photoDao.findById(3));
+		assertEquals(2, photoDao.findAll().size());
+	}
+	
+	@Test
+	public void testDeleteAllStopsAtFailedChunk() {
+		PhotoDaoImpl photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		photoDao.setBatchSize(2);
+		List<Integer> idList = new ArrayList<Integer>();
+		idList.add(2);
+		idList.add(4);
+		List<Photo> photos = new ArrayList<Photo>(photoDao.findByIds(idList));
+		Photo missing = new Photo(1000, new Date());
+		missing.setPhotoId(999);
+		photos.add(missing);
+		
+		// the first chunk is deleted, the chunk of the missing photo fails
+		assertEquals(2, photoDao.deleteAll(photos));
+		
+		// the session can not be used any further
+		SessionFactory sessionFactory = session.getSessionFactory();
+		HibernateUtil.rollbackTransaction(session);
+		session = sessionFactory.openSession();
+		HibernateUtil.beginTransaction(session);
+	}
 
 }
@@ -0,0 +1,78 @@
+package edu.cmu.photogenome.dao;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.cmu.photogenome.domain.PhotoNeighbor;
+import edu.cmu.photogenome.util.HibernateDbUnitTestCase;
+
+/**
+ * JUnit test case for the PhotoNeighborDaoImpl class, the photoneighbor table is created by
+ * src/main/sql/photoneighbor.sql
+ */
+public class PhotoNeighborDaoImplTest extends HibernateDbUnitTestCase {
+	
+	// photo ids not in the test data, the rows saved are deleted by each test
+	private static final int PHOTO_ID = 9001;
+	private static final int OTHER_PHOTO_ID = 9002;
+	
+	private PhotoNeighborDao saveNeighbors() {
+		PhotoNeighborDao photoNeighborDao = new PhotoNeighborDaoImpl();
+		photoNeighborDao.setSession(session);
+		Date now = new Date();
+		assertTrue(photoNeighborDao.save(new PhotoNeighbor(PHOTO_ID, 3, 1, 0.5, now)));
+		assertTrue(photoNeighborDao.save(new PhotoNeighbor(PHOTO_ID, 1, 0, 0.9, now)));
+		assertTrue(photoNeighborDao.save(new PhotoNeighbor(OTHER_PHOTO_ID, 1, 0, 0.4, now)));
+		return photoNeighborDao;
+	}
+	
+	private void deleteNeighbors(PhotoNeighborDao photoNeighborDao) {
+		assertTrue(photoNeighborDao.deleteByPhotoId(PHOTO_ID));
+		assertTrue(photoNeighborDao.deleteByPhotoId(OTHER_PHOTO_ID));
+	}
+	
+	@Test
+	public void testFindByPhotoId() {
+		PhotoNeighborDao photoNeighborDao = saveNeighbors();
+		List<PhotoNeighbor> neighbors = photoNeighborDao.findByPhotoId(PHOTO_ID);
+		assertNotNull(neighbors);
+		assertEquals(2, neighbors.size());
+		// ordered by rank
+		assertEquals(1, neighbors.get(0).getNeighborPhotoId());
+		assertEquals(3, neighbors.get(1).getNeighborPhotoId());
+		deleteNeighbors(photoNeighborDao);
+	}
+	
+	@Test
+	public void testFindByPhotoIdEmpty() {
+		PhotoNeighborDao photoNeighborDao = new PhotoNeighborDaoImpl();
+		photoNeighborDao.setSession(session);
+		List<PhotoNeighbor> neighbors = photoNeighborDao.findByPhotoId(-1);
+		assertNotNull(neighbors);
+		assertTrue(neighbors.isEmpty());
+	}
+	
+	@Test
+	public void testFindByNeighborPhotoId() {
+		PhotoNeighborDao photoNeighborDao = saveNeighbors();
+		List<PhotoNeighbor> neighbors = photoNeighborDao.findByNeighborPhotoId(1);
+		assertNotNull(neighbors);
+		int listing = 0;
+		for(PhotoNeighbor neighbor : neighbors)
+			if(neighbor.getPhotoId() == PHOTO_ID || neighbor.getPhotoId() == OTHER_PHOTO_ID)
+				listing++;
+		assertEquals(2, listing);
+		deleteNeighbors(photoNeighborDao);
+	}
+	
+	@Test
+	public void testDeleteByPhotoId() {
+		PhotoNeighborDao photoNeighborDao = saveNeighbors();
+		assertTrue(photoNeighborDao.deleteByPhotoId(PHOTO_ID));
+		assertTrue(photoNeighborDao.findByPhotoId(PHOTO_ID).isEmpty());
+		assertEquals(1, photoNeighborDao.findByPhotoId(OTHER_PHOTO_ID).size());
+		deleteNeighbors(photoNeighborDao);
+	}
+}
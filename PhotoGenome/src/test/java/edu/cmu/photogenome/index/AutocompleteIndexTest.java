@@ -0,0 +1,111 @@
+package edu.cmu.photogenome.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+
+/**
+ * JUnit test case for the completion trie and the autocomplete index
+ */
+public class AutocompleteIndexTest {
+	
+	private AutocompleteIndex index;
+	
+	@Before
+	public void setUp() {
+		List<PhotoCategory> photoCategories = new ArrayList<PhotoCategory>();
+		photoCategories.add(photoCategory(1, 1, "Building"));
+		photoCategories.add(photoCategory(2, 2, "Building"));
+		photoCategories.add(photoCategory(3, 3, "Bus  Stop"));
+		
+		List<PhotoComment> photoComments = new ArrayList<PhotoComment>();
+		photoComments.add(photoComment(1, 1, "Busy street, busy day"));
+		
+		List<RegionCategory> regionCategories = new ArrayList<RegionCategory>();
+		regionCategories.add(regionCategory(1, 10, 2, "Person"));
+		
+		index = new AutocompleteIndex();
+		index.build(photoCategories, photoComments, regionCategories, null);
+	}
+	
+	@Test
+	public void testTrie() {
+		CompletionTrie trie = new CompletionTrie();
+		trie.adjust("car", 2);
+		trie.adjust("cat", 5);
+		trie.adjust("cab", 2);
+		trie.adjust("dog", 9);
+		assertEquals(Arrays.asList("cat", "cab", "car"), trie.complete("ca", 10));
+		assertEquals(Arrays.asList("cat"), trie.complete("c", 1));
+		assertEquals(0, trie.complete("cow", 10).size());
+		
+		// weights drop to zero and are pruned
+		trie.adjust("cat", -5);
+		assertEquals(0, trie.getWeight("cat"));
+		assertEquals(3, trie.size());
+		assertEquals(Arrays.asList("cab", "car"), trie.complete("ca", 10));
+		trie.adjust("ca", -1);
+		assertEquals(3, trie.size());
+	}
+	
+	@Test
+	public void testComplete() {
+		// category names are counted once per category, comment terms once per comment
+		assertEquals(Arrays.asList("building", "bus stop", "busy"), index.complete("BU", 10));
+		assertEquals(Arrays.asList("bus stop"), index.complete("  bus  ", 10));
+		assertEquals(Arrays.asList("person"), index.complete("p", 10));
+		assertEquals(Arrays.asList("building"), index.complete("b", 1));
+		assertTrue(index.complete(" ", 10).isEmpty());
+	}
+	
+	@Test
+	public void testChange() {
+		// renaming a category takes back the weight of its previous name
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.UPDATE, photoCategory(1, 1, "Bus Stop")));
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, photoCategory(4, 4, "Bus Stop")));
+		assertEquals(Arrays.asList("bus stop", "building", "busy"), index.complete("bu", 10));
+		
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, photoComment(1, 1, null)));
+		assertEquals(Arrays.asList("bus stop", "building"), index.complete("bu", 10));
+		
+		Photo photo = new Photo(1000, new Date());
+		photo.setPhotoId(2);
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, photo));
+		assertTrue(index.complete("p", 10).isEmpty());
+		assertTrue(index.complete("bui", 10).isEmpty());
+	}
+	
+	private PhotoCategory photoCategory(int id, int photoId, String name) {
+		PhotoCategory category = new PhotoCategory(photoId, 1000, new Date());
+		category.setPhotoCategoryId(id);
+		category.setPhotoCategoryName(name);
+		return category;
+	}
+	
+	private PhotoComment photoComment(int id, int photoId, String text) {
+		PhotoComment comment = new PhotoComment(photoId, 1000, new Date());
+		comment.setPhotoCommentId(id);
+		comment.setPhotoCommentText(text);
+		return comment;
+	}
+	
+	private RegionCategory regionCategory(int id, int regionId, int photoId, String name) {
+		RegionCategory category = new RegionCategory(regionId, photoId, 1000, new Date());
+		category.setRegionCategoryId(id);
+		category.setCategoryName(name);
+		return category;
+	}
+}
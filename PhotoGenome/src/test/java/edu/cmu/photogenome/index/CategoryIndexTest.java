@@ -0,0 +1,119 @@
+package edu.cmu.photogenome.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+
+/**
+ * JUnit test case for the category index
+ */
+public class CategoryIndexTest {
+	
+	private CategoryIndex index;
+	
+	@Before
+	public void setUp() {
+		List<PhotoCategory> photoCategories = new ArrayList<PhotoCategory>();
+		photoCategories.add(photoCategory(1, 1, "Building", "Hamerschlag Hall"));
+		photoCategories.add(photoCategory(2, 2, "Building", "Wean Hall"));
+		photoCategories.add(photoCategory(3, 3, "Mountain", null));
+		
+		List<RegionCategory> regionCategories = new ArrayList<RegionCategory>();
+		regionCategories.add(regionCategory(1, 10, 2, "Person", "Jeff"));
+		regionCategories.add(regionCategory(2, 11, 3, "Building", "Wean Hall"));
+		
+		index = new CategoryIndex();
+		index.build(photoCategories, regionCategories);
+	}
+	
+	@Test
+	public void testKey() {
+		assertEquals("buildingweanhall", CategoryIndex.key("Building ", " Wean\tHall"));
+		assertEquals(CategoryIndex.key("Building", "Wean Hall"), CategoryIndex.key("BuildingWeanHall"));
+		assertEquals("mountain", CategoryIndex.key("Mountain", null));
+	}
+	
+	@Test
+	public void testGetPhotos() {
+		// photo and region categories are both indexed
+		assertArrayEquals(new int[] {2, 3}, photos("buildingweanhall"));
+		assertArrayEquals(new int[] {1, 2, 3}, photos("buildinghamerschlaghall", "buildingweanhall"));
+		assertArrayEquals(new int[] {2, 3}, photos("personjeff", "mountain", "unknown"));
+		assertArrayEquals(new int[0], photos("building"));
+	}
+	
+	@Test
+	public void testBitmapOr() {
+		IntBitmap bitmap = IntBitmap.of(1, 70000);
+		IntBitmap union = bitmap.or(IntBitmap.of(2, 70000, 140000));
+		assertArrayEquals(new int[] {1, 2, 70000, 140000}, union.toArray());
+		assertArrayEquals(new int[] {1, 70000}, bitmap.toArray());
+		
+		IntBitmap even = new IntBitmap();
+		IntBitmap odd = new IntBitmap();
+		for(int i = 0; i < 6000; i++)
+			(i % 2 == 0 ? even : odd).add(i);
+		union = even.or(odd);
+		assertEquals(6000, union.getCardinality());
+		assertTrue(union.contains(5999));
+		assertEquals(3000, union.andCardinality(even));
+	}
+	
+	@Test
+	public void testChange() {
+		// renaming the photo category of photo 2 keeps it under Wean Hall through its region of photo 3
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.UPDATE, photoCategory(2, 2, "Building", "Porter Hall")));
+		assertArrayEquals(new int[] {3}, photos("buildingweanhall"));
+		assertArrayEquals(new int[] {2}, photos("buildingporterhall"));
+		
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, regionCategory(3, 12, 1, "Person", "Jeff")));
+		assertArrayEquals(new int[] {1, 2}, photos("personjeff"));
+		
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, regionCategory(3, 12, 1, "Person", "Jeff")));
+		assertArrayEquals(new int[] {2}, photos("personjeff"));
+		
+		PhotoRegion region = new PhotoRegion(3, 1000, 1, new Date());
+		region.setRegionId(11);
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, region));
+		assertArrayEquals(new int[0], photos("buildingweanhall"));
+		
+		Photo photo = new Photo(1000, new Date());
+		photo.setPhotoId(3);
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, photo));
+		assertArrayEquals(new int[0], photos("mountain"));
+	}
+	
+	private int[] photos(String... keys) {
+		return index.getPhotos(Arrays.asList(keys)).toArray();
+	}
+	
+	private PhotoCategory photoCategory(int id, int photoId, String name, String text) {
+		PhotoCategory category = new PhotoCategory(photoId, 1000, new Date());
+		category.setPhotoCategoryId(id);
+		category.setPhotoCategoryName(name);
+		category.setPhotoCategoryText(text);
+		return category;
+	}
+	
+	private RegionCategory regionCategory(int id, int regionId, int photoId, String name, String text) {
+		RegionCategory category = new RegionCategory(regionId, photoId, 1000, new Date());
+		category.setRegionCategoryId(id);
+		category.setCategoryName(name);
+		category.setRegionCategoryText(text);
+		return category;
+	}
+}
@@ -0,0 +1,150 @@
+package edu.cmu.photogenome.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.PhotoSummary;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+
+/**
+ * JUnit test case for the compressed bitmaps and the facet index
+ */
+public class FacetIndexTest {
+	
+	private FacetIndex index;
+	
+	@Before
+	public void setUp() {
+		List<PhotoSummary> photos = new ArrayList<PhotoSummary>();
+		photos.add(new PhotoSummary(1, "hamerschlag", null, 1000, date(2013, 5)));
+		photos.add(new PhotoSummary(2, "wean", null, 1000, date(2013, 6)));
+		photos.add(new PhotoSummary(3, "matterhorn", null, 1001, date(2013, 6)));
+		
+		List<PhotoCategory> photoCategories = new ArrayList<PhotoCategory>();
+		photoCategories.add(photoCategory(1, 1, "Building"));
+		photoCategories.add(photoCategory(2, 2, "Building"));
+		photoCategories.add(photoCategory(3, 3, "Mountain"));
+		
+		List<RegionCategory> regionCategories = new ArrayList<RegionCategory>();
+		regionCategories.add(regionCategory(1, 10, 2, "Person"));
+		regionCategories.add(regionCategory(2, 10, 2, "Building"));
+		
+		index = new FacetIndex();
+		index.build(photos, photoCategories, regionCategories);
+	}
+	
+	@Test
+	public void testBitmap() {
+		IntBitmap bitmap = IntBitmap.of(5, 70000, 3, 5);
+		assertEquals(3, bitmap.getCardinality());
+		assertArrayEquals(new int[] {3, 5, 70000}, bitmap.toArray());
+		assertEquals(2, bitmap.andCardinality(IntBitmap.of(1, 5, 70000)));
+		
+		assertTrue(bitmap.remove(70000));
+		assertFalse(bitmap.remove(70000));
+		assertFalse(bitmap.contains(70000));
+		assertArrayEquals(new int[] {3, 5}, bitmap.toArray());
+	}
+	
+	@Test
+	public void testDenseBitmap() {
+		// past 4096 ids a chunk switches to a bitmap, and back to an array when it shrinks
+		IntBitmap even = new IntBitmap();
+		IntBitmap thirds = new IntBitmap();
+		for(int i = 0; i < 20000; i++) {
+			if(i % 2 == 0)
+				even.add(i);
+			if(i % 3 == 0)
+				thirds.add(i);
+		}
+		assertEquals(10000, even.getCardinality());
+		assertEquals(3334, even.andCardinality(thirds));
+		assertEquals(3334, even.andCardinality(IntBitmap.of(thirds.toArray())));
+		
+		for(int i = 0; i < 20000; i += 2)
+			if(i % 4 == 0 || i >= 10000)
+				even.remove(i);
+		assertEquals(2500, even.getCardinality());
+		assertTrue(even.contains(2));
+		assertFalse(even.contains(4));
+		assertEquals(833, even.andCardinality(thirds));
+	}
+	
+	@Test
+	public void testCount() {
+		Map<String, Map<String, Integer>> facets = index.count(new int[] {1, 2, 3}, 10);
+		
+		// photo 2 has the Building category twice but is only counted once
+		assertEquals(Integer.valueOf(2), facets.get(FacetIndex.CATEGORY).get("Building"));
+		assertEquals("Building", facets.get(FacetIndex.CATEGORY).keySet().iterator().next());
+		assertEquals(Integer.valueOf(2), facets.get(FacetIndex.USER).get("1000"));
+		assertEquals(Integer.valueOf(2), facets.get(FacetIndex.MONTH).get("2013-06"));
+		
+		facets = index.count(new int[] {3}, 10);
+		assertEquals(1, facets.get(FacetIndex.CATEGORY).size());
+		assertEquals(Integer.valueOf(1), facets.get(FacetIndex.CATEGORY).get("Mountain"));
+	}
+	
+	@Test
+	public void testCountMaxValues() {
+		Map<String, Map<String, Integer>> facets = index.count(new int[] {1, 2, 3}, 1);
+		assertEquals(1, facets.get(FacetIndex.CATEGORY).size());
+		assertEquals(0, index.count(new int[0], 10).get(FacetIndex.USER).size());
+	}
+	
+	@Test
+	public void testChange() {
+		// renaming the photo category of photo 2 keeps Building from its region category
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.UPDATE, photoCategory(2, 2, "Hall")));
+		Map<String, Integer> categories = index.count(new int[] {2}, 10).get(FacetIndex.CATEGORY);
+		assertEquals(Integer.valueOf(1), categories.get("Building"));
+		assertEquals(Integer.valueOf(1), categories.get("Hall"));
+		
+		PhotoRegion region = new PhotoRegion(2, 1000, 1, new Date());
+		region.setRegionId(10);
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, region));
+		categories = index.count(new int[] {2}, 10).get(FacetIndex.CATEGORY);
+		assertEquals(1, categories.size());
+		
+		Photo photo = new Photo(1001, date(2013, 7));
+		photo.setPhotoId(4);
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, photo));
+		assertEquals(Integer.valueOf(2), index.count(new int[] {1, 2, 3, 4}, 10).get(FacetIndex.USER).get("1001"));
+		
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, photo));
+		assertFalse(index.count(new int[] {4}, 10).get(FacetIndex.MONTH).containsKey("2013-07"));
+	}
+	
+	private Date date(int year, int month) {
+		return new GregorianCalendar(year, month - 1, 15).getTime();
+	}
+	
+	private PhotoCategory photoCategory(int id, int photoId, String name) {
+		PhotoCategory category = new PhotoCategory(photoId, 1000, new Date());
+		category.setPhotoCategoryId(id);
+		category.setPhotoCategoryName(name);
+		return category;
+	}
+	
+	private RegionCategory regionCategory(int id, int regionId, int photoId, String name) {
+		RegionCategory category = new RegionCategory(regionId, photoId, 1000, new Date());
+		category.setRegionCategoryId(id);
+		category.setCategoryName(name);
+		return category;
+	}
+}
@@ -0,0 +1,204 @@
+package edu.cmu.photogenome.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoMetadata;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.domain.RegionComment;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+
+/**
+ * JUnit test case for the in-memory keyword index
+ */
+public class KeywordIndexTest {
+	
+	private KeywordIndex index;
+	
+	@Before
+	public void setUp() {
+		List<PhotoCategory> photoCategories = new ArrayList<PhotoCategory>();
+		photoCategories.add(photoCategory(1, 1, "Building", "Hamerschlag Hall"));
+		photoCategories.add(photoCategory(2, 2, "Building", "Wean Hall"));
+		
+		List<PhotoComment> photoComments = new ArrayList<PhotoComment>();
+		photoComments.add(photoComment(1, 3, "Sunset over the Cathedral"));
+		
+		List<RegionCategory> regionCategories = new ArrayList<RegionCategory>();
+		regionCategories.add(regionCategory(1, 10, 2, "Person", "Tyler"));
+		
+		List<PhotoMetadata> metadata = new ArrayList<PhotoMetadata>();
+		metadata.add(new PhotoMetadata(4, "mountain matterhorn"));
+		metadata.get(0).setPhotometadataId(1);
+		
+		index = new KeywordIndex();
+		index.build(photoCategories, photoComments, regionCategories, new ArrayList<RegionComment>(), metadata);
+	}
+	
+	@Test
+	public void testSearchSingleKeyword() {
+		assertArrayEquals(new int[] {3}, index.search(Arrays.asList("cathedral"), 10));
+	}
+	
+	@Test
+	public void testSearchPrefix() {
+		assertArrayEquals(new int[] {4}, index.search(Arrays.asList("Matter"), 10));
+	}
+	
+	@Test
+	public void testSearchMergedCategory() {
+		assertArrayEquals(new int[] {1}, index.search(Arrays.asList("buildingHamerschlagHall"), 10));
+	}
+	
+	@Test
+	public void testSearchRanksByMatchedKeywords() {
+		// photo 2 matches both keywords, photo 1 only one
+		assertArrayEquals(new int[] {2, 1}, index.search(Arrays.asList("hall", "tyler"), 10));
+		// ties are ordered by descending photo id
+		assertArrayEquals(new int[] {2, 1}, index.search(Arrays.asList("building"), 10));
+	}
+	
+	@Test
+	public void testSearchMaxMatches() {
+		assertArrayEquals(new int[] {2}, index.search(Arrays.asList("building"), 1));
+	}
+	
+	@Test
+	public void testSearchPages() {
+		// photo 2 matches both keywords, photos 1 and 3 one each
+		List<String> keywords = Arrays.asList("hall", "tyler", "cathedral");
+		RankedPhotoIds first = index.search(keywords, null, 2);
+		assertArrayEquals(new int[] {2, 3}, first.getPhotoIds());
+		
+		// the next page continues after the last photo of the first page
+		SearchCursor cursor = SearchCursor.decode(first.cursorAt(first.size() - 1).encode());
+		assertArrayEquals(new int[] {1}, index.search(keywords, cursor, 2).getPhotoIds());
+		assertEquals(0, index.search(keywords, new SearchCursor(1, 1), 2).size());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testMalformedCursor() {
+		SearchCursor.decode("not a cursor");
+	}
+	
+	@Test
+	public void testSearchNoMatches() {
+		assertEquals(0, index.search(Arrays.asList("unknown"), 10).length);
+	}
+	
+	@Test
+	public void testUpdateAndDelete() {
+		PhotoCategory category = photoCategory(1, 1, "Building", "Porter Hall");
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.UPDATE, category));
+		assertEquals(0, index.search(Arrays.asList("hamerschlag"), 10).length);
+		assertArrayEquals(new int[] {1}, index.search(Arrays.asList("porter"), 10));
+		
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, category));
+		assertEquals(0, index.search(Arrays.asList("porter"), 10).length);
+		assertTrue(index.getTerms(1).isEmpty());
+	}
+	
+	@Test
+	public void testAbortBuild() {
+		KeywordIndex unbuilt = new KeywordIndex();
+		unbuilt.startBuild();
+		unbuilt.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, photoCategory(3, 5, "Building", "Porter Hall")));
+		unbuilt.abortBuild();
+		assertFalse(unbuilt.isBuilt());
+		
+		// the change received during the aborted build is not replayed
+		unbuilt.build(new ArrayList<PhotoCategory>(), new ArrayList<PhotoComment>(), new ArrayList<RegionCategory>(),
+				new ArrayList<RegionComment>(), new ArrayList<PhotoMetadata>());
+		assertTrue(unbuilt.isBuilt());
+		assertEquals(0, unbuilt.search(Arrays.asList("porter"), 10).length);
+	}
+	
+	@Test
+	public void testDeleteRegion() {
+		PhotoRegion region = new PhotoRegion(2, 1000, 1, new Date());
+		region.setRegionId(10);
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, region));
+		assertEquals(0, index.search(Arrays.asList("tyler"), 10).length);
+		assertArrayEquals(new int[] {2}, index.search(Arrays.asList("wean"), 10));
+	}
+	
+	@Test
+	public void testMetadataReloadedOnChange() {
+		final List<PhotoMetadata> metadata = new ArrayList<PhotoMetadata>();
+		metadata.add(new PhotoMetadata(4, "mountain eiger"));
+		metadata.get(0).setPhotometadataId(1);
+		metadata.add(new PhotoMetadata(4, "glacier"));
+		metadata.get(1).setPhotometadataId(2);
+		index.setMetadataLoader(new PhotoMetadataLoader() {
+			public List<PhotoMetadata> load(int photoId) {
+				return photoId == 4 ? metadata : new ArrayList<PhotoMetadata>();
+			}
+		});
+		
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, photoComment(2, 4, "Alps")));
+		assertEquals(0, index.search(Arrays.asList("matterhorn"), 10).length);
+		assertArrayEquals(new int[] {4}, index.search(Arrays.asList("eiger", "glacier", "alps"), 10));
+		
+		// a failed read keeps the metadata indexed last
+		index.setMetadataLoader(new PhotoMetadataLoader() {
+			public List<PhotoMetadata> load(int photoId) {
+				return null;
+			}
+		});
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, photoComment(2, 4, "Alps")));
+		assertArrayEquals(new int[] {4}, index.search(Arrays.asList("glacier"), 10));
+	}
+	
+	@Test
+	public void testMetadataOfNewPhoto() {
+		final PhotoMetadata metadata = new PhotoMetadata(5, "imported archive");
+		metadata.setPhotometadataId(3);
+		index.setMetadataLoader(new PhotoMetadataLoader() {
+			public List<PhotoMetadata> load(int photoId) {
+				return Arrays.asList(metadata);
+			}
+		});
+		
+		Photo photo = new Photo(1000, new Date());
+		photo.setPhotoId(5);
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, photo));
+		assertArrayEquals(new int[] {5}, index.search(Arrays.asList("archive"), 10));
+	}
+	
+	private PhotoCategory photoCategory(int id, int photoId, String name, String text) {
+		PhotoCategory category = new PhotoCategory(photoId, 1000, new Date());
+		category.setPhotoCategoryId(id);
+		category.setPhotoCategoryName(name);
+		category.setPhotoCategoryText(text);
+		return category;
+	}
+	
+	private PhotoComment photoComment(int id, int photoId, String text) {
+		PhotoComment comment = new PhotoComment(photoId, 1000, new Date());
+		comment.setPhotoCommentId(id);
+		comment.setPhotoCommentText(text);
+		return comment;
+	}
+	
+	private RegionCategory regionCategory(int id, int regionId, int photoId, String name, String text) {
+		RegionCategory category = new RegionCategory(regionId, photoId, 1000, new Date());
+		category.setRegionCategoryId(id);
+		category.setCategoryName(name);
+		category.setRegionCategoryText(text);
+		return category;
+	}
+}
@@ -0,0 +1,94 @@
+package edu.cmu.photogenome.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoMetadata;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.domain.RegionComment;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+
+/**
+ * JUnit test case for the MinHash signatures and the LSH index
+ */
+public class LshIndexTest {
+	
+	private KeywordIndex keywordIndex;
+	private LshIndex index;
+	
+	@Before
+	public void setUp() {
+		List<PhotoComment> photoComments = new ArrayList<PhotoComment>();
+		photoComments.add(photoComment(1, 1, "hamerschlag hall robotics lab carnegie mellon campus"));
+		photoComments.add(photoComment(2, 2, "hamerschlag hall robotics lab carnegie mellon campus fence"));
+		photoComments.add(photoComment(3, 3, "matterhorn mountain snow alps glacier zermatt"));
+		
+		keywordIndex = new KeywordIndex();
+		keywordIndex.build(new ArrayList<PhotoCategory>(), photoComments, new ArrayList<RegionCategory>(),
+				new ArrayList<RegionComment>(), new ArrayList<PhotoMetadata>());
+		
+		index = new LshIndex(keywordIndex, 32, 3);
+		index.build();
+	}
+	
+	@Test
+	public void testSignatureSimilarity() {
+		MinHasher hasher = new MinHasher(200, 1);
+		Set<String> a = new HashSet<String>(Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h"));
+		Set<String> b = new HashSet<String>(Arrays.asList("a", "b", "c", "d", "e", "f", "x", "y"));
+		
+		assertEquals(1.0, MinHasher.similarity(hasher.signature(a), hasher.signature(a)), 0);
+		// Jaccard similarity of a and b is 6/10
+		assertEquals(0.6, MinHasher.similarity(hasher.signature(a), hasher.signature(b)), 0.15);
+	}
+	
+	@Test
+	public void testCandidates() {
+		assertArrayEquals(new int[] {2}, index.getCandidates(1));
+		assertArrayEquals(new int[0], index.getCandidates(3));
+		assertArrayEquals(new int[0], index.getCandidates(4));
+	}
+	
+	@Test
+	public void testFindSimilar() {
+		assertArrayEquals(new int[] {2}, index.findSimilar(1, null, 10));
+		assertArrayEquals(new int[0], index.findSimilar(1, Arrays.asList("alps"), 10));
+		assertArrayEquals(new int[] {2}, index.findSimilar(1, Arrays.asList("fence"), 10));
+	}
+	
+	@Test
+	public void testChange() {
+		PhotoComment comment = photoComment(3, 3, "hamerschlag hall robotics lab carnegie mellon campus");
+		PhotoChangeEvent event = new PhotoChangeEvent(PhotoChangeEvent.Action.UPDATE, comment);
+		keywordIndex.photoChanged(event);
+		index.photoChanged(event);
+		assertArrayEquals(new int[] {2, 3}, index.getCandidates(1));
+		
+		Photo photo = new Photo(1000, new Date());
+		photo.setPhotoId(3);
+		event = new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, photo);
+		keywordIndex.photoChanged(event);
+		index.photoChanged(event);
+		assertArrayEquals(new int[] {2}, index.getCandidates(1));
+	}
+	
+	private PhotoComment photoComment(int id, int photoId, String text) {
+		PhotoComment comment = new PhotoComment(photoId, 1000, new Date());
+		comment.setPhotoCommentId(id);
+		comment.setPhotoCommentText(text);
+		return comment;
+	}
+}
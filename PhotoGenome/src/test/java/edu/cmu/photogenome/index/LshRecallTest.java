@@ -0,0 +1,137 @@
+package edu.cmu.photogenome.index;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoMetadata;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.domain.RegionComment;
+import edu.cmu.photogenome.util.ConfigUtil;
+
+/**
+ * JUnit test case for the recall of the LSH candidates against an exact Jaccard similarity scan, on
+ * a fixed corpus of photos annotated by topic. The latency of the index is measured by the 
+ * benchmarks module instead. The recall against the full-text ranking of the association query 
+ * needs the MySQL database and is not measured here.
+ */
+public class LshRecallTest {
+	
+	private static final long SEED = 42L;
+	private static final int TOPICS = 50;
+	private static final int PHOTOS_PER_TOPIC = 8;
+	private static final int TOPIC_TERMS = 10;
+	private static final int NOISE_TERMS = 1000;
+	
+	// photos at least this similar to the source photo are expected among its candidates
+	private static final double MIN_SIMILARITY = 0.4;
+	
+	private KeywordIndex keywordIndex;
+	private int[] photoIds;
+	
+	@Before
+	public void setUp() {
+		// each photo has most of the terms of its topic and a couple of terms drawn from all topics
+		Random random = new Random(SEED);
+		List<PhotoComment> photoComments = new ArrayList<PhotoComment>();
+		int id = 1;
+		for(int topic = 0; topic < TOPICS; topic++) {
+			for(int i = 0; i < PHOTOS_PER_TOPIC; i++, id++) {
+				List<String> terms = new ArrayList<String>();
+				for(int term = 0; term < TOPIC_TERMS; term++)
+					terms.add("topic" + topic + "term" + term);
+				terms.remove(random.nextInt(terms.size()));
+				terms.remove(random.nextInt(terms.size()));
+				terms.add("noise" + random.nextInt(NOISE_TERMS));
+				terms.add("noise" + random.nextInt(NOISE_TERMS));
+				
+				StringBuilder text = new StringBuilder();
+				for(String term : terms)
+					text.append(term).append(' ');
+				PhotoComment comment = new PhotoComment(id, 1000, null);
+				comment.setPhotoCommentId(id);
+				comment.setPhotoCommentText(text.toString());
+				photoComments.add(comment);
+			}
+		}
+		
+		keywordIndex = new KeywordIndex();
+		keywordIndex.build(new ArrayList<PhotoCategory>(), photoComments, new ArrayList<RegionCategory>(),
+				new ArrayList<RegionComment>(), new ArrayList<PhotoMetadata>());
+		photoIds = keywordIndex.getPhotoIds();
+	}
+	
+	/**
+	 * Jaccard similarity of the terms of two photos
+	 */
+	private double similarity(int photoId, int otherPhotoId) {
+		Set<String> terms = keywordIndex.getTerms(photoId);
+		Set<String> otherTerms = keywordIndex.getTerms(otherPhotoId);
+		int shared = 0;
+		for(String term : terms)
+			if(otherTerms.contains(term))
+				shared++;
+		return (double) shared / (terms.size() + otherTerms.size() - shared);
+	}
+	
+	/**
+	 * Assert the share of the similar photos found among the candidates, and that the candidates are 
+	 * only a small part of the corpus
+	 */
+	private void assertRecall(LshIndex index, double minRecall, double maxCandidateShare) {
+		int relevant = 0;
+		int found = 0;
+		long candidates = 0;
+		for(int photoId : photoIds) {
+			int[] photoCandidates = index.getCandidates(photoId);
+			candidates += photoCandidates.length;
+			
+			Set<Integer> candidateIds = new HashSet<Integer>();
+			for(int candidate : photoCandidates)
+				candidateIds.add(candidate);
+			for(int otherPhotoId : photoIds) {
+				if(otherPhotoId == photoId || similarity(photoId, otherPhotoId) < MIN_SIMILARITY)
+					continue;
+				relevant++;
+				if(candidateIds.contains(otherPhotoId))
+					found++;
+			}
+		}
+		
+		assertTrue(relevant > 0);
+		assertTrue("recall " + (double) found / relevant, found >= minRecall * relevant);
+		assertTrue("candidates " + candidates, candidates <= maxCandidateShare * photoIds.length * photoIds.length);
+	}
+	
+	@Test
+	public void testRecall() {
+		// the band and row counts of the application configuration
+		Properties config = ConfigUtil.getApplicationProperties();
+		LshIndex index = new LshIndex(keywordIndex, Integer.parseInt(config.getProperty("search.lsh.bands")),
+				Integer.parseInt(config.getProperty("search.lsh.rows")));
+		index.build();
+		assertRecall(index, 0.9, 0.05);
+	}
+	
+	@Test
+	public void testFindSimilarRanksTopic() {
+		LshIndex index = new LshIndex(keywordIndex, 32, 3);
+		index.build();
+		
+		// the best matches of a photo are the other photos of its topic
+		Set<Integer> topic = new HashSet<Integer>(Arrays.asList(2, 3, 4, 5, 6, 7, 8));
+		for(int match : index.findSimilar(1, null, 3))
+			assertTrue(topic.contains(match));
+	}
+}
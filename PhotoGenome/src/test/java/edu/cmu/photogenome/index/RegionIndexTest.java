@@ -0,0 +1,168 @@
+package edu.cmu.photogenome.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoRegion;
+import edu.cmu.photogenome.domain.RegionCoordinate;
+import edu.cmu.photogenome.util.PhotoChangeEvent;
+
+/**
+ * JUnit test case for the R-tree and the region index
+ */
+public class RegionIndexTest {
+	
+	private RegionIndex index;
+	
+	@Before
+	public void setUp() {
+		List<RegionCoordinate> coordinates = new ArrayList<RegionCoordinate>();
+		coordinates.add(coordinate(1, 10, 1, 0, 0, 50, 50));
+		coordinates.add(coordinate(2, 11, 1, 40, 40, 20, 20));
+		coordinates.add(coordinate(3, 12, 2, 0, 0, 90, 90));
+		coordinates.add(coordinate(4, 13, 3, 50, 50, 100, 100));
+		
+		index = new RegionIndex();
+		index.build(coordinates);
+	}
+	
+	@Test
+	public void testFind() {
+		assertArrayEquals(new int[] {1, 2}, ids(index.findContaining(1, 45, 45)));
+		assertArrayEquals(new int[] {1}, ids(index.findContaining(1, 10, 10)));
+		// rectangles are half-open, so the pixel at (50, 50) is outside the first region
+		assertArrayEquals(new int[] {2}, ids(index.findContaining(1, 50, 50)));
+		assertArrayEquals(new int[0], ids(index.findContaining(4, 10, 10)));
+		
+		assertArrayEquals(new int[] {2}, ids(index.findOverlapping(1, 50, 50, 100, 100)));
+		assertArrayEquals(new int[] {2, 3, 4}, ids(index.findOverlapping(55, 55, 10, 10)));
+		assertArrayEquals(new int[0], ids(index.findOverlapping(55, 55, 0, 10)));
+	}
+	
+	@Test
+	public void testFindTopmost() {
+		// the most recently added region is drawn on top
+		assertEquals(2, index.findTopmost(1, 45, 45).getRegionCoordinateId().intValue());
+		assertEquals(1, index.findTopmost(1, 10, 10).getRegionCoordinateId().intValue());
+		assertNull(index.findTopmost(1, 70, 70));
+		assertNull(index.findTopmost(4, 10, 10));
+	}
+	
+	@Test
+	public void testFindPhotosWithRegionCovering() {
+		assertArrayEquals(new int[] {1, 2, 3}, index.findPhotosWithRegionCovering(0.2, 100, 100));
+		assertArrayEquals(new int[] {2}, index.findPhotosWithRegionCovering(0.5, 100, 100));
+		// only the part of a region inside the frame counts
+		assertArrayEquals(new int[] {1, 2}, index.findPhotosWithRegionCovering(0.2, 60, 60));
+		assertArrayEquals(new int[0], index.findPhotosWithRegionCovering(1, 100, 100));
+	}
+	
+	@Test
+	public void testChange() {
+		RegionCoordinate moved = coordinate(2, 11, 1, 0, 0, 10, 10);
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.UPDATE, moved));
+		// the index keeps its own copy
+		moved.setRegionX(70);
+		assertArrayEquals(new int[] {1, 2}, ids(index.findContaining(1, 5, 5)));
+		assertArrayEquals(new int[] {1}, ids(index.findContaining(1, 45, 45)));
+		
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, coordinate(5, 14, 4, 0, 0, 100, 100)));
+		assertArrayEquals(new int[] {2, 4}, index.findPhotosWithRegionCovering(0.5, 100, 100));
+		
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, coordinate(5, 14, 4, 0, 0, 100, 100)));
+		assertArrayEquals(new int[] {2}, index.findPhotosWithRegionCovering(0.5, 100, 100));
+		
+		PhotoRegion region = new PhotoRegion(1, 1000, 1, new Date());
+		region.setRegionId(10);
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, region));
+		assertArrayEquals(new int[] {2}, ids(index.findContaining(1, 5, 5)));
+		
+		Photo photo = new Photo(1000, new Date());
+		photo.setPhotoId(3);
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.DELETE, photo));
+		assertArrayEquals(new int[] {2, 3}, ids(index.findOverlapping(0, 0, 1000, 1000)));
+	}
+	
+	@Test
+	public void testAbortBuild() {
+		// an aborted rebuild keeps the contents, with the changes received meanwhile
+		index.startBuild();
+		index.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, coordinate(5, 14, 4, 0, 0, 10, 10)));
+		index.abortBuild();
+		assertTrue(index.isBuilt());
+		assertArrayEquals(new int[] {5}, ids(index.findContaining(4, 5, 5)));
+		
+		// an aborted first build leaves the index unbuilt, and the next build has nothing to replay
+		RegionIndex unbuilt = new RegionIndex();
+		unbuilt.startBuild();
+		unbuilt.photoChanged(new PhotoChangeEvent(PhotoChangeEvent.Action.SAVE, coordinate(5, 14, 4, 0, 0, 10, 10)));
+		unbuilt.abortBuild();
+		assertFalse(unbuilt.isBuilt());
+		unbuilt.build(new ArrayList<RegionCoordinate>());
+		assertTrue(unbuilt.isBuilt());
+		assertArrayEquals(new int[0], ids(unbuilt.findContaining(4, 5, 5)));
+	}
+	
+	@Test
+	public void testRandomTree() {
+		Random random = new Random(7);
+		RTree<Integer> tree = new RTree<Integer>();
+		List<int[]> rectangles = new ArrayList<int[]>();
+		
+		for(int i = 0; i < 2000; i++) {
+			int[] r = {random.nextInt(1000), random.nextInt(1000), 1 + random.nextInt(100), 1 + random.nextInt(100)};
+			rectangles.add(r);
+			tree.insert(r[0], r[1], r[2], r[3], i);
+		}
+		// remove every third rectangle, forcing under-full nodes to be re-inserted
+		for(int i = 0; i < rectangles.size(); i += 3) {
+			int[] r = rectangles.get(i);
+			assertTrue(tree.remove(r[0], r[1], r[2], r[3], i));
+		}
+		assertFalse(tree.remove(0, 0, 1, 1, 0));
+		assertEquals(2000 - 667, tree.size());
+		assertEquals(tree.size(), tree.values().size());
+		
+		for(int q = 0; q < 200; q++) {
+			int x = random.nextInt(1100), y = random.nextInt(1100), w = 1 + random.nextInt(200), h = 1 + random.nextInt(200);
+			List<Integer> expected = new ArrayList<Integer>();
+			for(int i = 0; i < rectangles.size(); i++) {
+				int[] r = rectangles.get(i);
+				if(i % 3 != 0 && r[0] < x + w && x < r[0] + r[2] && r[1] < y + h && y < r[1] + r[3])
+					expected.add(i);
+			}
+			
+			List<Integer> found = tree.findOverlapping(x, y, w, h);
+			Collections.sort(found);
+			assertEquals(expected, found);
+		}
+	}
+	
+	private int[] ids(List<RegionCoordinate> coordinates) {
+		int[] ids = new int[coordinates.size()];
+		for(int i = 0; i < ids.length; i++)
+			ids[i] = coordinates.get(i).getRegionCoordinateId();
+		Arrays.sort(ids);
+		return ids;
+	}
+	
+	private RegionCoordinate coordinate(int id, int regionId, int photoId, int x, int y, int width, int height) {
+		RegionCoordinate coordinate = new RegionCoordinate(regionId, photoId, 1000, x, y, height, width, new Date());
+		coordinate.setRegionCoordinateId(id);
+		return coordinate;
+	}
+}
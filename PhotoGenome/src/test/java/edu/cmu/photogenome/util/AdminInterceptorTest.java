@@ -0,0 +1,53 @@
+package edu.cmu.photogenome.util;
+
+import org.apache.struts2.StrutsTestCase;
+import org.apache.struts2.dispatcher.SessionMap;
+import org.junit.Test;
+
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionProxy;
+
+import edu.cmu.photogenome.actions.ViewInformationAction;
+
+/**
+ * JUnit test case for the AdminInterceptor guarding the statistics actions of the admin package
+ */
+public class AdminInterceptorTest extends StrutsTestCase {
+	
+	private String execute(Integer roleId) throws Exception {
+		ActionProxy proxy = getActionProxy("/admin/getDaoStats");
+		// the HTTP session, as wrapped by the dispatcher
+		SessionMap<String, Object> httpSession = new SessionMap<String, Object>(request);
+		if(roleId != null)
+			httpSession.put(AdminInterceptor.ROLE_ATTRIBUTE, roleId);
+		proxy.getInvocation().getInvocationContext().setSession(httpSession);
+		proxy.setExecuteResult(false);
+		return proxy.execute();
+	}
+	
+	@Test
+	public void testNotLoggedIn() throws Exception {
+		assertEquals(Action.NONE, execute(null));
+		assertEquals(403, response.getStatus());
+	}
+	
+	@Test
+	public void testNotAdmin() throws Exception {
+		assertEquals(Action.NONE, execute(2));
+		assertEquals(403, response.getStatus());
+	}
+	
+	@Test
+	public void testAdmin() throws Exception {
+		assertEquals(Action.SUCCESS, execute(1));
+		assertEquals(200, response.getStatus());
+	}
+	
+	@Test
+	public void testStatsNotInDefaultNamespace() throws Exception {
+		assertNull(configuration.getRuntimeConfiguration().getActionConfig("", "getDaoStats"));
+		assertNotNull(configuration.getRuntimeConfiguration().getActionConfig("/admin", "getDaoStats"));
+		assertEquals(ViewInformationAction.class.getName(),
+				configuration.getRuntimeConfiguration().getActionConfig("/admin", "getDaoStats").getClassName());
+	}
+}
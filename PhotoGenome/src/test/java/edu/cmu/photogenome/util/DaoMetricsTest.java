@@ -0,0 +1,153 @@
+package edu.cmu.photogenome.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test case for the DAO operation counters and the slow query log
+ */
+public class DaoMetricsTest {
+	
+	private DaoMetrics metrics = DaoMetrics.getInstance();
+	private long slowQueryMillis;
+	
+	@Before
+	public void setUp() {
+		slowQueryMillis = metrics.getSlowQueryMillis();
+		metrics.reset();
+	}
+	
+	@After
+	public void tearDown() {
+		metrics.setSlowQueryMillis(slowQueryMillis);
+		metrics.reset();
+	}
+	
+	/**
+	 * Connection whose prepared statements do nothing
+	 */
+	private static Connection fakeConnection() {
+		final InvocationHandler statement = new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return method.getName().equals("executeUpdate") ? Integer.valueOf(1) : null;
+			}
+		};
+		return (Connection) Proxy.newProxyInstance(DaoMetricsTest.class.getClassLoader(),
+				new Class<?>[] {Connection.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return Proxy.newProxyInstance(DaoMetricsTest.class.getClassLoader(),
+						new Class<?>[] {PreparedStatement.class}, statement);
+			}
+		});
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> getOperation(String name) {
+		return (Map<String, Object>) ((Map<String, Object>) metrics.getStats().get("operations")).get(name);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<Map<String, Object>> getSlowStatements() {
+		return (List<Map<String, Object>>) metrics.getStats().get("slowStatements");
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testTimer() {
+		DaoMetrics.Timer timer = DaoMetrics.start("Photo", "findAll");
+		assertEquals("Photo.findAll", DaoMetrics.getCurrentOperation());
+		timer.setRows(3);
+		timer.stop();
+		
+		timer = DaoMetrics.start("Photo", "findAll");
+		timer.fail();
+		timer.stop();
+		assertNull(DaoMetrics.getCurrentOperation());
+		
+		Map<String, Object> stats = getOperation("Photo.findAll");
+		assertEquals(2L, stats.get("count"));
+		assertEquals(1L, stats.get("errors"));
+		assertEquals(3L, stats.get("rows"));
+		
+		long total = 0;
+		for(Object count : ((Map<String, Object>) stats.get("histogramMillis")).values())
+			total += (Long) count;
+		assertEquals(2, total);
+	}
+	
+	@Test
+	public void testNestedTimer() {
+		DaoMetrics.Timer outer = DaoMetrics.start("Photo", "saveAll");
+		DaoMetrics.Timer inner = DaoMetrics.start("Photo", "save");
+		assertEquals("Photo.save", DaoMetrics.getCurrentOperation());
+		inner.stop();
+		assertEquals("Photo.saveAll", DaoMetrics.getCurrentOperation());
+		outer.stop();
+		assertNull(DaoMetrics.getCurrentOperation());
+	}
+	
+	@Test
+	public void testSlowStatement() throws Exception {
+		metrics.setSlowQueryMillis(0);
+		PreparedStatement statement = StatementTimer.wrap(fakeConnection())
+				.prepareStatement("update photo set photo_name = ? where photo_id = ?");
+		statement.setString(1, "name");
+		statement.setInt(2, 7);
+		
+		DaoMetrics.Timer timer = DaoMetrics.start("Photo", "update");
+		statement.executeUpdate();
+		timer.stop();
+		
+		List<Map<String, Object>> statements = getSlowStatements();
+		assertEquals(1, statements.size());
+		assertEquals("Photo.update", statements.get(0).get("operation"));
+		assertEquals("update photo set photo_name = ? where photo_id = ?", statements.get(0).get("sql"));
+		// the bind parameters are not kept
+		assertFalse(statements.get(0).containsKey("parameters"));
+	}
+	
+	@Test
+	public void testMaskParameters() {
+		Map<Integer, Object> parameters = new TreeMap<Integer, Object>();
+		parameters.put(2, 7);
+		parameters.put(1, "secret@example.com");
+		parameters.put(3, null);
+		
+		List<String> masked = DaoMetrics.maskParameters(parameters);
+		assertEquals(Arrays.asList("String", "Integer", null), masked);
+		assertFalse(masked.toString().contains("secret"));
+	}
+	
+	@Test
+	public void testSlowQueryLogDisabled() throws Exception {
+		metrics.setSlowQueryMillis(-1);
+		StatementTimer.wrap(fakeConnection()).prepareStatement("select 1").executeQuery();
+		assertEquals(0, getSlowStatements().size());
+	}
+	
+	@Test
+	public void testSlowQueryLogBounded() throws Exception {
+		metrics.setSlowQueryMillis(0);
+		PreparedStatement statement = StatementTimer.wrap(fakeConnection()).prepareStatement("select 1");
+		for(int i = 0; i < 60; i++)
+			statement.executeQuery();
+		
+		assertEquals(50, getSlowStatements().size());
+		assertEquals(60L, metrics.getStats().get("slowStatementCount"));
+	}
+}
@@ -0,0 +1,119 @@
+package edu.cmu.photogenome.util;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.struts2.StrutsTestCase;
+import org.apache.struts2.dispatcher.SessionMap;
+import org.hibernate.Session;
+import org.junit.Test;
+
+import com.opensymphony.xwork2.ActionProxy;
+
+import edu.cmu.photogenome.dao.PhotoDao;
+import edu.cmu.photogenome.dao.PhotoDaoImpl;
+import edu.cmu.photogenome.domain.Photo;
+
+/**
+ * JUnit test case for the transaction of the HibernateSessionInterceptor, through the actions of
+ * struts-interceptor-test.xml. Each test saves a photo under its own name, which is deleted afterwards.
+ */
+public class HibernateSessionInterceptorTest extends StrutsTestCase {
+	
+	private static final String PHOTO_NAME = "HibernateSessionInterceptorTest ";
+	
+	private String photoName;
+	
+	@Override
+	protected void setupBeforeInitDispatcher() throws Exception {
+		dispatcherInitParams = new HashMap<String, String>();
+		dispatcherInitParams.put("config", "struts-default.xml,struts-plugin.xml,struts.xml,struts-interceptor-test.xml");
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		if(photoName != null) {
+			Session session = HibernateUtil.getSessionFactory().openSession();
+			HibernateUtil.beginTransaction(session);
+			PhotoDao photoDao = new PhotoDaoImpl();
+			photoDao.setSession(session);
+			for(Photo photo : findPhotos(session))
+				photoDao.delete(photo);
+			HibernateUtil.commitTransaction(session);
+		}
+		super.tearDown();
+	}
+	
+	private TransactionTestAction execute(String method) throws Exception {
+		photoName = PHOTO_NAME + method + " " + System.currentTimeMillis();
+		request.setParameter("photoName", photoName);
+		
+		ActionProxy proxy = getActionProxy("/interceptorTest/" + method);
+		// the HTTP session, as wrapped by the dispatcher
+		proxy.getInvocation().getInvocationContext().setSession(new SessionMap<String, Object>(request));
+		TransactionTestAction action = (TransactionTestAction) proxy.getAction();
+		try {
+			proxy.execute();
+		}
+		finally {
+			// the transaction is over once the request is, whichever way it ended
+			assertNotNull(action.getSession());
+			assertFalse(action.getSession().isOpen());
+			assertFalse(HibernateUtil.isRollbackOnly());
+		}
+		return action;
+	}
+	
+	private List<Photo> findPhotos(Session session) {
+		PhotoDao photoDao = new PhotoDaoImpl();
+		photoDao.setSession(session);
+		return photoDao.findAllByCriteria("photoName", photoName);
+	}
+	
+	private int countPhotos() {
+		Session session = HibernateUtil.getSessionFactory().openSession();
+		HibernateUtil.beginTransaction(session, true);
+		try {
+			return findPhotos(session).size();
+		}
+		finally {
+			HibernateUtil.rollbackTransaction(session);
+		}
+	}
+	
+	@Test
+	public void testCommit() throws Exception {
+		execute("save");
+		assertEquals(1, countPhotos());
+		// the reads of this user go to the primary for a while
+		assertNotNull(request.getSession().getAttribute(HibernateSessionInterceptor.LAST_WRITE_ATTRIBUTE));
+		assertNull(HibernateUtil.getLastWriteMillis());
+	}
+	
+	@Test
+	public void testRollbackOnly() throws Exception {
+		execute("saveRollbackOnly");
+		assertEquals(0, countPhotos());
+		assertNull(request.getSession().getAttribute(HibernateSessionInterceptor.LAST_WRITE_ATTRIBUTE));
+	}
+	
+	@Test
+	public void testActionException() throws Exception {
+		try {
+			execute("saveAndFail");
+			fail("Exception of the action not thrown");
+		}
+		catch(IllegalStateException ise) {
+			assertEquals("Action failed", ise.getMessage());
+		}
+		assertEquals(0, countPhotos());
+	}
+	
+	@Test
+	public void testCommitFailure() throws Exception {
+		// the failure is logged and the result still rendered
+		execute("saveAndFailCommit");
+		assertEquals(204, response.getStatus());
+		assertEquals(0, countPhotos());
+	}
+}
@@ -0,0 +1,216 @@
+package edu.cmu.photogenome.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.jdbc.Work;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test case for routing the read-only sessions between a primary and its replicas, each an
+ * embedded H2 database whose replication lag is read from a replica_lag table
+ */
+public class ReplicaRouterTest {
+	
+	private static final String LAG_QUERY = "SELECT seconds FROM replica_lag";
+	
+	private SessionFactory primary;
+	private SessionFactory replica1;
+	private SessionFactory replica2;
+	
+	private static SessionFactory buildSessionFactory(String name) {
+		return new Configuration()
+				.setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+				.setProperty("hibernate.connection.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+				.setProperty("hibernate.connection.username", "sa")
+				.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+				.buildSessionFactory();
+	}
+	
+	private static void execute(SessionFactory sessionFactory, final String sql) {
+		Session session = sessionFactory.openSession();
+		try {
+			session.doWork(new Work() {
+				public void execute(Connection connection) throws SQLException {
+					Statement statement = connection.createStatement();
+					try {
+						statement.execute(sql);
+					}
+					finally {
+						statement.close();
+					}
+				}
+			});
+		}
+		finally {
+			session.close();
+		}
+	}
+	
+	private static void setLag(SessionFactory replica, int seconds) {
+		execute(replica, "UPDATE replica_lag SET seconds = " + seconds);
+	}
+	
+	private static ReplicaRouter.Replica replica(SessionFactory sessionFactory, String name) {
+		return new ReplicaRouter.Replica(name, sessionFactory, LAG_QUERY);
+	}
+	
+	@Before
+	public void setUp() {
+		primary = buildSessionFactory("primary");
+		replica1 = buildSessionFactory("replica1");
+		replica2 = buildSessionFactory("replica2");
+		for(SessionFactory replica : Arrays.asList(replica1, replica2)) {
+			execute(replica, "CREATE TABLE replica_lag (seconds INT)");
+			execute(replica, "INSERT INTO replica_lag VALUES (0)");
+		}
+	}
+	
+	@After
+	public void tearDown() {
+		for(SessionFactory sessionFactory : Arrays.asList(replica1, replica2)) {
+			execute(sessionFactory, "DROP TABLE IF EXISTS replica_lag");
+			sessionFactory.close();
+		}
+		primary.close();
+	}
+	
+	@Test
+	public void testNoReplicas() {
+		ReplicaRouter router = new ReplicaRouter(Collections.<ReplicaRouter.Replica>emptyList(), false, 5, 0);
+		assertSame(primary, router.select(primary));
+		assertEquals(1, router.getPrimaryReads());
+	}
+	
+	@Test
+	public void testRoundRobin() {
+		ReplicaRouter router = new ReplicaRouter(Arrays.asList(replica(replica1, "replica1"),
+				replica(replica2, "replica2")), false, 5, 0);
+		assertSame(replica1, router.select(primary));
+		assertSame(replica2, router.select(primary));
+		assertSame(replica1, router.select(primary));
+		assertEquals(3, router.getReplicaReads());
+		assertEquals(0, router.getPrimaryReads());
+	}
+	
+	@Test
+	public void testLaggingReplicaSkipped() {
+		ReplicaRouter router = new ReplicaRouter(Arrays.asList(replica(replica1, "replica1"),
+				replica(replica2, "replica2")), false, 5, 0);
+		setLag(replica1, 30);
+		assertSame(replica2, router.select(primary));
+		assertSame(replica2, router.select(primary));
+		assertEquals(30, router.getReplicas().get(0).getLagSeconds());
+		
+		// reads go to the primary until a replica catches up
+		setLag(replica2, 30);
+		assertSame(primary, router.select(primary));
+		setLag(replica1, 0);
+		assertSame(replica1, router.select(primary));
+		assertEquals(1, router.getPrimaryReads());
+	}
+	
+	@Test
+	public void testLagCheckedOncePerPeriod() {
+		ReplicaRouter router = new ReplicaRouter(Arrays.asList(replica(replica1, "replica1")), false, 5, 60000);
+		assertSame(replica1, router.select(primary));
+		
+		// the lag measured first is kept until the next check
+		setLag(replica1, 30);
+		assertSame(replica1, router.select(primary));
+	}
+	
+	@Test
+	public void testFailedLagQuerySkipped() {
+		ReplicaRouter router = new ReplicaRouter(Arrays.asList(replica(replica1, "replica1")), false, 5, 0);
+		execute(replica1, "DROP TABLE replica_lag");
+		assertSame(primary, router.select(primary));
+		assertEquals(-1, router.getReplicas().get(0).getLagSeconds());
+	}
+	
+	private static int countPhotos(SessionFactory sessionFactory) {
+		Session session = sessionFactory.openSession();
+		try {
+			return ((Number) session.createSQLQuery("SELECT COUNT(*) FROM photo").uniqueResult()).intValue();
+		}
+		finally {
+			session.close();
+		}
+	}
+	
+	@Test
+	public void testLaggingReplicaAfterWrite() {
+		// the replica is within the max lag but does not have the photo written on the primary yet
+		for(SessionFactory sessionFactory : Arrays.asList(primary, replica1))
+			execute(sessionFactory, "CREATE TABLE photo (photo_id INT)");
+		execute(primary, "INSERT INTO photo VALUES (1)");
+		setLag(replica1, 2);
+		
+		try {
+			ReplicaRouter router = new ReplicaRouter(Arrays.asList(replica(replica1, "replica1")), false, 5, 0);
+			SessionFactory selected = router.select(primary, System.currentTimeMillis());
+			assertSame(primary, selected);
+			assertEquals(1, countPhotos(selected));
+			
+			// the reads of the users who did not write stay on the replica
+			assertSame(replica1, router.select(primary, 0));
+			assertSame(replica1, router.select(primary));
+			
+			// once the replica had the time to catch up
+			assertSame(replica1, router.select(primary, System.currentTimeMillis() - 5000));
+		}
+		finally {
+			for(SessionFactory sessionFactory : Arrays.asList(primary, replica1))
+				execute(sessionFactory, "DROP TABLE photo");
+		}
+	}
+	
+	@Test
+	public void testIsReplica() {
+		ReplicaRouter router = new ReplicaRouter(Arrays.asList(replica(replica1, "replica1")), false, 5, 0);
+		assertTrue(router.isReplica(replica1));
+		assertFalse(router.isReplica(primary));
+	}
+	
+	@Test
+	public void testReplicaCachesDisabled() {
+		// the cache regions are shared with the primary
+		Configuration configuration = HibernateUtil.configureReplica(new Configuration()
+				.setProperty("hibernate.cache.use_second_level_cache", "true"));
+		assertEquals("false", configuration.getProperty("hibernate.cache.use_second_level_cache"));
+		assertEquals("false", configuration.getProperty("hibernate.cache.use_query_cache"));
+	}
+	
+	@Test
+	public void testLeastLoaded() {
+		ReplicaRouter.Replica busy = new ReplicaRouter.Replica("replica1", replica1, LAG_QUERY) {
+			protected int getLoad() {
+				return 3;
+			}
+		};
+		ReplicaRouter.Replica idle = new ReplicaRouter.Replica("replica2", replica2, LAG_QUERY) {
+			protected int getLoad() {
+				return 1;
+			}
+		};
+		ReplicaRouter router = new ReplicaRouter(Arrays.asList(busy, idle), true, 5, 0);
+		assertSame(replica2, router.select(primary));
+		assertSame(replica2, router.select(primary));
+		
+		setLag(replica2, 30);
+		assertSame(replica1, router.select(primary));
+	}
+}
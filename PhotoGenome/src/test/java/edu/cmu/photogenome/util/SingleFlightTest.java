@@ -0,0 +1,100 @@
+package edu.cmu.photogenome.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * JUnit test case for request coalescing
+ */
+public class SingleFlightTest {
+	
+	private static final int CALLERS = 8;
+	
+	@Test
+	public void testCoalesce() throws Exception {
+		final SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger runs = new AtomicInteger();
+		final Object result = new Object();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>();
+			for(int i = 0; i < CALLERS; i++) {
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						return flight.execute("photo:1", new Callable<Object>() {
+							public Object call() throws Exception {
+								runs.incrementAndGet();
+								started.countDown();
+								release.await();
+								return result;
+							}
+						});
+					}
+				}));
+				// let the first caller start the computation before the others arrive
+				if(i == 0)
+					assertTrue(started.await(5, TimeUnit.SECONDS));
+			}
+			
+			// wait until every other caller is waiting on the computation in flight
+			long deadline = System.currentTimeMillis() + 5000;
+			while(flight.getCoalesced() < CALLERS - 1 && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+			release.countDown();
+			
+			for(Future<Object> future : futures)
+				assertSame(result, future.get(5, TimeUnit.SECONDS));
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		
+		assertEquals(1, runs.get());
+		assertEquals(1, flight.getExecutions());
+		assertEquals(CALLERS - 1, flight.getCoalesced());
+		
+		// nothing is kept once the computation completed
+		flight.execute("photo:1", new Callable<Object>() {
+			public Object call() {
+				runs.incrementAndGet();
+				return result;
+			}
+		});
+		assertEquals(2, runs.get());
+		assertEquals(0, flight.getStats().get("inFlight"));
+	}
+	
+	@Test
+	public void testException() throws Exception {
+		SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+		try {
+			flight.execute("photo:1", new Callable<Object>() {
+				public Object call() {
+					throw new IllegalStateException("search failed");
+				}
+			});
+			fail("exception not propagated");
+		}
+		catch(IllegalStateException ise) {
+			assertEquals("search failed", ise.getMessage());
+		}
+		assertEquals(0, flight.getStats().get("inFlight"));
+	}
+}
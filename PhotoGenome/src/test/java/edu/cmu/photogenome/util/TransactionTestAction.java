@@ -0,0 +1,75 @@
+package edu.cmu.photogenome.util;
+
+import java.util.Date;
+
+import org.hibernate.Session;
+
+import com.opensymphony.xwork2.ActionSupport;
+
+import edu.cmu.photogenome.dao.PhotoDao;
+import edu.cmu.photogenome.dao.PhotoDaoImpl;
+import edu.cmu.photogenome.domain.Photo;
+
+/**
+ * Action of the HibernateSessionInterceptor tests, mapped by struts-interceptor-test.xml. Each method
+ * saves a photo named by the photoName parameter, then ends the request in a different way.
+ */
+public class TransactionTestAction extends ActionSupport implements HibernateSessionAware {
+	
+	private static final long serialVersionUID = 1L;
+	
+	// photo id not in the database, updating it fails when the session is flushed
+	private static final int MISSING_PHOTO_ID = -1;
+	
+	private Session session;
+	private PhotoDao photoDao = new PhotoDaoImpl();
+	private String photoName;
+	
+	public void setHibernateSession(Session session) {
+		this.session = session;
+		photoDao.setSession(session);
+	}
+	
+	private void savePhoto() {
+		Photo photo = new Photo(1000, new Date());
+		photo.setPhotoName(photoName);
+		if(!photoDao.save(photo))
+			throw new IllegalStateException("Photo not saved");
+	}
+	
+	@HibernateSession
+	public String save() {
+		savePhoto();
+		return SUCCESS;
+	}
+	
+	@HibernateSession
+	public String saveRollbackOnly() {
+		savePhoto();
+		HibernateUtil.setRollbackOnly();
+		return SUCCESS;
+	}
+	
+	@HibernateSession
+	public String saveAndFail() {
+		savePhoto();
+		throw new IllegalStateException("Action failed");
+	}
+	
+	@HibernateSession
+	public String saveAndFailCommit() {
+		savePhoto();
+		Photo missing = new Photo(1000, new Date());
+		missing.setPhotoId(MISSING_PHOTO_ID);
+		session.update(missing);
+		return SUCCESS;
+	}
+	
+	public Session getSession() {
+		return session;
+	}
+	
+	public void setPhotoName(String photoName) {
+		this.photoName = photoName;
+	}
+}
@@ -0,0 +1,89 @@
+package edu.cmu.photogenome.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.cmu.photogenome.business.Search;
+import edu.cmu.photogenome.business.SearchPage;
+
+/**
+ * End-to-end benchmark of <code>Search.getPhotosByKeyword</code> against an embedded database seeded
+ * with a synthetic corpus. The in-memory indexes are built during setup, so only steady state searches
+ * are measured. Queries are cycled through a set larger than the result cache, so most searches miss
+ * the cache and go through the keyword index and the photo summary query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class KeywordSearchBenchmark {
+	
+	private static final int QUERIES = 4096;
+	private static final int PAGE_SIZE = 20;
+	
+	@Param({"10000", "100000", "1000000"})
+	private int photos;
+	
+	private SessionFactory sessionFactory;
+	private Session session;
+	private Search search;
+	private List<List<String>> queries;
+	private int next;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		sessionFactory = SyntheticCorpus.createSessionFactory("search" + photos);
+		SyntheticCorpus.seed(sessionFactory, photos);
+		
+		session = sessionFactory.openSession();
+		session.setDefaultReadOnly(true);
+		session.beginTransaction();
+		
+		search = new Search();
+		search.setSession(session);
+		search.buildKeywordIndex();
+		
+		Random random = new Random(SyntheticCorpus.SEED + 1);
+		queries = new ArrayList<List<String>>();
+		for(int i = 0; i < QUERIES; i++) {
+			List<String> keywords = new ArrayList<String>();
+			int count = 1 + random.nextInt(3);
+			for(int j = 0; j < count; j++)
+				keywords.add(SyntheticCorpus.word(random));
+			queries.add(keywords);
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		session.getTransaction().rollback();
+		session.close();
+		sessionFactory.close();
+	}
+	
+	@Benchmark
+	public SearchPage getPhotosByKeyword() {
+		List<String> keywords = queries.get(next++ % QUERIES);
+		return search.getPhotosByKeyword(keywords, null, PAGE_SIZE);
+	}
+}
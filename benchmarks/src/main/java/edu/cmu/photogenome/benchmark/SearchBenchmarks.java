@@ -0,0 +1,26 @@
+package edu.cmu.photogenome.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the search benchmarks with the GC profiler, so that the allocation rate is reported along with
+ * the throughput and the sampled latency percentiles. Any JMH command line option may be given, e.g.
+ * a benchmark name pattern or <code>-p photos=10000</code> to only seed the smallest corpus.
+ */
+public class SearchBenchmarks {
+	
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+		if(commandLine.getIncludes().isEmpty())
+			options.include("edu\\.cmu\\.photogenome\\..*Benchmark\\.");
+		options.addProfiler(GCProfiler.class);
+		
+		new Runner(options.parent(commandLine).build()).run();
+	}
+}
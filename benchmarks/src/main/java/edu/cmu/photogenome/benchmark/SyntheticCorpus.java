@@ -0,0 +1,118 @@
+package edu.cmu.photogenome.benchmark;
+
+import java.util.Date;
+import java.util.Random;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+
+import edu.cmu.photogenome.domain.Photo;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+
+/**
+ * Synthetic photo corpus in an embedded H2 database. Annotation words are drawn from a fixed vocabulary
+ * with a skewed distribution, so that a few words are very common and most are rare, as with real
+ * category names and comments.
+ */
+public class SyntheticCorpus {
+	
+	public static final long SEED = 42L;
+	
+	private static final int VOCABULARY_SIZE = 20000;
+	private static final String[] CATEGORY_NAMES = {"Building", "Person", "Landscape", "Vehicle", "Animal",
+		"Event", "Food", "Sign"};
+	private static final int USERS = 100;
+	private static final int BATCH_SIZE = 1000;
+	
+	/**
+	 * Get a word of the vocabulary, common words being drawn much more often than rare ones
+	 * 
+	 * @param random
+	 * @return word
+	 */
+	public static String word(Random random) {
+		// squaring a uniform value gives low ranks far more often than high ones
+		double u = random.nextDouble();
+		int rank = (int) (u * u * VOCABULARY_SIZE);
+		return "w" + Integer.toString(rank, 36);
+	}
+	
+	/**
+	 * Get a phrase of vocabulary words
+	 * 
+	 * @param random
+	 * @param words	number of words
+	 * @return space separated words
+	 */
+	public static String phrase(Random random, int words) {
+		StringBuilder phrase = new StringBuilder(word(random));
+		for(int i = 1; i < words; i++)
+			phrase.append(' ').append(word(random));
+		return phrase.toString();
+	}
+	
+	/**
+	 * Build a session factory over a new in-memory H2 database, with the schema created from the
+	 * entity mappings of the application configuration
+	 * 
+	 * @param name	database name
+	 * @return session factory
+	 */
+	public static SessionFactory createSessionFactory(String name) {
+		Configuration configuration = new Configuration().configure();
+		configuration.getProperties().remove("hibernate.default_catalog");
+		configuration.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+		configuration.setProperty("hibernate.connection.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		configuration.setProperty("hibernate.connection.username", "sa");
+		configuration.setProperty("hibernate.connection.password", "");
+		configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+		configuration.setProperty("hibernate.hbm2ddl.auto", "create");
+		return configuration.buildSessionFactory();
+	}
+	
+	/**
+	 * Insert photos with two categories and a comment each
+	 * 
+	 * @param sessionFactory
+	 * @param photos	number of photos
+	 */
+	public static void seed(SessionFactory sessionFactory, int photos) {
+		Random random = new Random(SEED);
+		Date timestamp = new Date();
+		
+		StatelessSession session = sessionFactory.openStatelessSession();
+		try {
+			Transaction transaction = session.beginTransaction();
+			for(int i = 0; i < photos; i++) {
+				Photo photo = new Photo(1 + random.nextInt(USERS), timestamp);
+				photo.setPhotoName("photo" + i);
+				photo.setPhotoLink("photo" + i + ".jpg");
+				session.insert(photo);
+				
+				for(int j = 0; j < 2; j++) {
+					PhotoCategory category = new PhotoCategory(photo.getPhotoId(), photo.getUserId(), timestamp);
+					category.setPhotoCategoryName(CATEGORY_NAMES[random.nextInt(CATEGORY_NAMES.length)]);
+					category.setPhotoCategoryText(phrase(random, 1 + random.nextInt(3)));
+					session.insert(category);
+				}
+				
+				PhotoComment comment = new PhotoComment(photo.getPhotoId(), photo.getUserId(), timestamp);
+				comment.setPhotoCommentText(phrase(random, 3 + random.nextInt(10)));
+				session.insert(comment);
+				
+				// commit in batches to keep the undo log small
+				if((i + 1) % BATCH_SIZE == 0) {
+					transaction.commit();
+					transaction = session.beginTransaction();
+				}
+			}
+			transaction.commit();
+		}
+		finally {
+			session.close();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package edu.cmu.photogenome.business;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.cmu.photogenome.benchmark.SyntheticCorpus;
+
+/**
+ * Benchmarks of the string building done for every category filtered and keyword search. Lives in
+ * the business package to reach the package-private helpers of <code>Search</code> and
+ * <code>SearchDataRetrieval</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchStringBenchmark {
+	
+	// number of keywords of a search
+	@Param({"1", "5", "20"})
+	private int keywordCount;
+	
+	private Search search;
+	private String[] names;
+	private String[] texts;
+	private List<String> keywords;
+	private int next;
+	
+	@Setup
+	public void setUp() {
+		Random random = new Random(SyntheticCorpus.SEED);
+		search = new Search();
+		
+		names = new String[1024];
+		texts = new String[names.length];
+		for(int i = 0; i < names.length; i++) {
+			names[i] = SyntheticCorpus.phrase(random, 1 + random.nextInt(2));
+			texts[i] = SyntheticCorpus.phrase(random, 1 + random.nextInt(4));
+		}
+		
+		keywords = new ArrayList<String>();
+		for(int i = 0; i < keywordCount; i++)
+			keywords.add(SyntheticCorpus.word(random));
+	}
+	
+	@Benchmark
+	public String mergeCategoryData() {
+		// cycle through the categories so the input is not constant folded
+		int i = next++ & (names.length - 1);
+		return search.mergeCategoryData(names[i], texts[i]);
+	}
+	
+	@Benchmark
+	public String buildKeywordString() {
+		return SearchDataRetrieval.buildKeywordString(keywords);
+	}
+}
@@ -0,0 +1,115 @@
+package edu.cmu.photogenome.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.cmu.photogenome.benchmark.SyntheticCorpus;
+import edu.cmu.photogenome.domain.PhotoCategory;
+import edu.cmu.photogenome.domain.PhotoComment;
+import edu.cmu.photogenome.domain.PhotoMetadata;
+import edu.cmu.photogenome.domain.RegionCategory;
+import edu.cmu.photogenome.domain.RegionComment;
+
+/**
+ * Benchmark of the associated photo lookup of <code>LshIndex</code> against scoring every photo of
+ * the corpus, which is what the full-text association query does. Lives in the index package to 
+ * build indexes with other band and row counts than the configured ones. The recall of the candidates 
+ * is checked by <code>LshRecallTest</code> in the webapp.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class AssociationBenchmark {
+	
+	private static final int MAX_MATCHES = 200;
+	
+	@Param({"10000", "100000"})
+	private int photos;
+	
+	// bands x rows of the LSH index
+	@Param({"32x3", "16x4", "64x2"})
+	private String bandsByRows;
+	
+	private KeywordIndex keywordIndex;
+	private LshIndex lshIndex;
+	private int[] photoIds;
+	private int next;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(SyntheticCorpus.SEED);
+		List<PhotoComment> photoComments = new ArrayList<PhotoComment>();
+		for(int i = 1; i <= photos; i++) {
+			PhotoComment comment = new PhotoComment(i, 1 + random.nextInt(100), null);
+			comment.setPhotoCommentId(i);
+			comment.setPhotoCommentText(SyntheticCorpus.phrase(random, 3 + random.nextInt(10)));
+			photoComments.add(comment);
+		}
+		
+		keywordIndex = new KeywordIndex();
+		keywordIndex.build(new ArrayList<PhotoCategory>(), photoComments, new ArrayList<RegionCategory>(),
+				new ArrayList<RegionComment>(), new ArrayList<PhotoMetadata>());
+		photoIds = keywordIndex.getPhotoIds();
+		
+		String[] setting = bandsByRows.split("x");
+		lshIndex = new LshIndex(keywordIndex, Integer.parseInt(setting[0]), Integer.parseInt(setting[1]));
+		lshIndex.build();
+	}
+	
+	private int nextPhotoId() {
+		return photoIds[(next++ & Integer.MAX_VALUE) % photoIds.length];
+	}
+	
+	@Benchmark
+	public int[] findSimilar() {
+		return lshIndex.findSimilar(nextPhotoId(), null, MAX_MATCHES);
+	}
+	
+	@Benchmark
+	public int[] scoreAll() {
+		// the same ranking as findSimilar, with every photo as a candidate
+		int photoId = nextPhotoId();
+		Set<String> terms = keywordIndex.getTerms(photoId);
+		int[] ids = new int[photoIds.length];
+		int[] scores = new int[photoIds.length];
+		int n = 0;
+		for(int candidate : photoIds) {
+			if(candidate == photoId)
+				continue;
+			Set<String> candidateTerms = keywordIndex.getTerms(candidate);
+			int shared = 0;
+			for(String term : terms)
+				if(candidateTerms.contains(term))
+					shared++;
+			if(shared > 0) {
+				ids[n] = candidate;
+				scores[n++] = shared;
+			}
+		}
+		
+		int[] matchIds = new int[n];
+		int[] matchScores = new int[n];
+		System.arraycopy(ids, 0, matchIds, 0, n);
+		System.arraycopy(scores, 0, matchScores, 0, n);
+		return RankedPhotoIds.rank(matchIds, matchScores, null, MAX_MATCHES).getPhotoIds();
+	}
+}